@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.circuitBreaker;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.hystrix;
+
+/**
+ * Measures what guarding a route costs per request while the breaker is closed: the
+ * filter runs around the rest of the chain, which completes at once with a
+ * {@code 200} status, so only the breaker's own work is measured.
+ *
+ * <p>{@code filter} selects the filter: {@code none}, the chain alone,
+ * {@code circuitBreaker}, the Reactor based {@code CircuitBreaker} filter, or
+ * {@code hystrix}, the {@code Hystrix} filter bridging the chain through an RxJava
+ * {@code Observable}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class CircuitBreakerBenchmark {
+
+	@Param({ "none", "circuitBreaker", "hystrix" })
+	public String filter;
+
+	private GatewayFilter gatewayFilter;
+
+	private GatewayFilterChain chain;
+
+	private MockServerHttpRequest request;
+
+	@Setup
+	public void setup() {
+		if ("circuitBreaker".equals(this.filter)) {
+			this.gatewayFilter = circuitBreaker("benchmark", 50, Duration.ofSeconds(5));
+		}
+		else if ("hystrix".equals(this.filter)) {
+			this.gatewayFilter = hystrix("benchmark");
+		}
+		else {
+			this.gatewayFilter = (exchange, chain) -> chain.filter(exchange);
+		}
+		this.chain = exchange -> Mono.fromRunnable(() -> exchange.getResponse().setStatusCode(HttpStatus.OK));
+		this.request = MockServerHttpRequest.get("http://localhost/api/orders/42").build();
+	}
+
+	@Benchmark
+	public Object filter() {
+		ServerWebExchange exchange = MockServerWebExchange.from(this.request);
+		this.gatewayFilter.filter(exchange, this.chain).block();
+		return exchange;
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
+import org.springframework.cloud.gateway.filter.RoutingFilter;
+import org.springframework.cloud.gateway.filter.factory.SecureHeadersProperties;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.addRequestHeader;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.addResponseHeader;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.removeNonProxyHeaders;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.rewritePath;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.secureHeaders;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.path;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setAlreadyRouted;
+
+/**
+ * Runs the filter chain of a route through {@link FilteringWebHandler#handle}. The
+ * global filters are the ones that always run, {@link RouteToRequestUrlFilter} and
+ * {@link NettyWriteResponseFilter}, followed by a routing filter that completes
+ * without calling a downstream service, so only the gateway's own work is measured.
+ *
+ * <p>{@code filters} selects the route filters: {@code none}, {@code default}, the
+ * {@code RemoveNonProxyHeaders} default filter only, or {@code typical}, the default
+ * filter plus header, path rewrite and secure header filters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class FilteringWebHandlerBenchmark {
+
+	@Param({ "none", "default", "typical" })
+	public String filters;
+
+	private FilteringWebHandler webHandler;
+
+	private Route route;
+
+	private MockServerHttpRequest request;
+
+	@Setup
+	public void setup() {
+		List<GlobalFilter> globalFilters = Arrays.asList(new RouteToRequestUrlFilter(),
+				new NettyWriteResponseFilter(), new NoopRoutingFilter());
+		this.webHandler = new FilteringWebHandler(globalFilters);
+
+		List<GatewayFilter> routeFilters = new ArrayList<>();
+		if (!"none".equals(this.filters)) {
+			routeFilters.add(removeNonProxyHeaders());
+		}
+		if ("typical".equals(this.filters)) {
+			routeFilters.add(addRequestHeader("X-Gateway", "benchmark"));
+			routeFilters.add(rewritePath("/api/(?<segment>.*)", "/${segment}"));
+			routeFilters.add(addResponseHeader("X-Served-By", "gateway"));
+			routeFilters.add(secureHeaders(new SecureHeadersProperties()));
+		}
+		// ordered the way RouteDefinitionRouteLocator orders route filters
+		List<GatewayFilter> ordered = new ArrayList<>();
+		for (int i = 0; i < routeFilters.size(); i++) {
+			ordered.add(new OrderedGatewayFilter(routeFilters.get(i), i + 1));
+		}
+		this.route = Route.builder().id("benchmark").uri("http://localhost:8080").order(0)
+				.predicate(path("/api/**")).gatewayFilters(ordered).build();
+		this.request = MockServerHttpRequest.get("http://localhost/api/orders/42")
+				.header(HttpHeaders.HOST, "localhost").header(HttpHeaders.CONNECTION, "keep-alive")
+				.header("X-Request-Id", "12345").build();
+	}
+
+	@Benchmark
+	public Object handle() {
+		ServerWebExchange exchange = MockServerWebExchange.from(this.request);
+		exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, this.route);
+		this.webHandler.handle(exchange).block();
+		return exchange;
+	}
+
+	private static class NoopRoutingFilter implements RoutingFilter, Ordered {
+
+		@Override
+		public int getOrder() {
+			return Ordered.LOWEST_PRECEDENCE;
+		}
+
+		@Override
+		public Collection<String> getSchemes() {
+			return Arrays.asList("http", "https");
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			setAlreadyRouted(exchange);
+			return chain.filter(exchange);
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Entry point of the shaded {@code benchmarks.jar}. Accepts the same arguments as
+ * {@link Main}, and adds the GC profiler unless another profiler is chosen, so every
+ * run reports {@code gc.alloc.rate.norm}, the bytes allocated per operation, next to
+ * the latency.
+ *
+ * <pre>
+ * java -jar spring-cloud-gateway-benchmarks/target/benchmarks.jar RouteLookupBenchmark
+ * </pre>
+ */
+public final class GatewayBenchmarks {
+
+	private GatewayBenchmarks() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		if (!arguments.contains("-prof") && !arguments.contains("-lprof") && !arguments.contains("-h")
+				&& !arguments.contains("-l")) {
+			arguments.add("-prof");
+			arguments.add("gc");
+		}
+		Main.main(arguments.toArray(new String[0]));
+	}
+
+}
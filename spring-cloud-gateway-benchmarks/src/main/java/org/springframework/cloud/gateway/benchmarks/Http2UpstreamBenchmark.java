@@ -0,0 +1,258 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2MultiplexCodecBuilder;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.springframework.cloud.gateway.config.Http2ConnectionPool;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.Http2ClientResponse;
+import org.springframework.cloud.gateway.filter.Http2RoutingFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.client.HttpClientResponse;
+import reactor.ipc.netty.http.server.HttpServer;
+
+/**
+ * Proxies small GET requests from 64 concurrent threads to a local upstream, over
+ * HTTP/1.1 with {@link NettyRoutingFilter} or over h2c with {@link Http2RoutingFilter}
+ * and the default 100 streams per connection.
+ *
+ * <p>Sample time mode reports the latency percentiles of a request, {@code p0.99}
+ * among them. Throughput mode also reports the {@code connections} counter, the number
+ * of connections the upstream accepted (JMH only reports counters in that mode):
+ * HTTP/1.1 needs one per concurrent request, h2c multiplexes all of them over a
+ * single one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.SampleTime, Mode.Throughput })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(64)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class Http2UpstreamBenchmark {
+
+	private static final String BODY = "{\"id\":42,\"name\":\"benchmark\",\"tags\":[\"gateway\",\"http2\"]}";
+
+	@Param({ "http1", "h2c" })
+	public String protocol;
+
+	private final AtomicInteger connections = new AtomicInteger();
+
+	private final AtomicBoolean connectionsReported = new AtomicBoolean();
+
+	private int measurements;
+
+	private boolean lastMeasurement;
+
+	private EventLoopGroup serverGroup;
+
+	private Channel h2Server;
+
+	private NettyContext http1Server;
+
+	private Http2ConnectionPool connectionPool;
+
+	private GlobalFilter filter;
+
+	private URI url;
+
+	@Setup
+	public void setup() {
+		if ("h2c".equals(this.protocol)) {
+			this.serverGroup = new NioEventLoopGroup(2);
+			this.h2Server = new ServerBootstrap().group(this.serverGroup).channel(NioServerSocketChannel.class)
+					.childHandler(new ChannelInitializer<Channel>() {
+						@Override
+						protected void initChannel(Channel channel) {
+							connections.incrementAndGet();
+							channel.pipeline().addLast(Http2MultiplexCodecBuilder.forServer(new ChannelInitializer<Channel>() {
+								@Override
+								protected void initChannel(Channel stream) {
+									stream.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true),
+											new HttpObjectAggregator(64 * 1024), H2Upstream.INSTANCE);
+								}
+							}).build(), H2Upstream.INSTANCE);
+						}
+					})
+					.bind("localhost", 0).syncUninterruptibly().channel();
+			int port = ((InetSocketAddress) this.h2Server.localAddress()).getPort();
+			this.connectionPool = new Http2ConnectionPool(new HttpClientProperties.Http2());
+			this.filter = new Http2RoutingFilter(this.connectionPool);
+			this.url = URI.create("h2c://localhost:" + port + "/item");
+		}
+		else {
+			this.http1Server = HttpServer.create(options -> options.port(0)
+					.afterChannelInit(channel -> this.connections.incrementAndGet()))
+					.newHandler((req, res) -> res.header(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(BODY.length()))
+							.sendString(Mono.just(BODY)))
+					.block(Duration.ofSeconds(5));
+			int port = this.http1Server.address().getPort();
+			this.filter = new NettyRoutingFilter(HttpClient.create(port));
+			this.url = URI.create("http://localhost:" + port + "/item");
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void resetReport(IterationParams params) {
+		if (params.getType() == IterationType.MEASUREMENT) {
+			this.lastMeasurement = ++this.measurements == params.getCount();
+		}
+		this.connectionsReported.set(false);
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (this.connectionPool != null) {
+			this.connectionPool.dispose();
+		}
+		if (this.h2Server != null) {
+			this.h2Server.close().syncUninterruptibly();
+			this.serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+		}
+		if (this.http1Server != null) {
+			this.http1Server.dispose();
+		}
+	}
+
+	@Benchmark
+	public Object request(Counters counters) {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://gateway/item"));
+		GatewayContext context = GatewayContext.get(exchange);
+		context.setRequestUrl(this.url);
+
+		this.filter.filter(exchange, e -> Mono.empty()).block();
+		Object response = context.getClientResponse();
+		if (response instanceof Http2ClientResponse) {
+			return ((Http2ClientResponse) response).getBody()
+					.reduce(0, (length, buffer) -> {
+						int readable = buffer.readableBytes();
+						buffer.release();
+						return length + readable;
+					})
+					.block();
+		}
+		return ((HttpClientResponse) response).receive().aggregate().asString().block();
+	}
+
+	/**
+	 * Return the number of connections the upstream accepted to the first caller of the
+	 * last measurement iteration, and 0 otherwise, since counters are summed over the
+	 * threads and the iterations.
+	 */
+	long reportConnections() {
+		if (!this.lastMeasurement || !this.connectionsReported.compareAndSet(false, true)) {
+			return 0;
+		}
+		return this.connections.get();
+	}
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Counters {
+
+		public long connections;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.connections = 0;
+		}
+
+		@TearDown(Level.Iteration)
+		public void report(Http2UpstreamBenchmark benchmark) {
+			this.connections = benchmark.reportConnections();
+		}
+	}
+
+	/**
+	 * Answers every stream with a small JSON body, and ends the pipeline of the server
+	 * connections with the GOAWAY frames, which Http2MultiplexCodec already released.
+	 */
+	@ChannelHandler.Sharable
+	private static class H2Upstream extends ChannelInboundHandlerAdapter {
+
+		static final H2Upstream INSTANCE = new H2Upstream();
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			if (msg instanceof FullHttpRequest) {
+				ReferenceCountUtil.release(msg);
+				ByteBuf content = Unpooled.copiedBuffer(BODY, StandardCharsets.UTF_8);
+				FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+				response.headers().set(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+				ctx.writeAndFlush(response);
+			}
+			else if (!(msg instanceof Http2GoAwayFrame)) {
+				ReferenceCountUtil.release(msg);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.http.server.PathContainer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.tuple.TupleBuilder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory.PATTERN_KEY;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_PATH_CONTAINER_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.URI_TEMPLATE_VARIABLES_ATTRIBUTE;
+
+/**
+ * Tests a request against a table of Path predicates, the way the handler mapping does
+ * without a route index. {@code sharedPath} uses the predicates created by
+ * {@link PathRoutePredicateFactory}, which parse the request path once per exchange and
+ * match and extract variables in one pass. {@code parsedPerPredicate} parses the path in
+ * every predicate and matches twice on success, as the factory used to.
+ *
+ * <p>Run through {@link GatewayBenchmarks}, the GC profiler's {@code gc.alloc.rate.norm}
+ * counter is the number of bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class PathPredicateBenchmark {
+
+	@Param({ "1000" })
+	public int routes;
+
+	@Param({ "lastRoute", "noMatch" })
+	public String exchange;
+
+	private ServerWebExchange serverWebExchange;
+
+	private Predicate<ServerWebExchange>[] sharedPath;
+
+	private Predicate<ServerWebExchange>[] parsedPerPredicate;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		PathRoutePredicateFactory factory = new PathRoutePredicateFactory();
+		PathPatternParser parser = new PathPatternParser();
+		this.sharedPath = new Predicate[this.routes];
+		this.parsedPerPredicate = new Predicate[this.routes];
+		for (int i = 0; i < this.routes; i++) {
+			String pattern = "/service" + i + "/{id}/**";
+			this.sharedPath[i] = factory.apply(TupleBuilder.tuple().of(PATTERN_KEY, pattern));
+			this.parsedPerPredicate[i] = parsedPerPredicate(parser.parse(pattern));
+		}
+		String path = "lastRoute".equals(this.exchange) ? "/service" + (this.routes - 1) + "/42/items" : "/unknown/42";
+		this.serverWebExchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost" + path).build());
+	}
+
+	@Benchmark
+	public void sharedPath(Blackhole blackhole) {
+		// a new request has not parsed its path yet
+		this.serverWebExchange.getAttributes().remove(GATEWAY_PREDICATE_PATH_CONTAINER_ATTR);
+		evaluate(this.sharedPath, blackhole);
+	}
+
+	@Benchmark
+	public void parsedPerPredicate(Blackhole blackhole) {
+		evaluate(this.parsedPerPredicate, blackhole);
+	}
+
+	private void evaluate(Predicate<ServerWebExchange>[] predicates, Blackhole blackhole) {
+		for (Predicate<ServerWebExchange> predicate : predicates) {
+			if (predicate.test(this.serverWebExchange)) {
+				blackhole.consume(predicate);
+				return;
+			}
+		}
+	}
+
+	private static Predicate<ServerWebExchange> parsedPerPredicate(PathPattern pattern) {
+		return exchange -> {
+			PathContainer path = PathContainer.parsePath(exchange.getRequest().getURI().getPath());
+			if (pattern.matches(path)) {
+				exchange.getAttributes().put(URI_TEMPLATE_VARIABLES_ATTRIBUTE, pattern.matchAndExtract(path));
+				return true;
+			}
+			return false;
+		};
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.handler.predicate.HeaderRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.handler.predicate.QueryRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+
+/**
+ * Compares evaluating route predicates compiled by {@link RouteDefinitionRouteLocator},
+ * flattened and ordered by {@link RoutePredicateFactory#cost()}, with chaining them by
+ * {@link Predicate#and(Predicate)} in declaration order.
+ *
+ * <p>Every route declares its regular expression predicates first, the way
+ * configurations are often written. The {@code exchange} parameter selects a request
+ * that matches the last route or one that is rejected by every route's method check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class PredicateCombinationBenchmark {
+
+	private static final List<String> ROUTES = Arrays.asList(
+			"Header=X-Request-Id, \\d+;Query=version, v[12];Path=/orders/**;Host=**.example.org;Method=GET",
+			"Header=X-Request-Id, \\d+;Path=/users/{id};Host=**.example.org;Method=GET",
+			"Query=tenant, [a-z]+;Header=X-Tenant, [a-z]+;Path=/tenants/**;Method=PUT",
+			"Header=X-Request-Id, \\d+;Header=X-Tenant, [a-z]+;Path=/items/{id};Host=api.example.org;Method=GET");
+
+	@Param({ "match", "methodMismatch" })
+	public String exchange;
+
+	private ServerWebExchange serverWebExchange;
+
+	private Predicate<ServerWebExchange>[] flat;
+
+	private Predicate<ServerWebExchange>[] chained;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		List<RouteDefinition> definitions = new ArrayList<>();
+		List<Predicate<ServerWebExchange>> chained = new ArrayList<>();
+		for (String route : ROUTES) {
+			List<PredicateDefinition> predicates = new ArrayList<>();
+			Predicate<ServerWebExchange> chain = null;
+			for (String text : route.split(";")) {
+				PredicateDefinition predicate = new PredicateDefinition(text);
+				predicates.add(predicate);
+				// the way routes used to be compiled, nesting Predicate.and in declaration order
+				Predicate<ServerWebExchange> found = compile(Collections.singletonList(
+						definition(Collections.singletonList(predicate)))).get(0);
+				chain = chain == null ? found : and(chain, found);
+			}
+			definitions.add(definition(predicates));
+			chained.add(chain);
+		}
+		this.flat = compile(definitions).toArray(new Predicate[0]);
+		this.chained = chained.toArray(new Predicate[0]);
+
+		HttpMethod method = "match".equals(this.exchange) ? HttpMethod.GET : HttpMethod.DELETE;
+		MockServerHttpRequest request = MockServerHttpRequest
+				.method(method, "http://api.example.org/items/42?version=v1&tenant=acme")
+				.header(HttpHeaders.HOST, "api.example.org").header("X-Request-Id", "12345")
+				.header("X-Tenant", "acme").build();
+		this.serverWebExchange = MockServerWebExchange.from(request);
+	}
+
+	@Benchmark
+	public void flattened(Blackhole blackhole) {
+		evaluate(this.flat, blackhole);
+	}
+
+	@Benchmark
+	public void andChained(Blackhole blackhole) {
+		evaluate(this.chained, blackhole);
+	}
+
+	private void evaluate(Predicate<ServerWebExchange>[] predicates, Blackhole blackhole) {
+		for (Predicate<ServerWebExchange> predicate : predicates) {
+			blackhole.consume(predicate.test(this.serverWebExchange));
+		}
+	}
+
+	// same as the default Predicate.and, which GatewayPredicate overrides
+	private static Predicate<ServerWebExchange> and(Predicate<ServerWebExchange> left,
+			Predicate<ServerWebExchange> right) {
+		return exchange -> left.test(exchange) && right.test(exchange);
+	}
+
+	private static RouteDefinition definition(List<PredicateDefinition> predicates) {
+		RouteDefinition definition = new RouteDefinition();
+		definition.setId("route");
+		definition.setUri(URI.create("http://localhost"));
+		definition.setPredicates(predicates);
+		return definition;
+	}
+
+	private static List<Predicate<ServerWebExchange>> compile(List<RouteDefinition> definitions) {
+		List<RoutePredicateFactory> factories = Arrays.asList(new HeaderRoutePredicateFactory(),
+				new QueryRoutePredicateFactory(), new PathRoutePredicateFactory(),
+				new HostRoutePredicateFactory(), new MethodRoutePredicateFactory());
+		GatewayProperties properties = new GatewayProperties();
+		properties.setDefaultFilters(Collections.emptyList());
+		RouteDefinitionRouteLocator locator = new RouteDefinitionRouteLocator(
+				() -> Flux.fromIterable(definitions), factories, Collections.emptyList(), properties);
+		return locator.getRoutes().map(Route::getPredicate).collectList().block();
+	}
+
+}
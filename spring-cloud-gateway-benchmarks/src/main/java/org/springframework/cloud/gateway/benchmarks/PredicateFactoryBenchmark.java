@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.net.InetSocketAddress;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicates;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_PATH_CONTAINER_ATTR;
+
+/**
+ * Tests a single predicate created by each built-in {@link RoutePredicateFactory}
+ * against a request it matches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class PredicateFactoryBenchmark {
+
+	@Param({ "After", "Before", "Between", "Cookie", "Header", "Host", "Method", "Path", "Query", "RemoteAddr" })
+	public String factory;
+
+	private Predicate<ServerWebExchange> predicate;
+
+	private ServerWebExchange exchange;
+
+	@Setup
+	public void setup() {
+		ZonedDateTime now = ZonedDateTime.now();
+		switch (this.factory) {
+		case "After":
+			this.predicate = RoutePredicates.after(now.minusDays(1));
+			break;
+		case "Before":
+			this.predicate = RoutePredicates.before(now.plusDays(1));
+			break;
+		case "Between":
+			this.predicate = RoutePredicates.between(now.minusDays(1), now.plusDays(1));
+			break;
+		case "Cookie":
+			this.predicate = RoutePredicates.cookie("session", "[a-f0-9]+");
+			break;
+		case "Header":
+			this.predicate = RoutePredicates.header("X-Request-Id", "\\d+");
+			break;
+		case "Host":
+			this.predicate = RoutePredicates.host("**.example.org");
+			break;
+		case "Method":
+			this.predicate = RoutePredicates.method("GET");
+			break;
+		case "Path":
+			this.predicate = RoutePredicates.path("/orders/{id}/**");
+			break;
+		case "Query":
+			this.predicate = RoutePredicates.query("version", "v[12]");
+			break;
+		case "RemoteAddr":
+			this.predicate = RoutePredicates.remoteAddr("10.0.0.0/8", "192.168.0.0/16", "2001:db8::/32");
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown factory " + this.factory);
+		}
+		this.exchange = MockServerWebExchange.from(MockServerHttpRequest
+				.get("http://api.example.org/orders/42/items?version=v1")
+				.header(HttpHeaders.HOST, "api.example.org")
+				.header("X-Request-Id", "12345")
+				.cookie(new HttpCookie("session", "0a1b2c3d"))
+				.remoteAddress(new InetSocketAddress("192.168.1.10", 52000))
+				.build());
+		if (!this.predicate.test(this.exchange)) {
+			throw new IllegalStateException(this.factory + " predicate does not match the request");
+		}
+	}
+
+	@Benchmark
+	public boolean test() {
+		// a new request has not parsed its path yet
+		this.exchange.getAttributes().remove(GATEWAY_PREDICATE_PATH_CONTAINER_ATTR);
+		return this.predicate.test(this.exchange);
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.filter.FilterDefinition;
+import org.springframework.cloud.gateway.filter.factory.AddRequestHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.RemoveNonProxyHeadersGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.RewritePathGatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.HeaderRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
+import reactor.core.publisher.Flux;
+
+/**
+ * Compiles {@code definitions} route definitions with {@link RouteDefinitionRouteLocator}.
+ * {@code compile} uses a new locator every time, the cost of the first load.
+ * {@code recompileUnchanged} asks the same locator again, the cost of a refresh that
+ * does not change any definition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RouteCompilationBenchmark {
+
+	@Param({ "100", "1000" })
+	public int definitions;
+
+	private List<RouteDefinition> routeDefinitions;
+
+	private List<RoutePredicateFactory> predicateFactories;
+
+	private List<GatewayFilterFactory> filterFactories;
+
+	private GatewayProperties properties;
+
+	private RouteDefinitionRouteLocator locator;
+
+	@Setup
+	public void setup() {
+		this.routeDefinitions = new ArrayList<>();
+		for (int i = 0; i < this.definitions; i++) {
+			RouteDefinition definition = new RouteDefinition();
+			definition.setId("route" + i);
+			definition.setUri(URI.create("http://service" + i + ":8080"));
+			definition.setPredicates(Arrays.asList(new PredicateDefinition("Path=/service" + i + "/**"),
+					new PredicateDefinition("Host=**.example.org"), new PredicateDefinition("Method=GET"),
+					new PredicateDefinition("Header=X-Request-Id, \\d+")));
+			definition.setFilters(Arrays.asList(new FilterDefinition("AddRequestHeader=X-Route, route" + i),
+					new FilterDefinition("RewritePath=/service" + i + "/(?<segment>.*), /${segment}")));
+			this.routeDefinitions.add(definition);
+		}
+		this.predicateFactories = Arrays.asList(new PathRoutePredicateFactory(), new HostRoutePredicateFactory(),
+				new MethodRoutePredicateFactory(), new HeaderRoutePredicateFactory());
+		this.filterFactories = Arrays.asList(new AddRequestHeaderGatewayFilterFactory(),
+				new RewritePathGatewayFilterFactory(), new RemoveNonProxyHeadersGatewayFilterFactory());
+		this.properties = new GatewayProperties();
+		this.locator = newLocator();
+		this.locator.getRoutes().blockLast();
+	}
+
+	@Benchmark
+	public List<Route> compile() {
+		return newLocator().getRoutes().collectList().block();
+	}
+
+	@Benchmark
+	public List<Route> recompileUnchanged() {
+		return this.locator.getRoutes().collectList().block();
+	}
+
+	private RouteDefinitionRouteLocator newLocator() {
+		return new RouteDefinitionRouteLocator(() -> Flux.fromIterable(this.routeDefinitions),
+				this.predicateFactories, this.filterFactories, this.properties);
+	}
+
+}
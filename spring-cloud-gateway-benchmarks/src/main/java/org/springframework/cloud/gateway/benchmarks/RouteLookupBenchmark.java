@@ -0,0 +1,127 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.RouteMatchCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.host;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.method;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.path;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_PATH_CONTAINER_ATTR;
+
+/**
+ * Resolves the route of a request through {@link RoutePredicateHandlerMapping}, over
+ * synthetic route tables of {@code routes} routes. Routes combine {@code Path},
+ * {@code Host} and {@code Method} predicates.
+ *
+ * <p>{@code locator} selects how routes are found: {@code linear} tests every route in
+ * order, {@code indexed} uses the {@link CachingRouteLocator} index and {@code cached}
+ * adds the {@link RouteMatchCache}. {@code request} selects a request matching the route
+ * in the middle of the table or a request that matches no route.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RouteLookupBenchmark {
+
+	@Param({ "10", "1000", "10000" })
+	public int routes;
+
+	@Param({ "linear", "indexed", "cached" })
+	public String locator;
+
+	@Param({ "middle", "miss" })
+	public String request;
+
+	private RoutePredicateHandlerMapping mapping;
+
+	private ServerWebExchange exchange;
+
+	@Setup
+	public void setup() {
+		List<Route> table = new ArrayList<>();
+		for (int i = 0; i < this.routes; i++) {
+			table.add(Route.builder().id("route" + i).uri("http://localhost:8080").order(0)
+					.predicate(predicate(i)).build());
+		}
+		RouteLocator routeLocator = () -> Flux.fromIterable(table);
+		FilteringWebHandler webHandler = new FilteringWebHandler(Collections.emptyList());
+		if ("linear".equals(this.locator)) {
+			this.mapping = new RoutePredicateHandlerMapping(webHandler, routeLocator);
+		}
+		else {
+			RouteMatchCache cache = "cached".equals(this.locator) ? new RouteMatchCache(10000) : null;
+			this.mapping = new RoutePredicateHandlerMapping(webHandler, new CachingRouteLocator(routeLocator), cache);
+		}
+
+		int target = this.routes / 2;
+		String url = "middle".equals(this.request) ? "http://localhost/service" + target + "/items/42"
+				: "http://localhost/unknown/items/42";
+		this.exchange = MockServerWebExchange.from(MockServerHttpRequest.get(url)
+				.header(HttpHeaders.HOST, "service" + target + ".example.org").build());
+	}
+
+	// cycles through Path, Path and Method, Host and Path routes
+	private static Predicate<ServerWebExchange> predicate(int i) {
+		switch (i % 3) {
+		case 0:
+			return path("/service" + i + "/**");
+		case 1:
+			return path("/service" + i + "/{id}/**").and(method("GET"));
+		default:
+			return host("service" + i + ".example.org").and(path("/service" + i + "/**"));
+		}
+	}
+
+	@Benchmark
+	public Object lookupRoute() {
+		// a new request has not parsed its path yet
+		this.exchange.getAttributes().remove(GATEWAY_PREDICATE_PATH_CONTAINER_ATTR);
+		return this.mapping.getHandler(this.exchange).block();
+	}
+
+}
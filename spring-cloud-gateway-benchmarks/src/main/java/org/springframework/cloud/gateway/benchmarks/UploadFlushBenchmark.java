@@ -0,0 +1,205 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.client.HttpClientResponse;
+import reactor.ipc.netty.http.server.HttpServer;
+
+/**
+ * Proxies a 100MB upload through {@link NettyRoutingFilter} to a local server that
+ * drains it, once per {@link FlushStrategy}. The body is made of {@code chunkSize}
+ * byte chunks, as the Netty server hands them to the gateway.
+ *
+ * <p>The average time of an upload gives the throughput, 100MB divided by it. The
+ * counters are summed over the iteration, divide them by {@code uploads} for a single
+ * upload: {@code flushes} is the number of flushes that reached the socket, and
+ * {@code writes} the number of write syscalls of the process, read from
+ * {@code /proc/self/io} and so only reported on Linux. A flush issued while the
+ * socket is full costs no syscall, Netty retries once the socket is writable again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class UploadFlushBenchmark {
+
+	private static final int UPLOAD_SIZE = 100 * 1024 * 1024;
+
+	private static final Path PROC_IO = Paths.get("/proc/self/io");
+
+	@Param({ "each", "batch" })
+	public String strategy;
+
+	@Param({ "1024", "8192" })
+	public int chunkSize;
+
+	private final AtomicLong flushes = new AtomicLong();
+
+	private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+	private NettyContext server;
+
+	private NettyRoutingFilter filter;
+
+	private FlushStrategy flushStrategy;
+
+	private ByteBuf chunk;
+
+	private URI url;
+
+	@Setup
+	public void setup() {
+		this.server = HttpServer.create(0)
+				.newHandler((req, res) -> res.sendString(req.receive().then(Mono.just("done"))))
+				.block(Duration.ofSeconds(5));
+		ChannelHandler flushCounter = new FlushCounter(this.flushes);
+		// a connection per upload, pooled connections stall after a large upload in reactor-netty 0.7
+		HttpClient httpClient = HttpClient.create(options -> options
+				.port(this.server.address().getPort()).disablePool()
+				.afterChannelInit(channel -> channel.pipeline().addFirst("flushCounter", flushCounter)));
+		this.filter = new NettyRoutingFilter(httpClient);
+		this.flushStrategy = "batch".equals(this.strategy) ? FlushStrategy.batch() : FlushStrategy.EACH;
+		this.chunk = PooledByteBufAllocator.DEFAULT.directBuffer(this.chunkSize).writeZero(this.chunkSize);
+		this.url = URI.create("http://localhost:" + this.server.address().getPort() + "/upload");
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.server.dispose();
+		this.chunk.release();
+	}
+
+	@Benchmark
+	public Object upload(Counters counters) {
+		long flushesBefore = this.flushes.get();
+		long writesBefore = writeSyscalls();
+
+		// duplicates share the chunk, the client releases what the filter retains
+		Flux<DataBuffer> body = Flux.range(0, UPLOAD_SIZE / this.chunkSize)
+				.map(i -> this.bufferFactory.wrap(this.chunk.duplicate()));
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post(this.url.toString())
+				.header(HttpHeaders.TRANSFER_ENCODING, "chunked").body(body));
+		GatewayContext context = GatewayContext.get(exchange);
+		context.setRequestUrl(this.url);
+		context.setFlushStrategy(this.flushStrategy);
+
+		this.filter.filter(exchange, e -> Mono.empty()).block();
+		HttpClientResponse response = context.getClientResponse();
+		response.receive().then().block();
+
+		counters.flushes += this.flushes.get() - flushesBefore;
+		counters.writes += writeSyscalls() - writesBefore;
+		counters.uploads++;
+		return response;
+	}
+
+	/**
+	 * Return the write syscalls made by the process so far, or 0 if not available.
+	 */
+	private static long writeSyscalls() {
+		try {
+			for (String line : Files.readAllLines(PROC_IO)) {
+				if (line.startsWith("syscw:")) {
+					return Long.parseLong(line.substring(6).trim());
+				}
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			// not on Linux
+		}
+		return 0;
+	}
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Counters {
+
+		public long flushes;
+
+		public long writes;
+
+		public long uploads;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.flushes = 0;
+			this.writes = 0;
+			this.uploads = 0;
+		}
+	}
+
+	@ChannelHandler.Sharable
+	private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+
+		private final AtomicLong flushes;
+
+		FlushCounter(AtomicLong flushes) {
+			this.flushes = flushes;
+		}
+
+		@Override
+		public void flush(ChannelHandlerContext ctx) throws Exception {
+			this.flushes.incrementAndGet();
+			super.flush(ctx);
+		}
+	}
+
+}
@@ -19,6 +19,8 @@ package org.springframework.cloud.gateway.actuate;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.gateway.config.HttpClientPoolResources;
+import org.springframework.cloud.gateway.filter.cache.ResponseCache;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
 import org.springframework.cloud.gateway.route.*;
@@ -33,6 +35,7 @@ import reactor.core.publisher.Mono;
 
 import java.net.URI;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -65,6 +68,18 @@ public class GatewayWebfluxEndpoint implements ApplicationEventPublisherAware {
      * 路由定位器
      */
 	private RouteLocator routeLocator;
+	/**
+	 * 路由匹配缓存，未开启时为空
+	 */
+	private RouteMatchCache routeMatchCache;
+	/**
+	 * 代理 HttpClient 的连接池，未使用 Netty 时为空
+	 */
+	private HttpClientPoolResources httpClientPoolResources;
+	/**
+	 * ResponseCache filter 的缓存，未引入 Caffeine 时为空
+	 */
+	private ResponseCache responseCache;
     /**
      * 应用事件发布器
      */
@@ -73,11 +88,26 @@ public class GatewayWebfluxEndpoint implements ApplicationEventPublisherAware {
 	public GatewayWebfluxEndpoint(RouteDefinitionLocator routeDefinitionLocator, List<GlobalFilter> globalFilters,
 								  List<GatewayFilterFactory> GatewayFilters, RouteDefinitionWriter routeDefinitionWriter,
 								  RouteLocator routeLocator) {
+		this(routeDefinitionLocator, globalFilters, GatewayFilters, routeDefinitionWriter, routeLocator, null);
+	}
+
+	public GatewayWebfluxEndpoint(RouteDefinitionLocator routeDefinitionLocator, List<GlobalFilter> globalFilters,
+								  List<GatewayFilterFactory> GatewayFilters, RouteDefinitionWriter routeDefinitionWriter,
+								  RouteLocator routeLocator, RouteMatchCache routeMatchCache) {
 		this.routeDefinitionLocator = routeDefinitionLocator;
 		this.globalFilters = globalFilters;
 		this.gatewayFilters = GatewayFilters;
 		this.routeDefinitionWriter = routeDefinitionWriter;
 		this.routeLocator = routeLocator;
+		this.routeMatchCache = routeMatchCache;
+	}
+
+	public void setHttpClientPoolResources(HttpClientPoolResources httpClientPoolResources) {
+		this.httpClientPoolResources = httpClientPoolResources;
+	}
+
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
 	}
 
 	@Override
@@ -104,6 +134,58 @@ public class GatewayWebfluxEndpoint implements ApplicationEventPublisherAware {
 		return getNamesToOrders(this.gatewayFilters);
 	}
 
+	@GetMapping("/routecache")
+	public Mono<Map<String, Object>> routecache() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("enabled", this.routeMatchCache != null);
+		if (this.routeMatchCache != null) {
+			statistics.putAll(this.routeMatchCache.statistics());
+		}
+		return Mono.just(statistics);
+	}
+
+	@GetMapping("/responsecache")
+	public Mono<Map<String, Object>> responsecache() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("enabled", this.responseCache != null);
+		if (this.responseCache != null) {
+			statistics.putAll(this.responseCache.statistics());
+		}
+		return Mono.just(statistics);
+	}
+
+	@GetMapping("/httpclientpools")
+	public Mono<Map<String, Object>> httpclientpools() {
+		Map<String, Object> pools = new LinkedHashMap<>();
+		if (this.httpClientPoolResources != null) {
+			this.httpClientPoolResources.getPools().forEach(pool -> pools.put(pool.getAddress(), pool.statistics()));
+		}
+		return Mono.just(pools);
+	}
+
+	@GetMapping("/routesnapshot")
+	public Mono<ResponseEntity<Map<String, Object>>> routesnapshot() {
+		if (!(this.routeLocator instanceof CachingRouteLocator)) {
+			return Mono.just(ResponseEntity.notFound().build());
+		}
+		CachingRouteLocator locator = (CachingRouteLocator) this.routeLocator;
+		RouteSnapshot snapshot = locator.getSnapshot();
+		Map<String, Object> info = new LinkedHashMap<>();
+		info.put("version", snapshot.getVersion());
+		info.put("routes", snapshot.getIndex().getRoutes().size());
+		info.put("builtAt", snapshot.getBuiltAt().toString());
+		info.put("buildDurationMillis", snapshot.getBuildDuration().toMillis());
+		CachingRouteLocator.SnapshotFailure failure = locator.getLastFailure();
+		if (failure != null) {
+			Map<String, Object> lastFailure = new LinkedHashMap<>();
+			lastFailure.put("version", failure.getVersion());
+			lastFailure.put("failedAt", failure.getFailedAt().toString());
+			lastFailure.put("error", failure.getError().toString());
+			info.put("lastFailure", lastFailure);
+		}
+		return Mono.just(ResponseEntity.ok(info));
+	}
+
 	private <T> Mono<HashMap<String, Object>> getNamesToOrders(List<T> list) {
 		return Flux.fromIterable(list).reduce(new HashMap<>(), this::putItem);
 	}
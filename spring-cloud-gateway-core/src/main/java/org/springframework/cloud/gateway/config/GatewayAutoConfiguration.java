@@ -17,7 +17,11 @@
 
 package org.springframework.cloud.gateway.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.netflix.hystrix.HystrixObservableCommand;
+import io.netty.handler.codec.http2.Http2MultiplexCodec;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.actuate.autoconfigure.web.ManagementContextConfiguration;
 import org.springframework.boot.actuate.health.Health;
@@ -31,6 +35,8 @@ import org.springframework.boot.autoconfigure.web.reactive.HttpHandlerAutoConfig
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.gateway.actuate.GatewayWebfluxEndpoint;
 import org.springframework.cloud.gateway.filter.*;
+import org.springframework.cloud.gateway.filter.cache.ResponseCache;
+import org.springframework.cloud.gateway.filter.cache.ResponseCacheProperties;
 import org.springframework.cloud.gateway.filter.factory.*;
 import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.filter.ratelimit.PrincipalNameKeyResolver;
@@ -44,6 +50,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.DispatcherHandler;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
@@ -54,9 +61,9 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.ipc.netty.http.client.HttpClient;
 import reactor.ipc.netty.http.client.HttpClientOptions;
-import reactor.ipc.netty.resources.PoolResources;
 import rx.RxReactiveStreams;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -81,13 +88,51 @@ public class GatewayAutoConfiguration {
 		}
 
 		@Bean // 1.1
-		public Consumer<? super HttpClientOptions.Builder> nettyClientOptions() {
+		public Consumer<? super HttpClientOptions.Builder> nettyClientOptions(HttpClientPoolResources httpClientPoolResources) {
 			return opts -> {
-				opts.poolResources(PoolResources.elastic("proxy"));
+				opts.poolResources(httpClientPoolResources);
 				// opts.disablePool(); //TODO: why do I need this again?
 			};
 		}
 
+		@Bean
+		public HttpClientProperties httpClientProperties() {
+			return new HttpClientProperties();
+		}
+
+		@Bean(destroyMethod = "dispose")
+		public HttpClientPoolResources httpClientPoolResources(HttpClientProperties properties) {
+			return new HttpClientPoolResources(properties);
+		}
+
+		@Configuration
+		@ConditionalOnClass(Http2MultiplexCodec.class)
+		protected static class Http2Configuration {
+			@Bean(destroyMethod = "dispose")
+			public Http2ConnectionPool http2ConnectionPool(HttpClientProperties properties) {
+				return new Http2ConnectionPool(properties.getHttp2());
+			}
+
+			@Bean
+			public Http2RoutingFilter http2RoutingFilter(Http2ConnectionPool http2ConnectionPool) {
+				return new Http2RoutingFilter(http2ConnectionPool);
+			}
+
+			@Bean
+			public Http2WriteResponseFilter http2WriteResponseFilter() {
+				return new Http2WriteResponseFilter();
+			}
+		}
+
+		@Configuration
+		@ConditionalOnClass(MeterBinder.class)
+		protected static class HttpClientPoolMetricsConfiguration {
+			@Bean
+			public HttpClientPoolMetrics httpClientPoolMetrics(HttpClientPoolResources httpClientPoolResources) {
+				return new HttpClientPoolMetrics(httpClientPoolResources);
+			}
+		}
+
 //		@Bean // 1.3
 //		public NettyRoutingFilter routingFilter(HttpClient httpClient) {
 //			return new NettyRoutingFilter(httpClient);
@@ -132,8 +177,10 @@ public class GatewayAutoConfiguration {
 
 	@Bean // 4.5 // TODO 芋艿，where are you 【1】AdditionalRoutes 【2】customRouteLocator 【3】上面 routeDefinitionRouteLocator
 	@Primary
-	public RouteLocator routeLocator(List<RouteLocator> routeLocators) {
-		return new CachingRouteLocator(new CompositeRouteLocator(Flux.fromIterable(routeLocators)));
+	public RouteLocator routeLocator(List<RouteLocator> routeLocators,
+									 ObjectProvider<List<CachingRouteDefinitionLocator>> definitionLocators) {
+		return new CachingRouteLocator(new CompositeRouteLocator(Flux.fromIterable(routeLocators)),
+				definitionLocators.getIfAvailable(Collections::emptyList));
 	}
 
 	@Bean // 2.6
@@ -143,8 +190,57 @@ public class GatewayAutoConfiguration {
 
 	@Bean
 	public RoutePredicateHandlerMapping routePredicateHandlerMapping(FilteringWebHandler webHandler,
-																	   RouteLocator routeLocator) {
-		return new RoutePredicateHandlerMapping(webHandler, routeLocator);
+																	   RouteLocator routeLocator,
+																	   ObjectProvider<RouteMatchCache> routeMatchCache) {
+		return new RoutePredicateHandlerMapping(webHandler, routeLocator, routeMatchCache.getIfAvailable());
+	}
+
+	@Configuration
+	@ConditionalOnClass(Caffeine.class)
+	@ConditionalOnProperty(name = "spring.cloud.gateway.route-cache.enabled")
+	protected static class RouteMatchCacheConfiguration {
+		@Bean
+		public RouteMatchCacheProperties routeMatchCacheProperties() {
+			return new RouteMatchCacheProperties();
+		}
+
+		@Bean
+		public RouteMatchCache routeMatchCache(RouteMatchCacheProperties properties) {
+			return new RouteMatchCache(properties.getMaximumSize());
+		}
+	}
+
+	@Configuration
+	@ConditionalOnClass(Caffeine.class)
+	protected static class ResponseCacheConfiguration {
+		@Bean
+		public ResponseCacheProperties responseCacheProperties() {
+			return new ResponseCacheProperties();
+		}
+
+		@Bean(destroyMethod = "invalidateAll")
+		public ResponseCache responseCache(ResponseCacheProperties properties) {
+			return new ResponseCache(properties);
+		}
+
+		@Bean
+		public ResponseCacheGatewayFilterFactory responseCacheGatewayFilterFactory(ResponseCache responseCache) {
+			return new ResponseCacheGatewayFilterFactory(responseCache);
+		}
+	}
+
+	@Configuration
+	@ConditionalOnProperty(name = "spring.cloud.gateway.ip-access.enabled")
+	protected static class IpAccessConfiguration {
+		@Bean
+		public IpAccessProperties ipAccessProperties() {
+			return new IpAccessProperties();
+		}
+
+		@Bean
+		public IpAccessFilter ipAccessFilter(IpAccessProperties properties) {
+			return new IpAccessFilter(properties);
+		}
 	}
 
 	// ConfigurationProperty beans
@@ -159,6 +255,11 @@ public class GatewayAutoConfiguration {
 		return new SecureHeadersProperties();
 	}
 
+	@Bean
+	public RequestCoalescingProperties requestCoalescingProperties() {
+		return new RequestCoalescingProperties();
+	}
+
 	// GlobalFilter beans
 
 	@Bean // 2.1
@@ -184,9 +285,15 @@ public class GatewayAutoConfiguration {
 
 	@Bean // TODO 芋艿，需要确认下原因
 	//TODO: default over netty? configurable
-	public WebClientHttpRoutingFilter webClientHttpRoutingFilter() {
-		//TODO: WebClient bean
-		return new WebClientHttpRoutingFilter(WebClient.builder().build());
+	public WebClientHttpRoutingFilter webClientHttpRoutingFilter(
+			@Qualifier("nettyClientOptions") ObjectProvider<Consumer<? super HttpClientOptions.Builder>> options) {
+		// 使用网关配置的连接池，而不是 reactor-netty 全局的 HttpResources
+		Consumer<? super HttpClientOptions.Builder> clientOptions = options.getIfAvailable();
+		WebClient.Builder builder = WebClient.builder();
+		if (clientOptions != null) {
+			builder.clientConnector(new ReactorClientHttpConnector(clientOptions));
+		}
+		return new WebClientHttpRoutingFilter(builder.build());
 	}
 
 	@Bean
@@ -272,6 +379,18 @@ public class GatewayAutoConfiguration {
 		}
 	}
 
+	@Bean
+	public CircuitBreakerGatewayFilterFactory circuitBreakerGatewayFilterFactory(
+			ObjectProvider<DispatcherHandler> dispatcherHandler) {
+		// DispatcherHandler 依赖路由，延迟获取以避免循环依赖
+		return new CircuitBreakerGatewayFilterFactory(dispatcherHandler);
+	}
+
+	@Bean
+	public HedgeGatewayFilterFactory hedgeGatewayFilterFactory() {
+		return new HedgeGatewayFilterFactory();
+	}
+
 	@Bean // 3.4
 	public PrefixPathGatewayFilterFactory prefixPathGatewayFilterFactory() {
 		return new PrefixPathGatewayFilterFactory();
@@ -309,6 +428,21 @@ public class GatewayAutoConfiguration {
 		return new RequestRateLimiterGatewayFilterFactory(rateLimiter, resolver);
 	}
 
+	@Bean
+	public RequestCoalescingGatewayFilterFactory requestCoalescingGatewayFilterFactory(RequestCoalescingProperties properties) {
+		return new RequestCoalescingGatewayFilterFactory(properties);
+	}
+
+	@Bean
+	public RequestFlushGatewayFilterFactory requestFlushGatewayFilterFactory() {
+		return new RequestFlushGatewayFilterFactory();
+	}
+
+	@Bean
+	public RetryGatewayFilterFactory retryGatewayFilterFactory() {
+		return new RetryGatewayFilterFactory();
+	}
+
 	@Bean // 3.9
 	public RewritePathGatewayFilterFactory rewritePathGatewayFilterFactory() {
 		return new RewritePathGatewayFilterFactory();
@@ -334,6 +468,11 @@ public class GatewayAutoConfiguration {
 		return new SetStatusGatewayFilterFactory();
 	}
 
+	@Bean
+	public TimeoutGatewayFilterFactory timeoutGatewayFilterFactory() {
+		return new TimeoutGatewayFilterFactory();
+	}
+
 	@ManagementContextConfiguration
 	@ConditionalOnProperty(value = "management.gateway.enabled", matchIfMissing = true)
 	@ConditionalOnClass(Health.class)
@@ -342,8 +481,14 @@ public class GatewayAutoConfiguration {
 		@Bean
 		public GatewayWebfluxEndpoint gatewayWebfluxEndpoint(RouteDefinitionLocator routeDefinitionLocator, List<GlobalFilter> globalFilters,
 															 List<GatewayFilterFactory> GatewayFilters, RouteDefinitionWriter routeDefinitionWriter,
-															 RouteLocator routeLocator) {
-			return new GatewayWebfluxEndpoint(routeDefinitionLocator, globalFilters, GatewayFilters, routeDefinitionWriter, routeLocator);
+															 RouteLocator routeLocator, ObjectProvider<RouteMatchCache> routeMatchCache,
+															 ObjectProvider<HttpClientPoolResources> httpClientPoolResources,
+															 ObjectProvider<ResponseCache> responseCache) {
+			GatewayWebfluxEndpoint endpoint = new GatewayWebfluxEndpoint(routeDefinitionLocator, globalFilters, GatewayFilters,
+					routeDefinitionWriter, routeLocator, routeMatchCache.getIfAvailable());
+			endpoint.setHttpClientPoolResources(httpClientPoolResources.getIfAvailable());
+			endpoint.setResponseCache(responseCache.getIfAvailable());
+			return endpoint;
 		}
 	}
 
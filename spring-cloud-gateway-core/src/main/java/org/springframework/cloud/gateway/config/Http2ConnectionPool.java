@@ -0,0 +1,437 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.config;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLException;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2MultiplexCodecBuilder;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2SettingsFrame;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.http.HttpResources;
+import reactor.ipc.netty.resources.LoopResources;
+
+/**
+ * HTTP/2 connections to the upstreams of {@code h2c} and {@code h2} routes. Requests
+ * are sent as streams multiplexed over few connections per upstream address: a request
+ * takes a stream of the first connection with less than
+ * {@link HttpClientProperties.Http2#getMaxStreams() max streams} in use, and a new
+ * connection is only opened when all of them are busy.
+ * <p>{@code h2c} connections start HTTP/2 with prior knowledge, {@code h2} connections
+ * negotiate it with TLS ALPN, which needs a JDK or an OpenSSL provider supporting it.
+ * Connections use the event loops of the reactor-netty {@code HttpClient}.
+ */
+public class Http2ConnectionPool {
+
+	private static final Log log = LogFactory.getLog(Http2ConnectionPool.class);
+
+	private final HttpClientProperties.Http2 properties;
+
+	private final EventLoopGroup group;
+
+	private final Class<? extends Channel> channelType;
+
+	private final ConcurrentMap<String, Upstream> upstreams = new ConcurrentHashMap<>();
+
+	private volatile SslContext sslContext;
+
+	public Http2ConnectionPool(HttpClientProperties.Http2 properties) {
+		this(properties, HttpResources.get());
+	}
+
+	public Http2ConnectionPool(HttpClientProperties.Http2 properties, LoopResources loops) {
+		this.properties = properties;
+		this.group = loops.onClient(false);
+		this.channelType = loops.onChannel(this.group);
+	}
+
+	/**
+	 * Open a stream to the upstream of the given {@code h2c} or {@code h2} URL. The
+	 * stream does not read by itself, the handler asks for every read.
+	 * @param url the upstream URL
+	 * @param handler the handler of the stream channel
+	 * @return the stream, its slot on the connection is released when it is closed
+	 */
+	public Mono<Http2StreamChannel> openStream(URI url, ChannelHandler handler) {
+		return Mono.create(sink -> {
+			AtomicBoolean cancelled = new AtomicBoolean();
+			sink.onCancel(() -> cancelled.set(true));
+			Connection connection;
+			try {
+				connection = reserve(url);
+			}
+			catch (RuntimeException e) {
+				sink.error(e);
+				return;
+			}
+			connection.ready.addListener(ready -> {
+				if (!ready.isSuccess()) {
+					connection.release();
+					sink.error(ready.cause());
+					return;
+				}
+				new Http2StreamChannelBootstrap(connection.channel)
+						.option(ChannelOption.AUTO_READ, false)
+						.handler(handler)
+						.open().addListener((Future<Http2StreamChannel> opened) -> {
+							if (!opened.isSuccess()) {
+								connection.release();
+								sink.error(opened.cause());
+								return;
+							}
+							Http2StreamChannel stream = opened.getNow();
+							stream.closeFuture().addListener(closed -> connection.release());
+							if (cancelled.get()) {
+								stream.close();
+								return;
+							}
+							sink.success(stream);
+						});
+			});
+		});
+	}
+
+	/**
+	 * @return the number of open connections, over all upstream addresses
+	 */
+	public int getConnectionCount() {
+		int count = 0;
+		for (Upstream upstream : this.upstreams.values()) {
+			count += upstream.connections.size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of streams in use, over all upstream addresses
+	 */
+	public int getActiveStreams() {
+		int count = 0;
+		for (Upstream upstream : this.upstreams.values()) {
+			for (Connection connection : upstream.connections) {
+				count += connection.activeStreams.get();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Close all connections.
+	 */
+	public void dispose() {
+		List<Connection> all = new ArrayList<>();
+		this.upstreams.values().forEach(upstream -> all.addAll(upstream.connections));
+		this.upstreams.clear();
+		for (Connection connection : all) {
+			if (connection.channel != null) {
+				connection.channel.close();
+			}
+		}
+	}
+
+	private Connection reserve(URI url) {
+		boolean secure = "h2".equals(url.getScheme());
+		String host = url.getHost();
+		int port = url.getPort() != -1 ? url.getPort() : (secure ? 443 : 80);
+		String key = url.getScheme() + "://" + host + ":" + port;
+		Upstream upstream = this.upstreams.computeIfAbsent(key, k -> new Upstream());
+
+		Connection connection = tryReserve(upstream.connections);
+		if (connection != null) {
+			return connection;
+		}
+		// 所有连接的 stream 都已用满，新建连接，加锁避免并发请求各自新建
+		synchronized (upstream) {
+			connection = tryReserve(upstream.connections);
+			if (connection == null) {
+				// 新连接收到 SETTINGS 前，沿用 upstream 之前声明的 stream 上限
+				connection = new Connection(upstream, Math.min(this.properties.getMaxStreams(), upstream.maxStreams));
+				connection.tryReserve();
+				upstream.connections.add(connection);
+				connect(connection, host, port, secure);
+			}
+			return connection;
+		}
+	}
+
+	private static Connection tryReserve(List<Connection> list) {
+		for (Connection connection : list) {
+			if (connection.tryReserve()) {
+				return connection;
+			}
+		}
+		return null;
+	}
+
+	private void connect(Connection connection, String host, int port, boolean secure) {
+		SslContext sslContext;
+		try {
+			sslContext = secure ? sslContext() : null;
+		}
+		catch (RuntimeException e) {
+			connection.upstream.connections.remove(connection);
+			connection.ready.tryFailure(e);
+			return;
+		}
+		Bootstrap bootstrap = new Bootstrap()
+				.group(this.group)
+				.channel(this.channelType)
+				.option(ChannelOption.TCP_NODELAY, true)
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) this.properties.getConnectTimeout().toMillis())
+				.handler(new ChannelInitializer<Channel>() {
+					@Override
+					protected void initChannel(Channel channel) {
+						if (sslContext == null) {
+							addHttp2Handlers(channel.pipeline(), connection);
+							return;
+						}
+						channel.pipeline().addLast(sslContext.newHandler(channel.alloc(), host, port));
+						channel.pipeline().addLast(new ApplicationProtocolNegotiationHandler("") {
+							@Override
+							protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+								if (!ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+									connection.ready.tryFailure(new IllegalStateException("Upstream " + host + ":"
+											+ port + " did not negotiate h2 but '" + protocol + "'"));
+									ctx.close();
+									return;
+								}
+								addHttp2Handlers(ctx.pipeline(), connection);
+							}
+
+							@Override
+							protected void handshakeFailure(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+								connection.ready.tryFailure(cause);
+								super.handshakeFailure(ctx, cause);
+							}
+						});
+					}
+				});
+
+		ChannelFuture connect = bootstrap.connect(host, port);
+		connection.channel = connect.channel();
+		connect.channel().closeFuture().addListener(closed -> {
+			connection.closed = true;
+			connection.upstream.connections.remove(connection);
+			connection.ready.tryFailure(new IllegalStateException("Connection to " + host + ":" + port + " closed"));
+		});
+		connect.addListener((ChannelFuture future) -> {
+			if (!future.isSuccess()) {
+				connection.ready.tryFailure(future.cause());
+			}
+		});
+		if (log.isDebugEnabled()) {
+			log.debug("Opening HTTP/2 connection to " + host + ":" + port + (secure ? " with TLS" : ""));
+		}
+	}
+
+	private static void addHttp2Handlers(ChannelPipeline pipeline, Connection connection) {
+		pipeline.addLast(Http2MultiplexCodecBuilder.forClient(PushRejectingHandler.INSTANCE)
+				.initialSettings(Http2Settings.defaultSettings().pushEnabled(false))
+				// 超过 upstream 允许的并发 stream 时排队，而不是拒绝
+				.encoderEnforceMaxConcurrentStreams(true)
+				.build());
+		pipeline.addLast(new ConnectionFrameHandler(connection));
+	}
+
+	private SslContext sslContext() {
+		SslContext sslContext = this.sslContext;
+		if (sslContext == null) {
+			synchronized (this) {
+				sslContext = this.sslContext;
+				if (sslContext == null) {
+					SslContextBuilder builder = SslContextBuilder.forClient()
+							.ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+							.applicationProtocolConfig(new ApplicationProtocolConfig(
+									ApplicationProtocolConfig.Protocol.ALPN,
+									ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+									ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+									ApplicationProtocolNames.HTTP_2));
+					if (this.properties.isUseInsecureTrustManager()) {
+						builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+					}
+					try {
+						sslContext = builder.build();
+					}
+					catch (SSLException e) {
+						throw new IllegalStateException("Unable to create the SSL context of h2 upstreams", e);
+					}
+					this.sslContext = sslContext;
+				}
+			}
+		}
+		return sslContext;
+	}
+
+	/**
+	 * The connections to an upstream address, and the stream limit it announced last.
+	 */
+	private static class Upstream {
+
+		private final List<Connection> connections = new CopyOnWriteArrayList<>();
+
+		private volatile int maxStreams = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * A connection and the number of its streams in use.
+	 */
+	private static class Connection {
+
+		private final Upstream upstream;
+
+		private final Promise<Void> ready = ImmediateEventExecutor.INSTANCE.newPromise();
+
+		private final AtomicInteger activeStreams = new AtomicInteger();
+
+		private volatile int maxStreams;
+
+		private volatile boolean goingAway;
+
+		private volatile boolean closed;
+
+		private volatile Channel channel;
+
+		Connection(Upstream upstream, int maxStreams) {
+			this.upstream = upstream;
+			this.maxStreams = maxStreams;
+		}
+
+		boolean tryReserve() {
+			while (true) {
+				int active = this.activeStreams.get();
+				if (this.goingAway || this.closed || active >= this.maxStreams) {
+					return false;
+				}
+				if (this.activeStreams.compareAndSet(active, active + 1)) {
+					return true;
+				}
+			}
+		}
+
+		void release() {
+			this.activeStreams.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Marks the connection ready once the codec sent the connection preface, applies the
+	 * stream limit announced by the upstream, and stops new streams on a connection the
+	 * upstream is shutting down.
+	 */
+	private static class ConnectionFrameHandler extends ChannelInboundHandlerAdapter {
+
+		private final Connection connection;
+
+		ConnectionFrameHandler(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public void handlerAdded(ChannelHandlerContext ctx) {
+			// 握手后才加入 pipeline 的 h2 连接
+			if (ctx.channel().isActive()) {
+				this.connection.ready.trySuccess(null);
+			}
+		}
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) {
+			// 连接建立的 Future 先于 channelActive 完成，此时 preface 还没发出
+			this.connection.ready.trySuccess(null);
+			ctx.fireChannelActive();
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			if (msg instanceof Http2SettingsFrame) {
+				Long maxConcurrentStreams = ((Http2SettingsFrame) msg).settings().maxConcurrentStreams();
+				if (maxConcurrentStreams != null) {
+					int maxStreams = (int) Math.min(maxConcurrentStreams, Integer.MAX_VALUE);
+					this.connection.upstream.maxStreams = maxStreams;
+					if (maxStreams < this.connection.maxStreams) {
+						this.connection.maxStreams = maxStreams;
+					}
+				}
+			}
+			else if (msg instanceof Http2GoAwayFrame) {
+				// Http2MultiplexCodec 已经 release 过 GOAWAY
+				this.connection.goingAway = true;
+			}
+			else {
+				ReferenceCountUtil.release(msg);
+			}
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			log.debug("HTTP/2 connection error, closing " + ctx.channel(), cause);
+			this.connection.ready.tryFailure(cause);
+			ctx.close();
+		}
+	}
+
+	/**
+	 * Resets the streams pushed by the upstream, push is disabled in the settings sent.
+	 */
+	@ChannelHandler.Sharable
+	private static class PushRejectingHandler extends ChannelInboundHandlerAdapter {
+
+		static final PushRejectingHandler INSTANCE = new PushRejectingHandler();
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) {
+			ctx.close();
+		}
+	}
+
+}
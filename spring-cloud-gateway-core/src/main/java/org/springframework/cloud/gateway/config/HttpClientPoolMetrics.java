@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.cloud.gateway.config.HttpClientPoolResources.InstrumentedPool;
+
+/**
+ * Registers the active, idle and pending connection gauges of every upstream pool of
+ * the {@link HttpClientPoolResources}, tagged with the upstream address.
+ */
+public class HttpClientPoolMetrics implements MeterBinder {
+
+	private final HttpClientPoolResources poolResources;
+
+	public HttpClientPoolMetrics(HttpClientPoolResources poolResources) {
+		this.poolResources = poolResources;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		this.poolResources.addListener(pool -> register(registry, pool));
+		this.poolResources.getPools().forEach(pool -> register(registry, pool));
+	}
+
+	private static void register(MeterRegistry registry, InstrumentedPool pool) {
+		Gauge.builder("gateway.httpclient.pool.active", pool, InstrumentedPool::getActive)
+				.tag("address", pool.getAddress()).description("Connections in use").register(registry);
+		Gauge.builder("gateway.httpclient.pool.idle", pool, InstrumentedPool::getIdle)
+				.tag("address", pool.getAddress()).description("Open connections not in use").register(registry);
+		Gauge.builder("gateway.httpclient.pool.pending", pool, InstrumentedPool::getPending)
+				.tag("address", pool.getAddress()).description("Requests waiting for a connection").register(registry);
+	}
+}
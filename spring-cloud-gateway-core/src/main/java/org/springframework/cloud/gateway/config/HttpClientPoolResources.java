@@ -0,0 +1,300 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.springframework.cloud.gateway.config.HttpClientProperties.Pool;
+import org.springframework.cloud.gateway.config.HttpClientProperties.PoolType;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.resources.PoolResources;
+
+/**
+ * {@link PoolResources} of the proxy {@code HttpClient}. Each upstream host uses either
+ * its own pool settings or the default ones, see {@link HttpClientProperties}.
+ * <p>On top of the reactor-netty pools it limits the requests waiting for a connection,
+ * closes connections that were idle or open for too long when they are acquired again,
+ * and counts the active, idle and pending connections of every upstream address.
+ */
+public class HttpClientPoolResources implements PoolResources {
+
+	private static final AttributeKey<Long> OPENED = AttributeKey.valueOf(HttpClientPoolResources.class, "opened");
+	private static final AttributeKey<Long> RELEASED = AttributeKey.valueOf(HttpClientPoolResources.class, "released");
+	// 每次 acquire 一个标记，计入 active 期间为 true
+	private static final AttributeKey<AtomicBoolean> ACQUISITION = AttributeKey.valueOf(HttpClientPoolResources.class, "acquisition");
+
+	private final HttpClientProperties properties;
+
+	private final LongSupplier clock;
+
+	private final ConcurrentMap<String, PoolResources> resources = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<SocketAddress, InstrumentedPool> pools = new ConcurrentHashMap<>();
+
+	private final List<Consumer<InstrumentedPool>> listeners = new CopyOnWriteArrayList<>();
+
+	public HttpClientPoolResources(HttpClientProperties properties) {
+		this(properties, System::nanoTime);
+	}
+
+	/**
+	 * @param clock the time in nanoseconds, to decide when a connection expires
+	 */
+	HttpClientPoolResources(HttpClientProperties properties, LongSupplier clock) {
+		this.properties = properties;
+		this.clock = clock;
+	}
+
+	@Override
+	public ChannelPool selectOrCreate(SocketAddress address, Supplier<? extends Bootstrap> bootstrap,
+									  Consumer<? super Channel> onChannelCreate, EventLoopGroup group) {
+		InstrumentedPool pool = this.pools.get(address);
+		if (pool == null) {
+			String host = hostKey(address);
+			Pool settings = this.properties.getHosts().get(host);
+			if (settings == null && address instanceof InetSocketAddress) {
+				host = ((InetSocketAddress) address).getHostString();
+				settings = this.properties.getHosts().get(host);
+			}
+			String name = settings == null ? "proxy" : "proxy-" + host;
+			Pool effective = settings == null ? this.properties.getPool() : settings.withDefaults(this.properties.getPool());
+			PoolResources resources = this.resources.computeIfAbsent(name, key -> create(key, effective));
+			InstrumentedPool created = new InstrumentedPool(hostKey(address), effective,
+					resources.selectOrCreate(address, bootstrap, onChannelCreate, group), this.clock);
+			pool = this.pools.putIfAbsent(address, created);
+			if (pool == null) {
+				pool = created;
+				this.listeners.forEach(listener -> listener.accept(created));
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * @return the pools created so far, one per upstream address
+	 */
+	public List<InstrumentedPool> getPools() {
+		return new ArrayList<>(this.pools.values());
+	}
+
+	/**
+	 * Call the given listener with every pool created from now on.
+	 */
+	public void addListener(Consumer<InstrumentedPool> listener) {
+		this.listeners.add(listener);
+	}
+
+	@Override
+	public Mono<Void> disposeLater() {
+		return Mono.when(this.resources.values().stream().map(PoolResources::disposeLater)
+				.toArray(Mono[]::new));
+	}
+
+	private static PoolResources create(String name, Pool settings) {
+		if (settings.getType() == PoolType.FIXED) {
+			return PoolResources.fixed(name, settings.getMaxConnections(), settings.getAcquireTimeout().toMillis());
+		}
+		return PoolResources.elastic(name);
+	}
+
+	private static String hostKey(SocketAddress address) {
+		if (address instanceof InetSocketAddress) {
+			InetSocketAddress inet = (InetSocketAddress) address;
+			return inet.getHostString() + ":" + inet.getPort();
+		}
+		return address.toString();
+	}
+
+	/**
+	 * The pool of one upstream address.
+	 */
+	public static class InstrumentedPool implements ChannelPool {
+
+		private final String address;
+		private final Pool settings;
+		private final ChannelPool delegate;
+		private final LongSupplier clock;
+
+		private final AtomicInteger opened = new AtomicInteger();
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger pending = new AtomicInteger();
+
+		InstrumentedPool(String address, Pool settings, ChannelPool delegate, LongSupplier clock) {
+			this.address = address;
+			this.settings = settings;
+			this.delegate = delegate;
+			this.clock = clock;
+		}
+
+		/**
+		 * @return the upstream address, as {@code host:port}
+		 */
+		public String getAddress() {
+			return this.address;
+		}
+
+		public Pool getSettings() {
+			return this.settings;
+		}
+
+		/**
+		 * @return the number of connections in use
+		 */
+		public int getActive() {
+			return this.active.get();
+		}
+
+		/**
+		 * @return the number of open connections not in use
+		 */
+		public int getIdle() {
+			return Math.max(0, this.opened.get() - this.active.get());
+		}
+
+		/**
+		 * @return the number of requests waiting for a connection
+		 */
+		public int getPending() {
+			return this.pending.get();
+		}
+
+		@Override
+		public Future<Channel> acquire() {
+			return acquire(ImmediateEventExecutor.INSTANCE.newPromise());
+		}
+
+		@Override
+		public Future<Channel> acquire(Promise<Channel> promise) {
+			int maxPending = this.settings.getMaxPendingAcquires();
+			int current;
+			do {
+				current = this.pending.get();
+				if (maxPending >= 0 && current >= maxPending) {
+					return promise.setFailure(new IllegalStateException("Pending acquire queue of " + this.address
+							+ " has reached its maximum size of " + maxPending));
+				}
+			}
+			while (!this.pending.compareAndSet(current, current + 1));
+			acquireUnexpired(promise);
+			return promise;
+		}
+
+		private void acquireUnexpired(Promise<Channel> promise) {
+			this.delegate.acquire().addListener((Future<Channel> future) -> {
+				if (!future.isSuccess()) {
+					this.pending.decrementAndGet();
+					promise.tryFailure(future.cause());
+					return;
+				}
+				Channel channel = future.getNow();
+				long now = this.clock.getAsLong();
+				if (channel.attr(OPENED).setIfAbsent(now) == null) {
+					this.opened.incrementAndGet();
+					channel.closeFuture().addListener(closed -> {
+						this.opened.decrementAndGet();
+						endAcquisition(channel.attr(ACQUISITION).get());
+					});
+				}
+				if (isExpired(channel, now)) {
+					// 关闭后由 reactor-netty 注册的 close 监听归还给连接池
+					channel.close();
+					acquireUnexpired(promise);
+					return;
+				}
+				this.pending.decrementAndGet();
+				channel.attr(ACQUISITION).set(new AtomicBoolean(true));
+				this.active.incrementAndGet();
+				if (!promise.trySuccess(channel)) {
+					release(channel);
+				}
+			});
+		}
+
+		private boolean isExpired(Channel channel, long now) {
+			if (this.settings.getMaxLifeTime() != null
+					&& now - channel.attr(OPENED).get() >= this.settings.getMaxLifeTime().toNanos()) {
+				return true;
+			}
+			Long released = channel.attr(RELEASED).get();
+			return this.settings.getMaxIdleTime() != null && released != null
+					&& now - released >= this.settings.getMaxIdleTime().toNanos();
+		}
+
+		@Override
+		public Future<Void> release(Channel channel) {
+			return release(channel, ImmediateEventExecutor.INSTANCE.newPromise());
+		}
+
+		@Override
+		public Future<Void> release(Channel channel, Promise<Void> promise) {
+			channel.attr(RELEASED).set(this.clock.getAsLong());
+			// 连接回到池中后才计为空闲，否则 idle 计数会先于可复用的连接出现；
+			// 池可能在完成 promise 之前就把连接交给等待中的 acquire，所以先取出本次的 acquisition
+			AtomicBoolean acquisition = channel.attr(ACQUISITION).get();
+			promise.addListener(released -> endAcquisition(acquisition));
+			return this.delegate.release(channel, promise);
+		}
+
+		private void endAcquisition(AtomicBoolean acquisition) {
+			if (acquisition != null && acquisition.compareAndSet(true, false)) {
+				this.active.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void close() {
+			this.delegate.close();
+		}
+
+		/**
+		 * @return the settings and connection counts of the pool
+		 */
+		public Map<String, Object> statistics() {
+			Map<String, Object> statistics = new LinkedHashMap<>();
+			statistics.put("type", this.settings.getType());
+			if (this.settings.getType() == PoolType.FIXED) {
+				statistics.put("maxConnections", this.settings.getMaxConnections());
+			}
+			statistics.put("active", getActive());
+			statistics.put("idle", getIdle());
+			statistics.put("pending", getPending());
+			return statistics;
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import reactor.ipc.netty.resources.PoolResources;
+
+/**
+ * Configuration of the connection pools of the proxy {@code HttpClient}.
+ */
+@ConfigurationProperties("spring.cloud.gateway.httpclient")
+public class HttpClientProperties {
+
+	/**
+	 * Pool used for every upstream host without a pool of its own.
+	 */
+	private Pool pool = Pool.defaults();
+
+	/**
+	 * Pools of specific upstream hosts, keyed by {@code host} or {@code host:port}.
+	 * Settings that are not given are taken from the default pool.
+	 */
+	private Map<String, Pool> hosts = new LinkedHashMap<>();
+
+	/**
+	 * Connections to upstreams of {@code h2c} and {@code h2} routes.
+	 */
+	private Http2 http2 = new Http2();
+
+	public Pool getPool() {
+		return pool;
+	}
+
+	public void setPool(Pool pool) {
+		this.pool = pool;
+	}
+
+	public Map<String, Pool> getHosts() {
+		return hosts;
+	}
+
+	public void setHosts(Map<String, Pool> hosts) {
+		this.hosts = hosts;
+	}
+
+	public Http2 getHttp2() {
+		return http2;
+	}
+
+	public void setHttp2(Http2 http2) {
+		this.http2 = http2;
+	}
+
+	public enum PoolType {
+
+		/**
+		 * Connections are opened as needed, without limit.
+		 */
+		ELASTIC,
+
+		/**
+		 * At most {@code max-connections} connections per upstream address.
+		 */
+		FIXED
+	}
+
+	public static class Pool {
+
+		/**
+		 * Type of pool.
+		 */
+		private PoolType type;
+
+		/**
+		 * Maximum number of connections per upstream address, for fixed pools.
+		 */
+		private Integer maxConnections;
+
+		/**
+		 * Maximum number of requests waiting for a connection, -1 for no limit.
+		 */
+		private Integer maxPendingAcquires;
+
+		/**
+		 * How long a request waits for a connection of a fixed pool.
+		 */
+		private Duration acquireTimeout;
+
+		/**
+		 * How long a connection may stay unused before it is closed, unlimited if not set.
+		 */
+		private Duration maxIdleTime;
+
+		/**
+		 * How long a connection is used before it is closed, unlimited if not set.
+		 */
+		private Duration maxLifeTime;
+
+		static Pool defaults() {
+			Pool pool = new Pool();
+			pool.setType(PoolType.ELASTIC);
+			pool.setMaxConnections(PoolResources.DEFAULT_POOL_MAX_CONNECTION);
+			pool.setMaxPendingAcquires(-1);
+			pool.setAcquireTimeout(Duration.ofMillis(PoolResources.DEFAULT_POOL_ACQUIRE_TIMEOUT));
+			return pool;
+		}
+
+		/**
+		 * Return a pool with the settings of this pool, and those of the given pool where
+		 * this pool has none.
+		 */
+		Pool withDefaults(Pool defaults) {
+			Pool pool = new Pool();
+			pool.setType(type != null ? type : defaults.getType());
+			pool.setMaxConnections(maxConnections != null ? maxConnections : defaults.getMaxConnections());
+			pool.setMaxPendingAcquires(maxPendingAcquires != null ? maxPendingAcquires : defaults.getMaxPendingAcquires());
+			pool.setAcquireTimeout(acquireTimeout != null ? acquireTimeout : defaults.getAcquireTimeout());
+			pool.setMaxIdleTime(maxIdleTime != null ? maxIdleTime : defaults.getMaxIdleTime());
+			pool.setMaxLifeTime(maxLifeTime != null ? maxLifeTime : defaults.getMaxLifeTime());
+			return pool;
+		}
+
+		public PoolType getType() {
+			return type;
+		}
+
+		public void setType(PoolType type) {
+			this.type = type;
+		}
+
+		public Integer getMaxConnections() {
+			return maxConnections;
+		}
+
+		public void setMaxConnections(Integer maxConnections) {
+			this.maxConnections = maxConnections;
+		}
+
+		public Integer getMaxPendingAcquires() {
+			return maxPendingAcquires;
+		}
+
+		public void setMaxPendingAcquires(Integer maxPendingAcquires) {
+			this.maxPendingAcquires = maxPendingAcquires;
+		}
+
+		public Duration getAcquireTimeout() {
+			return acquireTimeout;
+		}
+
+		public void setAcquireTimeout(Duration acquireTimeout) {
+			this.acquireTimeout = acquireTimeout;
+		}
+
+		public Duration getMaxIdleTime() {
+			return maxIdleTime;
+		}
+
+		public void setMaxIdleTime(Duration maxIdleTime) {
+			this.maxIdleTime = maxIdleTime;
+		}
+
+		public Duration getMaxLifeTime() {
+			return maxLifeTime;
+		}
+
+		public void setMaxLifeTime(Duration maxLifeTime) {
+			this.maxLifeTime = maxLifeTime;
+		}
+
+		@Override
+		public String toString() {
+			return "Pool{" +
+					"type=" + type +
+					", maxConnections=" + maxConnections +
+					", maxPendingAcquires=" + maxPendingAcquires +
+					", acquireTimeout=" + acquireTimeout +
+					", maxIdleTime=" + maxIdleTime +
+					", maxLifeTime=" + maxLifeTime +
+					'}';
+		}
+	}
+
+	public static class Http2 {
+
+		/**
+		 * Maximum number of concurrent streams per connection, a new connection is opened
+		 * when all are in use. The limit announced by the upstream applies if lower.
+		 */
+		private int maxStreams = 100;
+
+		/**
+		 * How long to wait for a new connection to be established.
+		 */
+		private Duration connectTimeout = Duration.ofSeconds(10);
+
+		/**
+		 * Trust any certificate of {@code h2} upstreams, for tests only.
+		 */
+		private boolean useInsecureTrustManager;
+
+		public int getMaxStreams() {
+			return maxStreams;
+		}
+
+		public void setMaxStreams(int maxStreams) {
+			this.maxStreams = maxStreams;
+		}
+
+		public Duration getConnectTimeout() {
+			return connectTimeout;
+		}
+
+		public void setConnectTimeout(Duration connectTimeout) {
+			this.connectTimeout = connectTimeout;
+		}
+
+		public boolean isUseInsecureTrustManager() {
+			return useInsecureTrustManager;
+		}
+
+		public void setUseInsecureTrustManager(boolean useInsecureTrustManager) {
+			this.useInsecureTrustManager = useInsecureTrustManager;
+		}
+
+		@Override
+		public String toString() {
+			return "Http2{" +
+					"maxStreams=" + maxStreams +
+					", connectTimeout=" + connectTimeout +
+					", useInsecureTrustManager=" + useInsecureTrustManager +
+					'}';
+		}
+	}
+}
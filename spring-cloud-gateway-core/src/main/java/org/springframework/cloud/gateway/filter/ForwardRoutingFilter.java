@@ -8,10 +8,12 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.*;
 
-public class ForwardRoutingFilter implements GlobalFilter, Ordered {
+public class ForwardRoutingFilter implements RoutingFilter, Ordered {
 
 	private static final Log log = LogFactory.getLog(ForwardRoutingFilter.class);
 
@@ -26,6 +28,11 @@ public class ForwardRoutingFilter implements GlobalFilter, Ordered {
 		return Ordered.LOWEST_PRECEDENCE;
 	}
 
+	@Override
+	public Collection<String> getSchemes() {
+		return Collections.singletonList("forward");
+	}
+
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 	    // 获得 requestUrl
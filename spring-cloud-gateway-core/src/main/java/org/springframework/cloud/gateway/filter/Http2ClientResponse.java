@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.filter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpResponse;
+import reactor.core.publisher.Flux;
+
+/**
+ * Response of a stream opened by {@link Http2RoutingFilter}, written back to the client
+ * by {@link Http2WriteResponseFilter}.
+ */
+public class Http2ClientResponse {
+
+	private final HttpResponse response;
+
+	private final Flux<ByteBuf> body;
+
+	Http2ClientResponse(HttpResponse response, Flux<ByteBuf> body) {
+		this.response = response;
+		this.body = body;
+	}
+
+	/**
+	 * @return the status and headers of the response
+	 */
+	public HttpResponse getResponse() {
+		return this.response;
+	}
+
+	/**
+	 * Return the body, read from the stream as it is requested. It can be subscribed
+	 * once, and the subscriber releases the buffers.
+	 */
+	public Flux<ByteBuf> getBody() {
+		return this.body;
+	}
+
+}
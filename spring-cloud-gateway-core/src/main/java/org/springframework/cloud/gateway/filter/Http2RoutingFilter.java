@@ -0,0 +1,380 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.filter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.reactivestreams.Subscription;
+import org.springframework.cloud.gateway.config.Http2ConnectionPool;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.cloud.gateway.support.HttpHeadersBridge;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+
+/**
+ * Routes requests of {@code h2c} and {@code h2} route URIs over HTTP/2, as streams of
+ * the connections of an {@link Http2ConnectionPool}. Like {@link NettyRoutingFilter} it
+ * copies the status and headers of the response to the exchange, and leaves the body
+ * to {@link Http2WriteResponseFilter}.
+ * <p>The request body is written as it is read from the client, at most
+ * {@link #MAX_PENDING_WRITES} buffers ahead of the stream, which HTTP/2 flow control
+ * holds back when the upstream does not read. The response body is read from the
+ * stream as the client response requests it.
+ */
+public class Http2RoutingFilter implements RoutingFilter, Ordered {
+
+	/**
+	 * Maximum number of request body buffers written to a stream and not sent yet.
+	 */
+	static final int MAX_PENDING_WRITES = 16;
+
+	private final Http2ConnectionPool connectionPool;
+
+	public Http2RoutingFilter(Http2ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.LOWEST_PRECEDENCE;
+	}
+
+	@Override
+	public Collection<String> getSchemes() {
+		return Arrays.asList("h2c", "h2");
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+		GatewayContext context = GatewayContext.get(exchange);
+		URI requestUrl = context.getRequestUrl();
+		Assert.notNull(requestUrl, "Required attribute '" + GATEWAY_REQUEST_URL_ATTR + "' is missing");
+
+		String scheme = requestUrl.getScheme();
+		if (context.isAlreadyRouted() || (!scheme.equals("h2c") && !scheme.equals("h2"))) {
+			return chain.filter(exchange);
+		}
+		context.setAlreadyRouted();
+
+		ServerHttpRequest request = exchange.getRequest();
+		StreamReceiver receiver = new StreamReceiver();
+		ChannelInitializer<Channel> initializer = new ChannelInitializer<Channel>() {
+			@Override
+			protected void initChannel(Channel channel) {
+				channel.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false), receiver);
+			}
+		};
+
+		return this.connectionPool.openStream(requestUrl, initializer)
+				.flatMap(stream -> {
+					send(stream, request, requestUrl);
+					return receiver.response().doOnCancel(stream::close);
+				})
+				.doOnNext(res -> {
+					ServerHttpResponse response = exchange.getResponse();
+					// 去掉 Netty 转换 HTTP/2 响应时加的扩展 Header，如 x-http2-stream-id
+					for (HttpConversionUtil.ExtensionHeaderNames name : HttpConversionUtil.ExtensionHeaderNames.values()) {
+						res.headers().remove(name.text());
+					}
+					HttpHeadersBridge.copyResponseHeaders(res.headers(), response.getHeaders());
+					response.setStatusCode(HttpStatus.valueOf(res.status().code()));
+					// 和 NettyRoutingFilter 一样，Body 留给 Http2WriteResponseFilter 写回
+					context.setClientResponse(new Http2ClientResponse(res, receiver.body()));
+				})
+				.then(chain.filter(exchange))
+				// 后续 filter 失败或取消时 Body 可能还没被订阅，重置 stream 释放连接上的位置
+				.doOnError(e -> receiver.discard())
+				.doOnCancel(receiver::discard);
+	}
+
+	/**
+	 * Write the request to the stream, then ask for the response. A request without a
+	 * body is sent as a single HEADERS frame.
+	 */
+	private static void send(Http2StreamChannel stream, ServerHttpRequest request, URI requestUrl) {
+		HttpMethod method = HttpMethod.valueOf(request.getMethodValue());
+		// 绝对路径的请求行，:authority 和 :scheme 由此得到
+		String uri = (requestUrl.getScheme().equals("h2") ? "https" : "http") + "://" + requestUrl.getRawAuthority()
+				+ (StringUtils.hasLength(requestUrl.getRawPath()) ? requestUrl.getRawPath() : "/")
+				+ (requestUrl.getRawQuery() != null ? "?" + requestUrl.getRawQuery() : "");
+
+		boolean hasBody = request.getHeaders().getContentLength() > 0 || HttpHeadersBridge.isChunked(request.getHeaders());
+		HttpRequest proxyRequest = hasBody ? new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri)
+				: new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri, Unpooled.EMPTY_BUFFER);
+		HttpHeadersBridge.copyRequestHeaders(request.getHeaders(), proxyRequest.headers());
+
+		if (hasBody) {
+			stream.write(proxyRequest);
+			request.getBody().map(NettyRoutingFilter::toByteBuf).subscribe(new BodyWriter(stream));
+		}
+		else {
+			stream.writeAndFlush(proxyRequest);
+		}
+		stream.read();
+	}
+
+	/**
+	 * Writes the request body to the stream, and ends the stream once it completes.
+	 */
+	private static class BodyWriter extends BaseSubscriber<ByteBuf> {
+
+		private final Http2StreamChannel stream;
+
+		BodyWriter(Http2StreamChannel stream) {
+			this.stream = stream;
+		}
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+			request(MAX_PENDING_WRITES);
+		}
+
+		@Override
+		protected void hookOnNext(ByteBuf buffer) {
+			this.stream.writeAndFlush(new DefaultHttpContent(buffer)).addListener(future -> {
+				if (future.isSuccess()) {
+					request(1);
+				}
+				else {
+					cancel();
+				}
+			});
+		}
+
+		@Override
+		protected void hookOnComplete() {
+			this.stream.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+		}
+
+		@Override
+		protected void hookOnError(Throwable throwable) {
+			// 请求 Body 读取失败，重置 stream
+			this.stream.close();
+		}
+	}
+
+	/**
+	 * Receives the response of a stream. The body is kept in the stream until it is
+	 * requested, the buffers read ahead of the demand are queued and released if the
+	 * body is cancelled. All state is only accessed on the event loop of the stream.
+	 */
+	static class StreamReceiver extends ChannelInboundHandlerAdapter {
+
+		private final MonoProcessor<HttpResponse> response = MonoProcessor.create();
+
+		private final Queue<HttpContent> received = new ArrayDeque<>();
+
+		private volatile ChannelHandlerContext ctx;
+
+		private FluxSink<ByteBuf> sink;
+
+		private boolean reading;
+
+		private boolean complete;
+
+		private boolean done;
+
+		private Throwable error;
+
+		Mono<HttpResponse> response() {
+			return this.response;
+		}
+
+		Flux<ByteBuf> body() {
+			return Flux.create(sink -> execute(() -> {
+				if (this.sink != null) {
+					sink.error(new IllegalStateException("The response body can only be subscribed once"));
+					return;
+				}
+				if (this.done) {
+					sink.error(new IllegalStateException("The response body was discarded"));
+					return;
+				}
+				this.sink = sink;
+				sink.onRequest(n -> execute(this::drain));
+				sink.onCancel(() -> execute(this::cancel));
+				drain();
+			}));
+		}
+
+		@Override
+		public void handlerAdded(ChannelHandlerContext ctx) {
+			this.ctx = ctx;
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			this.reading = true;
+			if (msg instanceof HttpResponse) {
+				HttpResponse res = (HttpResponse) msg;
+				if (res.status().codeClass() == HttpStatusClass.INFORMATIONAL) {
+					// 100-continue 等中间响应，读完后继续读最终响应
+					ReferenceCountUtil.release(msg);
+					return;
+				}
+				this.response.onNext(res);
+			}
+			if (msg instanceof HttpContent) {
+				if (this.done) {
+					ReferenceCountUtil.release(msg);
+					return;
+				}
+				this.received.add((HttpContent) msg);
+				if (msg instanceof LastHttpContent) {
+					this.complete = true;
+				}
+				drain();
+			}
+		}
+
+		@Override
+		public void channelReadComplete(ChannelHandlerContext ctx) {
+			// 读的过程中请求的 read 会被忽略，读完再按需求继续读
+			this.reading = false;
+			if (!this.response.isTerminated() || this.complete) {
+				// 响应读完后再 read 一次，stream 才会关闭并释放连接上的位置
+				ctx.read();
+			}
+			else {
+				drain();
+			}
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) {
+			if (!this.complete) {
+				fail(new IOException("Stream closed before the response was complete"));
+			}
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			fail(cause);
+			ctx.close();
+		}
+
+		private void fail(Throwable cause) {
+			if (!this.response.isTerminated()) {
+				this.response.onError(cause);
+			}
+			if (this.error == null) {
+				this.error = cause;
+			}
+			drain();
+		}
+
+		private void drain() {
+			if (this.sink == null || this.done) {
+				return;
+			}
+			while (!this.received.isEmpty() && this.sink.requestedFromDownstream() > 0) {
+				HttpContent content = this.received.poll();
+				if (content.content().isReadable()) {
+					this.sink.next(content.content());
+				}
+				else {
+					content.release();
+				}
+				if (content instanceof LastHttpContent) {
+					this.done = true;
+					this.sink.complete();
+					return;
+				}
+			}
+			if (this.received.isEmpty()) {
+				if (this.error != null) {
+					this.done = true;
+					this.sink.error(this.error);
+				}
+				else if (this.sink.requestedFromDownstream() > 0 && !this.reading) {
+					this.ctx.read();
+				}
+			}
+		}
+
+		private void cancel() {
+			this.done = true;
+			HttpContent content;
+			while ((content = this.received.poll()) != null) {
+				content.release();
+			}
+			// 未读完的响应，重置 stream
+			this.ctx.close();
+		}
+
+		/**
+		 * Reset the stream unless its body was subscribed, which then owns the stream.
+		 */
+		void discard() {
+			if (this.ctx == null) {
+				return;
+			}
+			execute(() -> {
+				if (this.sink == null && !this.done) {
+					cancel();
+				}
+			});
+		}
+
+		private void execute(Runnable task) {
+			if (this.ctx.executor().inEventLoop()) {
+				task.run();
+			}
+			else {
+				this.ctx.executor().execute(task);
+			}
+		}
+	}
+
+}
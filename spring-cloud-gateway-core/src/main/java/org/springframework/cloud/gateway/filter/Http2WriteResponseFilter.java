@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.filter;
+
+import io.netty.buffer.ByteBuf;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Writes the body of the response received by {@link Http2RoutingFilter} back to the
+ * client.
+ */
+public class Http2WriteResponseFilter implements GlobalFilter, Ordered {
+
+	public static final int WRITE_RESPONSE_FILTER_ORDER = -1;
+
+	@Override
+	public int getOrder() {
+		return WRITE_RESPONSE_FILTER_ORDER;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+		return chain.filter(exchange).then(Mono.defer(() -> {
+			GatewayContext context = GatewayContext.get(exchange);
+			Object clientResponse = context.getClientResponse();
+			if (!(clientResponse instanceof Http2ClientResponse)) {
+				return Mono.empty();
+			}
+			ServerHttpResponse response = exchange.getResponse();
+			DataBufferFactory factory = response.bufferFactory();
+			Flux<DataBuffer> body = context.decorateResponseBody(((Http2ClientResponse) clientResponse).getBody()
+					.map(buffer -> wrap(buffer, factory)));
+
+			if (NettyWriteResponseFilter.isStreamingMediaType(response.getHeaders().getContentType())) {
+				return response.writeAndFlushWith(body.map(Flux::just));
+			}
+			return response.writeWith(body);
+		}));
+	}
+
+	/**
+	 * Wrap the buffer when the server is Netty, which then releases it once written,
+	 * copy and release it otherwise.
+	 */
+	private static DataBuffer wrap(ByteBuf buffer, DataBufferFactory factory) {
+		if (factory instanceof NettyDataBufferFactory) {
+			return ((NettyDataBufferFactory) factory).wrap(buffer);
+		}
+		try {
+			DataBuffer copy = factory.allocateBuffer(buffer.readableBytes());
+			copy.write(buffer.nioBuffer());
+			return copy;
+		}
+		finally {
+			buffer.release();
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.filter;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.gateway.support.CidrTrie;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Rejects requests whose remote address is in the deny list, or is not in the allow
+ * list when one is configured, with a 403. The lists are read from files with one CIDR
+ * per line, {@code #} starting a comment, and are reloaded when the files change. A
+ * file that can not be read or parsed leaves the previous list in place.
+ */
+public class IpAccessFilter implements GlobalFilter, Ordered, InitializingBean, DisposableBean {
+
+	public static final int IP_ACCESS_FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+	private static final Log log = LogFactory.getLog(IpAccessFilter.class);
+
+	private final IpAccessProperties properties;
+
+	private final NetworkList allowed;
+	private final NetworkList denied;
+
+	private Disposable reloading;
+
+	public IpAccessFilter(IpAccessProperties properties) {
+		this.properties = properties;
+		this.allowed = NetworkList.of(properties.getAllowFile());
+		this.denied = NetworkList.of(properties.getDenyFile());
+	}
+
+	@Override
+	public int getOrder() {
+		return IP_ACCESS_FILTER_ORDER;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws IOException {
+		// 启动时加载失败直接报错
+		if (this.allowed != null) {
+			this.allowed.load();
+		}
+		if (this.denied != null) {
+			this.denied.load();
+		}
+		if (this.allowed != null || this.denied != null) {
+			this.reloading = Flux.interval(this.properties.getReloadInterval(), Schedulers.elastic())
+					.subscribe(tick -> reload());
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (this.reloading != null) {
+			this.reloading.dispose();
+		}
+	}
+
+	/**
+	 * Reload the lists whose file changed since they were last read.
+	 */
+	public void reload() {
+		reload(this.allowed);
+		reload(this.denied);
+	}
+
+	private void reload(NetworkList list) {
+		if (list == null) {
+			return;
+		}
+		try {
+			if (list.isModified()) {
+				list.load();
+				if (log.isInfoEnabled()) {
+					log.info("Reloaded " + list.networks.size() + " networks from " + list.file);
+				}
+			}
+		}
+		catch (IOException | IllegalArgumentException e) {
+			log.warn("Failed to reload " + list.file + ", keeping the previous networks", e);
+		}
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+		InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+		InetAddress address = remoteAddress == null ? null : remoteAddress.getAddress();
+		if (isAllowed(address)) {
+			return chain.filter(exchange);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Access denied to " + address);
+		}
+		exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+		return exchange.getResponse().setComplete();
+	}
+
+	public boolean isAllowed(InetAddress address) {
+		if (this.denied != null && this.denied.networks.contains(address)) {
+			return false;
+		}
+		return this.allowed == null || this.allowed.networks.contains(address);
+	}
+
+	static CidrTrie parse(Iterable<String> lines) {
+		CidrTrie networks = new CidrTrie();
+		for (String line : lines) {
+			int comment = line.indexOf('#');
+			String cidr = (comment < 0 ? line : line.substring(0, comment)).trim();
+			if (!cidr.isEmpty()) {
+				networks.add(cidr);
+			}
+		}
+		return networks;
+	}
+
+	private static final class NetworkList {
+
+		private final Path file;
+		private volatile CidrTrie networks = new CidrTrie();
+		private volatile long lastModified = -1;
+
+		private NetworkList(Path file) {
+			this.file = file;
+		}
+
+		static NetworkList of(String file) {
+			return StringUtils.hasText(file) ? new NetworkList(Paths.get(file)) : null;
+		}
+
+		boolean isModified() throws IOException {
+			return Files.getLastModifiedTime(this.file).toMillis() != this.lastModified;
+		}
+
+		void load() throws IOException {
+			long modified = Files.getLastModifiedTime(this.file).toMillis();
+			// 先解析，成功后再替换，解析失败保留原来的列表
+			this.networks = parse(Files.readAllLines(this.file, StandardCharsets.UTF_8));
+			this.lastModified = modified;
+		}
+	}
+
+}
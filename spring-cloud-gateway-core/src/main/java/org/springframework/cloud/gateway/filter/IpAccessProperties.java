@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.filter;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the {@link IpAccessFilter}.
+ */
+@ConfigurationProperties("spring.cloud.gateway.ip-access")
+public class IpAccessProperties {
+
+	/**
+	 * Whether to check the remote address of every request against the allow and deny lists.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * File with the networks allowed to call the gateway, one CIDR per line. When not
+	 * set all addresses that are not denied are allowed.
+	 */
+	private String allowFile;
+
+	/**
+	 * File with the networks denied, one CIDR per line.
+	 */
+	private String denyFile;
+
+	/**
+	 * How often the files are checked for changes.
+	 */
+	private Duration reloadInterval = Duration.ofSeconds(10);
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public String getAllowFile() {
+		return allowFile;
+	}
+
+	public void setAllowFile(String allowFile) {
+		this.allowFile = allowFile;
+	}
+
+	public String getDenyFile() {
+		return denyFile;
+	}
+
+	public void setDenyFile(String denyFile) {
+		this.denyFile = denyFile;
+	}
+
+	public Duration getReloadInterval() {
+		return reloadInterval;
+	}
+
+	public void setReloadInterval(Duration reloadInterval) {
+		this.reloadInterval = reloadInterval;
+	}
+}
@@ -21,6 +21,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.gateway.support.GatewayContext;
 import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.core.Ordered;
 import org.springframework.web.server.ServerWebExchange;
@@ -29,8 +30,6 @@ import reactor.core.publisher.Mono;
 
 import java.net.URI;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
 
 /**
  * @author Spencer Gibb
@@ -40,6 +39,8 @@ public class LoadBalancerClientFilter implements GlobalFilter, Ordered {
 	private static final Log log = LogFactory.getLog(LoadBalancerClientFilter.class);
 	public static final int LOAD_BALANCER_CLIENT_FILTER_ORDER = 10100;
 
+	private static final int MAX_ALTERNATE_ATTEMPTS = 3;
+
 	private final LoadBalancerClient loadBalancer;
 
 	public LoadBalancerClientFilter(LoadBalancerClient loadBalancer) {
@@ -54,13 +55,14 @@ public class LoadBalancerClientFilter implements GlobalFilter, Ordered {
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 	    // 获得 URL
-		URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+		GatewayContext context = GatewayContext.get(exchange);
+		URI url = context.getRequestUrl();
 		if (url == null || !url.getScheme().equals("lb")) {
 			return chain.filter(exchange);
 		}
         // 添加 原始请求URI 到 GATEWAY_ORIGINAL_REQUEST_URL_ATTR
 		//preserve the original url
-		addOriginalRequestUrl(exchange, url);
+		context.addOriginalRequestUrl(url);
 
 		log.trace("LoadBalancerClientFilter url before: " + url);
 
@@ -73,19 +75,43 @@ public class LoadBalancerClientFilter implements GlobalFilter, Ordered {
 		/*URI uri = exchange.getRequest().getURI();
 		URI requestUrl = loadBalancer.reconstructURI(instance, uri);*/
 		//
-		URI requestUrl = UriComponentsBuilder.fromUri(url)
-				.scheme(instance.isSecure()? "https" : "http") //TODO: support websockets
-				.host(instance.getHost())
-				.port(instance.getPort())
-				.build(true)
-				.toUri();
+		URI requestUrl = reconstructUrl(url, instance);
 		log.trace("LoadBalancerClientFilter url chosen: " + requestUrl);
 
         // 添加 请求URI 到 GATEWAY_REQUEST_URL_ATTR
-		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, requestUrl);
+		context.setRequestUrl(requestUrl);
+
+		// 对冲请求时才选择另一个实例
+		context.setAlternateRequestUrl(() -> chooseAlternate(url, instance));
 
         // 提交过滤器链继续过滤
 		return chain.filter(exchange);
 	}
 
+	/**
+	 * Return the url of another instance than the chosen one, or {@code null} if the
+	 * load balancer keeps choosing the same instance.
+	 */
+	URI chooseAlternate(URI url, ServiceInstance chosen) {
+		for (int i = 0; i < MAX_ALTERNATE_ATTEMPTS; i++) {
+			ServiceInstance instance = loadBalancer.choose(url.getHost());
+			if (instance == null) {
+				return null;
+			}
+			if (!instance.getHost().equals(chosen.getHost()) || instance.getPort() != chosen.getPort()) {
+				return reconstructUrl(url, instance);
+			}
+		}
+		return null;
+	}
+
+	private static URI reconstructUrl(URI url, ServiceInstance instance) {
+		return UriComponentsBuilder.fromUri(url)
+				.scheme(instance.isSecure()? "https" : "http") //TODO: support websockets
+				.host(instance.getHost())
+				.port(instance.getPort())
+				.build(true)
+				.toUri();
+	}
+
 }
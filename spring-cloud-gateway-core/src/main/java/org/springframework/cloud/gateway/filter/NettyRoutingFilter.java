@@ -17,32 +17,55 @@
 
 package org.springframework.cloud.gateway.filter;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.cloud.gateway.support.HedgePolicy;
+import org.springframework.cloud.gateway.support.HttpHeadersBridge;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.buffer.NettyDataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.Assert;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
 import reactor.ipc.netty.NettyPipeline;
 import reactor.ipc.netty.http.client.HttpClient;
 import reactor.ipc.netty.http.client.HttpClientRequest;
+import reactor.ipc.netty.http.client.HttpClientResponse;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.*;
 
 /**
  * @author Spencer Gibb
  */
-public class NettyRoutingFilter implements GlobalFilter, Ordered {
+public class NettyRoutingFilter implements RoutingFilter, Ordered {
 
 	private final HttpClient httpClient;
 
@@ -55,40 +78,109 @@ public class NettyRoutingFilter implements GlobalFilter, Ordered {
 		return Ordered.LOWEST_PRECEDENCE;
 	}
 
+	@Override
+	public Collection<String> getSchemes() {
+		return Arrays.asList("http", "https");
+	}
+
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 	    // 获得 requestUrl
-		URI requestUrl = exchange.getRequiredAttribute(GATEWAY_REQUEST_URL_ATTR);
+		GatewayContext context = GatewayContext.get(exchange);
+		URI requestUrl = context.getRequestUrl();
+		Assert.notNull(requestUrl, "Required attribute '" + GATEWAY_REQUEST_URL_ATTR + "' is missing");
 
         // 判断是否能够处理
         String scheme = requestUrl.getScheme();
-		if (isAlreadyRouted(exchange) || (!scheme.equals("http") && !scheme.equals("https"))) {
+		if (context.isAlreadyRouted() || (!scheme.equals("http") && !scheme.equals("https"))) {
 			return chain.filter(exchange);
 		}
 
         // 设置已经路由
-		setAlreadyRouted(exchange);
+		context.setAlreadyRouted();
 
 		ServerHttpRequest request = exchange.getRequest();
 
-        // Request Method
+		// 请求
+		Mono<HttpClientResponse> response = send(exchange, chain, requestUrl, false);
+
+		// 对冲请求：超过延迟仍未响应时，向另一实例再发一次，取先到的响应
+		HedgePolicy hedgePolicy = context.getHedgePolicy();
+		Duration hedgeDelay = hedgePolicy == null ? null : hedgePolicy.getDelay();
+		Supplier<URI> alternate = context.getAlternateRequestUrl();
+		if (hedgeDelay != null && alternate != null && isHedgeable(request)) {
+			response = hedge(response, hedgeDelay, Mono.fromSupplier(alternate)
+					.flatMap(alternateUrl -> send(exchange, chain, alternateUrl, true)),
+					res -> res.context().dispose()); // 同时到达的响应直接关闭连接
+		}
+
+		return response.doOnNext(res -> {
+			ServerHttpResponse serverResponse = exchange.getResponse();
+			// Response Header
+			// put headers and status so filters can modify the response
+			HttpHeadersBridge.copyResponseHeaders(res.responseHeaders(), serverResponse.getHeaders());
+
+			// Response Status
+			serverResponse.setStatusCode(HttpStatus.valueOf(res.status().code()));
+
+			// 设置 Response 到 CLIENT_RESPONSE_ATTR
+			// Defer committing the response until all route filters have run
+			// Put client response as ServerWebExchange attribute and write response later NettyWriteResponseFilter
+			context.setClientResponse(res);
+		}).then().onErrorResume(TimeoutException.class, e -> {
+			// 连接或响应超时，与 Hystrix 超时一样返回 504
+			// 不提交响应，Retry 仍可重试，否则由服务器在处理结束后完成响应
+			setResponseStatus(exchange, HttpStatus.GATEWAY_TIMEOUT);
+			return Mono.empty();
+		}).then(chain.filter(exchange));
+	}
+
+	/**
+	 * Send the request to the given url, bounded by the connect and response timeouts
+	 * of the route. A hedged request goes without body, hedging only applies to
+	 * requests that have none, since the body of the client can only be read once.
+	 */
+	private Mono<HttpClientResponse> send(ServerWebExchange exchange, GatewayFilterChain chain,
+			URI requestUrl, boolean hedged) {
+		GatewayContext context = GatewayContext.get(exchange);
+		ServerHttpRequest request = exchange.getRequest();
+
+		// Request Method
 		final HttpMethod method = HttpMethod.valueOf(request.getMethod().toString());
 
 		// 获得 url
 		final String url = requestUrl.toString();
 
-		// Request Header
-		final DefaultHttpHeaders httpHeaders = new DefaultHttpHeaders();
-		request.getHeaders().forEach(httpHeaders::set);
+		// 请求 Body 的 flush 策略，默认每个 chunk 都 flush
+		final FlushStrategy flushStrategy = context.getFlushStrategy();
 
-		// 请求
-		return this.httpClient.request(method, url, req -> {
-			final HttpClientRequest proxyRequest = req.options(NettyPipeline.SendOptions::flushOnEach) // 【】
-					.failOnClientError(false) // 是否请求失败，抛出异常
-					.headers(httpHeaders);
+		// 只有 filter 解析过表单时才重新编码，否则和其它 Body 一样直接转发
+		final boolean encodeForm = !hedged && context.isFormDataRequested()
+				&& MediaType.APPLICATION_FORM_URLENCODED.includes(request.getHeaders().getContentType());
+
+		// 拿到连接后才调用 handler，据此区分连接超时与响应超时
+		final MonoProcessor<HttpClientRequest> connected = MonoProcessor.create();
+
+		Mono<HttpClientResponse> response = this.httpClient.request(method, url, req -> {
+			connected.onNext(req);
+
+			// 表单一次写完，且 flushOnEach 下 sendForm 的写入不会被 flush
+			final HttpClientRequest proxyRequest = req.options(flushStrategy.isBatched() || encodeForm
+					? NettyPipeline.SendOptions::flushOnBoundary : NettyPipeline.SendOptions::flushOnEach)
+					.failOnClientError(false); // 是否请求失败，抛出异常
+
+			// Request Header，直接写入代理请求，只保留 client 设置的 Host
+			HttpHeaders proxyHeaders = proxyRequest.requestHeaders();
+			String host = proxyHeaders.get(HttpHeaderNames.HOST);
+			proxyHeaders.clear();
+			if (host != null) {
+				proxyHeaders.set(HttpHeaderNames.HOST, host);
+			}
+			HttpHeadersBridge.copyRequestHeaders(request.getHeaders(), proxyHeaders);
+			proxyRequest.chunkedTransfer(HttpHeadersBridge.isChunked(request.getHeaders()));
 
 			// Request Form
-			if (MediaType.APPLICATION_FORM_URLENCODED.includes(request.getHeaders().getContentType())) {
+			if (encodeForm) {
 				return exchange.getFormData()
 						.flatMap(map -> proxyRequest.sendForm(form -> {
 							for (Map.Entry<String, List<String>> entry: map.entrySet()) {
@@ -101,25 +193,152 @@ public class NettyRoutingFilter implements GlobalFilter, Ordered {
 			}
 
 			// Request Body
+			Flux<ByteBuf> body = hedged ? Flux.empty()
+					: request.getBody().map(NettyRoutingFilter::toByteBuf); // Flux<DataBuffer> => Flux<ByteBuf>
+			if (flushStrategy.isBatched()) {
+				return sendBatched(proxyRequest, body, flushStrategy);
+			}
 			return proxyRequest.sendHeaders() //I shouldn't need this
-					.send(request.getBody()
-							.map(DataBuffer::asByteBuffer) // Flux<DataBuffer> => ByteBuffer
-							.map(Unpooled::wrappedBuffer)); // ByteBuffer => Flux<DataBuffer>
-		}).doOnNext(res -> {
-			ServerHttpResponse response = exchange.getResponse();
-			// Response Header
-			// put headers and status so filters can modify the response
-			HttpHeaders headers = new HttpHeaders();
-			res.responseHeaders().forEach(entry -> headers.add(entry.getKey(), entry.getValue()));
-			response.getHeaders().putAll(headers);
+					.send(body);
+		});
 
-			// Response Status
-			response.setStatusCode(HttpStatus.valueOf(res.status().code()));
+		response = withTimeouts(response, connected, context.getConnectTimeout(), context.getResponseTimeout());
 
-			// 设置 Response 到 CLIENT_RESPONSE_ATTR
-			// Defer committing the response until all route filters have run
-			// Put client response as ServerWebExchange attribute and write response later NettyWriteResponseFilter
-			exchange.getAttributes().put(CLIENT_RESPONSE_ATTR, res);
-		}).then(chain.filter(exchange));
+		return recordLatency(response, context.getHedgePolicy());
+	}
+
+	/**
+	 * Record the time until the response in the given policy, used to compute the hedge
+	 * delay. The policy may be {@code null}.
+	 */
+	static <T> Mono<T> recordLatency(Mono<T> response, HedgePolicy hedgePolicy) {
+		if (hedgePolicy == null) {
+			return response;
+		}
+		return Mono.defer(() -> {
+			long start = System.nanoTime();
+			return response.doOnNext(res -> hedgePolicy.recordLatency(System.nanoTime() - start));
+		});
+	}
+
+	/**
+	 * Fail the response with a {@link TimeoutException} if no connection was acquired
+	 * within the connect timeout, or if the response headers did not arrive within the
+	 * response timeout once connected. Either timeout may be {@code null}.
+	 */
+	static Mono<HttpClientResponse> withTimeouts(Mono<HttpClientResponse> response,
+			Mono<HttpClientRequest> connected, Duration connectTimeout, Duration responseTimeout) {
+		if (connectTimeout == null && responseTimeout == null) {
+			return response;
+		}
+		// connected 超时以错误结束，同样使 response 失败
+		Mono<?> deadline = (connectTimeout == null ? connected : connected.timeout(connectTimeout))
+				.then(responseTimeout == null ? Mono.never() : Mono.delay(responseTimeout));
+		return response.timeout(deadline);
+	}
+
+	/**
+	 * Race the primary request against a hedged one, sent after the given delay unless
+	 * the primary request failed first. The first response wins and the other request
+	 * is cancelled, or its response discarded if it arrived at the same time. A failed
+	 * hedged request is ignored, the primary one deciding the outcome.
+	 */
+	static <T> Mono<T> hedge(Mono<T> primary, Duration delay, Mono<T> hedged, Consumer<T> discard) {
+		return Mono.defer(() -> {
+			AtomicReference<T> winner = new AtomicReference<>();
+			MonoProcessor<Throwable> primaryFailed = MonoProcessor.create();
+			Mono<T> first = primary.doOnError(primaryFailed::onNext)
+					.filter(res -> win(winner, res, discard));
+			Mono<T> second = Mono.delay(delay)
+					.takeUntilOther(primaryFailed)
+					.flatMap(tick -> hedged)
+					.onErrorResume(e -> Mono.empty())
+					.filter(res -> win(winner, res, discard));
+			// next() 取到第一个响应后取消另一个请求
+			return Flux.mergeDelayError(1, first, second).next();
+		});
+	}
+
+	private static <T> boolean win(AtomicReference<T> winner, T res, Consumer<T> discard) {
+		if (winner.compareAndSet(null, res)) {
+			return true;
+		}
+		discard.accept(res);
+		return false;
+	}
+
+	/**
+	 * Return whether the request may be sent twice: an idempotent method without body.
+	 */
+	static boolean isHedgeable(ServerHttpRequest request) {
+		HttpMethod method = HttpMethod.valueOf(request.getMethod().toString());
+		if (!method.equals(HttpMethod.GET) && !method.equals(HttpMethod.HEAD) && !method.equals(HttpMethod.OPTIONS)) {
+			return false;
+		}
+		return request.getHeaders().getContentLength() <= 0 && !HttpHeadersBridge.isChunked(request.getHeaders());
+	}
+
+	/**
+	 * Send the body without flushing each buffer. The write buffer water mark of the
+	 * channel is lowered to the batch size, so that reactor-netty flushes as soon as
+	 * that many bytes are pending, and a timer flushes whatever is left after the max
+	 * delay.
+	 */
+	static Publisher<Void> sendBatched(HttpClientRequest proxyRequest, Flux<ByteBuf> body, FlushStrategy strategy) {
+		return batched(proxyRequest.context().channel(), strategy,
+				Mono.defer(() -> Mono.from(proxyRequest.sendHeaders().send(body))));
+	}
+
+	/**
+	 * Apply the batch settings to the channel for the duration of the given send. They
+	 * are set when the send is subscribed and restored however it ends, completed,
+	 * failed or cancelled, since the channel goes back to the pool afterwards.
+	 * <p>The timer flushes below the reactive bridge, since the bridge itself only
+	 * drains its pending writes on flush.
+	 */
+	static Mono<Void> batched(Channel channel, FlushStrategy strategy, Mono<Void> send) {
+		return Mono.using(() -> new BatchedChannel(channel, strategy), batch -> send,
+				BatchedChannel::restore, true);
+	}
+
+	/**
+	 * Saved water mark and flush timer of a channel sending a batched body.
+	 */
+	private static class BatchedChannel {
+
+		private final Channel channel;
+
+		private final WriteBufferWaterMark waterMark;
+
+		private final ScheduledFuture<?> flushTimer;
+
+		BatchedChannel(Channel channel, FlushStrategy strategy) {
+			this.channel = channel;
+			this.waterMark = channel.config().getWriteBufferWaterMark();
+			int maxSize = strategy.getMaxSize();
+			channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(maxSize / 2, maxSize));
+
+			ChannelHandlerContext bridge = channel.pipeline().context(NettyPipeline.ReactiveBridge);
+			long delay = strategy.getMaxDelay().toNanos();
+			this.flushTimer = channel.eventLoop()
+					.scheduleAtFixedRate(bridge::flush, delay, delay, TimeUnit.NANOSECONDS);
+		}
+
+		void restore() {
+			this.flushTimer.cancel(false);
+			this.channel.config().setWriteBufferWaterMark(this.waterMark);
+		}
+	}
+
+	/**
+	 * Return the buffer to write to the proxied request. A buffer read by the Netty
+	 * server is passed on as is: the request body already retained it for its consumer,
+	 * and the client releases that reference once written.
+	 */
+	static ByteBuf toByteBuf(DataBuffer buffer) {
+		if (buffer instanceof NettyDataBuffer) {
+			return ((NettyDataBuffer) buffer).getNativeBuffer();
+		}
+		return Unpooled.wrappedBuffer(buffer.asByteBuffer());
 	}
 }
@@ -19,16 +19,20 @@ package org.springframework.cloud.gateway.filter;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.gateway.support.GatewayContext;
 import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.NettyDataBuffer;
 import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.ipc.netty.http.client.HttpClientResponse;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author Spencer Gibb
@@ -39,6 +43,12 @@ public class NettyWriteResponseFilter implements GlobalFilter, Ordered {
 
 	public static final int WRITE_RESPONSE_FILTER_ORDER = -1;
 
+	/**
+	 * Media types whose every chunk is flushed to the client as soon as it is received.
+	 */
+	private static final List<MediaType> STREAMING_MEDIA_TYPES = Arrays.asList(
+			MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_STREAM_JSON);
+
 	@Override
 	public int getOrder() {
 		return WRITE_RESPONSE_FILTER_ORDER;
@@ -50,9 +60,8 @@ public class NettyWriteResponseFilter implements GlobalFilter, Ordered {
 		// until the WebHandler is run
 		return chain.filter(exchange).then(Mono.defer(() -> {
 		    // 获得 Response
-			HttpClientResponse clientResponse = exchange.getAttribute(CLIENT_RESPONSE_ATTR);
-			// HttpClientResponse clientResponse = getAttribute(exchange, CLIENT_RESPONSE_ATTR, HttpClientResponse.class);
-			if (clientResponse == null) {
+			Object clientResponse = GatewayContext.get(exchange).getClientResponse();
+			if (!(clientResponse instanceof HttpClientResponse)) {
 				return Mono.empty();
 			}
 			log.trace("NettyWriteResponseFilter start");
@@ -61,11 +70,30 @@ public class NettyWriteResponseFilter implements GlobalFilter, Ordered {
 			// 将 Netty Response 写回给客户端。
 			NettyDataBufferFactory factory = (NettyDataBufferFactory) response.bufferFactory();
 			//TODO: what if it's not netty
-			final Flux<NettyDataBuffer> body = clientResponse.receive()
+			final Flux<NettyDataBuffer> received = ((HttpClientResponse) clientResponse).receive()
 					.retain() // ByteBufFlux => ByteBufFlux
 					.map(factory::wrap); // ByteBufFlux  => Flux<NettyDataBuffer>
+			// 交给 route filter 注册的装饰器，例如 ResponseCache 在此复制 body
+			final Flux<DataBuffer> body = GatewayContext.get(exchange).decorateResponseBody(received);
+
+			// 流式响应每个 chunk 都立即 flush，降低延迟
+			if (isStreamingMediaType(response.getHeaders().getContentType())) {
+				return response.writeAndFlushWith(body.map(Flux::just));
+			}
 			return response.writeWith(body);
 		}));
 	}
 
+	static boolean isStreamingMediaType(MediaType contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		for (MediaType mediaType : STREAMING_MEDIA_TYPES) {
+			if (mediaType.isCompatibleWith(contentType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.filter;
+
+import java.util.Collection;
+
+/**
+ * {@link GlobalFilter} that sends the request to the URL in the
+ * {@link org.springframework.cloud.gateway.support.ServerWebExchangeUtils#GATEWAY_REQUEST_URL_ATTR
+ * GATEWAY_REQUEST_URL_ATTR} exchange attribute. Routing filters are not added to the
+ * filter chain of every route. Once all other filters ran,
+ * {@link org.springframework.cloud.gateway.handler.FilteringWebHandler FilteringWebHandler}
+ * only runs the routing filters registered for the scheme of the request URL, in their
+ * order. Registering a routing filter bean for a new scheme makes routes with that
+ * scheme routable.
+ */
+public interface RoutingFilter extends GlobalFilter {
+
+	/**
+	 * @return the schemes of the request URLs this filter routes, for example
+	 * {@code http} and {@code https}
+	 */
+	Collection<String> getSchemes();
+
+}
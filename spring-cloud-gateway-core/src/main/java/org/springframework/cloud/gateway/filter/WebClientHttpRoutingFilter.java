@@ -17,12 +17,19 @@
 
 package org.springframework.cloud.gateway.filter;
 
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.cloud.gateway.support.HedgePolicy;
 import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.BodyExtractors;
 import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClient.RequestBodySpec;
 import org.springframework.web.reactive.function.client.WebClient.RequestHeadersSpec;
@@ -30,13 +37,18 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.*;
 
 /**
  * @author Spencer Gibb
  */
-public class WebClientHttpRoutingFilter implements GlobalFilter, Ordered {
+public class WebClientHttpRoutingFilter implements RoutingFilter, Ordered {
 
 	private final WebClient webClient;
 
@@ -49,22 +61,70 @@ public class WebClientHttpRoutingFilter implements GlobalFilter, Ordered {
 		return Ordered.LOWEST_PRECEDENCE;
 	}
 
+	@Override
+	public Collection<String> getSchemes() {
+		return Arrays.asList("http", "https");
+	}
+
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 	    // 获得 requestUrl
-		URI requestUrl = exchange.getRequiredAttribute(GATEWAY_REQUEST_URL_ATTR);
+		GatewayContext context = GatewayContext.get(exchange);
+		URI requestUrl = context.getRequestUrl();
+		Assert.notNull(requestUrl, "Required attribute '" + GATEWAY_REQUEST_URL_ATTR + "' is missing");
 
         // 判断是否能够处理
         String scheme = requestUrl.getScheme();
-		if (isAlreadyRouted(exchange) || (!scheme.equals("http") && !scheme.equals("https"))) {
+		if (context.isAlreadyRouted() || (!scheme.equals("http") && !scheme.equals("https"))) {
 			return chain.filter(exchange);
 		}
 
         // 设置已经路由
-		setAlreadyRouted(exchange);
+		context.setAlreadyRouted();
 
 		ServerHttpRequest request = exchange.getRequest();
 
+		// 请求
+		Mono<ClientResponse> response = send(context, request, requestUrl, false);
+
+		// 对冲请求，与 NettyRoutingFilter 相同
+		HedgePolicy hedgePolicy = context.getHedgePolicy();
+		Duration hedgeDelay = hedgePolicy == null ? null : hedgePolicy.getDelay();
+		Supplier<URI> alternate = context.getAlternateRequestUrl();
+		if (hedgeDelay != null && alternate != null && NettyRoutingFilter.isHedgeable(request)) {
+			response = NettyRoutingFilter.hedge(response, hedgeDelay, Mono.fromSupplier(alternate)
+					.flatMap(alternateUrl -> send(context, request, alternateUrl, true)),
+					WebClientHttpRoutingFilter::discard);
+		}
+
+		return response
+				// .log("webClient route")
+				.doOnNext(res -> {
+					ServerHttpResponse serverResponse = exchange.getResponse();
+
+					// Response Header
+					serverResponse.getHeaders().putAll(res.headers().asHttpHeaders());
+
+					// Response Status
+					serverResponse.setStatusCode(res.statusCode());
+
+                    // 设置 Response 到 CLIENT_RESPONSE_ATTR
+					// Defer committing the response until all route filters have run
+					// Put client response as ServerWebExchange attribute and write response later NettyWriteResponseFilter
+					context.setClientResponse(res);
+				}).then().onErrorResume(TimeoutException.class, e -> {
+					// 超时返回 504，不提交响应，Retry 仍可重试
+					setResponseStatus(exchange, HttpStatus.GATEWAY_TIMEOUT);
+					return Mono.empty();
+				}).then(chain.filter(exchange));
+	}
+
+	/**
+	 * Send the request to the given url, bounded by the timeouts of the route. A hedged
+	 * request goes without body.
+	 */
+	private Mono<ClientResponse> send(GatewayContext context, ServerHttpRequest request, URI requestUrl,
+			boolean hedged) {
 		//TODO: support forms
         // Request Method
 		HttpMethod method = request.getMethod();
@@ -79,29 +139,38 @@ public class WebClientHttpRoutingFilter implements GlobalFilter, Ordered {
 
 		// Request Body
 		RequestHeadersSpec<?> headersSpec;
-		if (requiresBody(method)) {
+		if (!hedged && requiresBody(method)) {
 			headersSpec = bodySpec.body(BodyInserters.fromDataBuffers(request.getBody()));
 		} else {
 			headersSpec = bodySpec;
 		}
 
-		return headersSpec.exchange()
-				// .log("webClient route")
-				.flatMap(res -> {
-					ServerHttpResponse response = exchange.getResponse();
-
-					// Response Header
-					response.getHeaders().putAll(res.headers().asHttpHeaders());
+		Mono<ClientResponse> response = withTimeout(headersSpec.exchange(), context.getConnectTimeout(),
+				context.getResponseTimeout());
+		return NettyRoutingFilter.recordLatency(response, context.getHedgePolicy());
+	}
 
-					// Response Status
-					response.setStatusCode(res.statusCode());
+	/**
+	 * Fail the response with a {@link TimeoutException} if the response headers did not
+	 * arrive within the connect and response timeouts added up. Unlike reactor-netty,
+	 * WebClient does not tell when the connection was acquired, so both bound the time
+	 * from the request on. Either timeout may be {@code null}.
+	 */
+	static Mono<ClientResponse> withTimeout(Mono<ClientResponse> response, Duration connectTimeout,
+			Duration responseTimeout) {
+		if (connectTimeout == null && responseTimeout == null) {
+			return response;
+		}
+		Duration timeout = (connectTimeout == null ? Duration.ZERO : connectTimeout)
+				.plus(responseTimeout == null ? Duration.ZERO : responseTimeout);
+		return response.timeout(timeout);
+	}
 
-                    // 设置 Response 到 CLIENT_RESPONSE_ATTR
-					// Defer committing the response until all route filters have run
-					// Put client response as ServerWebExchange attribute and write response later NettyWriteResponseFilter
-					exchange.getAttributes().put(CLIENT_RESPONSE_ATTR, res);
-					return chain.filter(exchange);
-				});
+	/**
+	 * Release the body of a response that lost a hedging race.
+	 */
+	private static void discard(ClientResponse response) {
+		response.body(BodyExtractors.toDataBuffers()).subscribe(DataBufferUtils::release);
 	}
 
 	private boolean requiresBody(HttpMethod method) {
@@ -19,6 +19,7 @@ package org.springframework.cloud.gateway.filter;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.gateway.support.GatewayContext;
 import org.springframework.core.Ordered;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.reactive.function.BodyExtractors;
@@ -26,7 +27,6 @@ import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
 
 /**
  * @author Spencer Gibb
@@ -48,14 +48,17 @@ public class WebClientWriteResponseFilter implements GlobalFilter, Ordered {
 		// until the WebHandler is run
 		return chain.filter(exchange).then(Mono.defer(() -> {
 		    // 获得 Response
-			ClientResponse clientResponse = exchange.getAttribute(CLIENT_RESPONSE_ATTR);
-			if (clientResponse == null) {
+			// 其它 RoutingFilter（如 Http2RoutingFilter）的 Response 由各自的 filter 写回
+			GatewayContext context = GatewayContext.get(exchange);
+			Object clientResponse = context.getClientResponse();
+			if (!(clientResponse instanceof ClientResponse)) {
 				return Mono.empty();
 			}
 			log.trace("WebClientWriteResponseFilter start");
 			ServerHttpResponse response = exchange.getResponse();
 
-			return response.writeWith(clientResponse.body(BodyExtractors.toDataBuffers())).log("webClient response");
+			return response.writeWith(context.decorateResponseBody(
+					((ClientResponse) clientResponse).body(BodyExtractors.toDataBuffers()))).log("webClient response");
 		}));
 	}
 
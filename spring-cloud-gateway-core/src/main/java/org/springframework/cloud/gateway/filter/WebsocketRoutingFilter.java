@@ -12,6 +12,8 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -20,7 +22,7 @@ import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.*
 /**
  * @author Spencer Gibb
  */
-public class WebsocketRoutingFilter implements GlobalFilter, Ordered {
+public class WebsocketRoutingFilter implements RoutingFilter, Ordered {
 	public static final String SEC_WEBSOCKET_PROTOCOL = "Sec-WebSocket-Protocol";
 
 	private final WebSocketClient webSocketClient;
@@ -41,6 +43,11 @@ public class WebsocketRoutingFilter implements GlobalFilter, Ordered {
 		return Ordered.LOWEST_PRECEDENCE;
 	}
 
+	@Override
+	public Collection<String> getSchemes() {
+		return Arrays.asList("ws", "wss");
+	}
+
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         // 获得 requestUrl
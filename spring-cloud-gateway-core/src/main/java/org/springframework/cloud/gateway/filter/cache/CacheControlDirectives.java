@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Directives of the {@code Cache-Control} headers of a request or a response.
+ */
+public class CacheControlDirectives {
+
+	private final Map<String, String> directives;
+
+	private CacheControlDirectives(Map<String, String> directives) {
+		this.directives = directives;
+	}
+
+	public static CacheControlDirectives of(HttpHeaders headers) {
+		List<String> values = headers.get(HttpHeaders.CACHE_CONTROL);
+		if (values == null || values.isEmpty()) {
+			return new CacheControlDirectives(Collections.emptyMap());
+		}
+		Map<String, String> directives = new LinkedHashMap<>();
+		for (String value : values) {
+			parse(value, directives);
+		}
+		return new CacheControlDirectives(directives);
+	}
+
+	/**
+	 * Parse the comma separated directives, commas within quoted values such as
+	 * {@code private="Set-Cookie, X-Token"} do not separate directives.
+	 */
+	private static void parse(String value, Map<String, String> directives) {
+		int start = 0;
+		boolean quoted = false;
+		for (int i = 0; i <= value.length(); i++) {
+			char c = i < value.length() ? value.charAt(i) : ',';
+			if (c == '"') {
+				quoted = !quoted;
+			}
+			else if (c == ',' && !quoted) {
+				String directive = value.substring(start, i).trim();
+				if (!directive.isEmpty()) {
+					int equals = directive.indexOf('=');
+					String name = equals < 0 ? directive : directive.substring(0, equals).trim();
+					String argument = equals < 0 ? null : unquote(directive.substring(equals + 1).trim());
+					directives.put(name.toLowerCase(Locale.ENGLISH), argument);
+				}
+				start = i + 1;
+			}
+		}
+	}
+
+	private static String unquote(String argument) {
+		if (argument.length() >= 2 && argument.startsWith("\"") && argument.endsWith("\"")) {
+			return argument.substring(1, argument.length() - 1);
+		}
+		return argument;
+	}
+
+	public boolean has(String name) {
+		return this.directives.containsKey(name);
+	}
+
+	/**
+	 * Return the delta seconds argument of the directive, or -1 if it is absent or
+	 * not a number.
+	 */
+	public long seconds(String name) {
+		String argument = this.directives.get(name);
+		if (argument == null) {
+			return -1;
+		}
+		try {
+			long seconds = Long.parseLong(argument);
+			return seconds < 0 ? -1 : seconds;
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.ByteBuf;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+/**
+ * A response held by the {@link ResponseCache}, its body in a pooled direct
+ * {@link ByteBuf} shared by every request it is served to.
+ *
+ * <p>The body is released once the response has been evicted and the buffers handed
+ * out by {@link #retainedBody()} have been written, each of them holding a reference.
+ */
+public class CachedResponse {
+
+	private final HttpStatus statusCode;
+
+	private final HttpHeaders headers;
+
+	private final ByteBuf body;
+
+	private final Map<String, List<String>> varyValues;
+
+	private final long storedAt;
+
+	private final long initialAge;
+
+	private final Duration timeToLive;
+
+	/**
+	 * 缓存自身持有的引用，为 0 后不再发放 body
+	 */
+	private final AtomicInteger references = new AtomicInteger(1);
+
+	/**
+	 * @param headers the response headers, without hop-by-hop headers
+	 * @param body the body, owned by the cached response from now on
+	 * @param varyValues the values of the request headers named by {@code Vary}
+	 * @param storedAt the time the response was received, in milliseconds
+	 * @param initialAge the age of the response when received, in seconds
+	 * @param timeToLive how long the response stays fresh from {@code storedAt}
+	 */
+	public CachedResponse(HttpStatus statusCode, HttpHeaders headers, ByteBuf body,
+			Map<String, List<String>> varyValues, long storedAt, long initialAge, Duration timeToLive) {
+		this.statusCode = statusCode;
+		this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+		this.body = body;
+		this.varyValues = varyValues;
+		this.storedAt = storedAt;
+		this.initialAge = initialAge;
+		this.timeToLive = timeToLive;
+	}
+
+	public HttpStatus getStatusCode() {
+		return this.statusCode;
+	}
+
+	public HttpHeaders getHeaders() {
+		return this.headers;
+	}
+
+	public int getBodySize() {
+		return this.body.readableBytes();
+	}
+
+	public Duration getTimeToLive() {
+		return this.timeToLive;
+	}
+
+	public String getETag() {
+		return this.headers.getETag();
+	}
+
+	/**
+	 * Return the {@code Last-Modified} date, before the epoch if there is none.
+	 */
+	public Instant getLastModified() {
+		return Instant.ofEpochMilli(this.headers.getLastModified());
+	}
+
+	/**
+	 * Return the value of the {@code Age} header when served at the given time.
+	 */
+	public long getAge(long now) {
+		return this.initialAge + Math.max(0, now - this.storedAt) / 1000;
+	}
+
+	/**
+	 * Return whether the request has the same values as the stored request for every
+	 * header named by {@code Vary}.
+	 */
+	public boolean matches(HttpHeaders requestHeaders) {
+		for (Map.Entry<String, List<String>> entry : this.varyValues.entrySet()) {
+			List<String> values = requestHeaders.getOrDefault(entry.getKey(), Collections.emptyList());
+			if (!Objects.equals(entry.getValue(), values)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return a duplicate of the body holding its own reference, to be released by
+	 * whoever writes it, or {@code null} if the response has been evicted meanwhile.
+	 */
+	public ByteBuf retainedBody() {
+		for (;;) {
+			int count = this.references.get();
+			if (count == 0) {
+				return null;
+			}
+			if (this.references.compareAndSet(count, count + 1)) {
+				break;
+			}
+		}
+		try {
+			return this.body.retainedDuplicate();
+		}
+		finally {
+			release();
+		}
+	}
+
+	/**
+	 * Release the reference held by the cache.
+	 */
+	void release() {
+		if (this.references.decrementAndGet() == 0) {
+			this.body.release();
+		}
+	}
+
+}
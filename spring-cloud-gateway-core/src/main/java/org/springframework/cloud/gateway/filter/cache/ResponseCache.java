@@ -0,0 +1,222 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.cache;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Bounded cache of proxied responses, stored by the {@code ResponseCache} route
+ * filter.
+ *
+ * <p>The cache is bounded by the size of the bodies it holds. Caffeine picks the
+ * entries to evict with its frequency based W-TinyLFU policy, so a burst of responses
+ * read once does not push out the ones read often. Every entry expires once it is no
+ * longer fresh, it is never served stale nor revalidated.
+ */
+public class ResponseCache {
+
+	private final Cache<String, CachedResponse> cache;
+
+	private final ResponseCacheProperties properties;
+
+	private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+
+	public ResponseCache(ResponseCacheProperties properties) {
+		this.properties = properties;
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(properties.getMaxSize())
+				.weigher((String key, CachedResponse response) -> response.getBodySize())
+				.expireAfter(new FreshnessExpiry())
+				// 在调用线程上淘汰并释放，不占用 ForkJoinPool
+				.executor(Runnable::run)
+				.removalListener((String key, CachedResponse response, RemovalCause cause) -> {
+					if (response != null) {
+						response.release();
+					}
+				})
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * Return the fresh response stored for the key whose {@code Vary} headers match
+	 * the request, or {@code null}.
+	 */
+	public CachedResponse get(String key, HttpHeaders requestHeaders) {
+		CachedResponse response = this.cache.getIfPresent(key);
+		return response != null && response.matches(requestHeaders) ? response : null;
+	}
+
+	/**
+	 * Store the response, replacing and releasing the one stored for the key.
+	 */
+	public void put(String key, CachedResponse response) {
+		this.cache.put(key, response);
+	}
+
+	public void invalidateAll() {
+		this.cache.invalidateAll();
+	}
+
+	public ByteBufAllocator getAllocator() {
+		return this.allocator;
+	}
+
+	public int getMaxEntrySize() {
+		return this.properties.getMaxEntrySize();
+	}
+
+	/**
+	 * @return the size, hit ratio and eviction count of the cache
+	 */
+	public Map<String, Object> statistics() {
+		CacheStats stats = this.cache.stats();
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("size", this.cache.estimatedSize());
+		statistics.put("bodyBytes", this.cache.policy().eviction()
+				.map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+		statistics.put("maxSize", this.properties.getMaxSize());
+		statistics.put("hitCount", stats.hitCount());
+		statistics.put("missCount", stats.missCount());
+		statistics.put("hitRate", stats.hitRate());
+		statistics.put("evictionCount", stats.evictionCount());
+		return statistics;
+	}
+
+	/**
+	 * Return how long a response may be served from the cache, or {@code null} if it
+	 * must not be stored.
+	 *
+	 * <p>Only {@code 200} responses with an explicit freshness lifetime, given by
+	 * {@code s-maxage}, {@code max-age} or {@code Expires}, are stored. Responses marked
+	 * {@code no-store}, {@code no-cache} or {@code private}, varying on every header,
+	 * setting a cookie, or answering an authorized request that is not explicitly
+	 * shareable are not.
+	 * @param now the time the response was received, in milliseconds
+	 */
+	public static Duration timeToLive(HttpHeaders requestHeaders, HttpStatus status, HttpHeaders responseHeaders,
+			long now) {
+		if (status != HttpStatus.OK) {
+			return null;
+		}
+		CacheControlDirectives directives = CacheControlDirectives.of(responseHeaders);
+		if (directives.has("no-store") || directives.has("no-cache") || directives.has("private")) {
+			return null;
+		}
+		if (responseHeaders.getVary().contains("*") || responseHeaders.containsKey(HttpHeaders.SET_COOKIE)) {
+			return null;
+		}
+		if (requestHeaders.containsKey(HttpHeaders.AUTHORIZATION) && !directives.has("public")
+				&& !directives.has("s-maxage") && !directives.has("must-revalidate")) {
+			return null;
+		}
+
+		long lifetime = directives.seconds("s-maxage");
+		if (lifetime < 0) {
+			lifetime = directives.seconds("max-age");
+		}
+		if (lifetime < 0) {
+			long expires = date(responseHeaders, HttpHeaders.EXPIRES);
+			if (expires < 0) {
+				return null;
+			}
+			long date = date(responseHeaders, HttpHeaders.DATE);
+			lifetime = (expires - (date < 0 ? now : date)) / 1000;
+		}
+		long remaining = lifetime - age(responseHeaders);
+		return remaining > 0 ? Duration.ofSeconds(remaining) : null;
+	}
+
+	/**
+	 * Return the value of the {@code Age} header in seconds, 0 if absent or invalid.
+	 */
+	public static long age(HttpHeaders responseHeaders) {
+		String age = responseHeaders.getFirst("Age");
+		if (age == null) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Long.parseLong(age.trim()));
+		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Return the date header in milliseconds, -1 if absent or invalid, an invalid
+	 * {@code Expires} such as {@code 0} meaning already expired.
+	 */
+	private static long date(HttpHeaders headers, String name) {
+		try {
+			return headers.getFirstDate(name);
+		}
+		catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Return the values of the request headers named by the {@code Vary} header of
+	 * the response.
+	 */
+	public static Map<String, List<String>> varyValues(HttpHeaders requestHeaders, HttpHeaders responseHeaders) {
+		Map<String, List<String>> values = new LinkedHashMap<>();
+		for (String name : responseHeaders.getVary()) {
+			values.put(name, requestHeaders.getOrDefault(name, Collections.emptyList()));
+		}
+		return values;
+	}
+
+	/**
+	 * Expires an entry once its freshness lifetime is over, reads do not extend it.
+	 */
+	private static class FreshnessExpiry implements Expiry<String, CachedResponse> {
+
+		@Override
+		public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+			return value.getTimeToLive().toNanos();
+		}
+
+		@Override
+		public long expireAfterUpdate(String key, CachedResponse value, long currentTime, long currentDuration) {
+			return value.getTimeToLive().toNanos();
+		}
+
+		@Override
+		public long expireAfterRead(String key, CachedResponse value, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+	}
+
+}
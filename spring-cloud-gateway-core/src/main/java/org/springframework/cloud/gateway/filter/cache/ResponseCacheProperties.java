@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the {@link ResponseCache}.
+ */
+@ConfigurationProperties("spring.cloud.gateway.response-cache")
+public class ResponseCacheProperties {
+
+	/**
+	 * Maximum number of body bytes held by the cache, in direct memory.
+	 */
+	private long maxSize = 64 * 1024 * 1024;
+
+	/**
+	 * Maximum body size of a single response, larger responses are not cached.
+	 */
+	private int maxEntrySize = 1024 * 1024;
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	public void setMaxEntrySize(int maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	@Override
+	public String toString() {
+		return "ResponseCacheProperties{" +
+				"maxSize=" + maxSize +
+				", maxEntrySize=" + maxEntrySize +
+				'}';
+	}
+}
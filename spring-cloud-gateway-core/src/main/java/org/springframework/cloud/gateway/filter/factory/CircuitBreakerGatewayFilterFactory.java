@@ -0,0 +1,208 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.CircuitBreaker;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.tuple.Tuple;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.DispatcherHandler;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setResponseStatus;
+
+/**
+ * Guard a route with a {@link CircuitBreaker}, counting as failed the runs of the rest
+ * of the filter chain that end with an error or a {@code 5xx} status. While the breaker
+ * is open, requests are not proxied: they are handed to the local handler at
+ * {@code fallbackUri}, a {@code forward:} URI, or answered with
+ * {@code 503 Service Unavailable}. Failed requests are also handed to the fallback,
+ * as long as the response is not committed.
+ * <p>Unlike {@link HystrixGatewayFilterFactory}, the chain runs on the calling thread
+ * without an {@code Observable} bridge, and the breaker opens on slow calls too.
+ */
+public class CircuitBreakerGatewayFilterFactory implements GatewayFilterFactory {
+
+	private static final Log log = LogFactory.getLog(CircuitBreakerGatewayFilterFactory.class);
+
+	public static final String FALLBACK_URI_KEY = "fallbackUri";
+	public static final String FAILURE_RATE_THRESHOLD_KEY = "failureRateThreshold";
+	public static final String SLOW_CALL_RATE_THRESHOLD_KEY = "slowCallRateThreshold";
+	public static final String SLOW_CALL_DURATION_KEY = "slowCallDuration";
+	public static final String MINIMUM_CALLS_KEY = "minimumCalls";
+	public static final String WINDOW_SIZE_KEY = "windowSize";
+	public static final String WAIT_DURATION_KEY = "waitDuration";
+
+	public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+	public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 100;
+	public static final Duration DEFAULT_SLOW_CALL_DURATION = Duration.ofSeconds(2);
+	public static final int DEFAULT_MINIMUM_CALLS = 20;
+	public static final int DEFAULT_WINDOW_SIZE = 100;
+	public static final Duration DEFAULT_WAIT_DURATION = Duration.ofSeconds(5);
+
+	private final ObjectProvider<DispatcherHandler> dispatcherHandler;
+
+	/**
+	 * Create a factory whose filters have no {@code fallbackUri} to forward to.
+	 */
+	public CircuitBreakerGatewayFilterFactory() {
+		this(null);
+	}
+
+	public CircuitBreakerGatewayFilterFactory(ObjectProvider<DispatcherHandler> dispatcherHandler) {
+		this.dispatcherHandler = dispatcherHandler;
+	}
+
+	@Override
+	public List<String> argNames() {
+		return Arrays.asList(NAME_KEY, FALLBACK_URI_KEY, FAILURE_RATE_THRESHOLD_KEY, SLOW_CALL_RATE_THRESHOLD_KEY,
+				SLOW_CALL_DURATION_KEY, MINIMUM_CALLS_KEY, WINDOW_SIZE_KEY, WAIT_DURATION_KEY);
+	}
+
+	@Override
+	public boolean validateArgs() {
+		return false;
+	}
+
+	@Override
+	public GatewayFilter apply(Tuple args) {
+		final Breaker breaker = new Breaker(args);
+		return breaker::filter;
+	}
+
+	/**
+	 * Breaker and fallback of one route.
+	 */
+	class Breaker {
+
+		private final String name;
+
+		private final URI fallbackUri;
+
+		private final CircuitBreaker circuitBreaker;
+
+		Breaker(Tuple args) {
+			this.name = args.hasFieldName(NAME_KEY) ? args.getString(NAME_KEY) : null;
+			if (args.hasFieldName(FALLBACK_URI_KEY)) {
+				this.fallbackUri = URI.create(args.getString(FALLBACK_URI_KEY));
+				Assert.isTrue("forward".equals(this.fallbackUri.getScheme()),
+						"Only forward: fallback URIs are supported: " + this.fallbackUri);
+			}
+			else {
+				this.fallbackUri = null;
+			}
+			this.circuitBreaker = new CircuitBreaker(
+					intArg(args, WINDOW_SIZE_KEY, DEFAULT_WINDOW_SIZE),
+					intArg(args, MINIMUM_CALLS_KEY, DEFAULT_MINIMUM_CALLS),
+					intArg(args, FAILURE_RATE_THRESHOLD_KEY, DEFAULT_FAILURE_RATE_THRESHOLD),
+					intArg(args, SLOW_CALL_RATE_THRESHOLD_KEY, DEFAULT_SLOW_CALL_RATE_THRESHOLD),
+					args.hasFieldName(SLOW_CALL_DURATION_KEY)
+							? Duration.ofMillis(args.getLong(SLOW_CALL_DURATION_KEY)) : DEFAULT_SLOW_CALL_DURATION,
+					args.hasFieldName(WAIT_DURATION_KEY)
+							? Duration.ofMillis(args.getLong(WAIT_DURATION_KEY)) : DEFAULT_WAIT_DURATION);
+		}
+
+		Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			CircuitBreaker.Permit permit = this.circuitBreaker.tryAcquire();
+			if (permit == CircuitBreaker.Permit.REJECTED) {
+				if (log.isTraceEnabled()) {
+					log.trace("Circuit breaker " + this.name + " rejected " + exchange.getRequest().getURI());
+				}
+				return fallback(exchange, null);
+			}
+
+			ExchangeCheckpoint checkpoint = this.fallbackUri == null ? null : new ExchangeCheckpoint(exchange);
+			return Mono.defer(() -> {
+				long start = System.nanoTime();
+				return chain.filter(exchange)
+						.then(Mono.fromCallable(() -> {
+							boolean failed = isServerError(exchange);
+							this.circuitBreaker.onResult(permit, System.nanoTime() - start, failed);
+							return failed && canFallback(exchange);
+						}))
+						// 只处理被保护的调用链的错误，fallback 的错误直接向上传递
+						.onErrorResume(e -> {
+							this.circuitBreaker.onResult(permit, System.nanoTime() - start, true);
+							return canFallback(exchange) ? Mono.just(true) : Mono.error(e);
+						})
+						.doOnCancel(() -> this.circuitBreaker.release(permit));
+			}).flatMap(failed -> failed ? fallback(exchange, checkpoint) : Mono.empty());
+		}
+
+		private boolean isServerError(ServerWebExchange exchange) {
+			HttpStatus status = exchange.getResponse().getStatusCode();
+			return status != null && status.is5xxServerError();
+		}
+
+		private boolean canFallback(ServerWebExchange exchange) {
+			return this.fallbackUri != null && !exchange.getResponse().isCommitted();
+		}
+
+		/**
+		 * Hand the exchange to the local handler at {@code fallbackUri}, as
+		 * {@code ForwardRoutingFilter} does, or answer it with
+		 * {@code 503 Service Unavailable} if the route has no fallback.
+		 */
+		private Mono<Void> fallback(ServerWebExchange exchange, ExchangeCheckpoint checkpoint) {
+			if (this.fallbackUri == null) {
+				setResponseStatus(exchange, HttpStatus.SERVICE_UNAVAILABLE);
+				return exchange.getResponse().setComplete();
+			}
+			ObjectProvider<DispatcherHandler> provider = CircuitBreakerGatewayFilterFactory.this.dispatcherHandler;
+			DispatcherHandler dispatcherHandler = provider == null ? null : provider.getIfAvailable();
+			if (dispatcherHandler == null) {
+				return Mono.error(new IllegalStateException("No DispatcherHandler to forward to " + this.fallbackUri));
+			}
+			if (checkpoint != null) {
+				checkpoint.restore();
+			}
+
+			// 保留原请求的 query，路径替换为 fallback 的路径
+			URI requestUrl = UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+					.host(null).port(null).uri(this.fallbackUri).build(true).toUri();
+			GatewayContext context = GatewayContext.get(exchange);
+			context.setRequestUrl(requestUrl);
+			context.setAlreadyRouted();
+			ServerHttpRequest request = exchange.getRequest().mutate().uri(requestUrl).build();
+			return dispatcherHandler.handle(exchange.mutate().request(request).build());
+		}
+
+		CircuitBreaker getCircuitBreaker() {
+			return this.circuitBreaker;
+		}
+	}
+
+	private static int intArg(Tuple args, String key, int defaultValue) {
+		return args.hasFieldName(key) ? args.getInt(key) : defaultValue;
+	}
+
+}
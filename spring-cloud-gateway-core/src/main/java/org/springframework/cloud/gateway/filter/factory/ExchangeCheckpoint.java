@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import org.springframework.cloud.gateway.filter.Http2ClientResponse;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.ipc.netty.http.client.HttpClientResponse;
+
+/**
+ * State a run of the rest of the filter chain changes, restored before the chain is run
+ * again or the exchange is handed to a fallback: the routing state of the context and
+ * the status and headers of the response.
+ */
+class ExchangeCheckpoint {
+
+	private final ServerWebExchange exchange;
+
+	private final GatewayContext.Checkpoint context;
+
+	private final HttpStatus status;
+
+	private final HttpHeaders headers = new HttpHeaders();
+
+	ExchangeCheckpoint(ServerWebExchange exchange) {
+		this.exchange = exchange;
+		this.context = GatewayContext.get(exchange).checkpoint();
+		this.status = exchange.getResponse().getStatusCode();
+		this.headers.putAll(exchange.getResponse().getHeaders());
+	}
+
+	/**
+	 * Discard the proxied response of the run and restore the captured state.
+	 */
+	void restore() {
+		discard(GatewayContext.get(this.exchange).getClientResponse());
+		this.context.restore();
+		ServerHttpResponse response = this.exchange.getResponse();
+		response.setStatusCode(this.status);
+		response.getHeaders().clear();
+		response.getHeaders().putAll(this.headers);
+	}
+
+	/**
+	 * Release a proxied response whose body is not written.
+	 */
+	static void discard(Object clientResponse) {
+		if (clientResponse instanceof HttpClientResponse) {
+			((HttpClientResponse) clientResponse).context().dispose();
+		}
+		else if (clientResponse instanceof ClientResponse) {
+			((ClientResponse) clientResponse).body(BodyExtractors.toDataBuffers())
+					.subscribe(DataBufferUtils::release);
+		}
+		else if (clientResponse instanceof Http2ClientResponse) {
+			((Http2ClientResponse) clientResponse).getBody().subscribe(buffer -> buffer.release());
+		}
+	}
+
+}
@@ -18,10 +18,21 @@
 package org.springframework.cloud.gateway.filter.factory;
 
 import org.springframework.tuple.Tuple;
+import org.springframework.tuple.TupleBuilder;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.cache.ResponseCache;
+
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.NameUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.springframework.cloud.gateway.filter.factory.RedirectToGatewayFilterFactory.STATUS_KEY;
 import static org.springframework.cloud.gateway.filter.factory.RedirectToGatewayFilterFactory.URL_KEY;
@@ -53,11 +64,24 @@ public class GatewayFilters {
 		return new AddResponseHeaderGatewayFilterFactory().apply(args);
 	}
 
+	public static GatewayFilter circuitBreaker(String name, int failureRateThreshold, Duration waitDuration) {
+		Tuple args = tuple().of(NAME_KEY, name,
+				CircuitBreakerGatewayFilterFactory.FAILURE_RATE_THRESHOLD_KEY, failureRateThreshold,
+				CircuitBreakerGatewayFilterFactory.WAIT_DURATION_KEY, waitDuration.toMillis());
+		return new CircuitBreakerGatewayFilterFactory().apply(args);
+	}
+
 	public static GatewayFilter hystrix(String commandName) {
 		Tuple args = tuple().of(NAME_KEY, commandName);
 		return new HystrixGatewayFilterFactory().apply(args);
 	}
 
+	public static GatewayFilter hedge(double percentile, Duration minDelay) {
+		Tuple args = tuple().of(HedgeGatewayFilterFactory.PERCENTILE_KEY, percentile,
+				HedgeGatewayFilterFactory.MIN_DELAY_KEY, minDelay.toMillis());
+		return new HedgeGatewayFilterFactory().apply(args);
+	}
+
 	public static GatewayFilter prefixPath(String prefix) {
 		Tuple args = tuple().of(PrefixPathGatewayFilterFactory.PREFIX_KEY, prefix);
 		return new PrefixPathGatewayFilterFactory().apply(args);
@@ -96,6 +120,42 @@ public class GatewayFilters {
 		return new RemoveResponseHeaderGatewayFilterFactory().apply(args);
 	}
 
+	public static GatewayFilter requestCoalescing(RequestCoalescingProperties properties, String... varyHeaders) {
+		TupleBuilder args = tuple();
+		for (int i = 0; i < varyHeaders.length; i++) {
+			args.put(NameUtils.generateName(i), varyHeaders[i]);
+		}
+		return new RequestCoalescingGatewayFilterFactory(properties).apply(args.build());
+	}
+
+	public static GatewayFilter requestFlush(FlushStrategy strategy) {
+		Tuple args = strategy.isBatched()
+				? tuple().of(RequestFlushGatewayFilterFactory.STRATEGY_KEY, strategy.getMode().name(),
+						RequestFlushGatewayFilterFactory.MAX_SIZE_KEY, strategy.getMaxSize(),
+						RequestFlushGatewayFilterFactory.MAX_DELAY_KEY, strategy.getMaxDelay().toMillis())
+				: tuple().of(RequestFlushGatewayFilterFactory.STRATEGY_KEY, strategy.getMode().name());
+		return new RequestFlushGatewayFilterFactory().apply(args);
+	}
+
+	public static GatewayFilter responseCache(ResponseCache cache) {
+		return new ResponseCacheGatewayFilterFactory(cache).apply(EMPTY_TUPLE);
+	}
+
+	public static GatewayFilter retry(int retries, HttpStatus... statuses) {
+		return retry(retries, Collections.singletonList(HttpMethod.GET), statuses);
+	}
+
+	public static GatewayFilter retry(int retries, List<HttpMethod> methods, HttpStatus... statuses) {
+		TupleBuilder args = tuple().put(RetryGatewayFilterFactory.RETRIES_KEY, retries)
+				.put(RetryGatewayFilterFactory.METHODS_KEY,
+						StringUtils.collectionToCommaDelimitedString(methods));
+		if (statuses.length > 0) {
+			args.put(RetryGatewayFilterFactory.STATUSES_KEY,
+					StringUtils.arrayToCommaDelimitedString(statuses));
+		}
+		return new RetryGatewayFilterFactory().apply(args.build());
+	}
+
 	public static GatewayFilter rewritePath(String regex, String replacement) {
 		Tuple args = tuple().of(REGEXP_KEY, regex, REPLACEMENT_KEY, replacement);
 		return new RewritePathGatewayFilterFactory().apply(args);
@@ -123,4 +183,22 @@ public class GatewayFilters {
 		Tuple args = tuple().of(SetStatusGatewayFilterFactory.STATUS_KEY, status);
 		return new SetStatusGatewayFilterFactory().apply(args);
 	}
+
+	/**
+	 * Bound the connect, response and total time of a route, each one may be
+	 * {@code null}.
+	 */
+	public static GatewayFilter timeout(Duration connectTimeout, Duration responseTimeout, Duration totalTimeout) {
+		TupleBuilder args = tuple();
+		if (connectTimeout != null) {
+			args.put(TimeoutGatewayFilterFactory.CONNECT_TIMEOUT_KEY, connectTimeout.toMillis());
+		}
+		if (responseTimeout != null) {
+			args.put(TimeoutGatewayFilterFactory.RESPONSE_TIMEOUT_KEY, responseTimeout.toMillis());
+		}
+		if (totalTimeout != null) {
+			args.put(TimeoutGatewayFilterFactory.TOTAL_TIMEOUT_KEY, totalTimeout.toMillis());
+		}
+		return new TimeoutGatewayFilterFactory().apply(args.build());
+	}
 }
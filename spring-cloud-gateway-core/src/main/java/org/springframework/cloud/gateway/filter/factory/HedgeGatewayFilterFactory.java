@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.cloud.gateway.support.HedgePolicy;
+import org.springframework.tuple.Tuple;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hedge the requests of a route: when the proxied service has not answered after the
+ * {@code percentile} of its recent latencies, but no sooner than {@code minDelay}
+ * milliseconds, a second request is sent to another instance chosen by the
+ * {@link org.springframework.cloud.gateway.filter.LoadBalancerClientFilter} and the
+ * first response wins.
+ * <p>Only {@code GET}, {@code HEAD} and {@code OPTIONS} requests without body are
+ * hedged, and only on {@code lb} routes proxied by the
+ * {@link org.springframework.cloud.gateway.filter.NettyRoutingFilter} or the
+ * {@link org.springframework.cloud.gateway.filter.WebClientHttpRoutingFilter}.
+ */
+public class HedgeGatewayFilterFactory implements GatewayFilterFactory {
+
+	public static final String PERCENTILE_KEY = "percentile";
+	public static final String MIN_DELAY_KEY = "minDelay";
+
+	public static final double DEFAULT_PERCENTILE = 95;
+
+	public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(10);
+
+	@Override
+	public List<String> argNames() {
+		return Arrays.asList(PERCENTILE_KEY, MIN_DELAY_KEY);
+	}
+
+	@Override
+	public boolean validateArgs() {
+		return false;
+	}
+
+	@Override
+	public GatewayFilter apply(Tuple args) {
+		double percentile = args.hasFieldName(PERCENTILE_KEY) ? args.getDouble(PERCENTILE_KEY) : DEFAULT_PERCENTILE;
+		Duration minDelay = args.hasFieldName(MIN_DELAY_KEY) ? Duration.ofMillis(args.getLong(MIN_DELAY_KEY))
+				: DEFAULT_MIN_DELAY;
+
+		// 每个路由一份延迟统计
+		final HedgePolicy policy = new HedgePolicy(percentile, minDelay);
+		return (exchange, chain) -> {
+			GatewayContext.get(exchange).setHedgePolicy(policy);
+			return chain.filter(exchange);
+		};
+	}
+
+}
@@ -20,14 +20,13 @@ package org.springframework.cloud.gateway.filter.factory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.support.GatewayContext;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.tuple.Tuple;
 
 import java.util.Arrays;
 import java.util.List;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
 
 /**
  * @author Spencer Gibb
@@ -50,14 +49,15 @@ public class PrefixPathGatewayFilterFactory implements GatewayFilterFactory {
 
 		return (exchange, chain) -> {
 			ServerHttpRequest req = exchange.getRequest();
-			addOriginalRequestUrl(exchange, req.getURI());
+			GatewayContext context = GatewayContext.get(exchange);
+			context.addOriginalRequestUrl(req.getURI());
 			String newPath = prefix + req.getURI().getPath();
 
 			ServerHttpRequest request = req.mutate()
 					.path(newPath) // 设置 Path
 					.build();
 
-			exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, request.getURI());
+			context.setRequestUrl(request.getURI());
 
 			if (log.isTraceEnabled()) {
 				log.trace("Prefixed URI with: "+prefix+" -> "+request.getURI());
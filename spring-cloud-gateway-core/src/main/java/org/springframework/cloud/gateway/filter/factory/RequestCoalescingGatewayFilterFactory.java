@@ -0,0 +1,327 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.ReplayProcessor;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.tuple.Tuple;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Collapse identical concurrent {@code GET} and {@code HEAD} requests of a route into
+ * a single proxied request, whose response is written to every one of them.
+ *
+ * <p>Requests are identical when they have the same method, url, and values for the
+ * headers given as arguments, such as {@code Accept} or {@code Accept-Encoding}.
+ * Requests with an {@code Authorization} or {@code Cookie} header are only collapsed
+ * when that header is one of the arguments, so a response is never shared between
+ * users.
+ *
+ * <p>The first request is proxied as usual. The others wait for its response, at most
+ * {@link RequestCoalescingProperties#getMaxWait()} and at most
+ * {@link RequestCoalescingProperties#getMaxWaiters()} of them, and are proxied on
+ * their own otherwise or if the first request fails before its response is written.
+ * The body is replayed to requests joining while it is being written, each chunk kept
+ * until every waiting request has written it.
+ */
+public class RequestCoalescingGatewayFilterFactory implements GatewayFilterFactory {
+
+	private final RequestCoalescingProperties properties;
+
+	private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+	public RequestCoalescingGatewayFilterFactory(RequestCoalescingProperties properties) {
+		this.properties = properties;
+	}
+
+	@Override
+	public GatewayFilter apply(Tuple args) {
+		// 参与 key 的请求头
+		List<String> varyHeaders = new ArrayList<>();
+		if (args != null) {
+			for (Object arg : args.getValues()) {
+				varyHeaders.add(((String) arg).trim());
+			}
+		}
+
+		return (exchange, chain) -> {
+			ServerHttpRequest request = exchange.getRequest();
+			if (!isCoalescable(request, varyHeaders)) {
+				return chain.filter(exchange);
+			}
+			String key = key(GatewayContext.get(exchange).getRoute(), request, varyHeaders);
+			Flight flight = new Flight(key);
+			Flight inFlight = this.flights.putIfAbsent(key, flight);
+			if (inFlight == null) {
+				return lead(exchange, chain, flight);
+			}
+			if (inFlight.join(this.properties.getMaxWaiters())) {
+				return follow(exchange, chain, inFlight);
+			}
+			return chain.filter(exchange);
+		};
+	}
+
+	/**
+	 * Return the number of distinct requests in flight.
+	 */
+	public int getFlightCount() {
+		return this.flights.size();
+	}
+
+	private Mono<Void> lead(ServerWebExchange exchange, GatewayFilterChain chain, Flight flight) {
+		ServerHttpResponse response = exchange.getResponse();
+		GatewayContext.get(exchange).addResponseBodyDecorator(body -> flight.record(response, body));
+		// 响应未经过装饰器就提交（如出错）或请求被取消，等待的请求各自转发
+		response.beforeCommit(() -> {
+			flight.abort();
+			return Mono.empty();
+		});
+		return chain.filter(exchange).doOnError(e -> flight.abort()).doOnCancel(flight::abort);
+	}
+
+	private Mono<Void> follow(ServerWebExchange exchange, GatewayFilterChain chain, Flight flight) {
+		return flight.awaitHead(this.properties.getMaxWait())
+				.map(head -> write(exchange, flight, head))
+				.switchIfEmpty(Mono.fromSupplier(() -> {
+					flight.release();
+					return chain.filter(exchange);
+				}))
+				.flatMap(Function.identity());
+	}
+
+	private Mono<Void> write(ServerWebExchange exchange, Flight flight, Head head) {
+		ServerHttpResponse response = exchange.getResponse();
+		response.setStatusCode(head.status);
+		response.getHeaders().putAll(head.headers);
+		DataBufferFactory factory = response.bufferFactory();
+		Flux<DataBuffer> body = flight.body.map(chunk -> wrap(chunk.retainedDuplicate(), factory));
+		return response.writeWith(body).doFinally(signal -> flight.release());
+	}
+
+	static boolean isCoalescable(ServerHttpRequest request, List<String> varyHeaders) {
+		HttpMethod method = request.getMethod();
+		if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+			return false;
+		}
+		HttpHeaders headers = request.getHeaders();
+		return isVaried(HttpHeaders.AUTHORIZATION, headers, varyHeaders)
+				&& isVaried(HttpHeaders.COOKIE, headers, varyHeaders);
+	}
+
+	private static boolean isVaried(String name, HttpHeaders headers, List<String> varyHeaders) {
+		if (!headers.containsKey(name)) {
+			return true;
+		}
+		for (String varyHeader : varyHeaders) {
+			if (varyHeader.equalsIgnoreCase(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static String key(Route route, ServerHttpRequest request, List<String> varyHeaders) {
+		StringBuilder key = new StringBuilder();
+		if (route != null) {
+			key.append(route.getId()).append(' ');
+		}
+		key.append(request.getMethodValue()).append(' ').append(request.getURI());
+		for (String name : varyHeaders) {
+			key.append('\n').append(name).append(':').append(request.getHeaders().get(name));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Wrap the buffer when the server is Netty, which then releases it once written,
+	 * copy and release it otherwise.
+	 */
+	private static DataBuffer wrap(ByteBuf buffer, DataBufferFactory factory) {
+		if (factory instanceof NettyDataBufferFactory) {
+			return ((NettyDataBufferFactory) factory).wrap(buffer);
+		}
+		try {
+			DataBuffer copy = factory.allocateBuffer(buffer.readableBytes());
+			copy.write(buffer.nioBuffer());
+			return copy;
+		}
+		finally {
+			buffer.release();
+		}
+	}
+
+	/**
+	 * Status and headers of the response of a flight.
+	 */
+	private static class Head {
+
+		private final HttpStatus status;
+
+		private final HttpHeaders headers;
+
+		Head(HttpStatus status, HttpHeaders headers) {
+			this.status = status;
+			this.headers = headers;
+		}
+	}
+
+	/**
+	 * A proxied request and the identical requests waiting for its response.
+	 *
+	 * <p>The chunks of the body are retained until the flight has no holder left: the
+	 * first request until its body has been written, and every waiting request until
+	 * it has written the replayed body or given up waiting.
+	 */
+	private class Flight {
+
+		private final String key;
+
+		private final MonoProcessor<Head> head = MonoProcessor.create();
+
+		private final ReplayProcessor<ByteBuf> body = ReplayProcessor.create();
+
+		private final List<ByteBuf> chunks = new ArrayList<>();
+
+		private final AtomicInteger holders = new AtomicInteger(1);
+
+		private final AtomicInteger waiters = new AtomicInteger();
+
+		private final AtomicBoolean finished = new AtomicBoolean();
+
+		Flight(String key) {
+			this.key = key;
+		}
+
+		/**
+		 * Join the flight as a waiting request, unless it has enough of them or is
+		 * over already.
+		 */
+		boolean join(int maxWaiters) {
+			if (this.waiters.incrementAndGet() > maxWaiters) {
+				this.waiters.decrementAndGet();
+				return false;
+			}
+			for (;;) {
+				int count = this.holders.get();
+				if (count == 0) {
+					this.waiters.decrementAndGet();
+					return false;
+				}
+				if (this.holders.compareAndSet(count, count + 1)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Return the head of the response, empty if it did not come within the
+		 * maximum wait or the first request failed.
+		 */
+		Mono<Head> awaitHead(Duration maxWait) {
+			return this.head.timeout(maxWait).onErrorResume(e -> Mono.empty());
+		}
+
+		/**
+		 * Publish the head of the response and tee its body, as it is written to the
+		 * first request.
+		 */
+		Flux<DataBuffer> record(ServerHttpResponse response, Flux<DataBuffer> body) {
+			if (this.finished.get()) {
+				return body;
+			}
+			HttpHeaders headers = new HttpHeaders();
+			headers.putAll(response.getHeaders());
+			this.head.onNext(new Head(response.getStatusCode(), headers));
+			return body.doOnNext(this::append)
+					.doOnComplete(this.body::onComplete)
+					.doOnError(this.body::onError)
+					.doOnCancel(() -> this.body.onError(new CancellationException("Coalesced request cancelled")))
+					.doFinally(signal -> finish());
+		}
+
+		private void append(DataBuffer dataBuffer) {
+			ByteBuf chunk = dataBuffer instanceof NettyDataBuffer
+					// 共享上游的 ByteBuf，独立的读写索引
+					? ((NettyDataBuffer) dataBuffer).getNativeBuffer().retainedSlice()
+					: Unpooled.copiedBuffer(dataBuffer.asByteBuffer());
+			synchronized (this.chunks) {
+				this.chunks.add(chunk);
+			}
+			this.body.onNext(chunk);
+		}
+
+		/**
+		 * End the flight if the first request fails, is cancelled, or has its response
+		 * committed without the body going through {@link #record}. The waiting
+		 * requests are then proxied on their own.
+		 */
+		void abort() {
+			if (!this.head.isTerminated()) {
+				this.head.onComplete();
+				this.body.onComplete();
+				finish();
+			}
+		}
+
+		private void finish() {
+			if (this.finished.compareAndSet(false, true)) {
+				flights.remove(this.key, this);
+				release();
+			}
+		}
+
+		void release() {
+			if (this.holders.decrementAndGet() == 0) {
+				synchronized (this.chunks) {
+					this.chunks.forEach(ByteBuf::release);
+					this.chunks.clear();
+				}
+			}
+		}
+	}
+
+}
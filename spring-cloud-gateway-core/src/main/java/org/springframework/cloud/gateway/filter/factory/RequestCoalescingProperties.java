@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the {@link RequestCoalescingGatewayFilterFactory}.
+ */
+@ConfigurationProperties("spring.cloud.gateway.filter.request-coalescing")
+public class RequestCoalescingProperties {
+
+	/**
+	 * How long a request waits for the response of the identical request in flight,
+	 * before it is proxied on its own.
+	 */
+	private Duration maxWait = Duration.ofSeconds(5);
+
+	/**
+	 * Maximum number of requests waiting for the same request in flight, further
+	 * requests are proxied on their own.
+	 */
+	private int maxWaiters = 1000;
+
+	public Duration getMaxWait() {
+		return maxWait;
+	}
+
+	public void setMaxWait(Duration maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public int getMaxWaiters() {
+		return maxWaiters;
+	}
+
+	public void setMaxWaiters(int maxWaiters) {
+		this.maxWaiters = maxWaiters;
+	}
+
+	@Override
+	public String toString() {
+		return "RequestCoalescingProperties{" +
+				"maxWait=" + maxWait +
+				", maxWaiters=" + maxWaiters +
+				'}';
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.tuple.Tuple;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Select how the request body of a route is flushed to the proxied service, either
+ * chunk by chunk ({@code EACH}) or in size and time bounded batches ({@code BATCH}).
+ */
+public class RequestFlushGatewayFilterFactory implements GatewayFilterFactory {
+
+	public static final String STRATEGY_KEY = "strategy";
+	public static final String MAX_SIZE_KEY = "maxSize";
+	public static final String MAX_DELAY_KEY = "maxDelay";
+
+	@Override
+	public List<String> argNames() {
+		return Arrays.asList(STRATEGY_KEY, MAX_SIZE_KEY, MAX_DELAY_KEY);
+	}
+
+	@Override
+	public boolean validateArgs() {
+		return false;
+	}
+
+	@Override
+	public GatewayFilter apply(Tuple args) {
+		validateMin(1, args);
+
+		final FlushStrategy strategy = parse(args);
+		return (exchange, chain) -> {
+			GatewayContext.get(exchange).setFlushStrategy(strategy);
+			return chain.filter(exchange);
+		};
+	}
+
+	static FlushStrategy parse(Tuple args) {
+		FlushStrategy.Mode mode = FlushStrategy.Mode.valueOf(args.getString(STRATEGY_KEY).trim().toUpperCase());
+		if (mode == FlushStrategy.Mode.EACH) {
+			return FlushStrategy.EACH;
+		}
+
+		// 未配置时使用默认的批量大小与延迟（毫秒）
+		int maxSize = args.hasFieldName(MAX_SIZE_KEY) ? args.getInt(MAX_SIZE_KEY)
+				: FlushStrategy.DEFAULT_MAX_SIZE;
+		Duration maxDelay = args.hasFieldName(MAX_DELAY_KEY) ? Duration.ofMillis(args.getLong(MAX_DELAY_KEY))
+				: FlushStrategy.DEFAULT_MAX_DELAY;
+		return FlushStrategy.batch(maxSize, maxDelay);
+	}
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import io.netty.buffer.ByteBuf;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.cache.CacheControlDirectives;
+import org.springframework.cloud.gateway.filter.cache.CachedResponse;
+import org.springframework.cloud.gateway.filter.cache.ResponseCache;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.tuple.Tuple;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Serve the {@code GET} requests of a route from a {@link ResponseCache}, following
+ * the {@code Cache-Control}, {@code Expires} and {@code Vary} headers of the proxied
+ * responses.
+ *
+ * <p>A hit is written from the cached buffer without calling the rest of the filter
+ * chain, so neither the routing filter nor the write response filter run, and a
+ * conditional request whose {@code If-None-Match} or {@code If-Modified-Since}
+ * matches is answered with {@code 304}. A miss is proxied as usual, its body copied
+ * into direct memory as it is written to the client and stored once complete.
+ *
+ * <p>A request with {@code Cache-Control: no-store} bypasses the cache, one with
+ * {@code no-cache} or a {@code max-age} below the age of the cached response is
+ * proxied and refreshes the cache.
+ */
+public class ResponseCacheGatewayFilterFactory implements GatewayFilterFactory {
+
+	private final ResponseCache cache;
+
+	public ResponseCacheGatewayFilterFactory(ResponseCache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	public GatewayFilter apply(Tuple args) {
+		return (exchange, chain) -> {
+			ServerHttpRequest request = exchange.getRequest();
+			if (request.getMethod() != HttpMethod.GET) {
+				return chain.filter(exchange);
+			}
+			HttpHeaders requestHeaders = request.getHeaders();
+			CacheControlDirectives directives = CacheControlDirectives.of(requestHeaders);
+			if (directives.has("no-store")) {
+				return chain.filter(exchange);
+			}
+
+			GatewayContext context = GatewayContext.get(exchange);
+			String key = key(context.getRoute(), request);
+			if (!directives.has("no-cache") && !"no-cache".equals(requestHeaders.getPragma())) {
+				CachedResponse cached = this.cache.get(key, requestHeaders);
+				long now = System.currentTimeMillis();
+				long maxAge = directives.seconds("max-age");
+				if (cached != null && (maxAge < 0 || cached.getAge(now) <= maxAge)) {
+					ByteBuf body = cached.retainedBody();
+					if (body != null) { // 可能已被淘汰
+						return write(exchange, cached, body, now);
+					}
+				}
+			}
+
+			// 未命中，写回客户端的同时复制 body
+			context.addResponseBodyDecorator(body -> store(exchange, key, body));
+			return chain.filter(exchange);
+		};
+	}
+
+	private Mono<Void> write(ServerWebExchange exchange, CachedResponse cached, ByteBuf body, long now) {
+		ServerHttpResponse response = exchange.getResponse();
+		HttpHeaders headers = response.getHeaders();
+		response.setStatusCode(cached.getStatusCode());
+		headers.putAll(cached.getHeaders());
+		headers.set("Age", String.valueOf(cached.getAge(now)));
+
+		if (exchange.checkNotModified(cached.getETag(), cached.getLastModified())) {
+			body.release();
+			headers.remove(HttpHeaders.CONTENT_LENGTH);
+			return response.setComplete();
+		}
+
+		headers.remove(HttpHeaders.TRANSFER_ENCODING);
+		headers.setContentLength(body.readableBytes());
+		DataBufferFactory factory = response.bufferFactory();
+		DataBuffer buffer;
+		if (factory instanceof NettyDataBufferFactory) {
+			// 零拷贝：直接写出共享的 direct buffer，写完由 Netty 释放
+			buffer = ((NettyDataBufferFactory) factory).wrap(body);
+		}
+		else {
+			try {
+				buffer = factory.allocateBuffer(body.readableBytes()).write(body.nioBuffer());
+			}
+			finally {
+				body.release();
+			}
+		}
+		return response.writeWith(Mono.just(buffer));
+	}
+
+	private Flux<DataBuffer> store(ServerWebExchange exchange, String key, Flux<DataBuffer> body) {
+		ServerHttpResponse response = exchange.getResponse();
+		HttpHeaders requestHeaders = exchange.getRequest().getHeaders();
+		HttpHeaders responseHeaders = response.getHeaders();
+		long now = System.currentTimeMillis();
+		Duration timeToLive = ResponseCache.timeToLive(requestHeaders, response.getStatusCode(),
+				responseHeaders, now);
+		long contentLength = responseHeaders.getContentLength();
+		if (timeToLive == null || contentLength > this.cache.getMaxEntrySize()) {
+			return body;
+		}
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.putAll(responseHeaders);
+		headers.remove("Age");
+		Map<String, List<String>> varyValues = ResponseCache.varyValues(requestHeaders, responseHeaders);
+		BodyCapture capture = new BodyCapture(contentLength);
+		return body.doOnNext(capture::append).doFinally(signal -> {
+			ByteBuf captured = capture.take();
+			if (captured == null) {
+				return;
+			}
+			if (signal == SignalType.ON_COMPLETE) {
+				this.cache.put(key, new CachedResponse(response.getStatusCode(), headers, captured,
+						varyValues, now, ResponseCache.age(responseHeaders), timeToLive));
+			}
+			else {
+				captured.release();
+			}
+		});
+	}
+
+	static String key(Route route, ServerHttpRequest request) {
+		return route == null ? request.getURI().toString() : route.getId() + " " + request.getURI();
+	}
+
+	/**
+	 * Copies the body into a pooled direct buffer, given up once it exceeds the
+	 * maximum entry size.
+	 */
+	private class BodyCapture {
+
+		private ByteBuf buffer;
+
+		BodyCapture(long contentLength) {
+			int initialCapacity = contentLength >= 0 ? (int) contentLength
+					: Math.min(1024, cache.getMaxEntrySize());
+			this.buffer = cache.getAllocator().directBuffer(initialCapacity, cache.getMaxEntrySize());
+		}
+
+		synchronized void append(DataBuffer dataBuffer) {
+			if (this.buffer == null) {
+				return;
+			}
+			if (this.buffer.readableBytes() + dataBuffer.readableByteCount() > cache.getMaxEntrySize()) {
+				this.buffer.release();
+				this.buffer = null;
+				return;
+			}
+			// asByteBuffer 是独立的视图，不移动 dataBuffer 的读索引
+			this.buffer.writeBytes(dataBuffer.asByteBuffer());
+		}
+
+		/**
+		 * Return the captured body and hand over its ownership, {@code null} if it was
+		 * given up or already taken. Synchronized with {@link #append} as a cancel may
+		 * race with the last buffer.
+		 */
+		synchronized ByteBuf take() {
+			ByteBuf captured = this.buffer;
+			this.buffer = null;
+			return captured;
+		}
+	}
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.HttpHeadersBridge;
+import org.springframework.cloud.gateway.support.RetryBudget;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.FormHttpMessageReader;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.tuple.Tuple;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry the requests of a route, running the rest of the filter chain again, when the
+ * proxied service answers with one of the {@code statuses} or the chain fails with one
+ * of the {@code exceptions}. Only requests with one of the {@code methods} are retried,
+ * at most {@code retries} times, after an exponential backoff from
+ * {@code firstBackoff} to {@code maxBackoff} milliseconds shortened by a random
+ * {@code jitter} fraction.
+ * <p>Retries are capped by a {@link RetryBudget} of the route, earning
+ * {@code budget} percent of a retry per request. A request body is read into memory
+ * before the first attempt, so that it can be sent again, when its
+ * {@code Content-Length} is at most {@code maxBodySize} bytes. Larger and chunked
+ * bodies are sent once, without retries.
+ */
+public class RetryGatewayFilterFactory implements GatewayFilterFactory {
+
+	public static final String RETRIES_KEY = "retries";
+	public static final String STATUSES_KEY = "statuses";
+	public static final String METHODS_KEY = "methods";
+	public static final String EXCEPTIONS_KEY = "exceptions";
+	public static final String FIRST_BACKOFF_KEY = "firstBackoff";
+	public static final String MAX_BACKOFF_KEY = "maxBackoff";
+	public static final String JITTER_KEY = "jitter";
+	public static final String BUDGET_KEY = "budget";
+	public static final String MAX_BODY_SIZE_KEY = "maxBodySize";
+
+	public static final int DEFAULT_RETRIES = 3;
+	public static final String DEFAULT_STATUSES = "BAD_GATEWAY, SERVICE_UNAVAILABLE, GATEWAY_TIMEOUT";
+	public static final String DEFAULT_METHODS = "GET";
+	public static final String DEFAULT_EXCEPTIONS = "java.io.IOException, java.util.concurrent.TimeoutException";
+	public static final Duration DEFAULT_FIRST_BACKOFF = Duration.ofMillis(50);
+	public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMillis(500);
+	public static final double DEFAULT_JITTER = 0.5;
+	public static final int DEFAULT_BUDGET = 20;
+	public static final int DEFAULT_MAX_BODY_SIZE = 256 * 1024;
+
+	/**
+	 * Retries a route may spend in a burst, once its budget is saved up.
+	 */
+	public static final int BUDGET_TOKENS = 10;
+
+	private static final FormHttpMessageReader FORM_READER = new FormHttpMessageReader();
+
+	private static final ResolvableType FORM_TYPE = ResolvableType.forClassWithGenerics(
+			MultiValueMap.class, String.class, String.class);
+
+	@Override
+	public List<String> argNames() {
+		return Arrays.asList(RETRIES_KEY, STATUSES_KEY, METHODS_KEY, EXCEPTIONS_KEY, FIRST_BACKOFF_KEY,
+				MAX_BACKOFF_KEY, JITTER_KEY, BUDGET_KEY, MAX_BODY_SIZE_KEY);
+	}
+
+	@Override
+	public boolean validateArgs() {
+		return false;
+	}
+
+	@Override
+	public GatewayFilter apply(Tuple args) {
+		final Retry retry = new Retry(args);
+		return retry::filter;
+	}
+
+	/**
+	 * Settings and budget of the retries of one route.
+	 */
+	static class Retry {
+
+		private final int retries;
+
+		private final Set<HttpStatus> statuses = EnumSet.noneOf(HttpStatus.class);
+
+		private final Set<HttpMethod> methods = EnumSet.noneOf(HttpMethod.class);
+
+		private final List<Class<?>> exceptions = new ArrayList<>();
+
+		private final Duration firstBackoff;
+
+		private final Duration maxBackoff;
+
+		private final double jitter;
+
+		private final RetryBudget budget;
+
+		private final int maxBodySize;
+
+		Retry(Tuple args) {
+			this.retries = args.hasFieldName(RETRIES_KEY) ? args.getInt(RETRIES_KEY) : DEFAULT_RETRIES;
+			for (String status : list(args, STATUSES_KEY, DEFAULT_STATUSES)) {
+				this.statuses.add(ServerWebExchangeUtils.parse(status));
+			}
+			for (String method : list(args, METHODS_KEY, DEFAULT_METHODS)) {
+				this.methods.add(HttpMethod.valueOf(method.toUpperCase()));
+			}
+			for (String exception : list(args, EXCEPTIONS_KEY, DEFAULT_EXCEPTIONS)) {
+				this.exceptions.add(ClassUtils.resolveClassName(exception, getClass().getClassLoader()));
+			}
+			this.firstBackoff = args.hasFieldName(FIRST_BACKOFF_KEY)
+					? Duration.ofMillis(args.getLong(FIRST_BACKOFF_KEY)) : DEFAULT_FIRST_BACKOFF;
+			this.maxBackoff = args.hasFieldName(MAX_BACKOFF_KEY)
+					? Duration.ofMillis(args.getLong(MAX_BACKOFF_KEY)) : DEFAULT_MAX_BACKOFF;
+			this.jitter = args.hasFieldName(JITTER_KEY) ? args.getDouble(JITTER_KEY) : DEFAULT_JITTER;
+			this.budget = new RetryBudget(args.hasFieldName(BUDGET_KEY) ? args.getInt(BUDGET_KEY) : DEFAULT_BUDGET,
+					BUDGET_TOKENS);
+			this.maxBodySize = args.hasFieldName(MAX_BODY_SIZE_KEY) ? args.getInt(MAX_BODY_SIZE_KEY)
+					: DEFAULT_MAX_BODY_SIZE;
+		}
+
+		Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			this.budget.deposit();
+
+			ServerHttpRequest request = exchange.getRequest();
+			if (this.retries <= 0 || !this.methods.contains(request.getMethod())) {
+				return chain.filter(exchange);
+			}
+
+			// 只缓冲已知长度且不超过上限的 Body，其它请求只发送一次
+			HttpHeaders headers = request.getHeaders();
+			long length = headers.getContentLength();
+			if (length > this.maxBodySize || (length < 0 && HttpHeadersBridge.isChunked(headers))) {
+				return chain.filter(exchange);
+			}
+			if (length <= 0) {
+				return attempt(exchange, chain, new ExchangeCheckpoint(exchange), 0);
+			}
+			return readBody(request, (int) length).flatMap(body -> {
+				ServerWebExchange buffered = new BufferedBodyExchange(exchange, body);
+				return attempt(buffered, chain, new ExchangeCheckpoint(buffered), 0);
+			});
+		}
+
+		private Mono<Void> attempt(ServerWebExchange exchange, GatewayFilterChain chain,
+				ExchangeCheckpoint checkpoint, int attempt) {
+			return Mono.defer(() -> chain.filter(exchange))
+					.then(Mono.fromCallable(() -> shouldRetry(exchange, attempt, null)))
+					// 只处理本次尝试的错误，后续尝试的错误直接向上传递
+					.onErrorResume(e -> shouldRetry(exchange, attempt, e) ? Mono.just(true) : Mono.error(e))
+					.flatMap(again -> {
+						if (!again) {
+							return Mono.empty();
+						}
+						checkpoint.restore();
+						return Mono.delay(backoff(attempt))
+								.then(attempt(exchange, chain, checkpoint, attempt + 1));
+					});
+		}
+
+		private boolean shouldRetry(ServerWebExchange exchange, int attempt, Throwable error) {
+			if (attempt >= this.retries || exchange.getResponse().isCommitted()) {
+				return false;
+			}
+			boolean retryable = error == null ? this.statuses.contains(exchange.getResponse().getStatusCode())
+					: isRetryable(error);
+			return retryable && this.budget.tryWithdraw();
+		}
+
+		private boolean isRetryable(Throwable error) {
+			for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+				for (Class<?> exception : this.exceptions) {
+					if (exception.isInstance(cause)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Return the backoff before the given retry, {@code firstBackoff} doubled for
+		 * every retry before, at most {@code maxBackoff}, less a random jitter.
+		 */
+		Duration backoff(int attempt) {
+			long backoff = this.firstBackoff.toNanos() << Math.min(attempt, 30);
+			if (backoff <= 0 || backoff > this.maxBackoff.toNanos()) {
+				backoff = this.maxBackoff.toNanos();
+			}
+			double jitter = this.jitter * ThreadLocalRandom.current().nextDouble();
+			return Duration.ofNanos((long) (backoff * (1 - jitter)));
+		}
+
+		RetryBudget getBudget() {
+			return this.budget;
+		}
+	}
+
+	/**
+	 * Read the body into an array, releasing the buffers as they are copied.
+	 */
+	static Mono<byte[]> readBody(ServerHttpRequest request, int length) {
+		byte[] body = new byte[length];
+		return request.getBody().reduce(0, (offset, buffer) -> {
+			try {
+				int count = buffer.readableByteCount();
+				if (offset + count > length) {
+					throw new IllegalStateException("Request body is longer than its Content-Length " + length);
+				}
+				buffer.read(body, offset, count);
+				return offset + count;
+			}
+			finally {
+				DataBufferUtils.release(buffer);
+			}
+		}).map(read -> read == length ? body : Arrays.copyOf(body, read));
+	}
+
+	private static List<String> list(Tuple args, String key, String defaultValue) {
+		String value = args.hasFieldName(key) ? args.getRawString(key) : defaultValue;
+		return Arrays.asList(StringUtils.commaDelimitedListToStringArray(StringUtils.trimAllWhitespace(value)));
+	}
+
+	/**
+	 * Exchange whose request body is served from memory, once per attempt. Its form
+	 * data is decoded from the same bytes, since the original body was read already.
+	 */
+	private static class BufferedBodyExchange extends ServerWebExchangeDecorator {
+
+		private final ServerHttpRequest request;
+
+		private final Mono<MultiValueMap<String, String>> formData;
+
+		BufferedBodyExchange(ServerWebExchange delegate, byte[] body) {
+			super(delegate);
+			this.request = new ServerHttpRequestDecorator(delegate.getRequest()) {
+				@Override
+				public Flux<DataBuffer> getBody() {
+					return Flux.defer(() -> Flux.just(delegate.getResponse().bufferFactory().wrap(body)));
+				}
+			};
+			MediaType contentType = this.request.getHeaders().getContentType();
+			this.formData = MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(contentType)
+					? FORM_READER.readMono(FORM_TYPE, this.request, Collections.emptyMap()).cache()
+					: delegate.getFormData();
+		}
+
+		@Override
+		public ServerHttpRequest getRequest() {
+			return this.request;
+		}
+
+		@Override
+		public Mono<MultiValueMap<String, String>> getFormData() {
+			return this.formData;
+		}
+	}
+
+}
@@ -18,14 +18,13 @@
 package org.springframework.cloud.gateway.filter.factory;
 
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.support.GatewayContext;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.tuple.Tuple;
 
 import java.util.Arrays;
 import java.util.List;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
 
 /**
  * @author Spencer Gibb
@@ -49,7 +48,8 @@ public class RewritePathGatewayFilterFactory implements GatewayFilterFactory {
 		return (exchange, chain) -> {
 			ServerHttpRequest req = exchange.getRequest();
 			// 添加 原始请求URI 到 GATEWAY_ORIGINAL_REQUEST_URL_ATTR
-			addOriginalRequestUrl(exchange, req.getURI());
+			GatewayContext context = GatewayContext.get(exchange);
+			context.addOriginalRequestUrl(req.getURI());
 			// 重写 Path
 			String path = req.getURI().getPath();
 			String newPath = path.replaceAll(regex, replacement);
@@ -60,7 +60,7 @@ public class RewritePathGatewayFilterFactory implements GatewayFilterFactory {
 					.build();
 
 			// 添加 请求URI 到 GATEWAY_REQUEST_URL_ATTR
-			exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, request.getURI());
+			context.setRequestUrl(request.getURI());
 
 			// 创建新的 ServerWebExchange ，提交过滤器链继续过滤
 			return chain.filter(exchange.mutate().request(request).build());
@@ -18,14 +18,13 @@
 package org.springframework.cloud.gateway.filter.factory;
 
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.support.GatewayContext;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.tuple.Tuple;
 import org.springframework.web.util.UriTemplate;
-import org.springframework.web.util.pattern.PathPattern.PathMatchInfo;
 
 import java.net.URI;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -50,22 +49,16 @@ public class SetPathGatewayFilterFactory implements GatewayFilterFactory {
 		UriTemplate uriTemplate = new UriTemplate(template);
 
 		return (exchange, chain) -> {
-			PathMatchInfo variables = exchange.getAttribute(URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+			GatewayContext context = GatewayContext.get(exchange);
 			ServerHttpRequest req = exchange.getRequest();
-			addOriginalRequestUrl(exchange, req.getURI());
-			Map<String, String> uriVariables;
-
-			if (variables != null) {
-				uriVariables = variables.getUriVariables();
-			} else {
-				uriVariables = Collections.emptyMap();
-			}
+			context.addOriginalRequestUrl(req.getURI());
+			Map<String, String> uriVariables = context.getUriTemplateVariables();
 
 			// 使用 路径参数进行 替换 请求Path
 			URI uri = uriTemplate.expand(uriVariables);
 			String newPath = uri.getPath();
 
-			exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, uri);
+			context.setRequestUrl(uri);
 
 			ServerHttpRequest request = req.mutate()
 					.path(newPath)
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.tuple.Tuple;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setResponseStatus;
+
+/**
+ * Bound the time spent proxying the requests of a route, in milliseconds: the time to
+ * get a connection ({@code connectTimeout}), the time until the response headers once
+ * connected ({@code responseTimeout}) and the time until the whole response body was
+ * written ({@code totalTimeout}). The first two are applied by the routing filter:
+ * the {@link org.springframework.cloud.gateway.filter.NettyRoutingFilter} bounds each
+ * phase, the {@link org.springframework.cloud.gateway.filter.WebClientHttpRoutingFilter}
+ * bounds the time until the response headers by their sum, and the
+ * {@link org.springframework.cloud.gateway.filter.Http2RoutingFilter} ignores them.
+ * <p>A timeout before the response was committed ends it with a 504 status, a total
+ * timeout while the body is written aborts it.
+ */
+public class TimeoutGatewayFilterFactory implements GatewayFilterFactory {
+
+	public static final String CONNECT_TIMEOUT_KEY = "connectTimeout";
+	public static final String RESPONSE_TIMEOUT_KEY = "responseTimeout";
+	public static final String TOTAL_TIMEOUT_KEY = "totalTimeout";
+
+	@Override
+	public List<String> argNames() {
+		return Arrays.asList(CONNECT_TIMEOUT_KEY, RESPONSE_TIMEOUT_KEY, TOTAL_TIMEOUT_KEY);
+	}
+
+	@Override
+	public boolean validateArgs() {
+		return false;
+	}
+
+	@Override
+	public GatewayFilter apply(Tuple args) {
+		validateMin(1, args);
+
+		final Duration connectTimeout = duration(args, CONNECT_TIMEOUT_KEY);
+		final Duration responseTimeout = duration(args, RESPONSE_TIMEOUT_KEY);
+		final Duration totalTimeout = duration(args, TOTAL_TIMEOUT_KEY);
+
+		return (exchange, chain) -> {
+			GatewayContext context = GatewayContext.get(exchange);
+			context.setConnectTimeout(connectTimeout);
+			context.setResponseTimeout(responseTimeout);
+			if (totalTimeout == null) {
+				return chain.filter(exchange);
+			}
+
+			// 从此刻开始计时，覆盖路由与写回 Body
+			final MonoProcessor<Long> deadline = Mono.delay(totalTimeout).toProcessor();
+			context.addResponseBodyDecorator(body -> body.timeout(deadline, buffer -> deadline)
+					.doFinally(signal -> deadline.dispose()));
+
+			return chain.filter(exchange)
+					.timeout(deadline)
+					.onErrorResume(TimeoutException.class, e -> {
+						deadline.dispose();
+						if (exchange.getResponse().isCommitted()) {
+							return Mono.error(e);
+						}
+						setResponseStatus(exchange, HttpStatus.GATEWAY_TIMEOUT);
+						return exchange.getResponse().setComplete();
+					});
+		};
+	}
+
+	private static Duration duration(Tuple args, String key) {
+		return args.hasFieldName(key) ? Duration.ofMillis(args.getLong(key)) : null;
+	}
+
+}
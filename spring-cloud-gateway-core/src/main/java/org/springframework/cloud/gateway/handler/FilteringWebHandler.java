@@ -23,16 +23,30 @@ import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.RoutingFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.route.RouteSnapshotSwappedEvent;
 import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.http.MediaType;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.Assert;
 import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
 import org.springframework.web.server.WebHandler;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
@@ -41,6 +55,12 @@ import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.G
  * WebHandler that delegates to a chain of {@link GlobalFilter} instances and
  * {@link GatewayFilterFactory} instances then to the target {@link WebHandler}.
  *
+ * <p>{@link RoutingFilter}s are not part of the chain. They are registered by URI
+ * scheme, and a single routing step at the end of the chain runs those registered for
+ * the scheme of the request URL. The step resolves the routing filters for the scheme
+ * of the route URI up front, a request URL changed to another scheme, for example by
+ * the load balancer, is looked up in the registry.
+ *
  * @author Rossen Stoyanchev
  * @author Spencer Gibb
  * @since 0.1
@@ -49,12 +69,43 @@ public class FilteringWebHandler implements WebHandler {
 	protected static final Log logger = LogFactory.getLog(FilteringWebHandler.class);
 
     /**
-     * 全局过滤器
+     * 全局过滤器，不包括 RoutingFilter
      */
 	private final List<GatewayFilter> globalFilters;
 
+	/**
+	 * 按 scheme 注册的 RoutingFilter 组成的过滤器链
+	 */
+	private final Map<String, GatewayFilterChain> routingChains;
+
+	/**
+	 * 每个路由合并、排序后的过滤器，key 为路由编号
+	 */
+	private final Map<String, CombinedFilters> combinedFiltersForRoute = new ConcurrentHashMap<>();
+
 	public FilteringWebHandler(List<GlobalFilter> globalFilters) {
-		this.globalFilters = loadFilters(globalFilters);
+		this.globalFilters = loadFilters(globalFilters.stream()
+				.filter(filter -> !(filter instanceof RoutingFilter))
+				.collect(Collectors.toList()));
+		this.routingChains = loadRoutingChains(globalFilters);
+	}
+
+	private static Map<String, GatewayFilterChain> loadRoutingChains(List<GlobalFilter> filters) {
+		Map<String, List<GlobalFilter>> byScheme = new LinkedHashMap<>();
+		for (GlobalFilter filter : filters) {
+			if (filter instanceof RoutingFilter) {
+				for (String scheme : ((RoutingFilter) filter).getSchemes()) {
+					byScheme.computeIfAbsent(scheme, s -> new ArrayList<>()).add(filter);
+				}
+			}
+		}
+		Map<String, GatewayFilterChain> chains = new HashMap<>();
+		byScheme.forEach((scheme, routingFilters) -> {
+			List<GatewayFilter> sorted = loadFilters(routingFilters);
+			AnnotationAwareOrderComparator.sort(sorted);
+			chains.put(scheme, chainOf(sorted.toArray(new GatewayFilter[0])));
+		});
+		return chains;
 	}
 
 	private static List<GatewayFilter> loadFilters(List<GlobalFilter> filters) {
@@ -69,43 +120,164 @@ public class FilteringWebHandler implements WebHandler {
 				}).collect(Collectors.toList());
 	}
 
-    /* TODO: relocate @EventListener(RefreshRoutesEvent.class)
-    void handleRefresh() {
-        this.combinedFiltersForRoute.clear();
-    }*/
+	/**
+	 * Drop the filters of the routes that are not in the new snapshot, changed routes
+	 * are combined again on their next request.
+	 */
+	@EventListener
+	/* for testing */ void handleSnapshotSwapped(RouteSnapshotSwappedEvent event) {
+		Set<String> ids = event.getSnapshot().getIndex().getRoutes().stream()
+				.map(Route::getId).collect(Collectors.toSet());
+		this.combinedFiltersForRoute.keySet().retainAll(ids);
+	}
 
 	@Override
 	public Mono<Void> handle(ServerWebExchange exchange) {
 	    // 获得 Route
-		Route route = exchange.getRequiredAttribute(GATEWAY_ROUTE_ATTR);
-		// 获得 GatewayFilter
-		List<GatewayFilter> gatewayFilters = route.getFilters();
-		List<GatewayFilter> combined = new ArrayList<>(this.globalFilters);
-		combined.addAll(gatewayFilters);
+		Route route = GatewayContext.get(exchange).getRoute();
+		Assert.notNull(route, "Required attribute '" + GATEWAY_ROUTE_ATTR + "' is missing");
+		// 获得 路由预先构建的 DefaultGatewayFilterChain，过滤
+		return getCombined(route).chain.filter(trackFormData(exchange));
+	}
+
+	/**
+	 * Decorate a form request so that the routing filters know whether a filter
+	 * decoded the form, the body is forwarded as is otherwise.
+	 */
+	private static ServerWebExchange trackFormData(ServerWebExchange exchange) {
+		MediaType contentType = exchange.getRequest().getHeaders().getContentType();
+		if (contentType == null || !MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(contentType)) {
+			return exchange;
+		}
+		return new FormDataTrackingExchange(exchange);
+	}
 
+	/**
+	 * @return the global filters and the filters of the route, sorted, computed once per
+	 * route until the route is rebuilt or removed
+	 */
+	GatewayFilter[] getCombinedFilters(Route route) {
+		return getCombined(route).filters;
+	}
+
+	private CombinedFilters getCombined(Route route) {
+		CombinedFilters cached = this.combinedFiltersForRoute.get(route.getId());
+		// 路由编号相同，但路由对象不同，说明路由已被重新编译
+		if (cached == null || cached.route != route) {
+			cached = new CombinedFilters(route, combine(route));
+			this.combinedFiltersForRoute.put(route.getId(), cached);
+		}
+		return cached;
+	}
+
+	private GatewayFilter[] combine(Route route) {
+		List<GatewayFilter> combined = new ArrayList<>(this.globalFilters);
+		combined.addAll(route.getFilters());
 		// 排序
-		//TODO: needed or cached?
 		AnnotationAwareOrderComparator.sort(combined);
-		logger.debug("Sorted gatewayFilterFactories: "+ combined);
+		// 路由放在最后，按路由 URI 的 scheme 预先选好 RoutingFilter
+		if (!this.routingChains.isEmpty()) {
+			String scheme = route.getUri().getScheme();
+			combined.add(new RoutingStep(scheme, this.routingChains.get(scheme), this.routingChains));
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Sorted gatewayFilterFactories: " + combined);
+		}
+		return combined.toArray(new GatewayFilter[0]);
+	}
+
+	private static final class CombinedFilters {
+
+		private final Route route;
+		private final GatewayFilter[] filters;
+		private final GatewayFilterChain chain;
+
+		CombinedFilters(Route route, GatewayFilter[] filters) {
+			this.route = route;
+			this.filters = filters;
+			this.chain = chainOf(filters);
+		}
+	}
+
+	private static GatewayFilterChain chainOf(GatewayFilter[] filters) {
+		// 从最后一个过滤器开始，构建不可变的过滤器链节点
+		DefaultGatewayFilterChain chain = new DefaultGatewayFilterChain(null, null);
+		for (int i = filters.length - 1; i >= 0; i--) {
+			chain = new DefaultGatewayFilterChain(filters[i], chain);
+		}
+		return chain;
+	}
+
+	private static class FormDataTrackingExchange extends ServerWebExchangeDecorator {
+
+		FormDataTrackingExchange(ServerWebExchange delegate) {
+			super(delegate);
+		}
+
+		@Override
+		public Mono<MultiValueMap<String, String>> getFormData() {
+			GatewayContext.get(this).setFormDataRequested();
+			return super.getFormData();
+		}
+	}
+
+	/**
+	 * Last step of every chain, runs the routing filters registered for the scheme of
+	 * the request URL.
+	 */
+	private static class RoutingStep implements GatewayFilter {
 
-		// 创建 DefaultGatewayFilterChain
-		return new DefaultGatewayFilterChain(combined).filter(exchange);
+		private final String scheme;
+		private final GatewayFilterChain routing;
+		private final Map<String, GatewayFilterChain> routingChains;
+
+		RoutingStep(String scheme, GatewayFilterChain routing, Map<String, GatewayFilterChain> routingChains) {
+			this.scheme = scheme;
+			this.routing = routing;
+			this.routingChains = routingChains;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			GatewayContext context = GatewayContext.get(exchange);
+			URI requestUrl = context.getRequestUrl();
+			if (requestUrl == null || context.isAlreadyRouted()) {
+				return chain.filter(exchange);
+			}
+			String scheme = requestUrl.getScheme();
+			GatewayFilterChain routing = this.scheme != null && this.scheme.equals(scheme) ? this.routing
+					: this.routingChains.get(scheme);
+			if (routing == null) {
+				return chain.filter(exchange);
+			}
+			return routing.filter(exchange);
+		}
+
+		@Override
+		public String toString() {
+			return "RoutingStep{scheme=" + this.scheme + "}";
+		}
 	}
 
+	/**
+	 * Immutable node of a route's filter chain, the filter at this position and the
+	 * chain after it. Nodes are built once per route and shared by all requests, a filter
+	 * may call the rest of the chain any number of times, for example to retry.
+	 */
 	private static class DefaultGatewayFilterChain implements GatewayFilterChain {
 
-		private int index;
-		private final List<GatewayFilter> filters;
+		private final GatewayFilter filter;
+		private final DefaultGatewayFilterChain next;
 
-		public DefaultGatewayFilterChain(List<GatewayFilter> filters) {
-			this.filters = filters;
+		DefaultGatewayFilterChain(GatewayFilter filter, DefaultGatewayFilterChain next) {
+			this.filter = filter;
+			this.next = next;
 		}
 
 		@Override
 		public Mono<Void> filter(ServerWebExchange exchange) {
-			if (this.index < filters.size()) {
-				GatewayFilter filter = filters.get(this.index++);
-				return filter.filter(exchange, this);
+			if (this.filter != null) {
+				return this.filter.filter(exchange, this.next);
 			} else {
 				return Mono.empty(); // complete
 			}
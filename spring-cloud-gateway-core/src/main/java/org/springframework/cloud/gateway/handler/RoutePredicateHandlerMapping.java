@@ -17,8 +17,11 @@
 
 package org.springframework.cloud.gateway.handler;
 
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.RouteMatchCache;
+import org.springframework.cloud.gateway.support.GatewayContext;
 import org.springframework.web.reactive.handler.AbstractHandlerMapping;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
@@ -26,7 +29,6 @@ import reactor.core.publisher.Mono;
 import java.util.function.Function;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_HANDLER_MAPPER_ATTR;
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
 
 /**
  * @author Spencer Gibb
@@ -35,10 +37,17 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 
 	private final FilteringWebHandler webHandler;
 	private final RouteLocator routeLocator;
+	private final RouteMatchCache routeMatchCache;
 
 	public RoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator) {
+		this(webHandler, routeLocator, null);
+	}
+
+	public RoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator,
+										RouteMatchCache routeMatchCache) {
 		this.webHandler = webHandler;
 		this.routeLocator = routeLocator;
+		this.routeMatchCache = routeMatchCache;
 
 		setOrder(1); // RequestMappingHandlerMapping 之后
 	}
@@ -56,7 +65,7 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 					}
 
 					// 设置 GATEWAY_ROUTE_ATTR 为 匹配的 Route
-					exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, r);
+					GatewayContext.get(exchange).setRoute(r);
 					// 返回
 					return Mono.just(webHandler);
 				}).switchIfEmpty(Mono.empty().then(Mono.fromRunnable(() -> { // 匹配不到 Route
@@ -77,12 +86,26 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 	}
 
 	protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
-		return this.routeLocator.getRoutes()
-				.filter(route -> route.getPredicate().test(exchange))
-				// .defaultIfEmpty() put a static Route not found
-				// or .switchIfEmpty()
-				// .switchIfEmpty(Mono.<Route>empty().log("noroute"))
-				.next()
+		Mono<Route> matched;
+		if (this.routeLocator instanceof CachingRouteLocator) {
+			// only test the routes the index could not rule out
+			CachingRouteLocator locator = (CachingRouteLocator) this.routeLocator;
+			if (this.routeMatchCache != null) {
+				matched = Mono.fromCallable(() -> this.routeMatchCache.lookup(locator.getRouteIndex(), exchange));
+			}
+			else {
+				matched = Mono.fromCallable(() -> locator.getRouteIndex().lookup(exchange));
+			}
+		}
+		else {
+			matched = this.routeLocator.getRoutes()
+					.filter(route -> route.getPredicate().test(exchange))
+					// .defaultIfEmpty() put a static Route not found
+					// or .switchIfEmpty()
+					// .switchIfEmpty(Mono.<Route>empty().log("noroute"))
+					.next();
+		}
+		return matched
 				//TODO: error handling
 				.map(route -> {
 					if (logger.isDebugEnabled()) {
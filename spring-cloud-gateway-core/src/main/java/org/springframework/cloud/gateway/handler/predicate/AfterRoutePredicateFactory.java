@@ -37,15 +37,17 @@ public class AfterRoutePredicateFactory implements RoutePredicateFactory {
 		return Collections.singletonList(DATETIME_KEY);
 	}
 
+	@Override
+	public int cost() {
+		return LOW_COST;
+	}
+
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		Object value = args.getValue(DATETIME_KEY);
 		final ZonedDateTime dateTime = BetweenRoutePredicateFactory.getZonedDateTime(value);
 
-		return exchange -> {
-			final ZonedDateTime now = ZonedDateTime.now();
-			return now.isAfter(dateTime);
-		};
+		return new BetweenRoutePredicateFactory.TimeWindowPredicate(dateTime, null);
 	}
 
 }
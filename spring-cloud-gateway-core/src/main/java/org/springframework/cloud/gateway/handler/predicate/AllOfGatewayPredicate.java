@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Logical AND of any number of route predicates, evaluated in array order and
+ * stopping at the first one that does not match. Unlike a chain of
+ * {@link Predicate#and(Predicate)} calls there is no nesting, so evaluating a route
+ * is a single loop over its predicates.
+ */
+public class AllOfGatewayPredicate implements GatewayPredicate {
+
+	private final Predicate<ServerWebExchange>[] predicates;
+
+	public AllOfGatewayPredicate(List<? extends Predicate<ServerWebExchange>> predicates) {
+		Assert.notEmpty(predicates, "predicates can not be empty");
+		Assert.noNullElements(predicates.toArray(), "predicates can not contain null");
+		@SuppressWarnings("unchecked")
+		Predicate<ServerWebExchange>[] array = (Predicate<ServerWebExchange>[]) new Predicate<?>[predicates.size()];
+		this.predicates = predicates.toArray(array);
+	}
+
+	/**
+	 * @return the predicates in evaluation order
+	 */
+	public List<Predicate<ServerWebExchange>> getPredicates() {
+		return Collections.unmodifiableList(Arrays.asList(this.predicates));
+	}
+
+	@Override
+	public boolean test(ServerWebExchange exchange) {
+		for (Predicate<ServerWebExchange> predicate : this.predicates) {
+			if (!predicate.test(exchange)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.stream(this.predicates).map(String::valueOf)
+				.collect(Collectors.joining(" && ", "(", ")"));
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.util.function.Predicate;
+
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Logical AND of two route predicates, created by {@link GatewayPredicate#and(Predicate)}.
+ */
+public class AndGatewayPredicate implements GatewayPredicate {
+
+	private final Predicate<? super ServerWebExchange> left;
+	private final Predicate<? super ServerWebExchange> right;
+
+	public AndGatewayPredicate(Predicate<? super ServerWebExchange> left, Predicate<? super ServerWebExchange> right) {
+		Assert.notNull(left, "left predicate can not be null");
+		Assert.notNull(right, "right predicate can not be null");
+		this.left = left;
+		this.right = right;
+	}
+
+	public Predicate<? super ServerWebExchange> getLeft() {
+		return this.left;
+	}
+
+	public Predicate<? super ServerWebExchange> getRight() {
+		return this.right;
+	}
+
+	@Override
+	public boolean test(ServerWebExchange exchange) {
+		return this.left.test(exchange) && this.right.test(exchange);
+	}
+
+	@Override
+	public String toString() {
+		return "(" + this.left + " && " + this.right + ")";
+	}
+}
@@ -39,15 +39,17 @@ public class BeforeRoutePredicateFactory implements RoutePredicateFactory {
 		return Collections.singletonList(DATETIME_KEY);
 	}
 
+	@Override
+	public int cost() {
+		return LOW_COST;
+	}
+
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		Object value = args.getValue(DATETIME_KEY);
 		final ZonedDateTime dateTime = BetweenRoutePredicateFactory.getZonedDateTime(value);
 
-		return exchange -> {
-			final ZonedDateTime now = ZonedDateTime.now();
-			return now.isBefore(dateTime);
-		};
+		return new BetweenRoutePredicateFactory.TimeWindowPredicate(null, dateTime);
 	}
 
 }
@@ -34,6 +34,11 @@ public class BetweenRoutePredicateFactory implements RoutePredicateFactory {
 	public static final String DATETIME1_KEY = "datetime1";
 	public static final String DATETIME2_KEY = "datetime2";
 
+	@Override
+	public int cost() {
+		return LOW_COST;
+	}
+
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		//TODO: is ZonedDateTime the right thing to use?
@@ -42,10 +47,7 @@ public class BetweenRoutePredicateFactory implements RoutePredicateFactory {
 		Assert.isTrue(dateTime1.isBefore(dateTime2), args.getValue(DATETIME1_KEY) +
 				" must be before " + args.getValue(DATETIME2_KEY));
 
-		return exchange -> {
-			final ZonedDateTime now = ZonedDateTime.now();
-			return now.isAfter(dateTime1) && now.isBefore(dateTime2);
-		};
+		return new TimeWindowPredicate(dateTime1, dateTime2);
 	}
 
 	public static ZonedDateTime getZonedDateTime(Object value) {
@@ -74,4 +76,52 @@ public class BetweenRoutePredicateFactory implements RoutePredicateFactory {
 		return dateTime;
 	}
 
+	/**
+	 * Predicate matching requests received after a start and before an end time, either
+	 * of which may be open. Exposes the window so that the route locator can leave routes
+	 * out of the match index while their window is closed.
+	 */
+	public static class TimeWindowPredicate implements GatewayPredicate {
+
+		private final ZonedDateTime start;
+		private final ZonedDateTime end;
+
+		TimeWindowPredicate(ZonedDateTime start, ZonedDateTime end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * @return the time requests have to be received after, or {@code null}
+		 */
+		public ZonedDateTime getStart() {
+			return this.start;
+		}
+
+		/**
+		 * @return the time requests have to be received before, or {@code null}
+		 */
+		public ZonedDateTime getEnd() {
+			return this.end;
+		}
+
+		@Override
+		public boolean test(ServerWebExchange exchange) {
+			final ZonedDateTime now = ZonedDateTime.now();
+			return (this.start == null || now.isAfter(this.start))
+					&& (this.end == null || now.isBefore(this.end));
+		}
+
+		@Override
+		public String toString() {
+			if (this.end == null) {
+				return "After: " + this.start;
+			}
+			if (this.start == null) {
+				return "Before: " + this.end;
+			}
+			return "Between: " + this.start + " and " + this.end;
+		}
+	}
+
 }
@@ -38,6 +38,11 @@ public class CookieRoutePredicateFactory implements RoutePredicateFactory {
 		return Arrays.asList(NAME_KEY, REGEXP_KEY);
 	}
 
+	@Override
+	public int cost() {
+		return HIGH_COST;
+	}
+
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		String name = args.getString(NAME_KEY);
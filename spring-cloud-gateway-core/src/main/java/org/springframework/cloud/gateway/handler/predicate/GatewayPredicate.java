@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.util.function.Predicate;
+
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * A route {@link Predicate} whose structure stays visible after it is combined with
+ * other predicates, so that routes can be indexed by what they match on.
+ */
+public interface GatewayPredicate extends Predicate<ServerWebExchange> {
+
+	@Override
+	default Predicate<ServerWebExchange> and(Predicate<? super ServerWebExchange> other) {
+		return new AndGatewayPredicate(this, other);
+	}
+
+}
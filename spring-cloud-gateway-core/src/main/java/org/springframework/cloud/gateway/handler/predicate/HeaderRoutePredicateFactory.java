@@ -37,6 +37,11 @@ public class HeaderRoutePredicateFactory implements RoutePredicateFactory {
 		return Arrays.asList(HEADER_KEY, REGEXP_KEY);
 	}
 
+	@Override
+	public int cost() {
+		return HIGH_COST;
+	}
+
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		String header = args.getString(HEADER_KEY);
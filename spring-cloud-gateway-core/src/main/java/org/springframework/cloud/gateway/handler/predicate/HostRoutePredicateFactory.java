@@ -32,9 +32,11 @@ import java.util.function.Predicate;
 public class HostRoutePredicateFactory implements RoutePredicateFactory {
 
 	private PathMatcher pathMatcher = new AntPathMatcher(".");
+	private boolean defaultPathMatcher = true;
 
 	public void setPathMatcher(PathMatcher pathMatcher) {
 		this.pathMatcher = pathMatcher;
+		this.defaultPathMatcher = false;
 	}
 
 	@Override
@@ -42,14 +44,56 @@ public class HostRoutePredicateFactory implements RoutePredicateFactory {
 		return Collections.singletonList(PATTERN_KEY);
 	}
 
+	@Override
+	public int cost() {
+		return LOW_COST + 200;
+	}
+
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		String pattern = args.getString(PATTERN_KEY);
 
-		return exchange -> {
+		return new HostPatternPredicate(pattern, this.pathMatcher, this.defaultPathMatcher);
+	}
+
+	/**
+	 * Predicate matching the {@code Host} header against a pattern. Exposes the pattern
+	 * so that routes can be indexed by host.
+	 */
+	public static class HostPatternPredicate implements GatewayPredicate {
+
+		private final String pattern;
+		private final PathMatcher pathMatcher;
+		private final boolean defaultPathMatcher;
+
+		HostPatternPredicate(String pattern, PathMatcher pathMatcher, boolean defaultPathMatcher) {
+			this.pattern = pattern;
+			this.pathMatcher = pathMatcher;
+			this.defaultPathMatcher = defaultPathMatcher;
+		}
+
+		public String getPattern() {
+			return this.pattern;
+		}
+
+		/**
+		 * @return whether the pattern is matched by the default, case sensitive,
+		 * {@link AntPathMatcher} with {@code .} as the separator
+		 */
+		public boolean isDefaultPathMatcher() {
+			return this.defaultPathMatcher;
+		}
+
+		@Override
+		public boolean test(ServerWebExchange exchange) {
 			String host = exchange.getRequest().getHeaders().getFirst("Host");
 			// 匹配
-			return this.pathMatcher.match(pattern, host);
-		};
+			return this.pathMatcher.match(this.pattern, host);
+		}
+
+		@Override
+		public String toString() {
+			return "Host: " + this.pattern;
+		}
 	}
 }
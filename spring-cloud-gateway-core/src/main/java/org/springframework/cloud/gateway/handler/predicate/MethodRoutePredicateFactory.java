@@ -37,13 +37,43 @@ public class MethodRoutePredicateFactory implements RoutePredicateFactory {
 		return Arrays.asList(METHOD_KEY);
 	}
 
+	@Override
+	public int cost() {
+		return LOW_COST;
+	}
+
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		String method = args.getString(METHOD_KEY);
-		return exchange -> {
+		return new MethodPredicate(method);
+	}
+
+	/**
+	 * Predicate matching the request method. Exposes the method so that the result of
+	 * a route lookup can be recognised as depending on the method only.
+	 */
+	public static class MethodPredicate implements GatewayPredicate {
+
+		private final String method;
+
+		MethodPredicate(String method) {
+			this.method = method;
+		}
+
+		public String getMethod() {
+			return this.method;
+		}
+
+		@Override
+		public boolean test(ServerWebExchange exchange) {
 			HttpMethod requestMethod = exchange.getRequest().getMethod();
 			// 正则匹配
-			return requestMethod.matches(method);
-		};
+			return requestMethod.matches(this.method);
+		}
+
+		@Override
+		public String toString() {
+			return "Method: " + this.method;
+		}
 	}
 }
@@ -17,6 +17,7 @@
 
 package org.springframework.cloud.gateway.handler.predicate;
 
+import org.springframework.cloud.gateway.support.GatewayContext;
 import org.springframework.http.server.PathContainer;
 import org.springframework.tuple.Tuple;
 import org.springframework.web.server.ServerWebExchange;
@@ -29,8 +30,7 @@ import java.util.List;
 import java.util.function.Predicate;
 
 import static org.springframework.cloud.gateway.handler.support.RoutePredicateFactoryUtils.traceMatch;
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.URI_TEMPLATE_VARIABLES_ATTRIBUTE;
-import static org.springframework.http.server.PathContainer.parsePath;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.getPathContainer;
 
 /**
  * @author Spencer Gibb
@@ -48,30 +48,65 @@ public class PathRoutePredicateFactory implements RoutePredicateFactory {
 		return Collections.singletonList(PATTERN_KEY);
 	}
 
+	@Override
+	public int cost() {
+		return LOW_COST + 300;
+	}
+
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 	    // 解析 Path ，创建对应的 PathPattern
 		String unparsedPattern = args.getString(PATTERN_KEY);
 		PathPattern pattern;
+		boolean caseSensitive;
 		synchronized (this.pathPatternParser) {
 			pattern = this.pathPatternParser.parse(unparsedPattern);
+			caseSensitive = this.pathPatternParser.isCaseSensitive();
 		}
 
-		return exchange -> {
-			PathContainer path = parsePath(exchange.getRequest().getURI().getPath());
+		return new PathPatternPredicate(pattern, caseSensitive);
+	}
+
+	/**
+	 * Predicate returned by {@link PathRoutePredicateFactory}. Exposes the parsed
+	 * {@link PathPattern} so that routes can be indexed by path.
+	 */
+	public static class PathPatternPredicate implements GatewayPredicate {
 
-			// 匹配
-			boolean match = pattern.matches(path);
-			traceMatch("Pattern", pattern.getPatternString(), path, match);
+		private final PathPattern pattern;
+		private final boolean caseSensitive;
+
+		PathPatternPredicate(PathPattern pattern, boolean caseSensitive) {
+			this.pattern = pattern;
+			this.caseSensitive = caseSensitive;
+		}
+
+		public PathPattern getPattern() {
+			return this.pattern;
+		}
+
+		public boolean isCaseSensitive() {
+			return this.caseSensitive;
+		}
+
+		@Override
+		public boolean test(ServerWebExchange exchange) {
+			// 同一请求的所有 Path 断言共用解析后的路径
+			PathContainer path = getPathContainer(exchange);
+
+			// 匹配，同时解析路径参数，例如 path=/foo/123 <=> /foo/{segment}
+			PathMatchInfo uriTemplateVariables = this.pattern.matchAndExtract(path);
+			boolean match = uriTemplateVariables != null;
+			traceMatch("Pattern", this.pattern.getPatternString(), path, match);
 			if (match) {
-			    // 解析 路径参数，例如 path=/foo/123 <=> /foo/{segment}
-				PathMatchInfo uriTemplateVariables = pattern.matchAndExtract(path);
-				exchange.getAttributes().put(URI_TEMPLATE_VARIABLES_ATTRIBUTE, uriTemplateVariables);
-				return true;
+				GatewayContext.get(exchange).setUriTemplateVariables(uriTemplateVariables);
 			}
-			else {
-				return false;
-			}
-		};
+			return match;
+		}
+
+		@Override
+		public String toString() {
+			return "Path: " + this.pattern.getPatternString();
+		}
 	}
 }
@@ -42,6 +42,11 @@ public class QueryRoutePredicateFactory implements RoutePredicateFactory {
 		return false;
 	}
 
+	@Override
+	public int cost() {
+		return HIGH_COST;
+	}
+
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		validateMin(1, args);
@@ -32,10 +32,35 @@ public interface RoutePredicateFactory extends ArgumentHints {
 
     String PATTERN_KEY = "pattern";
 
+	/**
+	 * Cost of a predicate that compares a single value, such as the request method.
+	 */
+	int LOW_COST = 100;
+
+	/**
+	 * Cost of predicates that do not declare one.
+	 */
+	int DEFAULT_COST = 500;
+
+	/**
+	 * Cost of a predicate that evaluates regular expressions.
+	 */
+	int HIGH_COST = 1000;
+
 	Predicate<ServerWebExchange> apply(Tuple args);
 
 	default String name() {
 		return NameUtils.normalizePredicateName(getClass());
 	}
 
+	/**
+	 * Relative cost of evaluating the predicates created by this factory. When a route
+	 * declares several predicates the cheapest ones are evaluated first, so that
+	 * expensive ones only run for requests that already passed the others.
+	 * @return the cost, lower values are evaluated first
+	 */
+	default int cost() {
+		return DEFAULT_COST;
+	}
+
 }
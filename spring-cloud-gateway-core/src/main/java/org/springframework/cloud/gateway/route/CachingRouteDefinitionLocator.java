@@ -18,44 +18,96 @@
 package org.springframework.cloud.gateway.route;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.context.event.EventListener;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
+ * {@link RouteDefinitionLocator} that caches the definitions of its delegate. A
+ * refresh collects the definitions on another thread and swaps them in once
+ * complete, like {@link CachingRouteLocator}. A {@link CachingRouteLocator} given this
+ * locator refreshes it itself, before building routes from it.
+ *
  * @author Spencer Gibb
  */
 public class CachingRouteDefinitionLocator implements RouteDefinitionLocator {
 
+	private static final Log logger = LogFactory.getLog(CachingRouteDefinitionLocator.class);
+
 	private final RouteDefinitionLocator delegate;
-	private final AtomicReference<List<RouteDefinition>> cachedRoutes = new AtomicReference<>();
+	private final AtomicLong versions = new AtomicLong();
+	private final AtomicReference<Definitions> cachedRoutes = new AtomicReference<>();
+	private volatile boolean refreshedByRouteLocator;
 
 	public CachingRouteDefinitionLocator(RouteDefinitionLocator delegate) {
 		this.delegate = delegate;
-		this.cachedRoutes.compareAndSet(null, collectRoutes());
+		collectRoutes(false).block();
 	}
 
 	@Override
 	public Flux<RouteDefinition> getRouteDefinitions() {
-		return Flux.fromIterable(this.cachedRoutes.get());
+		return Flux.fromIterable(this.cachedRoutes.get().routes);
 	}
 
 	/**
-	 * Sets the new routes
+	 * Starts collecting new routes, they replace the current ones once complete.
 	 * @return old routes
 	 */
 	public Flux<RouteDefinition> refresh() {
-		return Flux.fromIterable(this.cachedRoutes.getAndUpdate(
-				routes -> CachingRouteDefinitionLocator.this.collectRoutes()));
+		List<RouteDefinition> routes = this.cachedRoutes.get().routes;
+		collectRoutes().subscribe(null, error -> logger.error("Unable to refresh route definitions", error));
+		return Flux.fromIterable(routes);
+	}
+
+	/**
+	 * Collects the definitions off the subscribing thread and swaps them in.
+	 */
+	Mono<List<RouteDefinition>> collectRoutes() {
+		return collectRoutes(true);
+	}
+
+	private Mono<List<RouteDefinition>> collectRoutes(boolean async) {
+		return Mono.defer(() -> {
+			long version = this.versions.incrementAndGet();
+			Mono<List<RouteDefinition>> collected = this.delegate.getRouteDefinitions().collectList();
+			if (async) {
+				collected = collected.subscribeOn(Schedulers.elastic());
+			}
+			return collected
+					.doOnNext(routes -> this.cachedRoutes.accumulateAndGet(new Definitions(version, routes),
+							(previous, next) -> previous == null || next.version > previous.version ? next : previous));
+		});
 	}
 
-	private List<RouteDefinition> collectRoutes() {
-		return this.delegate.getRouteDefinitions().collectList().block();
+	/**
+	 * Leaves refreshing on {@link RefreshRoutesEvent} to the {@link CachingRouteLocator}
+	 * building routes from this locator.
+	 */
+	void setRefreshedByRouteLocator() {
+		this.refreshedByRouteLocator = true;
 	}
 
 	@EventListener(RefreshRoutesEvent.class)
     /* for testing */ void handleRefresh() {
-        refresh();
+		if (!this.refreshedByRouteLocator) {
+			refresh();
+		}
     }
+
+	private static final class Definitions {
+
+		private final long version;
+		private final List<RouteDefinition> routes;
+
+		Definitions(long version, List<RouteDefinition> routes) {
+			this.version = version;
+			this.routes = routes;
+		}
+	}
 }
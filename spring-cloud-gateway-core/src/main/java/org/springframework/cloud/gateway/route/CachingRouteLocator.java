@@ -17,52 +17,249 @@
 
 package org.springframework.cloud.gateway.route;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * {@link RouteLocator} that serves routes from an immutable {@link RouteSnapshot}.
+ * A refresh builds the next snapshot on another thread, so the thread publishing the
+ * {@link RefreshRoutesEvent}, possibly an event loop, is never blocked.
+ *
+ * <p>When the time window of an
+ * {@link org.springframework.cloud.gateway.handler.predicate.AfterRoutePredicateFactory After},
+ * {@link org.springframework.cloud.gateway.handler.predicate.BeforeRoutePredicateFactory Before}
+ * or {@link org.springframework.cloud.gateway.handler.predicate.BetweenRoutePredicateFactory Between}
+ * route opens or closes, the index of the current snapshot is rebuilt over the same
+ * routes, so that only active routes are in it.
+ *
+ * <p>The {@link CachingRouteDefinitionLocator}s the routes are built from are refreshed
+ * first, so that a refresh never builds routes from the previous definitions. Once
+ * the new snapshot is swapped in, a {@link RouteSnapshotSwappedEvent} is published.
+ *
  * @author Spencer Gibb
  */
-public class CachingRouteLocator implements RouteLocator {
+public class CachingRouteLocator implements RouteLocator, ApplicationEventPublisherAware {
+
+	private static final Log logger = LogFactory.getLog(CachingRouteLocator.class);
 
 	private final RouteLocator delegate;
+	private final List<CachingRouteDefinitionLocator> definitionLocators;
+	private final AtomicLong versions = new AtomicLong();
     /**
      * 路由缓存
      */
-	private final AtomicReference<List<Route>> cachedRoutes = new AtomicReference<>();
+	private final AtomicReference<RouteSnapshot> snapshot = new AtomicReference<>();
+	private volatile SnapshotFailure lastFailure;
+	private final AtomicReference<Disposable> activation = new AtomicReference<>();
+	private ApplicationEventPublisher publisher;
 
 	public CachingRouteLocator(RouteLocator delegate) {
+		this(delegate, Collections.emptyList());
+	}
+
+	public CachingRouteLocator(RouteLocator delegate, List<CachingRouteDefinitionLocator> definitionLocators) {
 		this.delegate = delegate;
-		this.cachedRoutes.compareAndSet(null, collectRoutes());
+		this.definitionLocators = definitionLocators;
+		// 定义由路由刷新时先行刷新，不再各自响应刷新事件
+		for (CachingRouteDefinitionLocator definitionLocator : definitionLocators) {
+			definitionLocator.setRefreshedByRouteLocator();
+		}
+		// 启动时在当前线程构建第一个快照，路由可能依赖仍在创建中的 Bean
+		buildSnapshot(false).block();
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+		this.publisher = publisher;
 	}
 
 	@Override
 	public Flux<Route> getRoutes() {
-		return Flux.fromIterable(this.cachedRoutes.get());
+		return Flux.fromIterable(this.snapshot.get().getIndex().getRoutes());
 	}
 
 	/**
-	 * Sets the new routes
+	 * @return the index over the current routes
+	 */
+	public RouteIndex getRouteIndex() {
+		return this.snapshot.get().getIndex();
+	}
+
+	/**
+	 * @return the current route snapshot
+	 */
+	public RouteSnapshot getSnapshot() {
+		return this.snapshot.get();
+	}
+
+	/**
+	 * @return the failure of the last snapshot build, or {@code null} if no build
+	 * failed since the current snapshot was built
+	 */
+	public SnapshotFailure getLastFailure() {
+		return this.lastFailure;
+	}
+
+	/**
+	 * Starts refreshing the route definitions and then building new routes from them,
+	 * they replace the current ones once complete.
 	 * @return old routes
 	 */
 	public Flux<Route> refresh() {
-		return Flux.fromIterable(this.cachedRoutes.getAndUpdate(
-				routes -> CachingRouteLocator.this.collectRoutes()));
+		List<Route> routes = this.snapshot.get().getIndex().getRoutes();
+		refreshDefinitions().then(buildSnapshot()).subscribe(
+				snapshot -> {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Built " + snapshot);
+					}
+				},
+				error -> logger.error("Unable to refresh routes, keeping version "
+						+ this.snapshot.get().getVersion(), error));
+		return Flux.fromIterable(routes);
+	}
+
+	/**
+	 * Refreshes the route definitions, keeping the current definitions of a locator
+	 * that fails.
+	 */
+	private Mono<Void> refreshDefinitions() {
+		return Flux.fromIterable(this.definitionLocators)
+				.flatMap(definitionLocator -> definitionLocator.collectRoutes()
+						.onErrorResume(error -> {
+							logger.error("Unable to refresh route definitions", error);
+							return Mono.empty();
+						}))
+				.then();
+	}
+
+	/* for testing */ Mono<RouteSnapshot> buildSnapshot() {
+		return buildSnapshot(true);
+	}
+
+	/**
+	 * Builds the next snapshot and swaps it in, unless a snapshot of a later refresh
+	 * was swapped in first.
+	 * @param async whether to build off the subscribing thread
+	 */
+	private Mono<RouteSnapshot> buildSnapshot(boolean async) {
+		return Mono.defer(() -> {
+			long version = this.versions.incrementAndGet();
+			long start = System.nanoTime();
+			Mono<List<Route>> collected = this.delegate.getRoutes().collectList();
+			if (async) {
+				collected = collected.subscribeOn(Schedulers.elastic());
+			}
+			return collected
+					.map(routes -> {
+						// 排序
+						AnnotationAwareOrderComparator.sort(routes);
+						return new RouteSnapshot(version, new RouteIndex(routes), Instant.now(),
+								Duration.ofNanos(System.nanoTime() - start));
+					})
+					.doOnNext(this::swap)
+					.doOnError(error -> this.lastFailure = new SnapshotFailure(version, Instant.now(), error));
+		});
+	}
+
+	private void swap(RouteSnapshot built) {
+		RouteSnapshot current = this.snapshot.accumulateAndGet(built,
+				(previous, next) -> previous == null || next.getVersion() > previous.getVersion() ? next : previous);
+		SnapshotFailure failure = this.lastFailure;
+		if (failure != null && failure.getVersion() < current.getVersion()) {
+			this.lastFailure = null;
+		}
+		if (current == built) {
+			scheduleActivation(built);
+			// 启动时构建的第一个快照没有发布者
+			if (this.publisher != null) {
+				this.publisher.publishEvent(new RouteSnapshotSwappedEvent(this, built));
+			}
+		}
 	}
 
-	private List<Route> collectRoutes() {
-		List<Route> routes = this.delegate.getRoutes().collectList().block();
-		// 排序
-		AnnotationAwareOrderComparator.sort(routes);
-		return routes;
+	/**
+	 * Schedules rebuilding the index of the snapshot when the next route time window
+	 * opens or closes, replacing the rebuild scheduled for an earlier snapshot.
+	 */
+	private void scheduleActivation(RouteSnapshot current) {
+		Instant next = current.getIndex().getNextTransition();
+		Disposable scheduled = null;
+		if (next != null) {
+			long delay = Math.max(0, Duration.between(Instant.now(), next).toMillis() + 1);
+			scheduled = Schedulers.parallel().schedule(() -> activate(current), delay, TimeUnit.MILLISECONDS);
+		}
+		Disposable previous = this.activation.getAndSet(scheduled);
+		if (previous != null) {
+			previous.dispose();
+		}
+	}
+
+	private void activate(RouteSnapshot current) {
+		long start = System.nanoTime();
+		RouteIndex index = new RouteIndex(current.getIndex().getRoutes());
+		RouteSnapshot next = new RouteSnapshot(current.getVersion(), index, Instant.now(),
+				Duration.ofNanos(System.nanoTime() - start));
+		// 期间如果刷新了路由，新的快照已经按当前时间建立索引
+		if (this.snapshot.compareAndSet(current, next)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Route time windows changed, rebuilt index of " + next);
+			}
+			scheduleActivation(next);
+		}
+		else {
+			scheduleActivation(this.snapshot.get());
+		}
 	}
 
 	@EventListener(RefreshRoutesEvent.class)
     /* for testing */ void handleRefresh() {
         refresh();
     }
+
+	/**
+	 * Failure to build a {@link RouteSnapshot}.
+	 */
+	public static class SnapshotFailure {
+
+		private final long version;
+		private final Instant failedAt;
+		private final Throwable error;
+
+		SnapshotFailure(long version, Instant failedAt, Throwable error) {
+			this.version = version;
+			this.failedAt = failedAt;
+			this.error = error;
+		}
+
+		/**
+		 * @return the version the failed snapshot would have had
+		 */
+		public long getVersion() {
+			return this.version;
+		}
+
+		public Instant getFailedAt() {
+			return this.failedAt;
+		}
+
+		public Throwable getError() {
+			return this.error;
+		}
+	}
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Index over Ant style host patterns using {@code .} as the separator. Patterns made
+ * of literal labels only are kept in a hash map keyed by host, all other patterns are
+ * stored in a trie of reversed labels under their longest literal suffix, so that
+ * <code>**.example.org</code> is found by walking {@code org}, {@code example}.
+ *
+ * <p>A lookup returns a superset of the patterns that may match the host, the
+ * pattern itself still has to be tested by the caller.
+ */
+final class HostTrie {
+
+	private final Map<String, IntList> exact = new HashMap<>();
+	private final Node root = new Node();
+
+	/**
+	 * Add the route at the given position under the given pattern.
+	 */
+	void add(String pattern, int position) {
+		String[] labels = tokenize(pattern);
+		int literalSuffix = labels.length;
+		while (literalSuffix > 0 && isLiteral(labels[literalSuffix - 1])) {
+			literalSuffix--;
+		}
+		if (literalSuffix == 0 && labels.length > 0) {
+			this.exact.computeIfAbsent(String.join(".", labels), h -> new IntList()).add(position);
+			return;
+		}
+		Node node = this.root;
+		for (int i = labels.length - 1; i >= literalSuffix; i--) {
+			node = node.children.computeIfAbsent(labels[i], l -> new Node());
+		}
+		node.positions.add(position);
+	}
+
+	/**
+	 * Collect the positions of all routes whose pattern may match the given host.
+	 * Positions are not sorted.
+	 */
+	void collect(String host, IntList candidates) {
+		if (host == null) {
+			return;
+		}
+		String[] labels = tokenize(host);
+		IntList exact = this.exact.get(labels.length == 1 ? labels[0] : String.join(".", labels));
+		if (exact != null) {
+			candidates.addAll(exact);
+		}
+		Node node = this.root;
+		candidates.addAll(node.positions);
+		for (int i = labels.length - 1; i >= 0; i--) {
+			node = node.children.get(labels[i]);
+			if (node == null) {
+				return;
+			}
+			candidates.addAll(node.positions);
+		}
+	}
+
+	// same tokenization as AntPathMatcher, empty labels are ignored
+	private static String[] tokenize(String host) {
+		return StringUtils.tokenizeToStringArray(host, ".", false, true);
+	}
+
+	private static boolean isLiteral(String label) {
+		for (int i = 0; i < label.length(); i++) {
+			switch (label.charAt(i)) {
+				case '*':
+				case '?':
+				case '{':
+				case '}':
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class Node {
+		private final Map<String, Node> children = new HashMap<>();
+		private final IntList positions = new IntList();
+	}
+
+}
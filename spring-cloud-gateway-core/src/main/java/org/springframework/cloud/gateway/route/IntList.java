@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.Arrays;
+
+/**
+ * Minimal growable list of route positions, avoids boxing on the lookup path.
+ */
+final class IntList {
+
+	private int[] values;
+	private int size;
+
+	IntList() {
+		this(4);
+	}
+
+	IntList(int capacity) {
+		this.values = new int[capacity];
+	}
+
+	void add(int value) {
+		if (this.size == this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(4, this.size * 2));
+		}
+		this.values[this.size++] = value;
+	}
+
+	void addAll(IntList other) {
+		if (other.size == 0) {
+			return;
+		}
+		if (this.size + other.size > this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(this.size + other.size, this.size * 2));
+		}
+		System.arraycopy(other.values, 0, this.values, this.size, other.size);
+		this.size += other.size;
+	}
+
+	int get(int index) {
+		return this.values[index];
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	void sort() {
+		Arrays.sort(this.values, 0, this.size);
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(this.values, this.size);
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.StringUtils;
+
+/**
+ * Segment trie over path patterns. Each pattern segment is stored as a literal,
+ * a single segment wildcard (<code>{var}</code>, <code>*</code>, <code>?</code> or any
+ * other non literal segment) or a catch-all (<code>**</code>, <code>{*var}</code>)
+ * that matches the rest of the path.
+ *
+ * <p>A lookup returns a superset of the patterns that may match the path, the
+ * pattern itself still has to be tested by the caller.
+ */
+final class PathTrie {
+
+	private final Node root = new Node();
+
+	/**
+	 * Add the route at the given position under the given pattern.
+	 */
+	void add(String pattern, int position) {
+		Node node = this.root;
+		for (String segment : StringUtils.tokenizeToStringArray(pattern, "/", false, true)) {
+			if (isCatchAll(segment)) {
+				node.catchAll.add(position);
+				return;
+			}
+			if (isLiteral(segment)) {
+				node = node.literals.computeIfAbsent(segment, s -> new Node());
+			}
+			else {
+				if (node.wildcard == null) {
+					node.wildcard = new Node();
+				}
+				node = node.wildcard;
+			}
+		}
+		node.terminal.add(position);
+	}
+
+	/**
+	 * Collect the positions of all routes whose pattern may match the given path.
+	 * Positions are not sorted.
+	 */
+	void collect(PathContainer path, IntList candidates) {
+		List<PathContainer.Element> elements = path.elements();
+		List<String> segments = new ArrayList<>(elements.size());
+		for (PathContainer.Element element : elements) {
+			if (element instanceof PathContainer.PathSegment) {
+				segments.add(((PathContainer.PathSegment) element).valueToMatch());
+			}
+		}
+		collect(this.root, segments, 0, candidates);
+	}
+
+	private void collect(Node node, List<String> segments, int index, IntList candidates) {
+		candidates.addAll(node.catchAll);
+		if (index == segments.size()) {
+			candidates.addAll(node.terminal);
+			// "/foo/*" matches "/foo/" as the trailing separator is an empty segment
+			if (node.wildcard != null) {
+				candidates.addAll(node.wildcard.catchAll);
+				candidates.addAll(node.wildcard.terminal);
+			}
+			return;
+		}
+		Node literal = node.literals.get(segments.get(index));
+		if (literal != null) {
+			collect(literal, segments, index + 1, candidates);
+		}
+		if (node.wildcard != null) {
+			collect(node.wildcard, segments, index + 1, candidates);
+		}
+	}
+
+	private static boolean isCatchAll(String segment) {
+		return segment.contains("**") || segment.startsWith("{*");
+	}
+
+	private static boolean isLiteral(String segment) {
+		for (int i = 0; i < segment.length(); i++) {
+			switch (segment.charAt(i)) {
+				case '*':
+				case '?':
+				case '{':
+				case '}':
+				case '%':
+				case ';':
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class Node {
+		private final Map<String, Node> literals = new HashMap<>();
+		private Node wildcard;
+		private final IntList terminal = new IntList();
+		private final IntList catchAll = new IntList();
+	}
+
+}
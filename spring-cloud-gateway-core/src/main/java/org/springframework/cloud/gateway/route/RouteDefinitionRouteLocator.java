@@ -27,6 +27,7 @@ import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.AllOfGatewayPredicate;
 import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
 import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
 import org.springframework.cloud.gateway.support.ArgumentHints;
@@ -42,7 +43,9 @@ import org.springframework.tuple.TupleBuilder;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 
+import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -67,6 +70,11 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 	private final GatewayProperties gatewayProperties;
 	private final SpelExpressionParser parser = new SpelExpressionParser();
 	private BeanFactory beanFactory;
+    /**
+     * 已编译的 Route 缓存，RouteDefinition 内容不变时复用
+     * key ：{@link RouteDefinition#getId()}
+     */
+	private final Map<String, CompiledRoute> compiledRoutes = new ConcurrentHashMap<>();
 
 	public RouteDefinitionRouteLocator(RouteDefinitionLocator routeDefinitionLocator,
 									   List<RoutePredicateFactory> predicates,
@@ -104,15 +112,21 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 
 	@Override
 	public Flux<Route> getRoutes() {
+		Set<String> ids = ConcurrentHashMap.newKeySet();
 		return this.routeDefinitionLocator.getRouteDefinitions()
-				.map(this::convertToRoute) // RouteDefinition => Route
+				.map(routeDefinition -> { // RouteDefinition => Route
+					ids.add(routeDefinition.getId());
+					return compile(routeDefinition);
+				})
 				//TODO: error handling
 				.map(route -> { // 打印日志
 					if (logger.isDebugEnabled()) {
 						logger.debug("RouteDefinition matched: " + route.getId());
 					}
 					return route;
-				});
+				})
+				// 移除已删除的 RouteDefinition
+				.doOnComplete(() -> this.compiledRoutes.keySet().retainAll(ids));
 
 
 		/* TODO: trace logging
@@ -121,6 +135,25 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 			}*/
 	}
 
+	/**
+	 * Returns the route compiled for the same definition content, if any, so that a
+	 * refresh only recompiles definitions that were added or changed. SpEL arguments
+	 * are evaluated when a definition is compiled.
+	 */
+	private Route compile(RouteDefinition routeDefinition) {
+		DefinitionKey key = new DefinitionKey(routeDefinition, this.gatewayProperties.getDefaultFilters());
+		CompiledRoute compiled = this.compiledRoutes.get(routeDefinition.getId());
+		if (compiled != null && compiled.key.equals(key)) {
+			return compiled.route;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Compiling RouteDefinition " + routeDefinition.getId());
+		}
+		Route route = convertToRoute(routeDefinition);
+		this.compiledRoutes.put(routeDefinition.getId(), new CompiledRoute(key, route));
+		return route;
+	}
+
 	private Route convertToRoute(RouteDefinition routeDefinition) {
 	    // 合并 Predicate
 		Predicate<ServerWebExchange> predicate = combinePredicates(routeDefinition);
@@ -235,24 +268,32 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 	}
 
 	private Predicate<ServerWebExchange> combinePredicates(RouteDefinition routeDefinition) {
-	    // 寻找 Predicate
-		List<PredicateDefinition> predicates = routeDefinition.getPredicates();
-		Predicate<ServerWebExchange> predicate = lookup(routeDefinition, predicates.get(0));
-		// 拼接 Predicate
-		for (PredicateDefinition andPredicate : predicates.subList(1, predicates.size())) {
-			Predicate<ServerWebExchange> found = lookup(routeDefinition, andPredicate);
-			predicate = predicate.and(found);
+	    // 寻找 RoutePredicateFactory ，按 cost 排序，开销小的 Predicate 先执行
+		List<PredicateDefinition> predicates = new ArrayList<>(routeDefinition.getPredicates());
+		predicates.sort(Comparator.comparingInt(definition -> findFactory(definition).cost()));
+		// 创建 Predicate
+		List<Predicate<ServerWebExchange>> found = new ArrayList<>(predicates.size());
+		for (PredicateDefinition definition : predicates) {
+			found.add(lookup(routeDefinition, definition));
 		}
 		// 返回 Predicate
-		return predicate;
+		if (found.size() == 1) {
+			return found.get(0);
+		}
+		return new AllOfGatewayPredicate(found);
 	}
 
-	private Predicate<ServerWebExchange> lookup(RouteDefinition routeDefinition, PredicateDefinition predicate) {
-	    // 获得 RoutePredicateFactory
+	private RoutePredicateFactory findFactory(PredicateDefinition predicate) {
 		RoutePredicateFactory found = this.predicates.get(predicate.getName());
 		if (found == null) {
 			throw new IllegalArgumentException("Unable to find RoutePredicateFactory with name " + predicate.getName());
 		}
+		return found;
+	}
+
+	private Predicate<ServerWebExchange> lookup(RouteDefinition routeDefinition, PredicateDefinition predicate) {
+	    // 获得 RoutePredicateFactory
+		RoutePredicateFactory found = findFactory(predicate);
 		// 获得 Tuple
 		Map<String, String> args = predicate.getArgs();
 		if (logger.isDebugEnabled()) {
@@ -264,4 +305,75 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 		return found.apply(tuple);
 	}
 
+	private static final class CompiledRoute {
+
+		private final DefinitionKey key;
+		private final Route route;
+
+		CompiledRoute(DefinitionKey key, Route route) {
+			this.key = key;
+			this.route = route;
+		}
+	}
+
+	/**
+	 * Copy of everything a {@link Route} is compiled from, definitions are mutable.
+	 */
+	private static final class DefinitionKey {
+
+		private final URI uri;
+		private final int order;
+		private final List<PredicateDefinition> predicates;
+		private final List<FilterDefinition> filters;
+		private final List<FilterDefinition> defaultFilters;
+		private final int hash;
+
+		DefinitionKey(RouteDefinition routeDefinition, List<FilterDefinition> defaultFilters) {
+			this.uri = routeDefinition.getUri();
+			this.order = routeDefinition.getOrder();
+			this.predicates = routeDefinition.getPredicates().stream()
+					.map(DefinitionKey::copy).collect(Collectors.toList());
+			this.filters = routeDefinition.getFilters().stream()
+					.map(DefinitionKey::copy).collect(Collectors.toList());
+			this.defaultFilters = defaultFilters.stream()
+					.map(DefinitionKey::copy).collect(Collectors.toList());
+			this.hash = Objects.hash(this.uri, this.order, this.predicates, this.filters, this.defaultFilters);
+		}
+
+		private static PredicateDefinition copy(PredicateDefinition definition) {
+			PredicateDefinition copy = new PredicateDefinition();
+			copy.setName(definition.getName());
+			copy.setArgs(new LinkedHashMap<>(definition.getArgs()));
+			return copy;
+		}
+
+		private static FilterDefinition copy(FilterDefinition definition) {
+			FilterDefinition copy = new FilterDefinition();
+			copy.setName(definition.getName());
+			copy.setArgs(new LinkedHashMap<>(definition.getArgs()));
+			return copy;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof DefinitionKey)) {
+				return false;
+			}
+			DefinitionKey other = (DefinitionKey) o;
+			return this.hash == other.hash && this.order == other.order
+					&& Objects.equals(this.uri, other.uri)
+					&& this.predicates.equals(other.predicates)
+					&& this.filters.equals(other.filters)
+					&& this.defaultFilters.equals(other.defaultFilters);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+
 }
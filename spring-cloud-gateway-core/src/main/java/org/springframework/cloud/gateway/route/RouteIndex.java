@@ -0,0 +1,338 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.springframework.cloud.gateway.handler.predicate.AllOfGatewayPredicate;
+import org.springframework.cloud.gateway.handler.predicate.AndGatewayPredicate;
+import org.springframework.cloud.gateway.handler.predicate.BetweenRoutePredicateFactory.TimeWindowPredicate;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory.HostPatternPredicate;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory.MethodPredicate;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory.PathPatternPredicate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.getPathContainer;
+
+/**
+ * Index over an ordered list of {@link Route}s that narrows each request down to
+ * the routes that can possibly match it.
+ *
+ * <p>Routes whose predicate requires a
+ * {@link org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory Path}
+ * match are stored in a {@link PathTrie} under their pattern, routes whose predicate
+ * requires a {@link org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory Host}
+ * match are stored in a {@link HostTrie}. A route with both is only a candidate when
+ * both indexes return it. All other routes, for example those built from an opaque
+ * lambda or combined with {@code or}, are kept in a fallback list that is checked for
+ * every request. Candidates are tested in the original route order, so the first
+ * matching route is the same one a linear scan would return.
+ *
+ * <p>Routes that require an
+ * {@link org.springframework.cloud.gateway.handler.predicate.AfterRoutePredicateFactory After},
+ * {@link org.springframework.cloud.gateway.handler.predicate.BeforeRoutePredicateFactory Before}
+ * or {@link org.springframework.cloud.gateway.handler.predicate.BetweenRoutePredicateFactory Between}
+ * match whose window is closed when the index is built are left out of it entirely.
+ * {@link #getNextTransition()} tells when a window opens or closes next, at which
+ * point the index has to be rebuilt.
+ */
+public class RouteIndex {
+
+	private static final int PATH = 1;
+	private static final int HOST = 2;
+
+	private final List<Route> routes;
+	private final PathTrie pathTrie = new PathTrie();
+	private final HostTrie hostTrie = new HostTrie();
+	// the indexes each route has to be returned by, 0 for unindexed routes
+	private final int[] required;
+	private final int[] unindexed;
+	// whether a route's predicate only depends on the method, host and path
+	private final boolean[] cacheable;
+	private final boolean pathIndexed;
+	private final boolean hostIndexed;
+	private final Instant nextTransition;
+
+	public RouteIndex(List<Route> routes) {
+		this(routes, Instant.now());
+	}
+
+	/**
+	 * @param routes the routes, in order
+	 * @param now the time used to decide which routes are active
+	 */
+	public RouteIndex(List<Route> routes, Instant now) {
+		this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+		this.required = new int[this.routes.size()];
+		this.cacheable = new boolean[this.routes.size()];
+		IntList unindexed = new IntList();
+		Instant next = null;
+		for (int i = 0; i < this.routes.size(); i++) {
+			Predicate<ServerWebExchange> predicate = this.routes.get(i).getPredicate();
+			// 时间窗口未开启或已结束的路由不进入索引
+			Window window = Window.of(predicate);
+			next = earliest(next, window.nextTransition(now));
+			if (!window.isOpen(now)) {
+				continue;
+			}
+			PathPatternPredicate path = find(predicate, PathPatternPredicate.class);
+			if (path != null && path.isCaseSensitive()) {
+				this.pathTrie.add(path.getPattern().getPatternString(), i);
+				this.required[i] |= PATH;
+			}
+			HostPatternPredicate host = find(predicate, HostPatternPredicate.class);
+			if (host != null && host.isDefaultPathMatcher()) {
+				this.hostTrie.add(host.getPattern(), i);
+				this.required[i] |= HOST;
+			}
+			if (this.required[i] == 0) {
+				unindexed.add(i);
+			}
+			this.cacheable[i] = isCacheable(predicate);
+		}
+		this.unindexed = unindexed.toArray();
+		this.pathIndexed = Arrays.stream(this.required).anyMatch(r -> (r & PATH) != 0);
+		this.hostIndexed = Arrays.stream(this.required).anyMatch(r -> (r & HOST) != 0);
+		this.nextTransition = next;
+	}
+
+	/**
+	 * @return all routes, in order
+	 */
+	public List<Route> getRoutes() {
+		return this.routes;
+	}
+
+	/**
+	 * @return when the time window of a route opens or closes next, or {@code null} if
+	 * no route has a window that changes after the index was built
+	 */
+	public Instant getNextTransition() {
+		return this.nextTransition;
+	}
+
+	/**
+	 * @return the first route whose predicate matches the exchange, or {@code null}
+	 */
+	public Route lookup(ServerWebExchange exchange) {
+		return match(exchange).getRoute();
+	}
+
+	/**
+	 * Find the first route whose predicate matches the exchange, recording whether the
+	 * result only depends on the request method, host and path.
+	 */
+	Match match(ServerWebExchange exchange) {
+		IntList paths = new IntList();
+		if (this.pathIndexed) {
+			this.pathTrie.collect(getPathContainer(exchange), paths);
+			paths.sort();
+		}
+		IntList hosts = new IntList();
+		if (this.hostIndexed) {
+			this.hostTrie.collect(exchange.getRequest().getHeaders().getFirst(HttpHeaders.HOST), hosts);
+			hosts.sort();
+		}
+
+		// merge the candidates with the unindexed routes, all of them are in route order
+		int p = 0;
+		int h = 0;
+		int u = 0;
+		boolean cacheable = true;
+		while (true) {
+			int position = Integer.MAX_VALUE;
+			if (p < paths.size()) {
+				position = paths.get(p);
+			}
+			if (h < hosts.size()) {
+				position = Math.min(position, hosts.get(h));
+			}
+			if (u < this.unindexed.length) {
+				position = Math.min(position, this.unindexed[u]);
+			}
+			if (position == Integer.MAX_VALUE) {
+				return new Match(null, cacheable);
+			}
+			int found = 0;
+			if (p < paths.size() && paths.get(p) == position) {
+				found |= PATH;
+				p++;
+			}
+			if (h < hosts.size() && hosts.get(h) == position) {
+				found |= HOST;
+				h++;
+			}
+			if (u < this.unindexed.length && this.unindexed[u] == position) {
+				u++;
+			}
+			if (found == this.required[position]) {
+				cacheable &= this.cacheable[position];
+				Route route = this.routes.get(position);
+				if (route.getPredicate().test(exchange)) {
+					return new Match(route, cacheable);
+				}
+			}
+		}
+	}
+
+	private static boolean isCacheable(Predicate<? super ServerWebExchange> predicate) {
+		if (predicate instanceof PathPatternPredicate || predicate instanceof HostPatternPredicate
+				|| predicate instanceof MethodPredicate) {
+			return true;
+		}
+		if (predicate instanceof AndGatewayPredicate) {
+			AndGatewayPredicate and = (AndGatewayPredicate) predicate;
+			return isCacheable(and.getLeft()) && isCacheable(and.getRight());
+		}
+		if (predicate instanceof AllOfGatewayPredicate) {
+			return ((AllOfGatewayPredicate) predicate).getPredicates().stream()
+					.allMatch(RouteIndex::isCacheable);
+		}
+		return false;
+	}
+
+	/**
+	 * Find a predicate of the given type that must match for the whole predicate to
+	 * match, that is one reachable only through {@link AndGatewayPredicate}s and
+	 * {@link AllOfGatewayPredicate}s.
+	 */
+	private static <T> T find(Predicate<? super ServerWebExchange> predicate, Class<T> type) {
+		if (type.isInstance(predicate)) {
+			return type.cast(predicate);
+		}
+		if (predicate instanceof AndGatewayPredicate) {
+			AndGatewayPredicate and = (AndGatewayPredicate) predicate;
+			T found = find(and.getLeft(), type);
+			return found != null ? found : find(and.getRight(), type);
+		}
+		if (predicate instanceof AllOfGatewayPredicate) {
+			for (Predicate<ServerWebExchange> element : ((AllOfGatewayPredicate) predicate).getPredicates()) {
+				T found = find(element, type);
+				if (found != null) {
+					return found;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Collect all the predicates of the given type that must match for the whole
+	 * predicate to match.
+	 */
+	private static <T> void findAll(Predicate<? super ServerWebExchange> predicate, Class<T> type, List<T> found) {
+		if (type.isInstance(predicate)) {
+			found.add(type.cast(predicate));
+		}
+		else if (predicate instanceof AndGatewayPredicate) {
+			AndGatewayPredicate and = (AndGatewayPredicate) predicate;
+			findAll(and.getLeft(), type, found);
+			findAll(and.getRight(), type, found);
+		}
+		else if (predicate instanceof AllOfGatewayPredicate) {
+			for (Predicate<ServerWebExchange> element : ((AllOfGatewayPredicate) predicate).getPredicates()) {
+				findAll(element, type, found);
+			}
+		}
+	}
+
+	private static Instant earliest(Instant a, Instant b) {
+		if (a == null) {
+			return b;
+		}
+		return b == null || a.isBefore(b) ? a : b;
+	}
+
+	/**
+	 * Period during which a route can match, the intersection of its time predicates.
+	 * {@code from} is inclusive and {@code until} exclusive, either may be {@code null}.
+	 */
+	private static final class Window {
+
+		private final Instant from;
+		private final Instant until;
+
+		private Window(Instant from, Instant until) {
+			this.from = from;
+			this.until = until;
+		}
+
+		static Window of(Predicate<ServerWebExchange> predicate) {
+			List<TimeWindowPredicate> windows = new ArrayList<>();
+			findAll(predicate, TimeWindowPredicate.class, windows);
+			Instant from = null;
+			Instant until = null;
+			for (TimeWindowPredicate window : windows) {
+				if (window.getStart() != null) {
+					// the predicate requires a time strictly after the start
+					Instant start = window.getStart().toInstant().plusNanos(1);
+					from = from == null || start.isAfter(from) ? start : from;
+				}
+				if (window.getEnd() != null) {
+					until = earliest(until, window.getEnd().toInstant());
+				}
+			}
+			return new Window(from, until);
+		}
+
+		boolean isOpen(Instant now) {
+			return (this.from == null || !now.isBefore(this.from))
+					&& (this.until == null || now.isBefore(this.until));
+		}
+
+		Instant nextTransition(Instant now) {
+			Instant next = null;
+			if (this.from != null && this.from.isAfter(now)) {
+				next = this.from;
+			}
+			if (this.until != null && this.until.isAfter(now)) {
+				next = earliest(next, this.until);
+			}
+			return next;
+		}
+	}
+
+	/**
+	 * Result of a lookup, the matched route, or {@code null}, and whether every route
+	 * tested to find it only depends on the request method, host and path.
+	 */
+	static final class Match {
+
+		private final Route route;
+		private final boolean cacheable;
+
+		Match(Route route, boolean cacheable) {
+			this.route = route;
+			this.cacheable = cacheable;
+		}
+
+		Route getRoute() {
+			return this.route;
+		}
+
+		boolean isCacheable() {
+			return this.cacheable;
+		}
+	}
+}
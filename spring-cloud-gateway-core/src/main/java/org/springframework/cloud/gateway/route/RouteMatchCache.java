@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Bounded cache from the request method, host and path to the route matched by a
+ * {@link RouteIndex}, including the absence of a matching route.
+ *
+ * <p>A result is only cached when every route tested to find it has a predicate made
+ * of {@code Method}, {@code Host} and {@code Path} predicates. Any other predicate,
+ * such as a header, cookie, query, time or remote address predicate, may give a
+ * different result for the same method, host and path.
+ *
+ * <p>Entries remember the index they were computed from and are ignored once the
+ * routes have been refreshed, so a stale route is never returned even before the
+ * cache is cleared on {@link RefreshRoutesEvent}.
+ */
+public class RouteMatchCache {
+
+	private final Cache<Key, Entry> cache;
+	private final long maximumSize;
+
+	public RouteMatchCache(long maximumSize) {
+		this.maximumSize = maximumSize;
+		this.cache = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+	}
+
+	/**
+	 * @return the first route of the index whose predicate matches the exchange, or
+	 * {@code null}
+	 */
+	public Route lookup(RouteIndex index, ServerWebExchange exchange) {
+		ServerHttpRequest request = exchange.getRequest();
+		Key key = new Key(request.getMethodValue(), request.getHeaders().getFirst(HttpHeaders.HOST),
+				request.getURI().getPath());
+		Entry entry = this.cache.getIfPresent(key);
+		if (entry != null && entry.index == index) {
+			if (entry.route == null) {
+				return null;
+			}
+			// the predicate is tested again as it may set attributes, such as the uri template variables
+			if (entry.route.getPredicate().test(exchange)) {
+				return entry.route;
+			}
+		}
+		RouteIndex.Match match = index.match(exchange);
+		if (match.isCacheable()) {
+			this.cache.put(key, new Entry(index, match.getRoute()));
+		}
+		return match.getRoute();
+	}
+
+	@EventListener(RefreshRoutesEvent.class)
+	public void invalidate() {
+		this.cache.invalidateAll();
+	}
+
+	/**
+	 * @return the size, hit ratio and eviction count of the cache
+	 */
+	public Map<String, Object> statistics() {
+		CacheStats stats = this.cache.stats();
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("size", this.cache.estimatedSize());
+		statistics.put("maximumSize", this.maximumSize);
+		statistics.put("hitCount", stats.hitCount());
+		statistics.put("missCount", stats.missCount());
+		statistics.put("hitRate", stats.hitRate());
+		statistics.put("evictionCount", stats.evictionCount());
+		return statistics;
+	}
+
+	private static final class Key {
+
+		private final String method;
+		private final String host;
+		private final String path;
+		private final int hash;
+
+		Key(String method, String host, String path) {
+			this.method = method;
+			this.host = host;
+			this.path = path;
+			this.hash = Objects.hash(method, host, path);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return Objects.equals(this.method, other.method) && Objects.equals(this.host, other.host)
+					&& Objects.equals(this.path, other.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+
+	private static final class Entry {
+
+		private final RouteIndex index;
+		private final Route route;
+
+		Entry(RouteIndex index, Route route) {
+			this.index = index;
+			this.route = route;
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Immutable, versioned route table built by {@link CachingRouteLocator}. A refresh
+ * builds a new snapshot and swaps it in once complete, requests already matched
+ * against an older snapshot keep using its routes.
+ */
+public class RouteSnapshot {
+
+	private final long version;
+	private final RouteIndex index;
+	private final Instant builtAt;
+	private final Duration buildDuration;
+
+	public RouteSnapshot(long version, RouteIndex index, Instant builtAt, Duration buildDuration) {
+		this.version = version;
+		this.index = index;
+		this.builtAt = builtAt;
+		this.buildDuration = buildDuration;
+	}
+
+	/**
+	 * @return the version of the snapshot, later refreshes have higher versions
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	public RouteIndex getIndex() {
+		return this.index;
+	}
+
+	public Instant getBuiltAt() {
+		return this.builtAt;
+	}
+
+	public Duration getBuildDuration() {
+		return this.buildDuration;
+	}
+
+	@Override
+	public String toString() {
+		return "RouteSnapshot{" +
+				"version=" + version +
+				", routes=" + index.getRoutes().size() +
+				", builtAt=" + builtAt +
+				", buildDuration=" + buildDuration +
+				'}';
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by the {@link CachingRouteLocator} once the snapshot built by a refresh
+ * replaced the current one, so that state kept per route can be pruned.
+ */
+public class RouteSnapshotSwappedEvent extends ApplicationEvent {
+
+	private final RouteSnapshot snapshot;
+
+	public RouteSnapshotSwappedEvent(Object source, RouteSnapshot snapshot) {
+		super(source);
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * @return the snapshot now serving the routes
+	 */
+	public RouteSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.springframework.util.Assert;
+
+/**
+ * Set of IPv4 and IPv6 networks in CIDR notation, stored in binary Patricia tries
+ * over the raw address bytes. Checking whether an address belongs to one of the
+ * networks takes at most one step per address bit, whatever the number of networks,
+ * and works on {@link InetAddress#getAddress()} without formatting the address.
+ *
+ * <p>Networks include all of their addresses, {@code 192.168.1.0/24} contains
+ * {@code 192.168.1.0} to {@code 192.168.1.255}. An address without a prefix length is
+ * a single host. Networks can be added concurrently with lookups only if the caller
+ * publishes the trie safely, in practice a trie is filled once and then only read.
+ */
+public class CidrTrie {
+
+	private Node ipv4;
+	private Node ipv6;
+	private int size;
+
+	/**
+	 * Add a network, for example {@code 10.0.0.0/8}, {@code 192.168.1.1} or
+	 * {@code 2001:db8::/32}.
+	 * @throws IllegalArgumentException if the network is not valid
+	 */
+	public CidrTrie add(String cidr) {
+		Assert.hasText(cidr, "cidr can not be empty");
+		String source = cidr.trim();
+		int slash = source.indexOf('/');
+		String address = slash < 0 ? source : source.substring(0, slash);
+		boolean ipv6Literal = address.indexOf(':') >= 0;
+		byte[] bytes = parseAddress(address, cidr);
+		int bits = ipv6Literal ? 128 : 32;
+		int length = bits;
+		if (slash >= 0) {
+			try {
+				length = Integer.parseInt(source.substring(slash + 1));
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid prefix length in " + cidr, e);
+			}
+			Assert.isTrue(length >= 0 && length <= bits, "Invalid prefix length in " + cidr);
+		}
+		if (ipv6Literal && bytes.length == 4) {
+			// IPv4 mapped IPv6 address, remote addresses of that form are IPv4 addresses
+			Assert.isTrue(length >= 96, "Invalid prefix length for an IPv4 mapped address in " + cidr);
+			length -= 96;
+		}
+		mask(bytes, length);
+		if (bytes.length == 4) {
+			this.ipv4 = insert(this.ipv4, bytes, length);
+		}
+		else {
+			this.ipv6 = insert(this.ipv6, bytes, length);
+		}
+		this.size++;
+		return this;
+	}
+
+	/**
+	 * @return the number of networks added
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public boolean contains(InetAddress address) {
+		return address != null && contains(address.getAddress());
+	}
+
+	/**
+	 * @param address the raw address, 4 bytes for IPv4 and 16 bytes for IPv6
+	 */
+	public boolean contains(byte[] address) {
+		Node node = address.length == 4 ? this.ipv4 : this.ipv6;
+		int checked = 0;
+		while (node != null) {
+			if (!matches(node.key, address, checked, node.length)) {
+				return false;
+			}
+			if (node.terminal) {
+				return true;
+			}
+			if (node.length == address.length * 8) {
+				return false;
+			}
+			checked = node.length;
+			node = node.children[bit(address, node.length)];
+		}
+		return false;
+	}
+
+	private static Node insert(Node node, byte[] key, int length) {
+		if (node == null) {
+			return new Node(key, length, true);
+		}
+		int common = commonPrefix(node.key, key, 0, Math.min(node.length, length));
+		if (common == node.length) {
+			if (node.terminal) {
+				// already covered by a larger network
+				return node;
+			}
+			if (length == node.length) {
+				node.terminal = true;
+				return node;
+			}
+			int bit = bit(key, node.length);
+			node.children[bit] = insert(node.children[bit], key, length);
+			return node;
+		}
+		// the new network diverges within the node's prefix, or contains it
+		Node split = new Node(key, common, common == length);
+		if (!split.terminal) {
+			split.children[bit(node.key, common)] = node;
+			split.children[bit(key, common)] = new Node(key, length, true);
+		}
+		return split;
+	}
+
+	private static byte[] parseAddress(String address, String cidr) {
+		if (address.indexOf(':') >= 0) {
+			// an IPv6 literal, resolving it does not involve a lookup
+			try {
+				return InetAddress.getByName(address).getAddress();
+			}
+			catch (UnknownHostException e) {
+				throw new IllegalArgumentException("Invalid IPv6 address in " + cidr, e);
+			}
+		}
+		String[] octets = address.split("\\.", -1);
+		Assert.isTrue(octets.length == 4, "Invalid IPv4 address in " + cidr);
+		byte[] bytes = new byte[4];
+		for (int i = 0; i < 4; i++) {
+			int octet;
+			try {
+				octet = Integer.parseInt(octets[i]);
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid IPv4 address in " + cidr, e);
+			}
+			Assert.isTrue(octet >= 0 && octet <= 255, "Invalid IPv4 address in " + cidr);
+			bytes[i] = (byte) octet;
+		}
+		return bytes;
+	}
+
+	// clear the bits after the prefix, so that 192.168.1.1/24 is 192.168.1.0/24
+	private static void mask(byte[] bytes, int length) {
+		for (int i = 0; i < bytes.length; i++) {
+			int remaining = length - i * 8;
+			if (remaining <= 0) {
+				bytes[i] = 0;
+			}
+			else if (remaining < 8) {
+				bytes[i] &= (byte) (0xff << (8 - remaining));
+			}
+		}
+	}
+
+	private static int bit(byte[] bytes, int index) {
+		return (bytes[index >>> 3] >>> (7 - (index & 7))) & 1;
+	}
+
+	private static boolean matches(byte[] key, byte[] address, int from, int to) {
+		return commonPrefix(key, address, from, to) == to;
+	}
+
+	private static int commonPrefix(byte[] a, byte[] b, int from, int max) {
+		int i = from;
+		while (i < max) {
+			if ((i & 7) == 0 && i + 8 <= max && a[i >>> 3] == b[i >>> 3]) {
+				i += 8;
+			}
+			else if (bit(a, i) == bit(b, i)) {
+				i++;
+			}
+			else {
+				break;
+			}
+		}
+		return i;
+	}
+
+	private static final class Node {
+
+		private final byte[] key;
+		private final int length;
+		private boolean terminal;
+		private final Node[] children = new Node[2];
+
+		Node(byte[] key, int length, boolean terminal) {
+			this.key = key;
+			this.length = length;
+			this.terminal = terminal;
+		}
+	}
+
+}
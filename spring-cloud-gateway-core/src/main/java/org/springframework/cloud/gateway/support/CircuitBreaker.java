@@ -0,0 +1,242 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import org.springframework.util.Assert;
+
+/**
+ * Lock-free circuit breaker over a sliding window of the last {@code windowSize}
+ * calls. The breaker opens when at least {@code minimumCalls} calls are in the window
+ * and either the share of failed calls reaches {@code failureRateThreshold} percent or
+ * the share of calls slower than {@code slowCallDuration} reaches
+ * {@code slowCallRateThreshold} percent. An open breaker rejects calls for
+ * {@code waitDuration}, then admits a single probe: the breaker closes with an empty
+ * window if the probe succeeds in time and opens again otherwise.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	/**
+	 * Outcome of {@link #tryAcquire()}, handed back with the result of the call.
+	 */
+	public enum Permit {
+		REJECTED, ADMITTED, PROBE
+	}
+
+	// 窗口的三个计数打包在一个 long 里，一次 CAS 同时更新：调用数、失败数、慢调用数各占 21 位
+	private static final int COUNT_BITS = 21;
+
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+	private static final long CALL = 1L;
+
+	private static final long FAILURE = 1L << COUNT_BITS;
+
+	private static final long SLOW = 1L << (2 * COUNT_BITS);
+
+	private final int windowSize;
+
+	private final int minimumCalls;
+
+	private final int failureRateThreshold;
+
+	private final int slowCallRateThreshold;
+
+	private final long slowCallNanos;
+
+	private final long waitNanos;
+
+	private final LongSupplier clock;
+
+	private final AtomicLongArray outcomes;
+
+	private final AtomicLong next = new AtomicLong();
+
+	private final AtomicLong totals = new AtomicLong();
+
+	private final AtomicReference<Status> status = new AtomicReference<>(new Status(State.CLOSED, 0));
+
+	public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold,
+			int slowCallRateThreshold, Duration slowCallDuration, Duration waitDuration) {
+		this(windowSize, minimumCalls, failureRateThreshold, slowCallRateThreshold,
+				slowCallDuration, waitDuration, System::nanoTime);
+	}
+
+	CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold,
+			int slowCallRateThreshold, Duration slowCallDuration, Duration waitDuration, LongSupplier clock) {
+		Assert.isTrue(windowSize > 0 && windowSize <= COUNT_MASK, "windowSize must be between 1 and " + COUNT_MASK);
+		Assert.isTrue(minimumCalls > 0, "minimumCalls must be greater than 0");
+		Assert.isTrue(failureRateThreshold > 0 && failureRateThreshold <= 100,
+				"failureRateThreshold must be between 1 and 100");
+		Assert.isTrue(slowCallRateThreshold > 0 && slowCallRateThreshold <= 100,
+				"slowCallRateThreshold must be between 1 and 100");
+		Assert.notNull(slowCallDuration, "slowCallDuration must not be null");
+		Assert.notNull(waitDuration, "waitDuration must not be null");
+		this.windowSize = windowSize;
+		this.minimumCalls = Math.min(minimumCalls, windowSize);
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.slowCallNanos = slowCallDuration.toNanos();
+		this.waitNanos = waitDuration.toNanos();
+		this.clock = clock;
+		this.outcomes = new AtomicLongArray(windowSize);
+	}
+
+	/**
+	 * Ask to make a call.
+	 * @return {@link Permit#REJECTED} if the call must not be made, otherwise the permit
+	 * to hand back to {@link #onResult} or {@link #release}
+	 */
+	public Permit tryAcquire() {
+		for (;;) {
+			Status current = this.status.get();
+			if (current.state == State.CLOSED) {
+				return Permit.ADMITTED;
+			}
+			if (current.state == State.HALF_OPEN
+					|| this.clock.getAsLong() - current.openedAt < this.waitNanos) {
+				return Permit.REJECTED;
+			}
+			// 等待结束后，只有 CAS 成功的一个请求成为探测请求
+			if (this.status.compareAndSet(current, new Status(State.HALF_OPEN, current.openedAt))) {
+				return Permit.PROBE;
+			}
+		}
+	}
+
+	/**
+	 * Record the result of an admitted call.
+	 * @param permit the permit returned by {@link #tryAcquire()}
+	 * @param durationNanos how long the call took
+	 * @param failed whether the call failed
+	 */
+	public void onResult(Permit permit, long durationNanos, boolean failed) {
+		boolean slow = durationNanos >= this.slowCallNanos;
+		Status current = this.status.get();
+		if (permit == Permit.PROBE) {
+			if (current.state != State.HALF_OPEN) {
+				return;
+			}
+			if (failed || slow) {
+				this.status.compareAndSet(current, new Status(State.OPEN, this.clock.getAsLong()));
+			}
+			else {
+				reset();
+				this.status.compareAndSet(current, new Status(State.CLOSED, 0));
+			}
+			return;
+		}
+		// 断路器打开前已放行的请求，结果不再计入窗口
+		if (permit != Permit.ADMITTED || current.state != State.CLOSED) {
+			return;
+		}
+		long outcome = CALL | (failed ? FAILURE : 0) | (slow ? SLOW : 0);
+		int slot = (int) (this.next.getAndIncrement() % this.windowSize);
+		long evicted = this.outcomes.getAndSet(slot, outcome);
+		long totals = this.totals.addAndGet(outcome - evicted);
+		if (shouldOpen(totals)) {
+			this.status.compareAndSet(current, new Status(State.OPEN, this.clock.getAsLong()));
+		}
+	}
+
+	/**
+	 * Give back a permit whose call ended without a result, such as a cancelled one, so
+	 * that a probe can be made again.
+	 */
+	public void release(Permit permit) {
+		Status current = this.status.get();
+		if (permit == Permit.PROBE && current.state == State.HALF_OPEN) {
+			this.status.compareAndSet(current, new Status(State.OPEN, current.openedAt));
+		}
+	}
+
+	private boolean shouldOpen(long totals) {
+		long calls = totals & COUNT_MASK;
+		if (calls < this.minimumCalls) {
+			return false;
+		}
+		long failures = (totals >>> COUNT_BITS) & COUNT_MASK;
+		long slowCalls = (totals >>> (2 * COUNT_BITS)) & COUNT_MASK;
+		return failures * 100 >= this.failureRateThreshold * calls
+				|| slowCalls * 100 >= this.slowCallRateThreshold * calls;
+	}
+
+	private void reset() {
+		for (int i = 0; i < this.windowSize; i++) {
+			this.outcomes.set(i, 0);
+		}
+		this.next.set(0);
+		this.totals.set(0);
+	}
+
+	public State getState() {
+		return this.status.get().state;
+	}
+
+	/**
+	 * Return the percentage of failed calls in the window, or -1 if the window holds
+	 * fewer than {@code minimumCalls} calls.
+	 */
+	public float getFailureRate() {
+		return rate(COUNT_BITS);
+	}
+
+	/**
+	 * Return the percentage of slow calls in the window, or -1 if the window holds fewer
+	 * than {@code minimumCalls} calls.
+	 */
+	public float getSlowCallRate() {
+		return rate(2 * COUNT_BITS);
+	}
+
+	private float rate(int shift) {
+		long totals = this.totals.get();
+		long calls = totals & COUNT_MASK;
+		if (calls < this.minimumCalls) {
+			return -1;
+		}
+		return ((totals >>> shift) & COUNT_MASK) * 100f / calls;
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreaker{state=" + getState() + ", failureRate=" + getFailureRate()
+				+ ", slowCallRate=" + getSlowCallRate() + "}";
+	}
+
+	private static final class Status {
+
+		private final State state;
+
+		private final long openedAt;
+
+		Status(State state, long openedAt) {
+			this.state = state;
+			this.openedAt = openedAt;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+
+import org.springframework.util.Assert;
+
+/**
+ * How the body of a proxied request is flushed to the socket. {@link #EACH} flushes
+ * every chunk as soon as it is written, which suits streaming and interactive traffic.
+ * A {@link #batch batched} strategy lets writes accumulate and flushes them once
+ * {@code maxSize} bytes are pending or {@code maxDelay} has elapsed, trading a little
+ * latency for far fewer syscalls on bulk uploads.
+ */
+public final class FlushStrategy {
+
+	public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+	public static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(10);
+
+	public static final FlushStrategy EACH = new FlushStrategy(Mode.EACH, 0, Duration.ZERO);
+
+	public enum Mode {
+		EACH, BATCH
+	}
+
+	private final Mode mode;
+
+	private final int maxSize;
+
+	private final Duration maxDelay;
+
+	private FlushStrategy(Mode mode, int maxSize, Duration maxDelay) {
+		this.mode = mode;
+		this.maxSize = maxSize;
+		this.maxDelay = maxDelay;
+	}
+
+	public static FlushStrategy batch() {
+		return batch(DEFAULT_MAX_SIZE, DEFAULT_MAX_DELAY);
+	}
+
+	public static FlushStrategy batch(int maxSize, Duration maxDelay) {
+		Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+		Assert.isTrue(maxDelay != null && !maxDelay.isNegative() && !maxDelay.isZero(),
+				"maxDelay must be greater than 0");
+		return new FlushStrategy(Mode.BATCH, maxSize, maxDelay);
+	}
+
+	public Mode getMode() {
+		return this.mode;
+	}
+
+	public boolean isBatched() {
+		return this.mode == Mode.BATCH;
+	}
+
+	/**
+	 * Return the number of pending bytes that triggers a flush of a batch.
+	 */
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Return the longest time written bytes wait for a flush of a batch.
+	 */
+	public Duration getMaxDelay() {
+		return this.maxDelay;
+	}
+
+	@Override
+	public String toString() {
+		return isBatched() ? "FlushStrategy{BATCH, maxSize=" + this.maxSize + ", maxDelay=" + this.maxDelay + "}"
+				: "FlushStrategy{EACH}";
+	}
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern.PathMatchInfo;
+import reactor.core.publisher.Flux;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ALREADY_ROUTED_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_CONTEXT_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_FLUSH_STRATEGY_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.URI_TEMPLATE_VARIABLES_ATTRIBUTE;
+
+/**
+ * Gateway state of a single exchange, held in typed fields. Every change is also
+ * written to the matching {@link ServerWebExchangeUtils} attribute, so filters that
+ * still read the string keyed attributes keep seeing the same values.
+ * <p>The fields are the source of truth: the attributes are read once, when the
+ * context is created, so values written to them directly afterwards are not seen.
+ * Filters change the gateway state through the context.
+ */
+public class GatewayContext {
+
+	private final Map<String, Object> attributes;
+
+	private Route route;
+
+	private URI requestUrl;
+
+	private Set<URI> originalRequestUrls;
+
+	private boolean alreadyRouted;
+
+	private PathMatchInfo uriTemplateVariables;
+
+	private Object clientResponse;
+
+	private FlushStrategy flushStrategy;
+
+	private boolean formDataRequested;
+
+	private UnaryOperator<Flux<DataBuffer>> responseBodyDecorator;
+
+	private Duration connectTimeout;
+
+	private Duration responseTimeout;
+
+	private HedgePolicy hedgePolicy;
+
+	private Supplier<URI> alternateRequestUrl;
+
+	@SuppressWarnings("unchecked")
+	GatewayContext(Map<String, Object> attributes) {
+		this.attributes = attributes;
+		// 创建之前直接写入属性的值
+		this.route = (Route) attributes.get(GATEWAY_ROUTE_ATTR);
+		this.requestUrl = (URI) attributes.get(GATEWAY_REQUEST_URL_ATTR);
+		this.originalRequestUrls = (Set<URI>) attributes.get(GATEWAY_ORIGINAL_REQUEST_URL_ATTR);
+		this.alreadyRouted = Boolean.TRUE.equals(attributes.get(GATEWAY_ALREADY_ROUTED_ATTR));
+		this.uriTemplateVariables = (PathMatchInfo) attributes.get(URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		this.clientResponse = attributes.get(CLIENT_RESPONSE_ATTR);
+		this.flushStrategy = (FlushStrategy) attributes.get(GATEWAY_FLUSH_STRATEGY_ATTR);
+	}
+
+	/**
+	 * Return the context of the given exchange, creating it on first use.
+	 */
+	public static GatewayContext get(ServerWebExchange exchange) {
+		Map<String, Object> attributes = exchange.getAttributes();
+		GatewayContext context = (GatewayContext) attributes.get(GATEWAY_CONTEXT_ATTR);
+		if (context == null) {
+			context = new GatewayContext(attributes);
+			attributes.put(GATEWAY_CONTEXT_ATTR, context);
+		}
+		return context;
+	}
+
+	public Route getRoute() {
+		return this.route;
+	}
+
+	public void setRoute(Route route) {
+		this.route = route;
+		put(GATEWAY_ROUTE_ATTR, route);
+	}
+
+	public URI getRequestUrl() {
+		return this.requestUrl;
+	}
+
+	public void setRequestUrl(URI requestUrl) {
+		this.requestUrl = requestUrl;
+		put(GATEWAY_REQUEST_URL_ATTR, requestUrl);
+	}
+
+	/**
+	 * Return the request urls the request had before it was rewritten, oldest first.
+	 */
+	public Set<URI> getOriginalRequestUrls() {
+		return this.originalRequestUrls == null ? Collections.emptySet()
+				: Collections.unmodifiableSet(this.originalRequestUrls);
+	}
+
+	public void addOriginalRequestUrl(URI url) {
+		if (this.originalRequestUrls == null) { // 整个请求只创建一次
+			this.originalRequestUrls = new LinkedHashSet<>();
+			this.attributes.put(GATEWAY_ORIGINAL_REQUEST_URL_ATTR, this.originalRequestUrls);
+		}
+		this.originalRequestUrls.add(url);
+	}
+
+	public boolean isAlreadyRouted() {
+		return this.alreadyRouted;
+	}
+
+	public void setAlreadyRouted() {
+		setAlreadyRouted(true);
+	}
+
+	private void setAlreadyRouted(boolean alreadyRouted) {
+		this.alreadyRouted = alreadyRouted;
+		put(GATEWAY_ALREADY_ROUTED_ATTR, alreadyRouted ? Boolean.TRUE : null);
+	}
+
+	/**
+	 * Return the path match of the route, or {@code null} if it was not matched by
+	 * a path predicate.
+	 */
+	public PathMatchInfo getPathMatchInfo() {
+		return this.uriTemplateVariables;
+	}
+
+	/**
+	 * Return the uri template variables extracted by the path predicate of the route.
+	 */
+	public Map<String, String> getUriTemplateVariables() {
+		return this.uriTemplateVariables == null ? Collections.emptyMap()
+				: this.uriTemplateVariables.getUriVariables();
+	}
+
+	public void setUriTemplateVariables(PathMatchInfo uriTemplateVariables) {
+		this.uriTemplateVariables = uriTemplateVariables;
+		put(URI_TEMPLATE_VARIABLES_ATTRIBUTE, uriTemplateVariables);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getClientResponse() {
+		return (T) this.clientResponse;
+	}
+
+	public void setClientResponse(Object clientResponse) {
+		this.clientResponse = clientResponse;
+		put(CLIENT_RESPONSE_ATTR, clientResponse);
+	}
+
+	/**
+	 * Return the strategy used to flush the proxied request body, by default
+	 * {@link FlushStrategy#EACH}.
+	 */
+	public FlushStrategy getFlushStrategy() {
+		return this.flushStrategy == null ? FlushStrategy.EACH : this.flushStrategy;
+	}
+
+	public void setFlushStrategy(FlushStrategy flushStrategy) {
+		this.flushStrategy = flushStrategy;
+		put(GATEWAY_FLUSH_STRATEGY_ATTR, flushStrategy);
+	}
+
+	/**
+	 * Return whether a filter asked for the form data of the request, in which case
+	 * the request body has been read and decoded already.
+	 */
+	public boolean isFormDataRequested() {
+		return this.formDataRequested;
+	}
+
+	public void setFormDataRequested() {
+		this.formDataRequested = true;
+	}
+
+	/**
+	 * Add a decorator of the proxied response body, applied by the write response
+	 * filters before the body is written to the client. Decorators added later wrap
+	 * the ones added before.
+	 */
+	public void addResponseBodyDecorator(UnaryOperator<Flux<DataBuffer>> decorator) {
+		UnaryOperator<Flux<DataBuffer>> previous = this.responseBodyDecorator;
+		this.responseBodyDecorator = previous == null ? decorator
+				: body -> decorator.apply(previous.apply(body));
+	}
+
+	/**
+	 * Apply the response body decorators to the body of the proxied response.
+	 */
+	@SuppressWarnings("unchecked")
+	public Flux<DataBuffer> decorateResponseBody(Flux<? extends DataBuffer> body) {
+		Flux<DataBuffer> flux = (Flux<DataBuffer>) body;
+		return this.responseBodyDecorator == null ? flux : this.responseBodyDecorator.apply(flux);
+	}
+
+	/**
+	 * Return how long the proxied request may wait for a connection, or {@code null}
+	 * to wait as long as the http client does.
+	 */
+	public Duration getConnectTimeout() {
+		return this.connectTimeout;
+	}
+
+	public void setConnectTimeout(Duration connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Return how long the proxied service may take to answer with the response
+	 * headers once connected, or {@code null} to wait indefinitely.
+	 */
+	public Duration getResponseTimeout() {
+		return this.responseTimeout;
+	}
+
+	public void setResponseTimeout(Duration responseTimeout) {
+		this.responseTimeout = responseTimeout;
+	}
+
+	/**
+	 * Return the policy deciding when a hedged request is sent, or {@code null} if
+	 * the route does not hedge.
+	 */
+	public HedgePolicy getHedgePolicy() {
+		return this.hedgePolicy;
+	}
+
+	public void setHedgePolicy(HedgePolicy hedgePolicy) {
+		this.hedgePolicy = hedgePolicy;
+	}
+
+	/**
+	 * Return the supplier of another request url serving the same request, used to
+	 * send a hedged request, or {@code null} if there is no other instance to choose
+	 * from. The supplier returns {@code null} when it finds none.
+	 */
+	public Supplier<URI> getAlternateRequestUrl() {
+		return this.alternateRequestUrl;
+	}
+
+	public void setAlternateRequestUrl(Supplier<URI> alternateRequestUrl) {
+		this.alternateRequestUrl = alternateRequestUrl;
+	}
+
+	/**
+	 * Capture the state the rest of the filter chain changes while routing, to run
+	 * the chain once more from here, for example to retry the request.
+	 */
+	public Checkpoint checkpoint() {
+		return new Checkpoint();
+	}
+
+	private void put(String name, Object value) {
+		if (value == null) {
+			this.attributes.remove(name);
+		}
+		else {
+			this.attributes.put(name, value);
+		}
+	}
+
+	/**
+	 * State of the context captured by {@link #checkpoint()}.
+	 */
+	public final class Checkpoint {
+
+		private final URI requestUrl = GatewayContext.this.requestUrl;
+
+		private final boolean alreadyRouted = GatewayContext.this.alreadyRouted;
+
+		private final Object clientResponse = GatewayContext.this.clientResponse;
+
+		private final FlushStrategy flushStrategy = GatewayContext.this.flushStrategy;
+
+		private final UnaryOperator<Flux<DataBuffer>> responseBodyDecorator = GatewayContext.this.responseBodyDecorator;
+
+		private final Duration connectTimeout = GatewayContext.this.connectTimeout;
+
+		private final Duration responseTimeout = GatewayContext.this.responseTimeout;
+
+		private final HedgePolicy hedgePolicy = GatewayContext.this.hedgePolicy;
+
+		private final Supplier<URI> alternateRequestUrl = GatewayContext.this.alternateRequestUrl;
+
+		private Checkpoint() {
+		}
+
+		/**
+		 * Reset the context to the captured state.
+		 */
+		public void restore() {
+			setRequestUrl(this.requestUrl);
+			setAlreadyRouted(this.alreadyRouted);
+			setClientResponse(this.clientResponse);
+			setFlushStrategy(this.flushStrategy);
+			GatewayContext.this.responseBodyDecorator = this.responseBodyDecorator;
+			GatewayContext.this.connectTimeout = this.connectTimeout;
+			GatewayContext.this.responseTimeout = this.responseTimeout;
+			GatewayContext.this.hedgePolicy = this.hedgePolicy;
+			GatewayContext.this.alternateRequestUrl = this.alternateRequestUrl;
+		}
+	}
+}
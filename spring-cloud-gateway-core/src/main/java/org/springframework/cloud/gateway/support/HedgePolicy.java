@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * When to hedge a proxied request: if the proxied service has not answered after the
+ * given percentile of its recent latencies, a second request is sent to another
+ * instance and the first response wins. Waiting for a high percentile bounds the
+ * extra load to the slowest requests, e.g. about 5% more requests for the 95th.
+ * <p>Latencies are kept in a ring of the last {@link #WINDOW} samples and the
+ * percentile is recomputed every {@link #RECOMPUTE_INTERVAL} samples, so that
+ * reading the delay costs a volatile read. No delay is returned until
+ * {@link #MIN_SAMPLES} latencies were recorded.
+ */
+public class HedgePolicy {
+
+	public static final int WINDOW = 1024;
+
+	public static final int MIN_SAMPLES = 64;
+
+	public static final int RECOMPUTE_INTERVAL = 64;
+
+	private final double percentile;
+
+	private final long minDelay;
+
+	private final AtomicLongArray samples = new AtomicLongArray(WINDOW);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private volatile long delay = -1;
+
+	public HedgePolicy(double percentile, Duration minDelay) {
+		Assert.isTrue(percentile > 0 && percentile < 100, "percentile must be between 0 and 100");
+		Assert.isTrue(minDelay != null && !minDelay.isNegative(), "minDelay must not be negative");
+		this.percentile = percentile;
+		this.minDelay = minDelay.toNanos();
+	}
+
+	public double getPercentile() {
+		return this.percentile;
+	}
+
+	/**
+	 * Record the time the proxied service took to answer with the response headers.
+	 */
+	public void recordLatency(long nanos) {
+		long n = this.count.getAndIncrement();
+		this.samples.set((int) (n % WINDOW), nanos);
+		if ((n + 1) % RECOMPUTE_INTERVAL == 0 && n + 1 >= MIN_SAMPLES) {
+			recompute((int) Math.min(n + 1, WINDOW));
+		}
+	}
+
+	/**
+	 * Return how long to wait for a response before hedging, or {@code null} while
+	 * there are too few samples to tell.
+	 */
+	public Duration getDelay() {
+		long delay = this.delay;
+		return delay < 0 ? null : Duration.ofNanos(delay);
+	}
+
+	// 并发写入时可能读到新旧混合的样本，对估算百分位无影响
+	private void recompute(int size) {
+		long[] sorted = new long[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = this.samples.get(i);
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(this.percentile / 100 * size) - 1;
+		this.delay = Math.max(sorted[Math.max(index, 0)], this.minDelay);
+	}
+
+	@Override
+	public String toString() {
+		return "HedgePolicy{percentile=" + this.percentile + ", minDelay=" + Duration.ofNanos(this.minDelay)
+				+ ", delay=" + getDelay() + "}";
+	}
+}
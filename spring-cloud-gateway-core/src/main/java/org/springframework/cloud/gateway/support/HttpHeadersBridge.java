@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+
+/**
+ * Copies headers between the Spring {@link HttpHeaders} of the gateway exchange and the
+ * Netty headers of the proxied request, in a single pass per direction. Hop-by-hop
+ * headers, and the headers the {@code Connection} header names, are not copied.
+ */
+public class HttpHeadersBridge {
+
+	/**
+	 * Headers that only apply to a single connection, see RFC 7230 section 6.1.
+	 */
+	public static final Set<String> HOP_BY_HOP_HEADERS = Collections.unmodifiableSet(caseInsensitiveSet(Arrays.asList(
+			"Connection", "Keep-Alive", "Proxy-Authenticate", "Proxy-Authorization", "Proxy-Connection",
+			"TE", "Trailer", "Transfer-Encoding", "Upgrade")));
+
+	/**
+	 * Copy the end-to-end request headers to the proxied request. The {@code Host}
+	 * header is left to the client, which sets it from the url it connects to.
+	 */
+	public static void copyRequestHeaders(HttpHeaders from, io.netty.handler.codec.http.HttpHeaders to) {
+		Set<String> connectionHeaders = connectionHeaders(from.get(HttpHeaders.CONNECTION));
+		for (Map.Entry<String, List<String>> header : from.entrySet()) {
+			String name = header.getKey();
+			if (!name.equalsIgnoreCase(HttpHeaders.HOST) && !isHopByHop(name, connectionHeaders)) {
+				to.set(name, header.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Copy the end-to-end headers of the proxied response to the gateway response,
+	 * replacing the values the response already had for them.
+	 */
+	public static void copyResponseHeaders(io.netty.handler.codec.http.HttpHeaders from, HttpHeaders to) {
+		Set<String> connectionHeaders = connectionHeaders(from.getAll(HttpHeaders.CONNECTION));
+		for (String name : from.names()) {
+			if (!isHopByHop(name, connectionHeaders)) {
+				to.put(name, from.getAll(name));
+			}
+		}
+	}
+
+	/**
+	 * Whether the request body is sent with chunked transfer encoding, which has to be
+	 * applied again to the proxied request as {@code Transfer-Encoding} is not copied.
+	 */
+	public static boolean isChunked(HttpHeaders headers) {
+		List<String> values = headers.get(HttpHeaders.TRANSFER_ENCODING);
+		if (values != null) {
+			for (String value : values) {
+				for (String coding : StringUtils.tokenizeToStringArray(value, ",")) {
+					if (coding.equalsIgnoreCase("chunked")) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isHopByHop(String name, Set<String> connectionHeaders) {
+		return HOP_BY_HOP_HEADERS.contains(name) || connectionHeaders.contains(name);
+	}
+
+	// Connection: close, X-Foo => X-Foo 也是逐跳的
+	private static Set<String> connectionHeaders(List<String> connection) {
+		if (connection == null || connection.isEmpty()) {
+			return Collections.emptySet();
+		}
+		List<String> names = new ArrayList<>();
+		for (String value : connection) {
+			names.addAll(Arrays.asList(StringUtils.tokenizeToStringArray(value, ",")));
+		}
+		return caseInsensitiveSet(names);
+	}
+
+	private static Set<String> caseInsensitiveSet(Collection<String> names) {
+		Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		set.addAll(names);
+		return set;
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * Token bucket capping the retries of a route to a share of its requests, so that
+ * retries can not multiply the load of a service that is already failing. Every
+ * request deposits {@code percent / 100} of a token, every retry withdraws a whole
+ * one. The bucket holds at most {@code maxTokens}, which is also the number of
+ * retries allowed in a burst, and starts full.
+ */
+public class RetryBudget {
+
+	// 以千分之一个 token 计数，避免浮点运算
+	private static final long TOKEN = 1000;
+
+	private final long deposit;
+
+	private final long capacity;
+
+	private final AtomicLong balance;
+
+	public RetryBudget(int percent, int maxTokens) {
+		Assert.isTrue(percent >= 0, "percent must not be negative");
+		Assert.isTrue(maxTokens > 0, "maxTokens must be greater than 0");
+		this.deposit = percent * TOKEN / 100;
+		this.capacity = maxTokens * TOKEN;
+		this.balance = new AtomicLong(this.capacity);
+	}
+
+	/**
+	 * Record a request, earning a share of a retry.
+	 */
+	public void deposit() {
+		long current;
+		do {
+			current = this.balance.get();
+			if (current >= this.capacity) {
+				return;
+			}
+		}
+		while (!this.balance.compareAndSet(current, Math.min(current + this.deposit, this.capacity)));
+	}
+
+	/**
+	 * Spend a token on a retry.
+	 * @return {@code false} if the budget is exhausted and the request must not be retried
+	 */
+	public boolean tryWithdraw() {
+		long current;
+		do {
+			current = this.balance.get();
+			if (current < TOKEN) {
+				return false;
+			}
+		}
+		while (!this.balance.compareAndSet(current, current - TOKEN));
+		return true;
+	}
+
+	/**
+	 * Return the number of retries currently allowed.
+	 */
+	public long getAvailable() {
+		return this.balance.get() / TOKEN;
+	}
+
+	@Override
+	public String toString() {
+		return "RetryBudget{deposit=" + this.deposit + "/" + TOKEN + ", available=" + getAvailable() + "}";
+	}
+}
@@ -20,10 +20,10 @@ package org.springframework.cloud.gateway.support;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
 import org.springframework.web.server.ServerWebExchange;
 
 import java.net.URI;
-import java.util.LinkedHashSet;
 
 /**
  * @author Spencer Gibb
@@ -48,16 +48,46 @@ public class ServerWebExchangeUtils {
 	 */
 	public static final String GATEWAY_ALREADY_ROUTED_ATTR = qualify("gatewayAlreadyRouted");
 
+	/**
+	 * The request path parsed into a {@link PathContainer}, shared by all the path
+	 * predicates tested for the request.
+	 */
+	public static final String GATEWAY_PREDICATE_PATH_CONTAINER_ATTR = qualify("gatewayPredicatePathContainer");
+
+	/**
+	 * The {@link GatewayContext} holding the typed gateway state of the exchange.
+	 */
+	public static final String GATEWAY_CONTEXT_ATTR = qualify("gatewayContext");
+
+	/**
+	 * The {@link FlushStrategy} used to write the request body to the proxied service.
+	 */
+	public static final String GATEWAY_FLUSH_STRATEGY_ATTR = qualify("gatewayFlushStrategy");
+
 	private static String qualify(String attr) {
 		return ServerWebExchangeUtils.class.getName() + "." + attr;
 	}
 
+	/**
+	 * Return the request path parsed into a {@link PathContainer}, parsing it only the
+	 * first time it is asked for or after the request path changed.
+	 */
+	public static PathContainer getPathContainer(ServerWebExchange exchange) {
+		String path = exchange.getRequest().getURI().getPath();
+		PathContainer container = exchange.getAttribute(GATEWAY_PREDICATE_PATH_CONTAINER_ATTR);
+		if (container == null || !container.value().equals(path)) { // 请求被修改过，重新解析
+			container = PathContainer.parsePath(path);
+			exchange.getAttributes().put(GATEWAY_PREDICATE_PATH_CONTAINER_ATTR, container);
+		}
+		return container;
+	}
+
 	public static void setAlreadyRouted(ServerWebExchange exchange) {
-		exchange.getAttributes().put(GATEWAY_ALREADY_ROUTED_ATTR, true);
+		GatewayContext.get(exchange).setAlreadyRouted();
 	}
 
 	public static boolean isAlreadyRouted(ServerWebExchange exchange) {
-		return exchange.getAttributeOrDefault(GATEWAY_ALREADY_ROUTED_ATTR, false);
+		return GatewayContext.get(exchange).isAlreadyRouted();
 	}
 
 	public static boolean setResponseStatus(ServerWebExchange exchange, HttpStatus httpStatus) {
@@ -82,8 +112,6 @@ public class ServerWebExchangeUtils {
 	}
 
 	public static void addOriginalRequestUrl(ServerWebExchange exchange, URI url) {
-		exchange.getAttributes().computeIfAbsent(GATEWAY_ORIGINAL_REQUEST_URL_ATTR, s -> new LinkedHashSet<>()); // 数组，考虑多次重写
-		LinkedHashSet<URI> uris = exchange.getRequiredAttribute(GATEWAY_ORIGINAL_REQUEST_URL_ATTR);
-		uris.add(url);
+		GatewayContext.get(exchange).addOriginalRequestUrl(url); // 数组，考虑多次重写
 	}
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.test.BaseWebClientTests;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@DirtiesContext
+public class HttpClientPoolMetricsIntegrationTests extends BaseWebClientTests {
+
+	@Autowired
+	private HttpClientPoolResources poolResources;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	public void proxiedRequestUsesGatewayPool() {
+		testClient.get().uri("/get")
+				.header("Host", "www.example.org")
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.OK);
+
+		String address = "localhost:" + port;
+		assertThat(this.poolResources.getPools()).extracting(HttpClientPoolResources.InstrumentedPool::getAddress)
+				.contains(address);
+		assertThat(this.meterRegistry.find("gateway.httpclient.pool.idle").tag("address", address).gauge())
+				.isNotNull();
+	}
+
+	@EnableAutoConfiguration
+	@SpringBootConfiguration
+	@Import(DefaultTestConfig.class)
+	public static class TestConfig { }
+
+}
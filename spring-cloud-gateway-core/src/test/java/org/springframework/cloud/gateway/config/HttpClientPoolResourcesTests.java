@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import io.netty.channel.Channel;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.config.HttpClientPoolResources.InstrumentedPool;
+import org.springframework.cloud.gateway.config.HttpClientProperties.Pool;
+import org.springframework.cloud.gateway.config.HttpClientProperties.PoolType;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HttpClientPoolResourcesTests {
+
+	private final MonoProcessor<String> slow = MonoProcessor.create();
+
+	private final HttpClientProperties properties = new HttpClientProperties();
+
+	private final AtomicLong clock = new AtomicLong(System.nanoTime());
+
+	private HttpClientPoolResources poolResources;
+
+	private NettyContext server;
+
+	private HttpClient client;
+
+	@Before
+	public void setup() {
+		this.server = HttpServer.create(0).newRouter(routes -> routes
+				.get("/port", (req, res) -> res.sendString(Mono.just(String.valueOf(req.remoteAddress().getPort()))))
+				.get("/slow", (req, res) -> res.sendString(this.slow)))
+				.block(Duration.ofSeconds(5));
+		this.poolResources = new HttpClientPoolResources(this.properties, this.clock::get);
+		this.client = HttpClient.create(opts -> opts.poolResources(this.poolResources));
+	}
+
+	@After
+	public void close() {
+		this.poolResources.dispose();
+		this.server.dispose();
+	}
+
+	@Test
+	public void hostPoolLimitsPendingAcquires() {
+		Pool pool = new Pool();
+		pool.setType(PoolType.FIXED);
+		pool.setMaxConnections(1);
+		pool.setMaxPendingAcquires(1);
+		this.properties.getHosts().put("localhost:" + this.server.address().getPort(), pool);
+
+		MonoProcessor<String> first = get("/slow").toProcessor();
+		await(() -> pool().getActive() == 1);
+		MonoProcessor<String> second = get("/slow").toProcessor();
+		await(() -> pool().getPending() == 1);
+
+		assertThatThrownBy(() -> get("/slow").block(Duration.ofSeconds(5)))
+				.hasMessageContaining("maximum size of 1");
+		assertThat(pool().getSettings().getType()).isEqualTo(PoolType.FIXED);
+		assertThat(pool().getSettings().getAcquireTimeout()).isEqualTo(this.properties.getPool().getAcquireTimeout());
+
+		this.slow.onNext("done");
+		assertThat(first.block(Duration.ofSeconds(5))).isEqualTo("done");
+		assertThat(second.block(Duration.ofSeconds(5))).isEqualTo("done");
+		await(() -> pool().getActive() == 0 && pool().getPending() == 0);
+	}
+
+	@Test
+	public void idleConnectionsAreNotReused() {
+		this.properties.getPool().setMaxIdleTime(Duration.ofMillis(500));
+
+		String first = get("/port").block(Duration.ofSeconds(5));
+		await(() -> pool().getIdle() == 1);
+		assertThat(get("/port").block(Duration.ofSeconds(5))).isEqualTo(first);
+		await(() -> pool().getIdle() == 1);
+
+		this.clock.addAndGet(Duration.ofMillis(600).toNanos());
+		assertThat(get("/port").block(Duration.ofSeconds(5))).isNotEqualTo(first);
+		await(() -> pool().getIdle() == 1);
+	}
+
+	@Test
+	public void concurrentAcquiresDoNotExceedMaxPending() throws Exception {
+		Pool settings = new Pool();
+		settings.setMaxPendingAcquires(5);
+		List<Promise<Channel>> waiting = new ArrayList<>();
+		InstrumentedPool pool = new InstrumentedPool("localhost:80", settings, new NeverAcquiringPool(waiting),
+				this.clock::get);
+		AtomicInteger rejected = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			for (int i = 0; i < 200; i++) {
+				executor.execute(() -> {
+					try {
+						start.await();
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					if (pool.acquire().isDone()) {
+						rejected.incrementAndGet();
+					}
+				});
+			}
+			start.countDown();
+		}
+		finally {
+			executor.shutdown();
+			assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+		}
+
+		assertThat(pool.getPending()).isEqualTo(5);
+		assertThat(rejected).hasValue(195);
+	}
+
+	private Mono<String> get(String path) {
+		return this.client.get("http://localhost:" + this.server.address().getPort() + path)
+				.flatMap(res -> res.receive().aggregate().asString());
+	}
+
+	private InstrumentedPool pool() {
+		assertThat(this.poolResources.getPools()).hasSize(1);
+		return this.poolResources.getPools().get(0);
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+			try {
+				Thread.sleep(10);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Pool whose connections never become available.
+	 */
+	private static class NeverAcquiringPool implements ChannelPool {
+
+		private final List<Promise<Channel>> waiting;
+
+		NeverAcquiringPool(List<Promise<Channel>> waiting) {
+			this.waiting = waiting;
+		}
+
+		@Override
+		public Future<Channel> acquire() {
+			Promise<Channel> promise = ImmediateEventExecutor.INSTANCE.newPromise();
+			synchronized (this.waiting) {
+				this.waiting.add(promise);
+			}
+			return promise;
+		}
+
+		@Override
+		public Future<Channel> acquire(Promise<Channel> promise) {
+			return acquire();
+		}
+
+		@Override
+		public Future<Void> release(Channel channel) {
+			return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+		}
+
+		@Override
+		public Future<Void> release(Channel channel, Promise<Void> promise) {
+			return promise.setSuccess(null);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.filter;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2MultiplexCodecBuilder;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.cloud.gateway.config.Http2ConnectionPool;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class Http2RoutingFilterTests {
+
+	private static ResourceLeakDetector.Level level;
+
+	private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+	private final EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+
+	private final AtomicInteger serverConnections = new AtomicInteger();
+
+	private Channel server;
+
+	private Http2ConnectionPool connectionPool;
+
+	private Http2RoutingFilter filter;
+
+	@BeforeClass
+	public static void paranoidLeakDetection() {
+		level = ResourceLeakDetector.getLevel();
+		ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+	}
+
+	@AfterClass
+	public static void restoreLeakDetection() {
+		ResourceLeakDetector.setLevel(level);
+	}
+
+	@After
+	public void close() throws Exception {
+		if (this.connectionPool != null) {
+			this.connectionPool.dispose();
+		}
+		if (this.server != null) {
+			this.server.close().sync();
+		}
+		this.serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+	}
+
+	@Test
+	public void requestIsRoutedOverH2c() {
+		start(null, 100, 100);
+		ServerWebExchange exchange = exchange("GET", "h2c", "/echo?a=1", null);
+
+		String body = route(exchange);
+
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(exchange.getResponse().getHeaders().getFirst("X-Upstream")).isEqualTo("h2");
+		assertThat(exchange.getResponse().getHeaders()).doesNotContainKey("x-http2-stream-id");
+		assertThat(body).isEqualTo("GET /echo?a=1 localhost:" + port() + " ");
+		assertStreamsReleased();
+	}
+
+	@Test
+	public void bodyIsForwardedAndReleased() {
+		start(null, 100, 100);
+		List<ByteBuf> inbound = inbound(3);
+		ServerWebExchange exchange = exchange("POST", "h2c", "/echo", received(inbound));
+
+		String body = route(exchange);
+
+		assertThat(body).isEqualTo("POST /echo localhost:" + port() + " chunk-0chunk-1chunk-2");
+		// the stream releases what it wrote once flushed
+		long deadline = System.currentTimeMillis() + 5000;
+		while (inbound.stream().anyMatch(buffer -> buffer.refCnt() > 0) && System.currentTimeMillis() < deadline) {
+			Thread.yield();
+		}
+		assertThat(inbound).allMatch(buffer -> buffer.refCnt() == 0);
+	}
+
+	@Test
+	public void streamIsReleasedWhenLaterFilterFails() {
+		start(null, 100, 100);
+		ServerWebExchange exchange = exchange("GET", "h2c", "/echo", null);
+
+		Mono<Void> routed = this.filter.filter(exchange, e -> Mono.error(new IllegalStateException("filter failed")));
+
+		assertThatThrownBy(() -> routed.block(Duration.ofSeconds(5))).hasMessageContaining("filter failed");
+		assertStreamsReleased();
+	}
+
+	@Test
+	public void streamIsReleasedWhenCancelledBeforeBody() throws Exception {
+		start(null, 100, 100);
+		ServerWebExchange exchange = exchange("GET", "h2c", "/echo", null);
+		CountDownLatch routed = new CountDownLatch(1);
+
+		Disposable subscription = this.filter.filter(exchange, e -> {
+			routed.countDown();
+			return Mono.never();
+		}).subscribe();
+		assertThat(routed.await(5, TimeUnit.SECONDS)).isTrue();
+		subscription.dispose();
+
+		assertStreamsReleased();
+	}
+
+	@Test
+	public void concurrentRequestsAreMultiplexed() {
+		start(null, 100, 5);
+
+		List<String> bodies = Flux.range(0, 20)
+				.flatMap(i -> routeLater(exchange("GET", "h2c", "/slow", null)))
+				.collectList().block(Duration.ofSeconds(10));
+
+		assertThat(bodies).hasSize(20).allMatch(body -> body.startsWith("GET /slow"));
+		assertThat(this.serverConnections.get()).isEqualTo(4);
+	}
+
+	@Test
+	public void upstreamStreamLimitApplies() {
+		start(null, 2, 100);
+		route(exchange("GET", "h2c", "/echo", null));
+		assertStreamsReleased();
+
+		List<String> bodies = Flux.range(0, 6)
+				.flatMap(i -> routeLater(exchange("GET", "h2c", "/slow", null)))
+				.collectList().block(Duration.ofSeconds(10));
+
+		assertThat(bodies).hasSize(6);
+		assertThat(this.serverConnections.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void requestIsRoutedOverH2WithAlpn() throws Exception {
+		SslContext sslContext;
+		try {
+			SelfSignedCertificate certificate = new SelfSignedCertificate();
+			sslContext = SslContextBuilder.forServer(certificate.certificate(), certificate.privateKey())
+					.ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+					.applicationProtocolConfig(new ApplicationProtocolConfig(
+							ApplicationProtocolConfig.Protocol.ALPN,
+							ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+							ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+							ApplicationProtocolNames.HTTP_2))
+					.build();
+			sslContext.newEngine(ByteBufAllocator.DEFAULT);
+		}
+		catch (Exception | LinkageError e) {
+			// ALPN needs Java 9+ or OpenSSL with this version of Netty
+			Assume.assumeNoException(e);
+			return;
+		}
+		start(sslContext, 100, 100);
+		ServerWebExchange exchange = exchange("GET", "h2", "/echo", null);
+
+		assertThat(route(exchange)).isEqualTo("GET /echo localhost:" + port() + " ");
+	}
+
+	private void start(SslContext sslContext, long serverMaxStreams, int clientMaxStreams) {
+		this.server = new ServerBootstrap()
+				.group(this.serverGroup)
+				.channel(NioServerSocketChannel.class)
+				.childHandler(new ChannelInitializer<Channel>() {
+					@Override
+					protected void initChannel(Channel channel) {
+						serverConnections.incrementAndGet();
+						if (sslContext != null) {
+							channel.pipeline().addLast(sslContext.newHandler(channel.alloc()));
+						}
+						channel.pipeline().addLast(Http2MultiplexCodecBuilder.forServer(new ChannelInitializer<Channel>() {
+							@Override
+							protected void initChannel(Channel stream) {
+								stream.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true),
+										new HttpObjectAggregator(1024 * 1024), UpstreamHandler.INSTANCE);
+							}
+						}).initialSettings(Http2Settings.defaultSettings().maxConcurrentStreams(serverMaxStreams)).build());
+						channel.pipeline().addLast(GoAwayHandler.INSTANCE);
+					}
+				})
+				.bind("localhost", 0).syncUninterruptibly().channel();
+
+		HttpClientProperties.Http2 properties = new HttpClientProperties.Http2();
+		properties.setMaxStreams(clientMaxStreams);
+		properties.setUseInsecureTrustManager(true);
+		this.connectionPool = new Http2ConnectionPool(properties);
+		this.filter = new Http2RoutingFilter(this.connectionPool);
+	}
+
+	private int port() {
+		return ((InetSocketAddress) this.server.localAddress()).getPort();
+	}
+
+	private ServerWebExchange exchange(String method, String scheme, String path, Flux<DataBuffer> body) {
+		URI url = URI.create(scheme + "://localhost:" + port() + path);
+		MockServerHttpRequest.BodyBuilder builder = MockServerHttpRequest.method(
+				org.springframework.http.HttpMethod.valueOf(method), "http://gateway" + path);
+		ServerWebExchange exchange = MockServerWebExchange.from(body == null ? builder.build()
+				: builder.header(HttpHeaders.TRANSFER_ENCODING, "chunked").body(body));
+		GatewayContext.get(exchange).setRequestUrl(url);
+		return exchange;
+	}
+
+	private String route(ServerWebExchange exchange) {
+		return routeLater(exchange).block(Duration.ofSeconds(5));
+	}
+
+	private Mono<String> routeLater(ServerWebExchange exchange) {
+		return this.filter.filter(exchange, e -> Mono.empty())
+				.then(Mono.defer(() -> GatewayContext.get(exchange).<Http2ClientResponse>getClientResponse().getBody()
+						.reduce(new StringBuilder(), (builder, buffer) -> {
+							builder.append(buffer.toString(StandardCharsets.UTF_8));
+							buffer.release();
+							return builder;
+						})))
+				.map(StringBuilder::toString);
+	}
+
+	// the stream is released once closed, which can follow the end of the response
+	private void assertStreamsReleased() {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.connectionPool.getActiveStreams() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.yield();
+		}
+		assertThat(this.connectionPool.getActiveStreams()).isEqualTo(0);
+		assertThat(this.connectionPool.getConnectionCount()).isEqualTo(1);
+	}
+
+	private List<ByteBuf> inbound(int count) {
+		List<ByteBuf> buffers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			buffers.add(PooledByteBufAllocator.DEFAULT.directBuffer()
+					.writeBytes(("chunk-" + i).getBytes(StandardCharsets.UTF_8)));
+		}
+		return buffers;
+	}
+
+	// like the Netty server: Spring retains every buffer it emits, the server releases
+	// it once emitted, so only the writer of the proxied request holds it afterwards
+	private Flux<DataBuffer> received(List<ByteBuf> buffers) {
+		return Flux.fromIterable(buffers)
+				.concatMap(buffer -> Mono.just((DataBuffer) this.bufferFactory.wrap(buffer.retain()))
+						.doFinally(signal -> buffer.release()));
+	}
+
+	/**
+	 * Ends the pipeline of the server connections with the GOAWAY frames, which
+	 * Http2MultiplexCodec already released.
+	 */
+	@ChannelHandler.Sharable
+	private static class GoAwayHandler extends ChannelInboundHandlerAdapter {
+
+		static final GoAwayHandler INSTANCE = new GoAwayHandler();
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			if (!(msg instanceof Http2GoAwayFrame)) {
+				ReferenceCountUtil.release(msg);
+			}
+		}
+	}
+
+	/**
+	 * Answers with the method, path, host and body of the request, {@code /slow} after
+	 * a delay so that concurrent requests overlap.
+	 */
+	@ChannelHandler.Sharable
+	private static class UpstreamHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+		static final UpstreamHandler INSTANCE = new UpstreamHandler();
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+			String body = request.method() + " " + request.uri() + " " + request.headers().get(HttpHeaderNames.HOST)
+					+ " " + request.content().toString(StandardCharsets.UTF_8);
+			FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+					Unpooled.copiedBuffer(body, StandardCharsets.UTF_8));
+			response.headers().set(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+			response.headers().set("X-Upstream", "h2");
+			if (request.uri().startsWith("/slow")) {
+				ctx.executor().schedule(() -> ctx.writeAndFlush(response), 200, TimeUnit.MILLISECONDS);
+			}
+			else {
+				ctx.writeAndFlush(response);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.filter;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IpAccessFilterTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void allowAndDenyLists() throws Exception {
+		IpAccessProperties properties = new IpAccessProperties();
+		properties.setAllowFile(write("allow.txt", "# internal", "10.0.0.0/8", "", "2001:db8::/32 # v6").getPath());
+		properties.setDenyFile(write("deny.txt", "10.1.0.0/16").getPath());
+		IpAccessFilter filter = new IpAccessFilter(properties);
+		filter.afterPropertiesSet();
+		try {
+			assertThat(filter(filter, "10.2.3.4")).isNull();
+			assertThat(filter(filter, "2001:db8::1")).isNull();
+			assertThat(filter(filter, "10.1.3.4")).isEqualTo(HttpStatus.FORBIDDEN);
+			assertThat(filter(filter, "192.168.1.1")).isEqualTo(HttpStatus.FORBIDDEN);
+		}
+		finally {
+			filter.destroy();
+		}
+	}
+
+	@Test
+	public void reloadKeepsPreviousListOnError() throws Exception {
+		File deny = write("deny.txt", "10.0.0.0/8");
+		IpAccessProperties properties = new IpAccessProperties();
+		properties.setDenyFile(deny.getPath());
+		IpAccessFilter filter = new IpAccessFilter(properties);
+		filter.afterPropertiesSet();
+		try {
+			assertThat(filter(filter, "10.2.3.4")).isEqualTo(HttpStatus.FORBIDDEN);
+			assertThat(filter(filter, "192.168.1.1")).isNull();
+
+			write("deny.txt", "192.168.0.0/16");
+			deny.setLastModified(deny.lastModified() + 2000);
+			filter.reload();
+			assertThat(filter(filter, "10.2.3.4")).isNull();
+			assertThat(filter(filter, "192.168.1.1")).isEqualTo(HttpStatus.FORBIDDEN);
+
+			write("deny.txt", "not a network");
+			deny.setLastModified(deny.lastModified() + 4000);
+			filter.reload();
+			assertThat(filter(filter, "192.168.1.1")).isEqualTo(HttpStatus.FORBIDDEN);
+		}
+		finally {
+			filter.destroy();
+		}
+	}
+
+	private HttpStatus filter(IpAccessFilter filter, String address) {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/")
+				.remoteAddress(new InetSocketAddress(address, 80)).build());
+		filter.filter(exchange, e -> Mono.empty()).block();
+		return exchange.getResponse().getStatusCode();
+	}
+
+	private File write(String name, String... lines) throws Exception {
+		File file = new File(this.folder.getRoot(), name);
+		Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+		return file;
+	}
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.cloud.gateway.support.HedgePolicy;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.NettyPipeline;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.client.HttpClientResponse;
+import reactor.ipc.netty.http.server.HttpServer;
+import reactor.ipc.netty.resources.PoolResources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NettyRoutingFilterTests {
+
+	private static ResourceLeakDetector.Level level;
+
+	private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+	private final CountDownLatch received = new CountDownLatch(1);
+
+	private NettyContext server;
+
+	private NettyRoutingFilter filter;
+
+	@BeforeClass
+	public static void paranoidLeakDetection() {
+		level = ResourceLeakDetector.getLevel();
+		ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+	}
+
+	@AfterClass
+	public static void restoreLeakDetection() {
+		ResourceLeakDetector.setLevel(level);
+	}
+
+	@Before
+	public void setup() {
+		this.server = HttpServer.create(0).newRouter(routes -> routes
+				.post("/echo", (req, res) -> res.send(req.receive().retain()))
+				.post("/hang", (req, res) -> req.receive().doOnNext(b -> this.received.countDown()).then())
+				.get("/fast", (req, res) -> res.sendString(Mono.just("fast")))
+				.get("/slow", (req, res) -> Mono.delay(Duration.ofMillis(500))
+						.then(res.sendString(Mono.just("slow")).then())))
+				.block(Duration.ofSeconds(5));
+		this.filter = new NettyRoutingFilter(HttpClient.create(this.server.address().getPort()));
+	}
+
+	@After
+	public void close() {
+		this.server.dispose();
+	}
+
+	@Test
+	public void bodyIsForwardedAndReleased() {
+		List<ByteBuf> inbound = inbound(3);
+		ServerWebExchange exchange = exchange("/echo", received(inbound));
+
+		this.filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+		String body = GatewayContext.get(exchange).<HttpClientResponse>getClientResponse()
+				.receive().aggregate().asString().block(Duration.ofSeconds(5));
+
+		assertThat(body).isEqualTo("chunk-0chunk-1chunk-2");
+		assertReleased(inbound);
+	}
+
+	@Test
+	public void cancelledUploadReleasesBody() throws Exception {
+		List<ByteBuf> inbound = inbound(3);
+		ServerWebExchange exchange = exchange("/hang", Flux.concat(received(inbound), Flux.never()));
+
+		Disposable upload = this.filter.filter(exchange, e -> Mono.empty()).subscribe();
+		assertThat(this.received.await(5, TimeUnit.SECONDS)).isTrue();
+		upload.dispose();
+
+		assertReleased(inbound);
+	}
+
+	@Test
+	public void failedUploadReleasesBody() {
+		List<ByteBuf> inbound = inbound(3);
+		ServerWebExchange exchange = exchange("/hang", Flux.concat(received(inbound),
+				Flux.error(new IllegalStateException("upload failed"))));
+
+		this.filter.filter(exchange, e -> Mono.empty()).onErrorResume(e -> Mono.empty())
+				.block(Duration.ofSeconds(5));
+
+		assertReleased(inbound);
+	}
+
+	@Test
+	public void batchedBodyIsForwardedAndReleased() {
+		List<ByteBuf> inbound = inbound(3);
+		ServerWebExchange exchange = exchange("/echo", received(inbound));
+		GatewayContext.get(exchange).setFlushStrategy(FlushStrategy.batch(8, Duration.ofSeconds(10)));
+
+		this.filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+		String body = GatewayContext.get(exchange).<HttpClientResponse>getClientResponse()
+				.receive().aggregate().asString().block(Duration.ofSeconds(5));
+
+		assertThat(body).isEqualTo("chunk-0chunk-1chunk-2");
+		assertReleased(inbound);
+	}
+
+	@Test
+	public void batchedBodyIsFlushedAfterMaxDelay() throws Exception {
+		List<ByteBuf> inbound = inbound(1);
+		ServerWebExchange exchange = exchange("/hang", Flux.concat(received(inbound), Flux.never()));
+		GatewayContext.get(exchange).setFlushStrategy(FlushStrategy.batch(1024 * 1024, Duration.ofMillis(50)));
+
+		Disposable upload = this.filter.filter(exchange, e -> Mono.empty()).subscribe();
+		assertThat(this.received.await(5, TimeUnit.SECONDS)).isTrue();
+		upload.dispose();
+
+		assertReleased(inbound);
+	}
+
+	@Test
+	public void batchSettingsAreRestoredWhenSendIsCancelled() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		channel.pipeline().addLast(NettyPipeline.ReactiveBridge, new ChannelDuplexHandler());
+		WriteBufferWaterMark original = channel.config().getWriteBufferWaterMark();
+
+		Disposable upload = NettyRoutingFilter.batched(channel, FlushStrategy.batch(8, Duration.ofSeconds(10)),
+				Mono.never()).subscribe();
+		assertThat(channel.config().getWriteBufferHighWaterMark()).isEqualTo(8);
+		upload.dispose();
+
+		assertThat(channel.config().getWriteBufferWaterMark()).isSameAs(original);
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void batchSettingsAreRestoredWhenSendFails() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		channel.pipeline().addLast(NettyPipeline.ReactiveBridge, new ChannelDuplexHandler());
+		WriteBufferWaterMark original = channel.config().getWriteBufferWaterMark();
+
+		NettyRoutingFilter.batched(channel, FlushStrategy.batch(8, Duration.ofSeconds(10)),
+				Mono.error(new IllegalStateException("upload failed"))).onErrorResume(e -> Mono.empty()).block();
+
+		assertThat(channel.config().getWriteBufferWaterMark()).isSameAs(original);
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void formBodyIsForwardedAsIs() {
+		String form = "b=%7e&a=1&a=2";
+		ServerWebExchange exchange = formExchange(form);
+
+		assertThat(echo(exchange)).isEqualTo(form);
+	}
+
+	@Test
+	public void decodedFormIsEncodedAgain() {
+		ServerWebExchange exchange = formExchange("b=%7e&a=1&a=2");
+		assertThat(exchange.getFormData().block(Duration.ofSeconds(5)).get("a")).containsExactly("1", "2");
+		GatewayContext.get(exchange).setFormDataRequested();
+
+		assertThat(echo(exchange)).isEqualTo("b=%7E&a=1&a=2");
+	}
+
+	@Test
+	public void responseTimeoutEndsWithGatewayTimeout() {
+		ServerWebExchange exchange = getExchange("/slow");
+		GatewayContext.get(exchange).setResponseTimeout(Duration.ofMillis(50));
+
+		this.filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+		assertThat(GatewayContext.get(exchange).<Object>getClientResponse()).isNull();
+	}
+
+	@Test
+	public void connectTimeoutEndsWithGatewayTimeout() throws Exception {
+		int port = this.server.address().getPort();
+		NettyRoutingFilter filter = new NettyRoutingFilter(HttpClient.create(options -> options.port(port)
+				.poolResources(PoolResources.fixed("connectTimeout", 1))));
+		// the only pooled connection is held by an upload that never ends
+		ServerWebExchange upload = exchange("/hang", Flux.concat(received(inbound(1)), Flux.never()));
+		Disposable held = filter.filter(upload, e -> Mono.empty()).subscribe();
+		assertThat(this.received.await(5, TimeUnit.SECONDS)).isTrue();
+
+		ServerWebExchange exchange = getExchange("/fast");
+		GatewayContext.get(exchange).setConnectTimeout(Duration.ofMillis(50));
+		filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+		held.dispose();
+
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+	}
+
+	@Test
+	public void timeoutsLeaveFastResponsesAlone() {
+		ServerWebExchange exchange = getExchange("/fast");
+		GatewayContext.get(exchange).setConnectTimeout(Duration.ofSeconds(1));
+		GatewayContext.get(exchange).setResponseTimeout(Duration.ofSeconds(1));
+
+		assertThat(echo(exchange)).isEqualTo("fast");
+	}
+
+	@Test
+	public void hedgedRequestWinsOverSlowOne() {
+		ServerWebExchange exchange = getExchange("/slow");
+		GatewayContext context = GatewayContext.get(exchange);
+		context.setHedgePolicy(hedgePolicy(Duration.ofMillis(20)));
+		context.setAlternateRequestUrl(() -> url("/fast"));
+
+		assertThat(echo(exchange)).isEqualTo("fast");
+	}
+
+	@Test
+	public void fastPrimaryIsNotHedged() {
+		AtomicInteger alternates = new AtomicInteger();
+		ServerWebExchange exchange = getExchange("/fast");
+		GatewayContext context = GatewayContext.get(exchange);
+		context.setHedgePolicy(hedgePolicy(Duration.ofMillis(200)));
+		context.setAlternateRequestUrl(() -> {
+			alternates.incrementAndGet();
+			return url("/slow");
+		});
+
+		assertThat(echo(exchange)).isEqualTo("fast");
+		assertThat(alternates).hasValue(0);
+	}
+
+	@Test
+	public void missingAlternateFallsBackToPrimary() {
+		ServerWebExchange exchange = getExchange("/slow");
+		GatewayContext context = GatewayContext.get(exchange);
+		context.setHedgePolicy(hedgePolicy(Duration.ofMillis(20)));
+		context.setAlternateRequestUrl(() -> null);
+
+		assertThat(echo(exchange)).isEqualTo("slow");
+	}
+
+	@Test
+	public void onlyIdempotentRequestsWithoutBodyAreHedged() {
+		assertThat(NettyRoutingFilter.isHedgeable(MockServerHttpRequest.get("/").build())).isTrue();
+		assertThat(NettyRoutingFilter.isHedgeable(MockServerHttpRequest.head("/").build())).isTrue();
+		assertThat(NettyRoutingFilter.isHedgeable(MockServerHttpRequest.post("/").build())).isFalse();
+		assertThat(NettyRoutingFilter.isHedgeable(MockServerHttpRequest.get("/")
+				.header(HttpHeaders.TRANSFER_ENCODING, "chunked").build())).isFalse();
+		assertThat(NettyRoutingFilter.isHedgeable(MockServerHttpRequest.get("/")
+				.header(HttpHeaders.CONTENT_LENGTH, "3").build())).isFalse();
+	}
+
+	private static HedgePolicy hedgePolicy(Duration delay) {
+		HedgePolicy policy = new HedgePolicy(95, delay);
+		for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+			policy.recordLatency(1);
+		}
+		return policy;
+	}
+
+	private URI url(String path) {
+		return URI.create("http://localhost:" + this.server.address().getPort() + path);
+	}
+
+	private ServerWebExchange getExchange(String path) {
+		URI url = url(path);
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(url.toString()).build());
+		GatewayContext.get(exchange).setRequestUrl(url);
+		return exchange;
+	}
+
+	private ServerWebExchange formExchange(String form) {
+		URI url = URI.create("http://localhost:" + this.server.address().getPort() + "/echo");
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post(url.toString())
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED).contentLength(form.length()).body(form));
+		GatewayContext.get(exchange).setRequestUrl(url);
+		return exchange;
+	}
+
+	private String echo(ServerWebExchange exchange) {
+		this.filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+		return GatewayContext.get(exchange).<HttpClientResponse>getClientResponse()
+				.receive().aggregate().asString().block(Duration.ofSeconds(5));
+	}
+
+	private ServerWebExchange exchange(String path, Flux<DataBuffer> body) {
+		URI url = URI.create("http://localhost:" + this.server.address().getPort() + path);
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post(url.toString())
+				.header(HttpHeaders.TRANSFER_ENCODING, "chunked").body(body));
+		GatewayContext.get(exchange).setRequestUrl(url);
+		return exchange;
+	}
+
+	private List<ByteBuf> inbound(int count) {
+		List<ByteBuf> buffers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			buffers.add(PooledByteBufAllocator.DEFAULT.directBuffer()
+					.writeBytes(("chunk-" + i).getBytes(StandardCharsets.UTF_8)));
+		}
+		return buffers;
+	}
+
+	// like the Netty server: Spring retains every buffer it emits, the server releases
+	// it once emitted, so only the writer of the proxied request holds it afterwards
+	private Flux<DataBuffer> received(List<ByteBuf> buffers) {
+		return Flux.fromIterable(buffers)
+				.concatMap(buffer -> Mono.just((DataBuffer) this.bufferFactory.wrap(buffer.retain()))
+						.doFinally(signal -> buffer.release()));
+	}
+
+	// the client releases what it wrote once flushed
+	private static void assertReleased(List<ByteBuf> inbound) {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (inbound.stream().anyMatch(buffer -> buffer.refCnt() > 0)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.yield();
+		}
+		assertThat(inbound).allMatch(buffer -> buffer.refCnt() == 0);
+	}
+}
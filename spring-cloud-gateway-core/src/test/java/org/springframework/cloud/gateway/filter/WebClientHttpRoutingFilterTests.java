@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.cloud.gateway.support.HedgePolicy;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WebClientHttpRoutingFilterTests {
+
+	private NettyContext server;
+
+	private WebClientHttpRoutingFilter filter;
+
+	@Before
+	public void setup() {
+		this.server = HttpServer.create(0).newRouter(routes -> routes
+				.get("/fast", (req, res) -> res.sendString(Mono.just("fast")))
+				.get("/slow", (req, res) -> Mono.delay(Duration.ofMillis(500))
+						.then(res.sendString(Mono.just("slow")).then())))
+				.block(Duration.ofSeconds(5));
+		this.filter = new WebClientHttpRoutingFilter(WebClient.create());
+	}
+
+	@After
+	public void close() {
+		this.server.dispose();
+	}
+
+	@Test
+	public void responseTimeoutEndsWithGatewayTimeout() {
+		ServerWebExchange exchange = exchange("/slow");
+		GatewayContext.get(exchange).setResponseTimeout(Duration.ofMillis(50));
+
+		this.filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+		assertThat(GatewayContext.get(exchange).<Object>getClientResponse()).isNull();
+	}
+
+	@Test
+	public void connectTimeoutBoundsTheResponseToo() {
+		ServerWebExchange exchange = exchange("/slow");
+		GatewayContext.get(exchange).setConnectTimeout(Duration.ofMillis(50));
+
+		this.filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+	}
+
+	@Test
+	public void timeoutsLeaveFastResponsesAlone() {
+		ServerWebExchange exchange = exchange("/fast");
+		GatewayContext.get(exchange).setConnectTimeout(Duration.ofSeconds(1));
+		GatewayContext.get(exchange).setResponseTimeout(Duration.ofSeconds(1));
+
+		assertThat(route(exchange)).isEqualTo("fast");
+	}
+
+	@Test
+	public void hedgedRequestWinsOverSlowOne() {
+		ServerWebExchange exchange = exchange("/slow");
+		GatewayContext context = GatewayContext.get(exchange);
+		context.setHedgePolicy(hedgePolicy(Duration.ofMillis(20)));
+		context.setAlternateRequestUrl(() -> url("/fast"));
+
+		assertThat(route(exchange)).isEqualTo("fast");
+	}
+
+	@Test
+	public void fastPrimaryIsNotHedged() {
+		// the first request of the WebClient is slower than the hedge delay
+		route(exchange("/fast"));
+		AtomicInteger alternates = new AtomicInteger();
+		ServerWebExchange exchange = exchange("/fast");
+		GatewayContext context = GatewayContext.get(exchange);
+		context.setHedgePolicy(hedgePolicy(Duration.ofMillis(200)));
+		context.setAlternateRequestUrl(() -> {
+			alternates.incrementAndGet();
+			return url("/slow");
+		});
+
+		assertThat(route(exchange)).isEqualTo("fast");
+		assertThat(alternates).hasValue(0);
+	}
+
+	private static HedgePolicy hedgePolicy(Duration delay) {
+		HedgePolicy policy = new HedgePolicy(95, delay);
+		for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+			policy.recordLatency(1);
+		}
+		return policy;
+	}
+
+	private URI url(String path) {
+		return URI.create("http://localhost:" + this.server.address().getPort() + path);
+	}
+
+	private ServerWebExchange exchange(String path) {
+		URI url = url(path);
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(url.toString()).build());
+		GatewayContext.get(exchange).setRequestUrl(url);
+		return exchange;
+	}
+
+	private String route(ServerWebExchange exchange) {
+		this.filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+		return GatewayContext.get(exchange).<ClientResponse>getClientResponse()
+				.bodyToMono(String.class).block(Duration.ofSeconds(5));
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.cache;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseCacheTests {
+
+	private static final long NOW = 1_500_000_000_000L;
+
+	@Test
+	public void bodyIsReleasedOnceEvictedAndWritten() {
+		ResponseCache cache = new ResponseCache(new ResponseCacheProperties());
+		ByteBuf body = Unpooled.directBuffer().writeBytes(new byte[] { 1, 2, 3 });
+		cache.put("key", response(body));
+
+		ByteBuf served = cache.get("key", new HttpHeaders()).retainedBody();
+		assertThat(body.refCnt()).isEqualTo(2);
+
+		cache.invalidateAll();
+		assertThat(body.refCnt()).isEqualTo(1);
+		assertThat(cache.get("key", new HttpHeaders())).isNull();
+
+		served.release();
+		assertThat(body.refCnt()).isZero();
+	}
+
+	@Test
+	public void evictedResponseHandsOutNoBody() {
+		ResponseCache cache = new ResponseCache(new ResponseCacheProperties());
+		CachedResponse response = response(Unpooled.directBuffer().writeByte(1));
+		cache.put("key", response);
+		cache.invalidateAll();
+
+		assertThat(response.retainedBody()).isNull();
+	}
+
+	@Test
+	public void replacedResponseIsReleased() {
+		ResponseCache cache = new ResponseCache(new ResponseCacheProperties());
+		ByteBuf first = Unpooled.directBuffer().writeByte(1);
+		cache.put("key", response(first));
+		cache.put("key", response(Unpooled.directBuffer().writeByte(2)));
+
+		assertThat(first.refCnt()).isZero();
+	}
+
+	@Test
+	public void sizeIsBoundedByBodyBytes() {
+		ResponseCacheProperties properties = new ResponseCacheProperties();
+		properties.setMaxSize(1024);
+		ResponseCache cache = new ResponseCache(properties);
+		for (int i = 0; i < 10; i++) {
+			cache.put("key" + i, response(Unpooled.directBuffer().writeZero(256)));
+		}
+
+		assertThat((Long) cache.statistics().get("bodyBytes")).isLessThanOrEqualTo(1024L);
+	}
+
+	@Test
+	public void timeToLiveFollowsCacheControl() {
+		assertThat(timeToLive("max-age=60")).isEqualTo(Duration.ofSeconds(60));
+		assertThat(timeToLive("max-age=60, s-maxage=10")).isEqualTo(Duration.ofSeconds(10));
+		assertThat(timeToLive("public, max-age=\"30\"")).isEqualTo(Duration.ofSeconds(30));
+		assertThat(timeToLive("max-age=60, no-store")).isNull();
+		assertThat(timeToLive("private=\"Set-Cookie, X-Token\", max-age=60")).isNull();
+		assertThat(timeToLive("no-cache")).isNull();
+		assertThat(timeToLive("max-age=0")).isNull();
+		assertThat(timeToLive(null)).isNull();
+	}
+
+	@Test
+	public void timeToLiveFromExpires() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setDate(NOW);
+		headers.setExpires(NOW + 120_000);
+		assertThat(ResponseCache.timeToLive(new HttpHeaders(), HttpStatus.OK, headers, NOW))
+				.isEqualTo(Duration.ofSeconds(120));
+
+		headers.set(HttpHeaders.EXPIRES, "0");
+		assertThat(ResponseCache.timeToLive(new HttpHeaders(), HttpStatus.OK, headers, NOW)).isNull();
+	}
+
+	@Test
+	public void ageIsDeducted() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=60");
+		headers.set("Age", "45");
+		assertThat(ResponseCache.timeToLive(new HttpHeaders(), HttpStatus.OK, headers, NOW))
+				.isEqualTo(Duration.ofSeconds(15));
+	}
+
+	@Test
+	public void sharedResponsesOnly() {
+		HttpHeaders authorized = new HttpHeaders();
+		authorized.set(HttpHeaders.AUTHORIZATION, "Bearer token");
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=60");
+		assertThat(ResponseCache.timeToLive(authorized, HttpStatus.OK, headers, NOW)).isNull();
+
+		headers.setCacheControl("public, max-age=60");
+		assertThat(ResponseCache.timeToLive(authorized, HttpStatus.OK, headers, NOW)).isNotNull();
+
+		headers.add(HttpHeaders.SET_COOKIE, "session=1");
+		assertThat(ResponseCache.timeToLive(new HttpHeaders(), HttpStatus.OK, headers, NOW)).isNull();
+	}
+
+	@Test
+	public void onlyOkAndVaryOnKnownHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=60");
+		assertThat(ResponseCache.timeToLive(new HttpHeaders(), HttpStatus.NOT_FOUND, headers, NOW)).isNull();
+
+		headers.setVary(Collections.singletonList("*"));
+		assertThat(ResponseCache.timeToLive(new HttpHeaders(), HttpStatus.OK, headers, NOW)).isNull();
+	}
+
+	private static Duration timeToLive(String cacheControl) {
+		HttpHeaders headers = new HttpHeaders();
+		if (cacheControl != null) {
+			headers.setCacheControl(cacheControl);
+		}
+		return ResponseCache.timeToLive(new HttpHeaders(), HttpStatus.OK, headers, NOW);
+	}
+
+	private static CachedResponse response(ByteBuf body) {
+		return new CachedResponse(HttpStatus.OK, new HttpHeaders(), body, Collections.emptyMap(),
+				NOW, 0, Duration.ofMinutes(1));
+	}
+
+}
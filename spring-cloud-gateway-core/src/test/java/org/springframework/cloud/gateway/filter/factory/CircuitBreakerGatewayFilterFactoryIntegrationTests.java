@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.Routes;
+import org.springframework.cloud.gateway.test.BaseWebClientTests;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory.NAME_KEY;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.rewritePath;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.path;
+import static org.springframework.tuple.TupleBuilder.tuple;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@DirtiesContext
+public class CircuitBreakerGatewayFilterFactoryIntegrationTests extends BaseWebClientTests {
+
+	@Before
+	public void resetCalls() {
+		TestConfig.calls.set(0);
+	}
+
+	@Test
+	public void failedAndRejectedRequestsAreForwardedToFallback() {
+		for (int i = 0; i < 3; i++) {
+			ResponseEntity<String> response = webClient.get().uri("/guarded/broken?id=" + i)
+					.exchange().flatMap(res -> res.toEntity(String.class))
+					.block(Duration.ofSeconds(10));
+
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+			assertThat(response.getBody()).isEqualTo("fallback " + i);
+		}
+		// the breaker opens after the first failure, the other requests are not proxied
+		assertThat(TestConfig.calls).hasValue(1);
+	}
+
+	@RestController
+	@RequestMapping("/downstream")
+	@EnableAutoConfiguration
+	@SpringBootConfiguration
+	@Import(DefaultTestConfig.class)
+	protected static class TestConfig {
+
+		static final AtomicInteger calls = new AtomicInteger();
+
+		@GetMapping("/broken")
+		public ResponseEntity<String> broken() {
+			calls.incrementAndGet();
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("broken");
+		}
+
+		@GetMapping("/fallback")
+		public String fallback(@RequestParam("id") String id) {
+			return "fallback " + id;
+		}
+
+		@Bean
+		public RouteLocator guardedRouteLocator(CircuitBreakerGatewayFilterFactory circuitBreaker) {
+			return Routes.locator()
+					.route("guarded")
+					.predicate(path("/guarded/**"))
+					.filter(circuitBreaker.apply(tuple().of(NAME_KEY, "guarded",
+							CircuitBreakerGatewayFilterFactory.FALLBACK_URI_KEY, "forward:/downstream/fallback",
+							CircuitBreakerGatewayFilterFactory.MINIMUM_CALLS_KEY, "1",
+							CircuitBreakerGatewayFilterFactory.WAIT_DURATION_KEY, "60000")))
+					.filter(rewritePath("/guarded/(?<segment>.*)", "/downstream/${segment}"))
+					.uri("lb://testservice")
+					.build();
+		}
+	}
+
+}
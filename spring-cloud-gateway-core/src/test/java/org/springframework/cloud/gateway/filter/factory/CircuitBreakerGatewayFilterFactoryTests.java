@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.CircuitBreaker;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.tuple.Tuple;
+import org.springframework.web.reactive.DispatcherHandler;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.tuple.TupleBuilder.tuple;
+
+public class CircuitBreakerGatewayFilterFactoryTests {
+
+	private final RecordingDispatcherHandler dispatcherHandler = new RecordingDispatcherHandler();
+
+	@Test
+	public void rejectsWithServiceUnavailableWhenOpen() {
+		CircuitBreakerGatewayFilterFactory.Breaker breaker = breaker(tuple().of("minimumCalls", "2"));
+		AtomicInteger calls = new AtomicInteger();
+		GatewayFilterChain chain = status(HttpStatus.INTERNAL_SERVER_ERROR, calls);
+
+		for (int i = 0; i < 3; i++) {
+			breaker.filter(get(), chain).block(Duration.ofSeconds(5));
+		}
+		ServerWebExchange exchange = get();
+		breaker.filter(exchange, chain).block(Duration.ofSeconds(5));
+
+		assertThat(calls).hasValue(2);
+		assertThat(breaker.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		assertThat(exchange.getResponse().isCommitted()).isTrue();
+	}
+
+	@Test
+	public void successfulCallsPassThrough() {
+		CircuitBreakerGatewayFilterFactory.Breaker breaker = breaker(
+				tuple().of("minimumCalls", "2", "fallbackUri", "forward:/fallback"));
+		ServerWebExchange exchange = get();
+
+		breaker.filter(exchange, status(HttpStatus.OK, new AtomicInteger())).block(Duration.ofSeconds(5));
+
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(this.dispatcherHandler.exchange).isNull();
+		assertThat(breaker.getCircuitBreaker().getFailureRate()).isEqualTo(-1);
+	}
+
+	@Test
+	public void forwardsRejectedRequestsToFallback() {
+		CircuitBreakerGatewayFilterFactory.Breaker breaker = breaker(
+				tuple().of("minimumCalls", "1", "fallbackUri", "forward:/fallback"));
+		breaker.filter(get(), status(HttpStatus.BAD_GATEWAY, new AtomicInteger())).block(Duration.ofSeconds(5));
+		this.dispatcherHandler.exchange = null;
+		AtomicInteger calls = new AtomicInteger();
+
+		breaker.filter(get(), status(HttpStatus.OK, calls)).block(Duration.ofSeconds(5));
+
+		assertThat(calls).hasValue(0);
+		ServerWebExchange forwarded = this.dispatcherHandler.exchange;
+		assertThat(forwarded.getRequest().getPath().value()).isEqualTo("/fallback");
+		assertThat(forwarded.getRequest().getQueryParams().getFirst("q")).isEqualTo("1");
+		assertThat(GatewayContext.get(forwarded).isAlreadyRouted()).isTrue();
+	}
+
+	@Test
+	public void forwardsFailedRequestsWithStateReset() {
+		CircuitBreakerGatewayFilterFactory.Breaker breaker = breaker(
+				tuple().of("fallbackUri", "forward:/fallback"));
+		ServerWebExchange exchange = get();
+		exchange.getResponse().getHeaders().set("X-Before", "kept");
+		GatewayFilterChain chain = e -> Mono.fromRunnable(() -> {
+			GatewayContext.get(e).setClientResponse("upstream");
+			e.getResponse().getHeaders().set("X-Upstream", "instance-1");
+			e.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+		});
+
+		breaker.filter(exchange, chain).block(Duration.ofSeconds(5));
+
+		ServerWebExchange forwarded = this.dispatcherHandler.exchange;
+		assertThat(forwarded.getRequest().getPath().value()).isEqualTo("/fallback");
+		assertThat(GatewayContext.get(forwarded).<Object>getClientResponse()).isNull();
+		assertThat(forwarded.getResponse().getStatusCode()).isNull();
+		assertThat(forwarded.getResponse().getHeaders().getFirst("X-Before")).isEqualTo("kept");
+		assertThat(forwarded.getResponse().getHeaders().containsKey("X-Upstream")).isFalse();
+	}
+
+	@Test
+	public void forwardsErrorsToFallback() {
+		CircuitBreakerGatewayFilterFactory.Breaker breaker = breaker(
+				tuple().of("fallbackUri", "forward:/fallback"));
+
+		breaker.filter(get(), e -> Mono.error(new IOException("reset"))).block(Duration.ofSeconds(5));
+
+		assertThat(this.dispatcherHandler.exchange.getRequest().getPath().value()).isEqualTo("/fallback");
+	}
+
+	@Test
+	public void errorsPropagateWithoutFallback() {
+		CircuitBreakerGatewayFilterFactory.Breaker breaker = breaker(tuple().of("minimumCalls", "1"));
+
+		assertThatThrownBy(() -> breaker.filter(get(), e -> Mono.error(new IOException("reset")))
+				.block(Duration.ofSeconds(5))).hasCauseInstanceOf(IOException.class);
+		assertThat(breaker.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+	}
+
+	@Test
+	public void onlyForwardFallbacksAreSupported() {
+		assertThatThrownBy(() -> breaker(tuple().of("fallbackUri", "http://example.com/fallback")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@SuppressWarnings("unchecked")
+	private CircuitBreakerGatewayFilterFactory.Breaker breaker(Tuple args) {
+		ObjectProvider<DispatcherHandler> provider = mock(ObjectProvider.class);
+		when(provider.getIfAvailable()).thenReturn(this.dispatcherHandler);
+		return new CircuitBreakerGatewayFilterFactory(provider).new Breaker(args);
+	}
+
+	private static ServerWebExchange get() {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/foo?q=1").build());
+	}
+
+	private static GatewayFilterChain status(HttpStatus status, AtomicInteger calls) {
+		return exchange -> Mono.fromRunnable(() -> {
+			calls.incrementAndGet();
+			exchange.getResponse().setStatusCode(status);
+		});
+	}
+
+	/**
+	 * Handler recording the exchange forwarded to it.
+	 */
+	private static class RecordingDispatcherHandler extends DispatcherHandler {
+
+		ServerWebExchange exchange;
+
+		@Override
+		public Mono<Void> handle(ServerWebExchange exchange) {
+			this.exchange = exchange;
+			return Mono.empty();
+		}
+	}
+}
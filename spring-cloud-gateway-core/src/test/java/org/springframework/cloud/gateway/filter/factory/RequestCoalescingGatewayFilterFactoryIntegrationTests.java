@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.Routes;
+import org.springframework.cloud.gateway.test.BaseWebClientTests;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.requestCoalescing;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.rewritePath;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.path;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@DirtiesContext
+public class RequestCoalescingGatewayFilterFactoryIntegrationTests extends BaseWebClientTests {
+
+	@Before
+	public void resetCalls() {
+		TestConfig.calls.set(0);
+	}
+
+	@Test
+	public void concurrentRequestsAreProxiedOnce() {
+		List<String> bodies = Flux.range(0, 20)
+				.flatMap(i -> webClient.get().uri("/coalesced/hot").retrieve().bodyToMono(String.class))
+				.collectList().block(Duration.ofSeconds(10));
+
+		assertThat(bodies).hasSize(20).containsOnly("hot 1");
+		assertThat(TestConfig.calls).hasValue(1);
+	}
+
+	@RestController
+	@RequestMapping("/downstream")
+	@EnableAutoConfiguration
+	@SpringBootConfiguration
+	@Import(DefaultTestConfig.class)
+	protected static class TestConfig {
+
+		static final AtomicInteger calls = new AtomicInteger();
+
+		@RequestMapping("/{id}")
+		public Mono<String> slow(@PathVariable("id") String id) {
+			int call = calls.incrementAndGet();
+			return Mono.delay(Duration.ofMillis(500)).map(tick -> id + " " + call);
+		}
+
+		@Bean
+		public RouteLocator coalescedRouteLocator(RequestCoalescingProperties properties) {
+			return Routes.locator()
+					.route("coalesced")
+					.predicate(path("/coalesced/**"))
+					.filter(requestCoalescing(properties))
+					.filter(rewritePath("/coalesced/(?<segment>.*)", "/downstream/${segment}"))
+					.uri("lb://testservice")
+					.build();
+		}
+	}
+
+}
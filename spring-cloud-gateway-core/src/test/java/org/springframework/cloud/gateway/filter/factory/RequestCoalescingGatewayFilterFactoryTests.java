@@ -0,0 +1,235 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestCoalescingGatewayFilterFactoryTests {
+
+	private final RequestCoalescingProperties properties = new RequestCoalescingProperties();
+
+	private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+	private final List<ByteBuf> upstreamBuffers = new ArrayList<>();
+
+	private final List<MockServerWebExchange> exchanges = new ArrayList<>();
+
+	private final Map<MockServerWebExchange, String> bodies = new HashMap<>();
+
+	private MonoProcessor<Void> upstreamReady;
+
+	private RequestCoalescingGatewayFilterFactory factory;
+
+	@Before
+	public void setup() {
+		this.upstreamReady = MonoProcessor.create();
+		this.factory = new RequestCoalescingGatewayFilterFactory(this.properties);
+	}
+
+	@Test
+	public void identicalRequestsShareOneUpstreamCall() {
+		GatewayFilter filter = GatewayFilters.requestCoalescing(this.properties);
+		List<MonoProcessor<Void>> results = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("http://localhost/hot"));
+			results.add(filter.filter(exchange, upstream("hot")).toProcessor());
+		}
+		this.upstreamReady.onComplete();
+		results.forEach(result -> result.block(Duration.ofSeconds(5)));
+
+		assertThat(this.upstreamCalls).hasValue(1);
+		for (MockServerWebExchange exchange : this.exchanges) {
+			assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+			assertThat(exchange.getResponse().getHeaders().getFirst("X-Upstream")).isEqualTo("1");
+			assertThat(body(exchange)).isEqualTo("hot");
+		}
+		assertUpstreamBuffersReleased();
+	}
+
+	@Test
+	public void flightEndsWithItsResponse() {
+		GatewayFilter filter = this.factory.apply(GatewayFilters.EMPTY_TUPLE);
+		this.upstreamReady.onComplete();
+		filter.filter(exchange(MockServerHttpRequest.get("http://localhost/hot")), upstream("hot")).block();
+		filter.filter(exchange(MockServerHttpRequest.get("http://localhost/hot")), upstream("hot")).block();
+
+		assertThat(this.upstreamCalls).hasValue(2);
+		assertThat(this.factory.getFlightCount()).isZero();
+		assertUpstreamBuffersReleased();
+	}
+
+	@Test
+	public void waitersBeyondTheMaximumAreProxied() {
+		this.properties.setMaxWaiters(2);
+		GatewayFilter filter = this.factory.apply(GatewayFilters.EMPTY_TUPLE);
+		List<MonoProcessor<Void>> results = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			results.add(filter.filter(exchange(MockServerHttpRequest.get("http://localhost/hot")), upstream("hot"))
+					.toProcessor());
+		}
+		this.upstreamReady.onComplete();
+		results.forEach(result -> result.block(Duration.ofSeconds(5)));
+
+		assertThat(this.upstreamCalls).hasValue(3);
+		assertUpstreamBuffersReleased();
+	}
+
+	@Test
+	public void waiterIsProxiedAfterMaxWait() {
+		this.properties.setMaxWait(Duration.ofMillis(50));
+		GatewayFilter filter = this.factory.apply(GatewayFilters.EMPTY_TUPLE);
+		MonoProcessor<Void> leader = filter.filter(exchange(MockServerHttpRequest.get("http://localhost/hot")),
+				upstream("hot")).toProcessor();
+		MockServerWebExchange waiter = exchange(MockServerHttpRequest.get("http://localhost/hot"));
+		MonoProcessor<Void> waited = filter.filter(waiter, e -> {
+			this.upstreamCalls.incrementAndGet();
+			return respond(e, "own");
+		}).toProcessor();
+
+		waited.block(Duration.ofSeconds(5));
+		assertThat(body(waiter)).isEqualTo("own");
+
+		this.upstreamReady.onComplete();
+		leader.block(Duration.ofSeconds(5));
+		assertThat(this.upstreamCalls).hasValue(2);
+		assertUpstreamBuffersReleased();
+	}
+
+	@Test
+	public void waitersAreProxiedWhenTheFirstRequestFails() {
+		GatewayFilter filter = this.factory.apply(GatewayFilters.EMPTY_TUPLE);
+		MonoProcessor<Void> leader = filter.filter(exchange(MockServerHttpRequest.get("http://localhost/hot")),
+				e -> this.upstreamReady.then(Mono.error(new IllegalStateException("upstream down")))).toProcessor();
+		MockServerWebExchange waiter = exchange(MockServerHttpRequest.get("http://localhost/hot"));
+		MonoProcessor<Void> waited = filter.filter(waiter, e -> respond(e, "own")).toProcessor();
+
+		this.upstreamReady.onComplete();
+		waited.block(Duration.ofSeconds(5));
+		assertThat(leader.isError()).isTrue();
+		assertThat(body(waiter)).isEqualTo("own");
+		assertThat(this.factory.getFlightCount()).isZero();
+	}
+
+	@Test
+	public void requestsAreKeyedOnTheGivenHeaders() {
+		GatewayFilter filter = GatewayFilters.requestCoalescing(this.properties, HttpHeaders.ACCEPT);
+		MonoProcessor<Void> json = filter.filter(exchange(MockServerHttpRequest.get("http://localhost/hot")
+				.header(HttpHeaders.ACCEPT, "application/json")), upstream("json")).toProcessor();
+		MockServerWebExchange xml = exchange(MockServerHttpRequest.get("http://localhost/hot")
+				.header(HttpHeaders.ACCEPT, "application/xml"));
+		MonoProcessor<Void> xmlResult = filter.filter(xml, upstream("xml")).toProcessor();
+		this.upstreamReady.onComplete();
+		json.block(Duration.ofSeconds(5));
+		xmlResult.block(Duration.ofSeconds(5));
+
+		assertThat(this.upstreamCalls).hasValue(2);
+		assertThat(body(xml)).isEqualTo("xml");
+	}
+
+	@Test
+	public void onlyAnonymousIdempotentRequestsAreCoalesced() {
+		List<String> none = new ArrayList<>();
+		assertThat(RequestCoalescingGatewayFilterFactory.isCoalescable(
+				MockServerHttpRequest.get("http://localhost/hot").build(), none)).isTrue();
+		assertThat(RequestCoalescingGatewayFilterFactory.isCoalescable(
+				MockServerHttpRequest.head("http://localhost/hot").build(), none)).isTrue();
+		assertThat(RequestCoalescingGatewayFilterFactory.isCoalescable(
+				MockServerHttpRequest.post("http://localhost/hot").build(), none)).isFalse();
+		assertThat(RequestCoalescingGatewayFilterFactory.isCoalescable(
+				MockServerHttpRequest.get("http://localhost/hot").header(HttpHeaders.COOKIE, "a=b").build(), none))
+				.isFalse();
+		assertThat(RequestCoalescingGatewayFilterFactory.isCoalescable(
+				MockServerHttpRequest.get("http://localhost/hot").header(HttpHeaders.AUTHORIZATION, "Bearer t").build(),
+				none)).isFalse();
+		assertThat(RequestCoalescingGatewayFilterFactory.isCoalescable(
+				MockServerHttpRequest.get("http://localhost/hot").header(HttpHeaders.AUTHORIZATION, "Bearer t").build(),
+				Collections.singletonList("authorization"))).isTrue();
+	}
+
+	private MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+		MockServerWebExchange exchange = MockServerWebExchange.from(request.build());
+		this.exchanges.add(exchange);
+		return exchange;
+	}
+
+	/**
+	 * Answers once {@link #upstreamReady} completes, the way the routing and write
+	 * response filters do, with a body made of pooled Netty buffers.
+	 */
+	private GatewayFilterChain upstream(String body) {
+		return exchange -> this.upstreamReady.then(Mono.defer(() -> {
+			int call = this.upstreamCalls.incrementAndGet();
+			exchange.getResponse().getHeaders().set("X-Upstream", String.valueOf(call));
+			return respond(exchange, body);
+		}));
+	}
+
+	private Mono<Void> respond(ServerWebExchange exchange, String body) {
+		ServerHttpResponse response = exchange.getResponse();
+		response.setStatusCode(HttpStatus.OK);
+		ByteBuf buffer = Unpooled.directBuffer().writeBytes(body.getBytes(StandardCharsets.UTF_8));
+		synchronized (this.upstreamBuffers) {
+			this.upstreamBuffers.add(buffer);
+		}
+		NettyDataBufferFactory factory = new NettyDataBufferFactory(Unpooled.directBuffer().alloc());
+		return response.writeWith(GatewayContext.get(exchange).decorateResponseBody(Flux.just(factory.wrap(buffer))));
+	}
+
+	/**
+	 * Return the body written to the exchange, reading it only once as that releases
+	 * the written buffers.
+	 */
+	private String body(MockServerWebExchange exchange) {
+		return this.bodies.computeIfAbsent(exchange, e -> e.getResponse().getBodyAsString().block());
+	}
+
+	private void assertUpstreamBuffersReleased() {
+		this.exchanges.forEach(this::body);
+		for (ByteBuf buffer : this.upstreamBuffers) {
+			assertThat(buffer.refCnt()).isZero();
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.tuple.TupleBuilder.tuple;
+
+public class RequestFlushGatewayFilterFactoryTests {
+
+	@Test
+	public void batchWithDefaults() {
+		FlushStrategy strategy = strategyOf(new RequestFlushGatewayFilterFactory()
+				.apply(tuple().of("strategy", "batch")));
+
+		assertThat(strategy.isBatched()).isTrue();
+		assertThat(strategy.getMaxSize()).isEqualTo(FlushStrategy.DEFAULT_MAX_SIZE);
+		assertThat(strategy.getMaxDelay()).isEqualTo(FlushStrategy.DEFAULT_MAX_DELAY);
+	}
+
+	@Test
+	public void batchWithShortcutArgs() {
+		FlushStrategy strategy = strategyOf(new RequestFlushGatewayFilterFactory()
+				.apply(tuple().of("strategy", "BATCH", "maxSize", "1024", "maxDelay", "5")));
+
+		assertThat(strategy.getMaxSize()).isEqualTo(1024);
+		assertThat(strategy.getMaxDelay()).isEqualTo(Duration.ofMillis(5));
+	}
+
+	@Test
+	public void each() {
+		FlushStrategy strategy = strategyOf(GatewayFilters.requestFlush(FlushStrategy.EACH));
+
+		assertThat(strategy).isSameAs(FlushStrategy.EACH);
+	}
+
+	@Test
+	public void helperKeepsBatchSettings() {
+		FlushStrategy strategy = strategyOf(GatewayFilters.requestFlush(
+				FlushStrategy.batch(4096, Duration.ofMillis(20))));
+
+		assertThat(strategy.getMaxSize()).isEqualTo(4096);
+		assertThat(strategy.getMaxDelay()).isEqualTo(Duration.ofMillis(20));
+	}
+
+	private static FlushStrategy strategyOf(GatewayFilter filter) {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("http://localhost").build());
+		filter.filter(exchange, e -> Mono.empty()).block();
+		return GatewayContext.get(exchange).getFlushStrategy();
+	}
+}
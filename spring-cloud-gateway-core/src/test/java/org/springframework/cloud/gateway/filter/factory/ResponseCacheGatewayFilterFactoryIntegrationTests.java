@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.filter.cache.ResponseCache;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.Routes;
+import org.springframework.cloud.gateway.test.BaseWebClientTests;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.responseCache;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.path;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@DirtiesContext
+public class ResponseCacheGatewayFilterFactoryIntegrationTests extends BaseWebClientTests {
+
+	@Before
+	public void resetCalls() {
+		TestConfig.calls.set(0);
+	}
+
+	@Test
+	public void cachedResponseIsServedByTheGateway() {
+		String first = this.testClient.get().uri("/cached/orders").exchange()
+				.expectStatus().isOk()
+				.expectBody(String.class).returnResult().getResponseBody();
+		String etag = this.testClient.get().uri("/cached/orders").exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueEquals("Age", "0")
+				.expectBody(String.class).isEqualTo(first)
+				.returnResult().getResponseHeaders().getETag();
+		this.testClient.get().uri("/cached/orders").header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+				.expectStatus().isNotModified()
+				.expectBody().isEmpty();
+
+		assertThat(TestConfig.calls).hasValue(1);
+	}
+
+	@RestController
+	@RequestMapping("/downstream")
+	@EnableAutoConfiguration
+	@SpringBootConfiguration
+	@Import(DefaultTestConfig.class)
+	protected static class TestConfig {
+
+		static final AtomicInteger calls = new AtomicInteger();
+
+		@RequestMapping("/{id}")
+		public ResponseEntity<String> cached(@PathVariable("id") String id) {
+			int call = calls.incrementAndGet();
+			return ResponseEntity.ok().cacheControl(CacheControl.maxAge(1, MINUTES)).eTag("\"" + call + "\"")
+					.body(id + " " + call);
+		}
+
+		@Bean
+		public RouteLocator cachedRouteLocator(ResponseCache responseCache) {
+			return Routes.locator()
+					.route("cached")
+					.predicate(path("/cached/**"))
+					.filter(responseCache(responseCache))
+					.filter(GatewayFilters.rewritePath("/cached/(?<segment>.*)", "/downstream/${segment}"))
+					.uri("lb://testservice")
+					.build();
+		}
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.cache.ResponseCache;
+import org.springframework.cloud.gateway.filter.cache.ResponseCacheProperties;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseCacheGatewayFilterFactoryTests {
+
+	private ResponseCacheProperties properties;
+
+	private ResponseCache cache;
+
+	private GatewayFilter filter;
+
+	private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+	@Before
+	public void setup() {
+		this.properties = new ResponseCacheProperties();
+		this.properties.setMaxEntrySize(64);
+		this.cache = new ResponseCache(this.properties);
+		this.filter = GatewayFilters.responseCache(this.cache);
+	}
+
+	@Test
+	public void hitIsServedWithoutCallingUpstream() {
+		MockServerWebExchange miss = exchange(MockServerHttpRequest.get("http://localhost/orders"));
+		this.filter.filter(miss, upstream("max-age=60", "orders")).block();
+		MockServerWebExchange hit = exchange(MockServerHttpRequest.get("http://localhost/orders"));
+		this.filter.filter(hit, upstream("max-age=60", "changed")).block();
+
+		assertThat(this.upstreamCalls).hasValue(1);
+		MockServerHttpResponse response = hit.getResponse();
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBodyAsString().block()).isEqualTo("orders");
+		assertThat(response.getHeaders().getContentLength()).isEqualTo(6);
+		assertThat(response.getHeaders().getETag()).isEqualTo("\"v1\"");
+		assertThat(response.getHeaders().getFirst("Age")).isEqualTo("0");
+	}
+
+	@Test
+	public void matchingIfNoneMatchIsAnsweredWithNotModified() {
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/orders")),
+				upstream("max-age=60", "orders")).block();
+		MockServerWebExchange conditional = exchange(MockServerHttpRequest.get("http://localhost/orders")
+				.header(HttpHeaders.IF_NONE_MATCH, "\"v1\""));
+		this.filter.filter(conditional, upstream("max-age=60", "orders")).block();
+
+		assertThat(this.upstreamCalls).hasValue(1);
+		assertThat(conditional.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(conditional.getResponse().getHeaders().containsKey(HttpHeaders.CONTENT_LENGTH)).isFalse();
+		assertThat(conditional.getResponse().getBodyAsString().block()).isNullOrEmpty();
+	}
+
+	@Test
+	public void uncacheableResponseIsNotStored() {
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/orders")),
+				upstream("no-store", "orders")).block();
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/orders")),
+				upstream("no-store", "orders")).block();
+
+		assertThat(this.upstreamCalls).hasValue(2);
+	}
+
+	@Test
+	public void bodyLargerThanMaxEntrySizeIsNotStored() {
+		String large = new String(new char[100]).replace('\0', 'x');
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/large")),
+				upstream("max-age=60", large)).block();
+		MockServerWebExchange second = exchange(MockServerHttpRequest.get("http://localhost/large"));
+		this.filter.filter(second, upstream("max-age=60", large)).block();
+
+		assertThat(this.upstreamCalls).hasValue(2);
+		assertThat(second.getResponse().getBodyAsString().block()).isEqualTo(large);
+	}
+
+	@Test
+	public void differentVaryHeaderIsAMiss() {
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/orders")
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "en")), upstream("max-age=60", "orders")).block();
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/orders")
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr")), upstream("max-age=60", "commandes")).block();
+		MockServerWebExchange hit = exchange(MockServerHttpRequest.get("http://localhost/orders")
+				.header(HttpHeaders.ACCEPT_LANGUAGE, "fr"));
+		this.filter.filter(hit, upstream("max-age=60", "orders")).block();
+
+		assertThat(this.upstreamCalls).hasValue(2);
+		assertThat(hit.getResponse().getBodyAsString().block()).isEqualTo("commandes");
+	}
+
+	@Test
+	public void requestNoCacheRefreshesTheCache() {
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/orders")),
+				upstream("max-age=60", "orders")).block();
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/orders")
+				.header(HttpHeaders.CACHE_CONTROL, "no-cache")), upstream("max-age=60", "refreshed")).block();
+		MockServerWebExchange hit = exchange(MockServerHttpRequest.get("http://localhost/orders"));
+		this.filter.filter(hit, upstream("max-age=60", "orders")).block();
+
+		assertThat(this.upstreamCalls).hasValue(2);
+		assertThat(hit.getResponse().getBodyAsString().block()).isEqualTo("refreshed");
+	}
+
+	@Test
+	public void requestNoStoreBypassesTheCache() {
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/orders")
+				.header(HttpHeaders.CACHE_CONTROL, "no-store")), upstream("max-age=60", "orders")).block();
+		this.filter.filter(exchange(MockServerHttpRequest.get("http://localhost/orders")),
+				upstream("max-age=60", "orders")).block();
+
+		assertThat(this.upstreamCalls).hasValue(2);
+	}
+
+	@Test
+	public void onlyGetIsCached() {
+		this.filter.filter(exchange(MockServerHttpRequest.post("http://localhost/orders")),
+				upstream("max-age=60", "orders")).block();
+		this.filter.filter(exchange(MockServerHttpRequest.post("http://localhost/orders")),
+				upstream("max-age=60", "orders")).block();
+
+		assertThat(this.upstreamCalls).hasValue(2);
+	}
+
+	private static MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+		return MockServerWebExchange.from(request.build());
+	}
+
+	/**
+	 * Answers the way the routing and write response filters do, the body going
+	 * through the response body decorators.
+	 */
+	private GatewayFilterChain upstream(String cacheControl, String body) {
+		return exchange -> {
+			this.upstreamCalls.incrementAndGet();
+			ServerHttpResponse response = exchange.getResponse();
+			response.setStatusCode(HttpStatus.OK);
+			response.getHeaders().setCacheControl(cacheControl);
+			response.getHeaders().setETag("\"v1\"");
+			response.getHeaders().setVary(Collections.singletonList(HttpHeaders.ACCEPT_LANGUAGE));
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			response.getHeaders().setContentLength(bytes.length);
+			DataBuffer buffer = new DefaultDataBufferFactory().wrap(bytes);
+			return response.writeWith(GatewayContext.get(exchange).decorateResponseBody(Flux.just(buffer)));
+		};
+	}
+
+}
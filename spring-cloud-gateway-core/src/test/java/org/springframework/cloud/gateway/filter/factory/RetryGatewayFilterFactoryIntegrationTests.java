@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.Routes;
+import org.springframework.cloud.gateway.test.BaseWebClientTests;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.retry;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.rewritePath;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilters.timeout;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.path;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@DirtiesContext
+public class RetryGatewayFilterFactoryIntegrationTests extends BaseWebClientTests {
+
+	@Before
+	public void resetCalls() {
+		TestConfig.calls.set(0);
+	}
+
+	@Test
+	public void postIsReplayedUntilServiceAnswers() {
+		ResponseEntity<String> response = webClient.post().uri("/retried/flaky").contentLength(7).syncBody("payload")
+				.exchange().flatMap(res -> res.toEntity(String.class))
+				.block(Duration.ofSeconds(10));
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody()).isEqualTo("payload 3");
+		assertThat(TestConfig.calls).hasValue(3);
+	}
+
+	@Test
+	public void timedOutRequestIsRetriedByDefault() {
+		ResponseEntity<String> response = webClient.get().uri("/timed/stalling")
+				.exchange().flatMap(res -> res.toEntity(String.class))
+				.block(Duration.ofSeconds(10));
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody()).isEqualTo("answered 2");
+		assertThat(TestConfig.calls).hasValue(2);
+	}
+
+	@RestController
+	@RequestMapping("/downstream")
+	@EnableAutoConfiguration
+	@SpringBootConfiguration
+	@Import(DefaultTestConfig.class)
+	protected static class TestConfig {
+
+		static final AtomicInteger calls = new AtomicInteger();
+
+		@PostMapping("/flaky")
+		public ResponseEntity<String> flaky(@RequestBody String body) {
+			int call = calls.incrementAndGet();
+			if (call < 3) {
+				return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("unavailable");
+			}
+			return ResponseEntity.ok(body + " " + call);
+		}
+
+		@GetMapping("/stalling")
+		public Mono<String> stalling() {
+			int call = calls.incrementAndGet();
+			Duration delay = call < 2 ? Duration.ofSeconds(5) : Duration.ZERO;
+			return Mono.delay(delay).map(tick -> "answered " + call);
+		}
+
+		@Bean
+		public RouteLocator retriedRouteLocator() {
+			return Routes.locator()
+					.route("retried")
+					.predicate(path("/retried/**"))
+					.filter(retry(3, Collections.singletonList(HttpMethod.POST), HttpStatus.SERVICE_UNAVAILABLE))
+					.filter(rewritePath("/retried/(?<segment>.*)", "/downstream/${segment}"))
+					.uri("lb://testservice")
+					.route("timed")
+					.predicate(path("/timed/**"))
+					.filter(retry(3))
+					.filter(timeout(null, Duration.ofMillis(200), null))
+					.filter(rewritePath("/timed/(?<segment>.*)", "/downstream/${segment}"))
+					.uri("lb://testservice")
+					.build();
+		}
+	}
+
+}
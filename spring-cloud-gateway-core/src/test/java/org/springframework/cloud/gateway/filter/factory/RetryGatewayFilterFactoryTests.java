@@ -0,0 +1,302 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.tuple.Tuple;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.tuple.TupleBuilder.tuple;
+
+public class RetryGatewayFilterFactoryTests {
+
+	@Test
+	public void retriesOnStatusUntilSuccess() {
+		ScriptedChain chain = new ScriptedChain(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.BAD_GATEWAY, HttpStatus.OK);
+		ServerWebExchange exchange = get();
+
+		filter(tuple().of("firstBackoff", "1")).filter(exchange, chain).block(Duration.ofSeconds(5));
+
+		assertThat(chain.attempts).isEqualTo(3);
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	@Test
+	public void lastFailureIsKept() {
+		ScriptedChain chain = new ScriptedChain(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.SERVICE_UNAVAILABLE,
+				HttpStatus.SERVICE_UNAVAILABLE);
+		ServerWebExchange exchange = get();
+
+		filter(tuple().of("retries", "2", "firstBackoff", "1")).filter(exchange, chain)
+				.block(Duration.ofSeconds(5));
+
+		assertThat(chain.attempts).isEqualTo(3);
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	@Test
+	public void otherStatusesAreNotRetried() {
+		ScriptedChain chain = new ScriptedChain(HttpStatus.INTERNAL_SERVER_ERROR, HttpStatus.OK);
+		ServerWebExchange exchange = get();
+
+		filter(tuple().of("firstBackoff", "1")).filter(exchange, chain).block(Duration.ofSeconds(5));
+
+		assertThat(chain.attempts).isEqualTo(1);
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+	}
+
+	@Test
+	public void retriesOnConfiguredExceptions() {
+		ScriptedChain chain = new ScriptedChain(new IOException("reset"), HttpStatus.OK);
+		ServerWebExchange exchange = get();
+
+		filter(tuple().of("firstBackoff", "1")).filter(exchange, chain).block(Duration.ofSeconds(5));
+
+		assertThat(chain.attempts).isEqualTo(2);
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	@Test
+	public void otherExceptionsPropagate() {
+		ScriptedChain chain = new ScriptedChain(new IllegalStateException("bug"), HttpStatus.OK);
+		GatewayFilter filter = filter(tuple().of("firstBackoff", "1"));
+
+		assertThatThrownBy(() -> filter.filter(get(), chain).block(Duration.ofSeconds(5)))
+				.isInstanceOf(IllegalStateException.class);
+		assertThat(chain.attempts).isEqualTo(1);
+	}
+
+	@Test
+	public void otherMethodsAreNotRetried() {
+		ScriptedChain chain = new ScriptedChain(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.OK);
+
+		filter(tuple().of("firstBackoff", "1")).filter(post("body"), chain).block(Duration.ofSeconds(5));
+
+		assertThat(chain.attempts).isEqualTo(1);
+	}
+
+	@Test
+	public void bodyIsReplayed() {
+		ScriptedChain chain = new ScriptedChain(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.SERVICE_UNAVAILABLE,
+				HttpStatus.OK);
+
+		filter(tuple().of("methods", "GET, POST", "firstBackoff", "1")).filter(post("body"), chain)
+				.block(Duration.ofSeconds(5));
+
+		assertThat(chain.bodies).containsExactly("body", "body", "body");
+	}
+
+	@Test
+	public void replayedBodyIsReleasedOnceWritten() {
+		List<ByteBuf> written = new ArrayList<>();
+		ServerWebExchange exchange = nettyBuffers(post("body"));
+		// converts the buffers like NettyRoutingFilter, the client releases what it wrote
+		GatewayFilterChain chain = e -> e.getRequest().getBody()
+				.map(buffer -> ((NettyDataBuffer) buffer).getNativeBuffer())
+				.doOnNext(written::add)
+				.doOnNext(ReferenceCountUtil::release)
+				.then(Mono.fromRunnable(() -> e.getResponse().setStatusCode(
+						written.size() < 2 ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK)));
+
+		filter(tuple().of("methods", "POST", "firstBackoff", "1")).filter(exchange, chain)
+				.block(Duration.ofSeconds(5));
+
+		assertThat(written).hasSize(2).allMatch(buffer -> buffer.refCnt() == 0);
+	}
+
+	@Test
+	public void formIsDecodedFromReplayedBody() {
+		ScriptedChain chain = new ScriptedChain(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.OK);
+		chain.readForm = true;
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("http://localhost/form")
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED).contentLength(7).body("a=1&b=2"));
+
+		filter(tuple().of("methods", "POST", "firstBackoff", "1")).filter(exchange, chain)
+				.block(Duration.ofSeconds(5));
+
+		assertThat(chain.bodies).containsExactly("{a=[1], b=[2]}a=1&b=2", "{a=[1], b=[2]}a=1&b=2");
+	}
+
+	@Test
+	public void bodyOverLimitIsSentOnce() {
+		ScriptedChain chain = new ScriptedChain(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.OK);
+
+		filter(tuple().of("methods", "POST", "maxBodySize", "3")).filter(post("body"), chain)
+				.block(Duration.ofSeconds(5));
+
+		assertThat(chain.attempts).isEqualTo(1);
+		assertThat(chain.bodies).containsExactly("body");
+	}
+
+	@Test
+	public void stateOfFailedAttemptIsReset() {
+		List<String> seen = new ArrayList<>();
+		URI url = URI.create("lb://service/foo");
+		ScriptedChain chain = new ScriptedChain(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.OK) {
+			@Override
+			public Mono<Void> filter(ServerWebExchange exchange) {
+				GatewayContext context = GatewayContext.get(exchange);
+				seen.add(context.getRequestUrl() + " " + context.isAlreadyRouted() + " "
+						+ exchange.getResponse().getHeaders().getFirst("X-Upstream"));
+				context.setRequestUrl(URI.create("http://instance-" + this.attempts + "/foo"));
+				context.setAlreadyRouted();
+				exchange.getResponse().getHeaders().set("X-Upstream", "instance-" + this.attempts);
+				return super.filter(exchange);
+			}
+		};
+		ServerWebExchange exchange = get();
+		GatewayContext.get(exchange).setRequestUrl(url);
+
+		filter(tuple().of("firstBackoff", "1")).filter(exchange, chain).block(Duration.ofSeconds(5));
+
+		assertThat(seen).containsExactly("lb://service/foo false null", "lb://service/foo false null");
+		assertThat(exchange.getResponse().getHeaders().getFirst("X-Upstream")).isEqualTo("instance-1");
+	}
+
+	@Test
+	public void budgetCapsRetries() {
+		RetryGatewayFilterFactory.Retry retry = new RetryGatewayFilterFactory.Retry(
+				tuple().of("retries", "1", "budget", "0", "firstBackoff", "1"));
+		int attempts = 0;
+		for (int i = 0; i < RetryGatewayFilterFactory.BUDGET_TOKENS + 5; i++) {
+			ScriptedChain chain = new ScriptedChain(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.OK);
+			retry.filter(get(), chain).block(Duration.ofSeconds(5));
+			attempts += chain.attempts;
+		}
+
+		// the initial tokens are spent, and requests earn none with a budget of 0%
+		assertThat(attempts).isEqualTo(RetryGatewayFilterFactory.BUDGET_TOKENS * 2 + 5);
+	}
+
+	@Test
+	public void backoffGrowsExponentiallyWithJitter() {
+		RetryGatewayFilterFactory.Retry retry = new RetryGatewayFilterFactory.Retry(
+				tuple().of("firstBackoff", "100", "maxBackoff", "300", "jitter", "0.5"));
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(retry.backoff(0)).isBetween(Duration.ofMillis(50), Duration.ofMillis(100));
+			assertThat(retry.backoff(1)).isBetween(Duration.ofMillis(100), Duration.ofMillis(200));
+			assertThat(retry.backoff(2)).isBetween(Duration.ofMillis(150), Duration.ofMillis(300));
+			assertThat(retry.backoff(40)).isBetween(Duration.ofMillis(150), Duration.ofMillis(300));
+		}
+	}
+
+	private static GatewayFilter filter(Tuple args) {
+		return new RetryGatewayFilterFactory().apply(args);
+	}
+
+	private static ServerWebExchange get() {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/foo").build());
+	}
+
+	// the response of a Netty server allocates Netty buffers
+	private static ServerWebExchange nettyBuffers(ServerWebExchange exchange) {
+		NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+		ServerHttpResponse response = new ServerHttpResponseDecorator(exchange.getResponse()) {
+			@Override
+			public DataBufferFactory bufferFactory() {
+				return bufferFactory;
+			}
+		};
+		return new ServerWebExchangeDecorator(exchange) {
+			@Override
+			public ServerHttpResponse getResponse() {
+				return response;
+			}
+		};
+	}
+
+	private static ServerWebExchange post(String body) {
+		return MockServerWebExchange.from(MockServerHttpRequest.post("http://localhost/foo")
+				.contentLength(body.length()).body(body));
+	}
+
+	/**
+	 * Rest of the chain answering with the given outcomes in turn, reading the request
+	 * body like a routing filter would.
+	 */
+	private static class ScriptedChain implements GatewayFilterChain {
+
+		final Queue<Object> outcomes = new ConcurrentLinkedQueue<>();
+
+		final List<String> bodies = new ArrayList<>();
+
+		boolean readForm;
+
+		int attempts;
+
+		ScriptedChain(Object... outcomes) {
+			for (Object outcome : outcomes) {
+				this.outcomes.add(outcome);
+			}
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange) {
+			this.attempts++;
+			Object outcome = this.outcomes.poll();
+			Mono<String> form = this.readForm ? exchange.getFormData().map(Object::toString) : Mono.just("");
+			Mono<String> body = exchange.getRequest().getBody()
+					.map(buffer -> {
+						String value = StandardCharsets.UTF_8.decode(buffer.asByteBuffer()).toString();
+						DataBufferUtils.release(buffer);
+						return value;
+					})
+					.reduce(String::concat);
+			return form.zipWith(body.defaultIfEmpty(""), String::concat)
+					.doOnNext(read -> {
+						if (!read.isEmpty()) {
+							this.bodies.add(read);
+						}
+					})
+					.then(outcome instanceof Throwable ? Mono.error((Throwable) outcome)
+							: Mono.fromRunnable(() -> exchange.getResponse().setStatusCode((HttpStatus) outcome)));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.tuple.TupleBuilder.tuple;
+
+public class TimeoutGatewayFilterFactoryTests {
+
+	@Test
+	public void connectAndResponseTimeoutsAreSetOnContext() {
+		GatewayFilter filter = new TimeoutGatewayFilterFactory()
+				.apply(tuple().of("connectTimeout", "100", "responseTimeout", "2000"));
+		ServerWebExchange exchange = exchange();
+
+		filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+
+		GatewayContext context = GatewayContext.get(exchange);
+		assertThat(context.getConnectTimeout()).isEqualTo(Duration.ofMillis(100));
+		assertThat(context.getResponseTimeout()).isEqualTo(Duration.ofSeconds(2));
+	}
+
+	@Test
+	public void totalTimeoutEndsWithGatewayTimeout() {
+		GatewayFilter filter = GatewayFilters.timeout(null, null, Duration.ofMillis(50));
+		ServerWebExchange exchange = exchange();
+
+		filter.filter(exchange, e -> Mono.never()).block(Duration.ofSeconds(5));
+
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+		assertThat(GatewayContext.get(exchange).getConnectTimeout()).isNull();
+	}
+
+	@Test
+	public void totalTimeoutCoversResponseBody() {
+		GatewayFilter filter = GatewayFilters.timeout(null, null, Duration.ofMillis(100));
+		ServerWebExchange exchange = exchange();
+		filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+
+		DataBuffer buffer = new DefaultDataBufferFactory().wrap("chunk".getBytes());
+		Flux<DataBuffer> body = GatewayContext.get(exchange)
+				.decorateResponseBody(Flux.concat(Flux.just(buffer), Flux.never()));
+
+		StepVerifier.create(body)
+				.expectNext(buffer)
+				.expectError(TimeoutException.class)
+				.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void fastRouteIsNotAffected() {
+		GatewayFilter filter = GatewayFilters.timeout(Duration.ofMillis(50), null, Duration.ofSeconds(1));
+		ServerWebExchange exchange = exchange();
+
+		filter.filter(exchange, e -> Mono.empty()).block(Duration.ofSeconds(5));
+		StepVerifier.create(GatewayContext.get(exchange).decorateResponseBody(Flux.empty()))
+				.verifyComplete();
+
+		assertThat(exchange.getResponse().getStatusCode()).isNull();
+	}
+
+	private static ServerWebExchange exchange() {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost").build());
+	}
+}
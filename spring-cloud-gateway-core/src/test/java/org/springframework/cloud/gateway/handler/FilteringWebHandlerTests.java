@@ -0,0 +1,232 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.handler;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
+import org.springframework.cloud.gateway.filter.RoutingFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteIndex;
+import org.springframework.cloud.gateway.route.RouteSnapshot;
+import org.springframework.cloud.gateway.route.RouteSnapshotSwappedEvent;
+import org.springframework.cloud.gateway.support.GatewayContext;
+import org.springframework.core.Ordered;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setAlreadyRouted;
+
+public class FilteringWebHandlerTests {
+
+	@Test
+	public void combinedFiltersAreSortedAndCachedPerRoute() {
+		List<String> calls = new ArrayList<>();
+		FilteringWebHandler handler = new FilteringWebHandler(Arrays.asList(
+				new RecordingGlobalFilter("global10", 10, calls), new RecordingGlobalFilter("global-1", -1, calls)));
+		Route route = route("route", new OrderedGatewayFilter(recording("route1", calls), 1));
+
+		handle(handler, route);
+		assertThat(calls).containsExactly("global-1", "route1", "global10");
+
+		GatewayFilter[] combined = handler.getCombinedFilters(route);
+		assertThat(handler.getCombinedFilters(route)).isSameAs(combined);
+
+		// a recompiled route with the same id
+		Route recompiled = route("route", new OrderedGatewayFilter(recording("route20", calls), 20));
+		calls.clear();
+		handle(handler, recompiled);
+		assertThat(calls).containsExactly("global-1", "global10", "route20");
+
+		GatewayFilter[] recombined = handler.getCombinedFilters(recompiled);
+		assertThat(handler.getCombinedFilters(recompiled)).isSameAs(recombined);
+	}
+
+	@Test
+	public void removedRoutesAreDroppedOnceSnapshotIsSwapped() {
+		FilteringWebHandler handler = new FilteringWebHandler(new ArrayList<>());
+		Route kept = route("kept", recording("kept", new ArrayList<>()));
+		Route removed = route("removed", recording("removed", new ArrayList<>()));
+		GatewayFilter[] keptFilters = handler.getCombinedFilters(kept);
+		GatewayFilter[] removedFilters = handler.getCombinedFilters(removed);
+
+		handler.handleSnapshotSwapped(new RouteSnapshotSwappedEvent(this,
+				new RouteSnapshot(2, new RouteIndex(Collections.singletonList(kept)), Instant.now(), Duration.ZERO)));
+
+		assertThat(handler.getCombinedFilters(kept)).isSameAs(keptFilters);
+		assertThat(handler.getCombinedFilters(removed)).isNotSameAs(removedFilters).containsExactly(removedFilters);
+	}
+
+	@Test
+	public void filtersCanInvokeTheRestOfTheChainAgain() {
+		List<String> calls = new ArrayList<>();
+		FilteringWebHandler handler = new FilteringWebHandler(Arrays.asList(
+				new RecordingGlobalFilter("routing", Ordered.LOWEST_PRECEDENCE, calls)));
+		GatewayFilter retry = (exchange, chain) -> chain.filter(exchange).then(chain.filter(exchange));
+		Route route = Route.builder().id("retry").uri("http://localhost").order(0).predicate(exchange -> true)
+				.add(new OrderedGatewayFilter(retry, 1))
+				.add(new OrderedGatewayFilter(recording("route2", calls), 2)).build();
+
+		handle(handler, route);
+		assertThat(calls).containsExactly("route2", "routing", "route2", "routing");
+
+		// the chain is shared by the next request
+		calls.clear();
+		handle(handler, route);
+		assertThat(calls).containsExactly("route2", "routing", "route2", "routing");
+	}
+
+	@Test
+	public void routingFiltersAreDispatchedByScheme() {
+		List<String> calls = new ArrayList<>();
+		FilteringWebHandler handler = new FilteringWebHandler(Arrays.asList(new RouteToRequestUrlFilter(),
+				new RecordingRoutingFilter("http", calls, "http", "https"),
+				new RecordingRoutingFilter("forward", calls, "forward"),
+				new RecordingRoutingFilter("custom", calls, "custom")));
+
+		Route http = Route.builder().id("http").uri("http://localhost").order(0).predicate(exchange -> true).build();
+		handle(handler, http);
+		assertThat(calls).containsExactly("http");
+		// RouteToRequestUrlFilter and the routing step
+		assertThat(handler.getCombinedFilters(http)).hasSize(2);
+
+		calls.clear();
+		handle(handler, Route.builder().id("custom").uri("custom://backend").order(0)
+				.predicate(exchange -> true).build());
+		assertThat(calls).containsExactly("custom");
+
+		// the request url is changed to another scheme after the route was resolved
+		GatewayFilter toForward = (exchange, chain) -> {
+			GatewayContext.get(exchange).setRequestUrl(URI.create("forward:///local"));
+			return chain.filter(exchange);
+		};
+		calls.clear();
+		handle(handler, Route.builder().id("rewritten").uri("http://localhost").order(0).predicate(exchange -> true)
+				.add(new OrderedGatewayFilter(toForward, RouteToRequestUrlFilter.ROUTE_TO_URL_FILTER_ORDER + 1)).build());
+		assertThat(calls).containsExactly("forward");
+
+		calls.clear();
+		handle(handler, Route.builder().id("unknown").uri("unknown://backend").order(0)
+				.predicate(exchange -> true).build());
+		assertThat(calls).isEmpty();
+	}
+
+	@Test
+	public void formDataRequestsAreTracked() {
+		FilteringWebHandler handler = new FilteringWebHandler(new ArrayList<>());
+		GatewayFilter readForm = (exchange, chain) -> exchange.getFormData().then(chain.filter(exchange));
+
+		ServerWebExchange untouched = form();
+		untouched.getAttributes().put(GATEWAY_ROUTE_ATTR, route("untouched", recording("noop", new ArrayList<>())));
+		handler.handle(untouched).block();
+		assertThat(GatewayContext.get(untouched).isFormDataRequested()).isFalse();
+
+		ServerWebExchange read = form();
+		read.getAttributes().put(GATEWAY_ROUTE_ATTR, route("read", readForm));
+		handler.handle(read).block();
+		assertThat(GatewayContext.get(read).isFormDataRequested()).isTrue();
+	}
+
+	private static ServerWebExchange form() {
+		return MockServerWebExchange.from(MockServerHttpRequest.post("http://localhost/")
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED).body("a=1&b=2"));
+	}
+
+	private static void handle(FilteringWebHandler handler, Route route) {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/").build());
+		exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+		handler.handle(exchange).block();
+	}
+
+	private static Route route(String id, GatewayFilter filter) {
+		return Route.builder().id(id).uri("http://localhost").order(0)
+				.predicate(exchange -> true).add(filter).build();
+	}
+
+	private static GatewayFilter recording(String name, List<String> calls) {
+		return (exchange, chain) -> {
+			calls.add(name);
+			return chain.filter(exchange);
+		};
+	}
+
+	private static class RecordingRoutingFilter implements RoutingFilter {
+
+		private final String name;
+		private final List<String> calls;
+		private final List<String> schemes;
+
+		RecordingRoutingFilter(String name, List<String> calls, String... schemes) {
+			this.name = name;
+			this.calls = calls;
+			this.schemes = Arrays.asList(schemes);
+		}
+
+		@Override
+		public Collection<String> getSchemes() {
+			return this.schemes;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			setAlreadyRouted(exchange);
+			this.calls.add(this.name);
+			return chain.filter(exchange);
+		}
+	}
+
+	private static class RecordingGlobalFilter implements GlobalFilter, Ordered {
+
+		private final String name;
+		private final int order;
+		private final List<String> calls;
+
+		RecordingGlobalFilter(String name, int order, List<String> calls) {
+			this.name = name;
+			this.order = order;
+			this.calls = calls;
+		}
+
+		@Override
+		public int getOrder() {
+			return this.order;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			this.calls.add(this.name);
+			return chain.filter(exchange);
+		}
+	}
+}
@@ -27,12 +27,19 @@ import org.springframework.cloud.gateway.test.BaseWebClientTests;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern.PathMatchInfo;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_PATH_CONTAINER_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.URI_TEMPLATE_VARIABLES_ATTRIBUTE;
 import static org.springframework.cloud.gateway.test.TestUtils.assertStatus;
 
 import reactor.core.publisher.Mono;
@@ -63,6 +70,21 @@ public class PathRoutePredicateFactoryTests extends BaseWebClientTests {
 				.verify(DURATION);
 	}
 
+	@Test
+	public void pathIsParsedOncePerExchange() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/foo/123").build());
+
+		assertThat(RoutePredicates.path("/bar/**").test(exchange)).isFalse();
+		PathContainer parsed = exchange.getAttribute(GATEWAY_PREDICATE_PATH_CONTAINER_ATTR);
+		assertThat(RoutePredicates.path("/foo/{id}").test(exchange)).isTrue();
+		assertThat(exchange.<Object>getAttribute(GATEWAY_PREDICATE_PATH_CONTAINER_ATTR)).isSameAs(parsed);
+		PathMatchInfo variables = exchange.getAttribute(URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		assertThat(variables.getUriVariables()).containsEntry("id", "123");
+
+		ServerWebExchange mutated = exchange.mutate().request(r -> r.path("/bar/1")).build();
+		assertThat(RoutePredicates.path("/bar/**").test(mutated)).isTrue();
+	}
+
 	@EnableAutoConfiguration
 	@SpringBootConfiguration
 	@Import(DefaultTestConfig.class)
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.net.InetSocketAddress;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.tuple.TupleBuilder.tuple;
+
+public class RemoteAddrRoutePredicateFactoryTests {
+
+	@Test
+	public void anyOfSeveralSourcesMatches() {
+		Predicate<ServerWebExchange> predicate = new RemoteAddrRoutePredicateFactory().apply(tuple()
+				.of("_genkey_0", "192.168.0.0/16", "_genkey_1", "10.1.2.3", "_genkey_2", "2001:db8::/32"));
+
+		assertThat(predicate.test(exchange("192.168.1.10"))).isTrue();
+		assertThat(predicate.test(exchange("10.1.2.3"))).isTrue();
+		assertThat(predicate.test(exchange("2001:db8::1"))).isTrue();
+		assertThat(predicate.test(exchange("10.1.2.4"))).isFalse();
+		assertThat(predicate.test(exchange("172.16.0.1"))).isFalse();
+	}
+
+	@Test
+	public void singleSourceMatches() {
+		Predicate<ServerWebExchange> predicate = new RemoteAddrRoutePredicateFactory()
+				.apply(tuple().of("_genkey_0", "10.0.0.0/8"));
+
+		assertThat(predicate.test(exchange("10.20.30.40"))).isTrue();
+		assertThat(predicate.test(exchange("11.0.0.1"))).isFalse();
+	}
+
+	@Test
+	public void sourceIsRequired() {
+		assertThatThrownBy(() -> new RemoteAddrRoutePredicateFactory().apply(tuple().build()))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static ServerWebExchange exchange(String remoteAddress) {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/")
+				.remoteAddress(new InetSocketAddress(remoteAddress, 80)).build());
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicates;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachingRouteLocatorTests {
+
+	@Test
+	public void refreshBuildsSnapshotOffCallingThread() {
+		AtomicReference<Thread> buildThread = new AtomicReference<>();
+		AtomicReference<List<Route>> routes = new AtomicReference<>(Arrays.asList(route("a", 1)));
+		CachingRouteLocator locator = new CachingRouteLocator(delegate(() -> {
+			buildThread.set(Thread.currentThread());
+			return Flux.fromIterable(routes.get());
+		}));
+		assertThat(locator.getSnapshot().getVersion()).isEqualTo(1);
+
+		routes.set(Arrays.asList(route("c", 2), route("b", 1)));
+		RouteSnapshot snapshot = locator.buildSnapshot().block();
+
+		assertThat(buildThread.get()).isNotSameAs(Thread.currentThread());
+		assertThat(snapshot.getVersion()).isEqualTo(2);
+		assertThat(locator.getSnapshot()).isSameAs(snapshot);
+		assertThat(locator.getRoutes().map(Route::getId).collectList().block()).containsExactly("b", "c");
+	}
+
+	@Test
+	public void failedBuildKeepsCurrentSnapshot() {
+		AtomicReference<Flux<Route>> routes = new AtomicReference<>(Flux.just(route("a", 1)));
+		CachingRouteLocator locator = new CachingRouteLocator(delegate(routes::get));
+		RouteSnapshot initial = locator.getSnapshot();
+
+		routes.set(Flux.error(new IllegalStateException("broken route")));
+		assertThat(locator.buildSnapshot().onErrorResume(e -> Mono.empty()).block()).isNull();
+
+		assertThat(locator.getSnapshot()).isSameAs(initial);
+		assertThat(locator.getLastFailure()).isNotNull();
+		assertThat(locator.getLastFailure().getVersion()).isEqualTo(2);
+		assertThat(locator.getLastFailure().getError()).hasMessage("broken route");
+
+		routes.set(Flux.just(route("b", 1)));
+		locator.buildSnapshot().block();
+		assertThat(locator.getSnapshot().getVersion()).isEqualTo(3);
+		assertThat(locator.getLastFailure()).isNull();
+	}
+
+	@Test
+	public void olderBuildDoesNotReplaceNewerSnapshot() {
+		AtomicReference<Flux<Route>> routes = new AtomicReference<>(Flux.just(route("a", 1)));
+		CachingRouteLocator locator = new CachingRouteLocator(delegate(routes::get));
+
+		MonoProcessor<Route> slow = MonoProcessor.create();
+		routes.set(slow.flux());
+		MonoProcessor<RouteSnapshot> older = locator.buildSnapshot().toProcessor();
+
+		routes.set(Flux.just(route("c", 1)));
+		locator.buildSnapshot().block();
+		slow.onNext(route("b", 1));
+		assertThat(older.block().getVersion()).isEqualTo(2);
+
+		assertThat(locator.getSnapshot().getVersion()).isEqualTo(3);
+		assertThat(locator.getRoutes().map(Route::getId).collectList().block()).containsExactly("c");
+	}
+
+	@Test
+	public void swappedSnapshotIsPublished() throws Exception {
+		AtomicReference<Flux<Route>> routes = new AtomicReference<>(Flux.just(route("a", 1)));
+		CachingRouteLocator locator = new CachingRouteLocator(delegate(routes::get));
+		List<Object> events = new CopyOnWriteArrayList<>();
+		locator.setApplicationEventPublisher(events::add);
+
+		MonoProcessor<Route> slow = MonoProcessor.create();
+		CountDownLatch building = new CountDownLatch(1);
+		routes.set(slow.flux().doOnSubscribe(subscription -> building.countDown()));
+		MonoProcessor<RouteSnapshot> older = locator.buildSnapshot().toProcessor();
+		assertThat(building.await(5, TimeUnit.SECONDS)).isTrue();
+		routes.set(Flux.just(route("c", 1)));
+		RouteSnapshot newer = locator.buildSnapshot().block();
+		slow.onNext(route("b", 1));
+		older.block();
+
+		assertThat(events).hasSize(1);
+		assertThat(((RouteSnapshotSwappedEvent) events.get(0)).getSnapshot()).isSameAs(newer);
+	}
+
+	@Test
+	public void routeIsIndexedWhenItsWindowOpens() throws Exception {
+		// load the classes first, so that the window is still closed once the locator is built
+		new CachingRouteLocator(delegate(() -> Flux.just(route("warmup", 1))));
+		ZonedDateTime start = ZonedDateTime.now().plus(1, ChronoUnit.SECONDS);
+		Route scheduled = Route.builder().id("scheduled").uri("http://localhost").order(1)
+				.predicate(RoutePredicates.after(start)).build();
+		CachingRouteLocator locator = new CachingRouteLocator(delegate(() -> Flux.just(scheduled)));
+		RouteSnapshot initial = locator.getSnapshot();
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/").build());
+		assertThat(locator.getRouteIndex().lookup(exchange)).isNull();
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (locator.getSnapshot() == initial && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+
+		assertThat(locator.getSnapshot().getVersion()).isEqualTo(initial.getVersion());
+		assertThat(locator.getRouteIndex().lookup(exchange)).isSameAs(scheduled);
+		assertThat(locator.getRouteIndex().getNextTransition()).isNull();
+	}
+
+	@Test
+	public void refreshBuildsRoutesFromRefreshedDefinitions() throws Exception {
+		AtomicReference<String> definitionId = new AtomicReference<>("a");
+		CachingRouteDefinitionLocator definitions = new CachingRouteDefinitionLocator(() -> {
+			RouteDefinition definition = new RouteDefinition();
+			definition.setId(definitionId.get());
+			// the new definitions arrive well after the route refresh starts
+			return Mono.just(definition).delayElement(Duration.ofMillis(definitionId.get().equals("a") ? 0 : 200)).flux();
+		});
+		CachingRouteLocator locator = new CachingRouteLocator(
+				() -> definitions.getRouteDefinitions().map(definition -> route(definition.getId(), 1)),
+				Collections.singletonList(definitions));
+		RouteSnapshot initial = locator.getSnapshot();
+
+		definitionId.set("b");
+		definitions.handleRefresh();
+		assertThat(locator.refresh().map(Route::getId).collectList().block()).containsExactly("a");
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (locator.getSnapshot() == initial && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertThat(locator.getRoutes().map(Route::getId).collectList().block()).containsExactly("b");
+	}
+
+	private static RouteLocator delegate(Supplier<Flux<Route>> routes) {
+		return () -> Flux.defer(routes);
+	}
+
+	private static Route route(String id, int order) {
+		return Route.builder().id(id).uri("http://localhost").order(order)
+				.predicate(exchange -> true).build();
+	}
+}
@@ -1,9 +1,13 @@
 package org.springframework.cloud.gateway.route;
 
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -11,11 +15,26 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringBootConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.handler.predicate.AllOfGatewayPredicate;
+import org.springframework.cloud.gateway.handler.predicate.HeaderRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory.HostPatternPredicate;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory.PathPatternPredicate;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
 import org.springframework.cloud.gateway.support.ArgumentHints;
 import org.springframework.context.annotation.Bean;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.tuple.Tuple;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -46,6 +65,81 @@ public class RouteDefinitionRouteLocatorTests {
 		assertThat(tuple.getString("arg1")).isEqualTo("val1");
 	}
 
+	@Test
+	public void predicatesAreOrderedByCost() {
+		RouteDefinition definition = new RouteDefinition();
+		definition.setId("cost_route");
+		definition.setUri(URI.create("http://example.org"));
+		definition.setPredicates(Arrays.asList(new PredicateDefinition("Header=X-Foo, b.*"),
+				new PredicateDefinition("Path=/foo"), new PredicateDefinition("Host=**.example.org"),
+				new PredicateDefinition("Method=GET")));
+		GatewayProperties properties = new GatewayProperties();
+		properties.setDefaultFilters(Collections.emptyList());
+		RouteDefinitionRouteLocator locator = new RouteDefinitionRouteLocator(() -> Flux.just(definition),
+				Arrays.asList(new HeaderRoutePredicateFactory(), new PathRoutePredicateFactory(),
+						new HostRoutePredicateFactory(), new MethodRoutePredicateFactory()),
+				Collections.emptyList(), properties);
+
+		Route route = locator.getRoutes().blockFirst();
+
+		assertThat(route.getPredicate()).isInstanceOf(AllOfGatewayPredicate.class);
+		List<Predicate<ServerWebExchange>> predicates = ((AllOfGatewayPredicate) route.getPredicate()).getPredicates();
+		assertThat(predicates).hasSize(4);
+		assertThat(predicates.get(1)).isInstanceOf(HostPatternPredicate.class);
+		assertThat(predicates.get(2)).isInstanceOf(PathPatternPredicate.class);
+
+		// the header predicate is last, so a missing header is never looked at
+		MockServerHttpRequest request = MockServerHttpRequest.post("http://www.example.org/foo")
+				.header(HttpHeaders.HOST, "www.example.org").build();
+		assertThat(route.getPredicate().test(MockServerWebExchange.from(request))).isFalse();
+		request = MockServerHttpRequest.get("http://www.example.org/foo")
+				.header(HttpHeaders.HOST, "www.example.org").header("X-Foo", "bar").build();
+		assertThat(route.getPredicate().test(MockServerWebExchange.from(request))).isTrue();
+	}
+
+	@Test
+	public void onlyChangedDefinitionsAreRecompiled() {
+		RouteDefinition first = new RouteDefinition("first=http://example.org,Counting=a");
+		RouteDefinition second = new RouteDefinition("second=http://example.org,Counting=b");
+		List<RouteDefinition> definitions = new ArrayList<>(Arrays.asList(first, second));
+		CountingRoutePredicateFactory counting = new CountingRoutePredicateFactory();
+		GatewayProperties properties = new GatewayProperties();
+		properties.setDefaultFilters(Collections.emptyList());
+		RouteDefinitionRouteLocator locator = new RouteDefinitionRouteLocator(() -> Flux.fromIterable(definitions),
+				Collections.singletonList(counting), Collections.emptyList(), properties);
+
+		List<Route> routes = locator.getRoutes().collectList().block();
+		assertThat(counting.applied).isEqualTo(2);
+
+		assertThat(locator.getRoutes().collectList().block()).containsExactlyElementsOf(routes);
+		assertThat(counting.applied).isEqualTo(2);
+
+		// mutated in place, like definitions bound from properties
+		second.getPredicates().get(0).getArgs().put("_genkey_0", "c");
+		List<Route> refreshed = locator.getRoutes().collectList().block();
+		assertThat(counting.applied).isEqualTo(3);
+		assertThat(refreshed.get(0)).isSameAs(routes.get(0));
+		assertThat(refreshed.get(1)).isNotSameAs(routes.get(1));
+
+		// removed definitions are compiled again when they come back
+		definitions.remove(first);
+		locator.getRoutes().collectList().block();
+		definitions.add(first);
+		locator.getRoutes().collectList().block();
+		assertThat(counting.applied).isEqualTo(4);
+	}
+
+	static class CountingRoutePredicateFactory implements RoutePredicateFactory {
+
+		private int applied;
+
+		@Override
+		public Predicate<ServerWebExchange> apply(Tuple args) {
+			this.applied++;
+			return exchange -> true;
+		}
+	}
+
 	@SpringBootConfiguration
 	protected static class TestConfig {
 		@Bean
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.after;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.alwaysTrue;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.before;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.between;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.host;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.method;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.path;
+
+public class RouteIndexTests {
+
+	@Test
+	public void literalVariableAndCatchAllPatterns() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("literal", path("/foo/bar")),
+				route("variable", path("/foo/{id}")),
+				route("wildcard", path("/baz/*/qux")),
+				route("catchall", path("/foo/**")),
+				route("capture", path("/static/{*rest}"))));
+
+		assertThat(lookup(index, "/foo/bar")).isEqualTo("literal");
+		assertThat(lookup(index, "/foo/123")).isEqualTo("variable");
+		assertThat(lookup(index, "/foo/")).isEqualTo("catchall");
+		assertThat(lookup(index, "/foo")).isEqualTo("catchall");
+		assertThat(lookup(index, "/foo/1/2")).isEqualTo("catchall");
+		assertThat(lookup(index, "/baz/1/qux")).isEqualTo("wildcard");
+		assertThat(lookup(index, "/static")).isEqualTo("capture");
+		assertThat(lookup(index, "/static/css/site.css")).isEqualTo("capture");
+		assertThat(lookup(index, "/baz/1/quux")).isNull();
+		assertThat(lookup(index, "/")).isNull();
+	}
+
+	@Test
+	public void unindexedRoutesKeepRouteOrder() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("path_first", path("/foo").and(method("POST"))),
+				route("host", host("**.example.org")),
+				route("path_second", path("/foo")),
+				route("or", path("/bar").or(path("/baz"))),
+				route("default", alwaysTrue())));
+
+		assertThat(lookup(index, "/foo")).isEqualTo("path_second");
+		assertThat(lookup(index, HttpMethod.POST, "/foo", "localhost")).isEqualTo("path_first");
+		assertThat(lookup(index, HttpMethod.GET, "/foo", "www.example.org")).isEqualTo("host");
+		assertThat(lookup(index, "/baz")).isEqualTo("or");
+		assertThat(lookup(index, "/other")).isEqualTo("default");
+	}
+
+	@Test
+	public void matchesLinearScan() {
+		List<String> patterns = Arrays.asList("/", "/**", "/a", "/a/", "/a/b", "/a/{b}", "/a/*", "/a/b?",
+				"/a/{*c}", "/a/**", "/{x}/b", "/a b/c", "/a/b/c", "/*/b/**", "/a/**/c", "/x/{y:[0-9]+}");
+		List<Route> routes = new ArrayList<>();
+		for (int i = 0; i < patterns.size(); i++) {
+			routes.add(route(patterns.get(i) + "#" + i, path(patterns.get(i))));
+		}
+		List<String> paths = Arrays.asList("", "/", "/a", "/a/", "/a/b", "/a/b/", "/a/bc", "/a/b/c", "/a/x/c",
+				"/b", "/q/b", "/q/b/r", "/a%20b/c", "/x/12", "/x/y", "/a;m=1/b", "//a", "/a//b");
+		for (int skip = 0; skip < routes.size(); skip++) {
+			List<Route> subset = new ArrayList<>(routes);
+			subset.remove(skip);
+			RouteIndex index = new RouteIndex(subset);
+			for (String path : paths) {
+				ServerWebExchange exchange = exchange(HttpMethod.GET, path, "localhost");
+				Route expected = subset.stream().filter(r -> r.getPredicate().test(exchange))
+						.findFirst().orElse(null);
+				assertThat(index.lookup(exchange)).as("lookup of %s", path).isEqualTo(expected);
+			}
+		}
+	}
+
+	@Test
+	public void hostPatterns() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("exact", host("www.example.org")),
+				route("exact_path", host("api.example.org").and(path("/v1/**"))),
+				route("suffix", host("**.example.org")),
+				route("label", host("*.example.com")),
+				route("prefix", host("www.*"))));
+
+		assertThat(lookup(index, HttpMethod.GET, "/", "www.example.org")).isEqualTo("exact");
+		assertThat(lookup(index, HttpMethod.GET, "/v1/users", "api.example.org")).isEqualTo("exact_path");
+		assertThat(lookup(index, HttpMethod.GET, "/v2/users", "api.example.org")).isEqualTo("suffix");
+		assertThat(lookup(index, HttpMethod.GET, "/", "example.org")).isEqualTo("suffix");
+		assertThat(lookup(index, HttpMethod.GET, "/", "a.b.example.org")).isEqualTo("suffix");
+		assertThat(lookup(index, HttpMethod.GET, "/", "a.example.com")).isEqualTo("label");
+		assertThat(lookup(index, HttpMethod.GET, "/", "a.b.example.com")).isNull();
+		assertThat(lookup(index, HttpMethod.GET, "/", "www.localhost")).isEqualTo("prefix");
+		assertThat(lookup(index, HttpMethod.GET, "/", "example.org:8080")).isNull();
+	}
+
+	@Test
+	public void closedTimeWindowsAreNotIndexed() {
+		ZonedDateTime now = ZonedDateTime.now();
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("expired", path("/foo").and(before(now.minusHours(1)))),
+				route("scheduled", path("/foo").and(after(now.plusHours(1)))),
+				route("window", between(now.minusHours(1), now.plusHours(2)).and(path("/foo"))),
+				route("default", alwaysTrue())), now.toInstant());
+
+		assertThat(lookup(index, "/foo")).isEqualTo("window");
+		assertThat(index.getNextTransition()).isEqualTo(now.plusHours(1).toInstant().plusNanos(1));
+
+		RouteIndex later = new RouteIndex(index.getRoutes(), now.plusHours(3).toInstant());
+		assertThat(later.getNextTransition()).isNull();
+		assertThat(later.getRoutes()).hasSize(4);
+		assertThat(later.match(exchange(HttpMethod.GET, "/foo", "localhost")).getRoute().getId())
+				.isEqualTo("default");
+	}
+
+	@Test
+	public void hostAndPathMatchLinearScan() {
+		List<String> hosts = Arrays.asList("example.org", "www.example.org", "**.example.org", "*.example.org",
+				"**", "www.**", "api.{tenant}.example.org", "www..example.org", "a.**.org");
+		List<String> patterns = Arrays.asList("/", "/a", "/a/**", "/{x}");
+		List<Route> routes = new ArrayList<>();
+		for (int i = 0; i < hosts.size(); i++) {
+			routes.add(route(hosts.get(i) + "#" + i, host(hosts.get(i))));
+			String pattern = patterns.get(i % patterns.size());
+			routes.add(route(hosts.get(i) + pattern + "#" + i, host(hosts.get(i)).and(path(pattern))));
+		}
+		List<String> requestHosts = Arrays.asList("example.org", "www.example.org", "api.acme.example.org",
+				"a.b.org", "org", "www", "www.example.org.", ".example.org", "localhost", "www.example.org:80");
+		List<String> paths = Arrays.asList("/", "/a", "/a/b", "/b");
+		for (int skip = 0; skip < routes.size(); skip++) {
+			List<Route> subset = new ArrayList<>(routes);
+			subset.remove(skip);
+			RouteIndex index = new RouteIndex(subset);
+			for (String requestHost : requestHosts) {
+				for (String path : paths) {
+					ServerWebExchange exchange = exchange(HttpMethod.GET, path, requestHost);
+					Route expected = subset.stream().filter(r -> r.getPredicate().test(exchange))
+							.findFirst().orElse(null);
+					assertThat(index.lookup(exchange)).as("lookup of %s%s", requestHost, path)
+							.isEqualTo(expected);
+				}
+			}
+		}
+	}
+
+	private static Route route(String id, Predicate<ServerWebExchange> predicate) {
+		return Route.builder().id(id).uri("http://localhost").predicate(predicate).build();
+	}
+
+	private static String lookup(RouteIndex index, String path) {
+		return lookup(index, HttpMethod.GET, path, "localhost");
+	}
+
+	private static String lookup(RouteIndex index, HttpMethod method, String path, String host) {
+		Route route = index.lookup(exchange(method, path, host));
+		return route == null ? null : route.getId();
+	}
+
+	private static ServerWebExchange exchange(HttpMethod method, String path, String host) {
+		MockServerHttpRequest request = MockServerHttpRequest.method(method, "http://localhost" + path)
+				.header("Host", host).build();
+		return MockServerWebExchange.from(request);
+	}
+}
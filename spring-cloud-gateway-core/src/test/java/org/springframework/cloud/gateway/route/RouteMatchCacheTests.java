@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.header;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.host;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.method;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.path;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.URI_TEMPLATE_VARIABLES_ATTRIBUTE;
+
+public class RouteMatchCacheTests {
+
+	private final RouteMatchCache cache = new RouteMatchCache(100);
+
+	@Test
+	public void cachesMethodHostAndPathRoutes() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("users", path("/users/{id}").and(method("GET"))),
+				route("host", host("**.example.org"))));
+
+		assertThat(lookup(index, "/users/1", "localhost")).isEqualTo("users");
+		ServerWebExchange exchange = exchange("/users/1", "localhost");
+		assertThat(this.cache.lookup(index, exchange).getId()).isEqualTo("users");
+		assertThat(exchange.getAttributes()).containsKey(URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		assertThat(lookup(index, "/other", "www.example.org")).isEqualTo("host");
+
+		Map<String, Object> statistics = this.cache.statistics();
+		assertThat(statistics).containsEntry("size", 2L).containsEntry("hitCount", 1L)
+				.containsEntry("missCount", 2L);
+	}
+
+	@Test
+	public void cachesMissingRoute() {
+		RouteIndex index = new RouteIndex(Arrays.asList(route("users", path("/users/{id}"))));
+
+		assertThat(lookup(index, "/other", "localhost")).isNull();
+		assertThat(lookup(index, "/other", "localhost")).isNull();
+		assertThat(this.cache.statistics()).containsEntry("hitCount", 1L);
+	}
+
+	@Test
+	public void bypassedWhenResultDependsOnOtherInputs() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("header", path("/users/**").and(header("X-Version", "2"))),
+				route("users", path("/users/{id}"))));
+
+		assertThat(this.cache.lookup(index, versioned("/users/1", "1")).getId()).isEqualTo("users");
+		assertThat(this.cache.lookup(index, versioned("/users/1", "2")).getId()).isEqualTo("header");
+		// routes after the match do not matter
+		assertThat(lookup(index, "/other", "localhost")).isNull();
+		assertThat(this.cache.statistics()).containsEntry("size", 1L);
+	}
+
+	@Test
+	public void entriesOfPreviousIndexAreIgnored() {
+		RouteIndex index = new RouteIndex(Arrays.asList(route("users", path("/users/{id}"))));
+		assertThat(lookup(index, "/users/1", "localhost")).isEqualTo("users");
+
+		RouteIndex refreshed = new RouteIndex(Arrays.asList(route("accounts", path("/users/{id}"))));
+		assertThat(lookup(refreshed, "/users/1", "localhost")).isEqualTo("accounts");
+
+		this.cache.invalidate();
+		assertThat(this.cache.statistics()).containsEntry("size", 0L);
+	}
+
+	private String lookup(RouteIndex index, String path, String host) {
+		Route route = this.cache.lookup(index, exchange(path, host));
+		return route == null ? null : route.getId();
+	}
+
+	private static ServerWebExchange exchange(String path, String host) {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost" + path)
+				.header(HttpHeaders.HOST, host).build());
+	}
+
+	private static ServerWebExchange versioned(String path, String version) {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost" + path)
+				.header(HttpHeaders.HOST, "localhost").header("X-Version", version).build());
+	}
+
+	private static Route route(String id, Predicate<ServerWebExchange> predicate) {
+		return Route.builder().id(id).uri("http://localhost").predicate(predicate).build();
+	}
+}
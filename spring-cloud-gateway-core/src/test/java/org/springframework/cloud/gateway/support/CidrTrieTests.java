@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.springframework.cloud.gateway.support;
+
+import java.net.InetAddress;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CidrTrieTests {
+
+	@Test
+	public void ipv4Networks() throws Exception {
+		CidrTrie trie = new CidrTrie().add("192.168.1.1/24").add("10.0.0.0/8").add("172.16.5.4");
+
+		assertThat(trie.contains(address("192.168.1.0"))).isTrue();
+		assertThat(trie.contains(address("192.168.1.10"))).isTrue();
+		assertThat(trie.contains(address("192.168.1.255"))).isTrue();
+		assertThat(trie.contains(address("192.168.2.1"))).isFalse();
+		assertThat(trie.contains(address("10.255.0.1"))).isTrue();
+		assertThat(trie.contains(address("11.0.0.1"))).isFalse();
+		assertThat(trie.contains(address("172.16.5.4"))).isTrue();
+		assertThat(trie.contains(address("172.16.5.5"))).isFalse();
+		assertThat(trie.contains((InetAddress) null)).isFalse();
+	}
+
+	@Test
+	public void ipv6Networks() throws Exception {
+		CidrTrie trie = new CidrTrie().add("2001:db8::/32").add("::1").add("::ffff:192.168.0.0/112");
+
+		assertThat(trie.contains(address("2001:db8:1::5"))).isTrue();
+		assertThat(trie.contains(address("2001:db9::5"))).isFalse();
+		assertThat(trie.contains(address("::1"))).isTrue();
+		assertThat(trie.contains(address("::2"))).isFalse();
+		// IPv4 mapped networks match the IPv4 addresses
+		assertThat(trie.contains(address("192.168.3.4"))).isTrue();
+		assertThat(trie.contains(address("192.169.3.4"))).isFalse();
+	}
+
+	@Test
+	public void overlappingNetworks() throws Exception {
+		CidrTrie trie = new CidrTrie().add("10.1.2.0/24").add("10.1.3.0/24").add("10.0.0.0/8").add("10.1.2.3");
+
+		assertThat(trie.contains(address("10.200.0.1"))).isTrue();
+		assertThat(trie.contains(address("10.1.2.3"))).isTrue();
+		assertThat(new CidrTrie().add("0.0.0.0/0").contains(address("1.2.3.4"))).isTrue();
+		assertThat(new CidrTrie().add("0.0.0.0/0").contains(address("::1"))).isFalse();
+	}
+
+	@Test
+	public void invalidNetworks() {
+		assertThatThrownBy(() -> new CidrTrie().add("192.168.1/24")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new CidrTrie().add("192.168.1.256")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new CidrTrie().add("192.168.1.1/33")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new CidrTrie().add("2001:db8::/x")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new CidrTrie().add("example.org")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void matchesBruteForce() {
+		Random random = new Random(42);
+		for (int round = 0; round < 50; round++) {
+			int count = 1 + random.nextInt(30);
+			int[] networks = new int[count];
+			int[] lengths = new int[count];
+			CidrTrie trie = new CidrTrie();
+			for (int i = 0; i < count; i++) {
+				// 限制在 10.0.0.0/8 内，保证有足够的重叠
+				networks[i] = 0x0a000000 | (random.nextInt() & 0x00ffffff);
+				lengths[i] = 8 + random.nextInt(25);
+				trie.add(format(networks[i]) + "/" + lengths[i]);
+			}
+			for (int probe = 0; probe < 500; probe++) {
+				int address = 0x0a000000 | (random.nextInt() & 0x00ffffff);
+				boolean expected = false;
+				for (int i = 0; i < count; i++) {
+					int mask = lengths[i] == 0 ? 0 : -1 << (32 - lengths[i]);
+					expected |= (address & mask) == (networks[i] & mask);
+				}
+				assertThat(trie.contains(bytes(address))).as(format(address)).isEqualTo(expected);
+			}
+		}
+	}
+
+	private static InetAddress address(String literal) throws Exception {
+		return InetAddress.getByName(literal);
+	}
+
+	private static String format(int address) {
+		return (address >>> 24) + "." + ((address >>> 16) & 0xff) + "." + ((address >>> 8) & 0xff) + "." + (address & 0xff);
+	}
+
+	private static byte[] bytes(int address) {
+		return new byte[] { (byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8), (byte) address };
+	}
+}
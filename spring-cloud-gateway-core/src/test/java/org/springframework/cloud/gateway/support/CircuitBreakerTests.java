@@ -0,0 +1,150 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.support.CircuitBreaker.Permit;
+import org.springframework.cloud.gateway.support.CircuitBreaker.State;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CircuitBreakerTests {
+
+	private static final long FAST = Duration.ofMillis(1).toNanos();
+
+	private static final long SLOW = Duration.ofSeconds(1).toNanos();
+
+	private final AtomicLong clock = new AtomicLong();
+
+	private final CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, 80, Duration.ofMillis(500),
+			Duration.ofSeconds(5), this.clock::get);
+
+	@Test
+	public void opensWhenFailureRateIsReached() {
+		record(false, false, true);
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+		assertThat(this.breaker.getFailureRate()).isEqualTo(-1);
+
+		record(true);
+
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+		assertThat(this.breaker.tryAcquire()).isEqualTo(Permit.REJECTED);
+	}
+
+	@Test
+	public void windowSlidesOverOldCalls() {
+		record(false, false, false, false, false, false, false, true, true, true);
+		assertThat(this.breaker.getFailureRate()).isEqualTo(30);
+
+		record(false, false, false, false, false, false, false);
+		assertThat(this.breaker.getFailureRate()).isEqualTo(30);
+		// the failures are evicted last
+		record(false, false, false);
+
+		assertThat(this.breaker.getFailureRate()).isEqualTo(0);
+		record(true, true, true, true);
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+		record(true);
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+	}
+
+	@Test
+	public void opensWhenSlowCallRateIsReached() {
+		for (int i = 0; i < 4; i++) {
+			this.breaker.onResult(this.breaker.tryAcquire(), SLOW, false);
+		}
+
+		assertThat(this.breaker.getSlowCallRate()).isEqualTo(100);
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+	}
+
+	@Test
+	public void admitsSingleProbeAfterWaitDuration() {
+		record(true, true, true, true);
+
+		this.clock.addAndGet(Duration.ofSeconds(4).toNanos());
+		assertThat(this.breaker.tryAcquire()).isEqualTo(Permit.REJECTED);
+
+		this.clock.addAndGet(Duration.ofSeconds(1).toNanos());
+		assertThat(this.breaker.tryAcquire()).isEqualTo(Permit.PROBE);
+		assertThat(this.breaker.getState()).isEqualTo(State.HALF_OPEN);
+		assertThat(this.breaker.tryAcquire()).isEqualTo(Permit.REJECTED);
+	}
+
+	@Test
+	public void successfulProbeClosesWithEmptyWindow() {
+		record(true, true, true, true);
+		this.clock.addAndGet(Duration.ofSeconds(5).toNanos());
+
+		this.breaker.onResult(this.breaker.tryAcquire(), FAST, false);
+
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+		assertThat(this.breaker.getFailureRate()).isEqualTo(-1);
+		record(true, true, true);
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+	}
+
+	@Test
+	public void failedOrSlowProbeReopens() {
+		record(true, true, true, true);
+		this.clock.addAndGet(Duration.ofSeconds(5).toNanos());
+		this.breaker.onResult(this.breaker.tryAcquire(), FAST, true);
+
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+		assertThat(this.breaker.tryAcquire()).isEqualTo(Permit.REJECTED);
+
+		this.clock.addAndGet(Duration.ofSeconds(5).toNanos());
+		this.breaker.onResult(this.breaker.tryAcquire(), SLOW, false);
+
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+	}
+
+	@Test
+	public void releasedProbeCanBeTakenAgain() {
+		record(true, true, true, true);
+		this.clock.addAndGet(Duration.ofSeconds(5).toNanos());
+
+		this.breaker.release(this.breaker.tryAcquire());
+
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+		assertThat(this.breaker.tryAcquire()).isEqualTo(Permit.PROBE);
+	}
+
+	@Test
+	public void callsAdmittedBeforeOpeningAreIgnored() {
+		Permit late = this.breaker.tryAcquire();
+		record(true, true, true, true);
+		this.clock.addAndGet(Duration.ofSeconds(5).toNanos());
+		Permit probe = this.breaker.tryAcquire();
+
+		this.breaker.onResult(late, FAST, true);
+		assertThat(this.breaker.getState()).isEqualTo(State.HALF_OPEN);
+
+		this.breaker.onResult(probe, FAST, false);
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+	}
+
+	private void record(boolean... failures) {
+		for (boolean failed : failures) {
+			this.breaker.onResult(this.breaker.tryAcquire(), FAST, failed);
+		}
+	}
+}
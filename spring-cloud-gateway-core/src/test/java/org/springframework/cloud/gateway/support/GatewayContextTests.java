@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.server.PathContainer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern.PathMatchInfo;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ALREADY_ROUTED_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_FLUSH_STRATEGY_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.URI_TEMPLATE_VARIABLES_ATTRIBUTE;
+
+public class GatewayContextTests {
+
+	@Test
+	public void typedStateIsVisibleThroughAttributes() {
+		ServerWebExchange exchange = exchange();
+		GatewayContext context = GatewayContext.get(exchange);
+		Route route = Route.builder().id("test").uri("http://localhost").predicate(e -> true).build();
+		context.setRoute(route);
+		context.setRequestUrl(URI.create("http://backend/foo"));
+		context.addOriginalRequestUrl(URI.create("http://localhost/foo"));
+		context.addOriginalRequestUrl(URI.create("http://localhost/bar"));
+		context.setAlreadyRouted();
+
+		assertThat(GatewayContext.get(exchange)).isSameAs(context);
+		assertThat(exchange.<Route>getAttribute(GATEWAY_ROUTE_ATTR)).isSameAs(route);
+		assertThat(exchange.<URI>getAttribute(GATEWAY_REQUEST_URL_ATTR)).isEqualTo(URI.create("http://backend/foo"));
+		assertThat(exchange.<Iterable<URI>>getAttribute(GATEWAY_ORIGINAL_REQUEST_URL_ATTR))
+				.containsExactly(URI.create("http://localhost/foo"), URI.create("http://localhost/bar"));
+		assertThat(exchange.<Boolean>getAttribute(GATEWAY_ALREADY_ROUTED_ATTR)).isTrue();
+	}
+
+	@Test
+	public void attributesWrittenBeforeCreationAreTakenOver() {
+		ServerWebExchange exchange = exchange();
+		Route route = Route.builder().id("test").uri("http://localhost").predicate(e -> true).build();
+		PathMatchInfo match = new PathPatternParser().parse("/foo/{id}")
+				.matchAndExtract(PathContainer.parsePath("/foo/42"));
+		FlushStrategy batch = FlushStrategy.batch();
+		Set<URI> urls = new LinkedHashSet<>(Collections.singleton(URI.create("http://localhost/bar")));
+		exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, URI.create("forward:///foo"));
+		exchange.getAttributes().put(GATEWAY_ALREADY_ROUTED_ATTR, true);
+		exchange.getAttributes().put(URI_TEMPLATE_VARIABLES_ATTRIBUTE, match);
+		exchange.getAttributes().put(CLIENT_RESPONSE_ATTR, "theirs");
+		exchange.getAttributes().put(GATEWAY_FLUSH_STRATEGY_ATTR, batch);
+		exchange.getAttributes().put(GATEWAY_ORIGINAL_REQUEST_URL_ATTR, urls);
+
+		GatewayContext context = GatewayContext.get(exchange);
+		context.addOriginalRequestUrl(URI.create("http://localhost/baz"));
+
+		assertThat(context.getRoute()).isSameAs(route);
+		assertThat(context.getRequestUrl()).isEqualTo(URI.create("forward:///foo"));
+		assertThat(context.isAlreadyRouted()).isTrue();
+		assertThat(context.getUriTemplateVariables()).containsEntry("id", "42");
+		assertThat(context.<String>getClientResponse()).isEqualTo("theirs");
+		assertThat(context.getFlushStrategy()).isSameAs(batch);
+		assertThat(context.getOriginalRequestUrls())
+				.containsExactly(URI.create("http://localhost/bar"), URI.create("http://localhost/baz"));
+		assertThat(urls).hasSize(2);
+	}
+
+	@Test
+	public void clearedValuesAreRemovedFromAttributes() {
+		ServerWebExchange exchange = exchange();
+		GatewayContext context = GatewayContext.get(exchange);
+		context.setClientResponse("response");
+		context.setFlushStrategy(FlushStrategy.batch());
+
+		context.setClientResponse(null);
+		context.setFlushStrategy(null);
+
+		assertThat(context.<String>getClientResponse()).isNull();
+		assertThat(context.getFlushStrategy()).isSameAs(FlushStrategy.EACH);
+		assertThat(exchange.getAttributes()).doesNotContainKeys(CLIENT_RESPONSE_ATTR, GATEWAY_FLUSH_STRATEGY_ATTR);
+	}
+
+	@Test
+	public void responseBodyDecoratorsApplyInOrder() {
+		GatewayContext context = GatewayContext.get(exchange());
+		Flux<DataBuffer> body = Flux.just(buffer("body"));
+		assertThat(context.decorateResponseBody(body)).isSameAs(body);
+
+		context.addResponseBodyDecorator(flux -> flux.concatWith(Flux.just(buffer("1"))));
+		context.addResponseBodyDecorator(flux -> flux.concatWith(Flux.just(buffer("2"))));
+		String decorated = context.decorateResponseBody(body)
+				.map(buffer -> StandardCharsets.UTF_8.decode(buffer.asByteBuffer()).toString())
+				.reduce(String::concat).block();
+		assertThat(decorated).isEqualTo("body12");
+	}
+
+	@Test
+	public void checkpointRestoresRoutingState() {
+		ServerWebExchange exchange = exchange();
+		GatewayContext context = GatewayContext.get(exchange);
+		URI url = URI.create("lb://service/foo");
+		context.setRequestUrl(url);
+		GatewayContext.Checkpoint checkpoint = context.checkpoint();
+
+		context.setRequestUrl(URI.create("http://host:8080/foo"));
+		context.setAlreadyRouted();
+		context.setClientResponse("response");
+		context.setResponseTimeout(Duration.ofSeconds(1));
+		context.addResponseBodyDecorator(flux -> Flux.empty());
+		checkpoint.restore();
+
+		assertThat(context.getRequestUrl()).isEqualTo(url);
+		assertThat(context.isAlreadyRouted()).isFalse();
+		assertThat(context.<Object>getClientResponse()).isNull();
+		assertThat(context.getResponseTimeout()).isNull();
+		Flux<DataBuffer> body = Flux.just(buffer("body"));
+		assertThat(context.decorateResponseBody(body)).isSameAs(body);
+		assertThat(exchange.getAttributes()).doesNotContainKeys(GATEWAY_ALREADY_ROUTED_ATTR)
+				.containsEntry(GATEWAY_REQUEST_URL_ATTR, url);
+	}
+
+	private static DataBuffer buffer(String value) {
+		return new DefaultDataBufferFactory().wrap(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static ServerWebExchange exchange() {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/foo").build());
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HedgePolicyTests {
+
+	@Test
+	public void noDelayUntilEnoughSamples() {
+		HedgePolicy policy = new HedgePolicy(95, Duration.ZERO);
+		record(policy, HedgePolicy.MIN_SAMPLES - 1, 1_000_000);
+
+		assertThat(policy.getDelay()).isNull();
+
+		policy.recordLatency(1_000_000);
+		assertThat(policy.getDelay()).isEqualTo(Duration.ofMillis(1));
+	}
+
+	@Test
+	public void delayIsThePercentileOfRecentLatencies() {
+		HedgePolicy policy = new HedgePolicy(90, Duration.ZERO);
+		for (int i = 1; i <= 100; i++) { // 1ms .. 100ms
+			policy.recordLatency(Duration.ofMillis(i).toNanos());
+		}
+		record(policy, 28, Duration.ofMillis(1).toNanos()); // 128 samples in total
+
+		// the 116th of 128 samples, the 88th of the increasing ones
+		assertThat(policy.getDelay()).isEqualTo(Duration.ofMillis(88));
+	}
+
+	@Test
+	public void delayIsAtLeastMinDelay() {
+		HedgePolicy policy = new HedgePolicy(95, Duration.ofMillis(20));
+		record(policy, HedgePolicy.MIN_SAMPLES, 1_000_000);
+
+		assertThat(policy.getDelay()).isEqualTo(Duration.ofMillis(20));
+	}
+
+	@Test
+	public void oldSamplesLeaveTheWindow() {
+		HedgePolicy policy = new HedgePolicy(50, Duration.ZERO);
+		record(policy, HedgePolicy.WINDOW, Duration.ofSeconds(1).toNanos());
+		record(policy, HedgePolicy.WINDOW, Duration.ofMillis(5).toNanos());
+
+		assertThat(policy.getDelay()).isEqualTo(Duration.ofMillis(5));
+	}
+
+	private static void record(HedgePolicy policy, int count, long nanos) {
+		for (int i = 0; i < count; i++) {
+			policy.recordLatency(nanos);
+		}
+	}
+}
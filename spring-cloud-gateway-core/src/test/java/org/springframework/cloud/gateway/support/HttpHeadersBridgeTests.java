@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpHeadersBridgeTests {
+
+	@Test
+	public void requestHeadersWithoutHopByHopHeaders() {
+		HttpHeaders from = new HttpHeaders();
+		from.add("Host", "gateway.example.org");
+		from.add("Connection", "keep-alive, X-Hop");
+		from.add("X-Hop", "1");
+		from.add("Keep-Alive", "timeout=5");
+		from.add("Transfer-Encoding", "chunked");
+		from.add("Cookie", "a=1");
+		from.add("Cookie", "b=2");
+		DefaultHttpHeaders to = new DefaultHttpHeaders();
+
+		HttpHeadersBridge.copyRequestHeaders(from, to);
+
+		assertThat(to.names()).containsOnly("Cookie");
+		assertThat(to.getAll("cookie")).containsExactly("a=1", "b=2");
+		assertThat(HttpHeadersBridge.isChunked(from)).isTrue();
+	}
+
+	@Test
+	public void responseHeadersReplaceExistingValues() {
+		DefaultHttpHeaders from = new DefaultHttpHeaders();
+		from.add("connection", "close");
+		from.add("transfer-encoding", "gzip, chunked");
+		from.add("x-upstream", "1");
+		from.add("x-upstream", "2");
+		HttpHeaders to = new HttpHeaders();
+		to.add("X-Upstream", "0");
+		to.add("X-Gateway", "0");
+
+		HttpHeadersBridge.copyResponseHeaders(from, to);
+
+		assertThat(to).hasSize(2);
+		assertThat(to.getFirst("X-Gateway")).isEqualTo("0");
+		assertThat(to.get("X-Upstream")).containsExactly("1", "2");
+		assertThat(HttpHeadersBridge.isChunked(new HttpHeaders())).isFalse();
+	}
+}
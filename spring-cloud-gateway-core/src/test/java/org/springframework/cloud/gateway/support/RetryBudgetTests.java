@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryBudgetTests {
+
+	@Test
+	public void startsWithFullBucket() {
+		RetryBudget budget = new RetryBudget(20, 3);
+
+		assertThat(budget.tryWithdraw()).isTrue();
+		assertThat(budget.tryWithdraw()).isTrue();
+		assertThat(budget.tryWithdraw()).isTrue();
+		assertThat(budget.tryWithdraw()).isFalse();
+	}
+
+	@Test
+	public void requestsEarnTheirShareOfRetries() {
+		RetryBudget budget = new RetryBudget(20, 3);
+		drain(budget);
+
+		for (int i = 0; i < 4; i++) {
+			budget.deposit();
+		}
+		assertThat(budget.tryWithdraw()).isFalse();
+
+		budget.deposit();
+		assertThat(budget.tryWithdraw()).isTrue();
+		assertThat(budget.tryWithdraw()).isFalse();
+	}
+
+	@Test
+	public void depositsAreCappedByMaxTokens() {
+		RetryBudget budget = new RetryBudget(50, 2);
+		for (int i = 0; i < 100; i++) {
+			budget.deposit();
+		}
+
+		assertThat(budget.getAvailable()).isEqualTo(2);
+	}
+
+	private static void drain(RetryBudget budget) {
+		while (budget.tryWithdraw()) {
+			// spend the initial tokens
+		}
+	}
+}